@@ -81,6 +81,7 @@ public @interface MetricDocumentation {
         UNKNOWN("Unknown"),
         NUMBER("Number"),
         PERCENT("Percent 0.0 to 1.0"),
+        TIME_MICROSECONDS("Time in microseconds"),
         TIME_MILLISECONDS("Time in milliseconds"),
         TIME_SECONDS("Time in seconds");
 
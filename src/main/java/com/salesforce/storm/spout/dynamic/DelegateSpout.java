@@ -28,6 +28,10 @@ package com.salesforce.storm.spout.dynamic;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
 import com.salesforce.storm.spout.dynamic.consumer.Consumer;
 import com.salesforce.storm.spout.dynamic.filter.FilterChain;
+import com.salesforce.storm.spout.dynamic.metrics.LatencyTracker;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
+
+import java.util.Collection;
 
 /**
  * A virtualized spout that is run from within the DyanmicSpout by the SpoutCoordinator.
@@ -50,6 +54,30 @@ public interface DelegateSpout {
      */
     Message nextTuple();
 
+    /**
+     * Get up to maxMessages of the next messages from the spout.
+     *
+     * The returned work count is at least the number of messages added.  Implementations may return a larger value
+     * when they did work that produced no message, for example when a message was filtered, so callers can tell a
+     * spout that is making progress apart from one that is idle.
+     *
+     * @param messages collection to add the Messages to pass along to Storm to.
+     * @param maxMessages maximum number of messages to add, and the maximum amount of work to do.
+     * @return how much work was done, 0 if there was nothing to do.
+     */
+    default int nextTuples(final Collection<Message> messages, final int maxMessages) {
+        int found = 0;
+        while (found < maxMessages) {
+            final Message message = nextTuple();
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            found++;
+        }
+        return found;
+    }
+
     /**
      * Acknowledge a message that came from this spout as having completed processing.
      * @param msgId Message id to acknowledge.
@@ -111,6 +139,30 @@ public interface DelegateSpout {
      */
     FilterChain getFilterChain();
 
+    /**
+     * Get the latencies from emitting a message to it being acked.  These are collected from another thread.
+     * @return latencies from emit to ack, or null if the spout doesn't track them.
+     */
+    default LatencyTracker getAckLatency() {
+        return null;
+    }
+
+    /**
+     * Get the latencies from emitting a message to it being failed.  These are collected from another thread.
+     * @return latencies from emit to fail, or null if the spout doesn't track them.
+     */
+    default LatencyTracker getFailLatency() {
+        return null;
+    }
+
+    /**
+     * Hands the spout where to record how the stages of its pipeline are performing, called before open().
+     * @param pipelineStats statistics on the spout's pipeline, which may be {@link PipelineStats#DISABLED}.
+     */
+    default void setPipelineStats(final PipelineStats pipelineStats) {
+        // Spouts that don't record their own stages can ignore this.
+    }
+
     /**
      * Whether or not this {@link VirtualSpout} has completed it's processing, which typically means that the data from {@link Consumer},
      * specifically {@link #getCurrentState()} is now at or beyond {@link #getEndingState()}.
@@ -35,6 +35,11 @@ import com.salesforce.storm.spout.dynamic.exception.SpoutAlreadyExistsException;
 import com.salesforce.storm.spout.dynamic.exception.SpoutDoesNotExistException;
 import com.salesforce.storm.spout.dynamic.exception.SpoutNotOpenedException;
 import com.salesforce.storm.spout.dynamic.handler.SpoutHandler;
+import com.salesforce.storm.spout.dynamic.metrics.BoundCounter;
+import com.salesforce.storm.spout.dynamic.metrics.BoundGauge;
+import com.salesforce.storm.spout.dynamic.metrics.MetricDefinition;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStage;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
 import com.salesforce.storm.spout.dynamic.metrics.SpoutMetrics;
 import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
 import org.apache.storm.spout.SpoutOutputCollector;
@@ -46,7 +51,9 @@ import org.apache.storm.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -119,6 +126,38 @@ public class DynamicSpout extends BaseRichSpout {
      */
     private String permanentlyFailedOutputStreamId = null;
 
+    /**
+     * Maximum number of tuples to emit each time nextTuple() is called.
+     * Gets set during open().
+     */
+    private int emitBatchSize = 1;
+
+    /**
+     * Reused for pulling batches of messages off of the message bus when emitting more than one tuple at a time.
+     */
+    private transient List<Message> emitBatch;
+
+    /**
+     * Emit and ack counters of each VirtualSpout, bound the first time we count them so that counting a tuple
+     * doesn't build a metric key.  Storm only ever calls nextTuple(), ack() and fail() from a single thread.
+     * Entries are dropped once the SpoutCoordinator tells us the VirtualSpout has finished.
+     */
+    private transient Map<VirtualSpoutIdentifier, BoundCounter> emitCounters;
+    private transient Map<VirtualSpoutIdentifier, BoundCounter> ackCounters;
+
+    /**
+     * Pipeline stats of each VirtualSpout we've emitted for, when enabled, so that we can record our emit stage
+     * without asking the SpoutCoordinator on every tuple.
+     */
+    private boolean pipelineStatsEnabled = false;
+    private transient Map<VirtualSpoutIdentifier, PipelineStats> pipelineStats;
+
+    /**
+     * Depth of the MessageBuffer, sampled each time nextTuple() is called, and the depth we last assigned to it.
+     */
+    private transient BoundGauge bufferDepthGauge;
+    private int lastBufferDepth = -1;
+
     /**
      * Whether or not the spout has been previously opened.
      */
@@ -161,6 +200,15 @@ public class DynamicSpout extends BaseRichSpout {
             throw new IllegalStateException("Missing required configuration: " + SpoutConfig.VIRTUAL_SPOUT_ID_PREFIX);
         }
 
+        // Determine how many tuples we may emit each time nextTuple() is called.
+        this.emitBatchSize = Math.max(1, ((Number) getSpoutConfigItem(SpoutConfig.EMIT_BATCH_SIZE)).intValue());
+        this.emitBatch = new ArrayList<>(emitBatchSize);
+        this.emitCounters = new HashMap<>();
+        this.ackCounters = new HashMap<>();
+        this.pipelineStats = new HashMap<>();
+
+        this.pipelineStatsEnabled = (Boolean) getSpoutConfigItem(SpoutConfig.METRICS_PIPELINE_STATS_ENABLED);
+
         // We do not use the getters for things like the metricsRecorder and coordinator here
         // because each of these getters perform a check to see if the spout is open, and it's not yet until we've
         // finished setting all of these things up.
@@ -168,6 +216,8 @@ public class DynamicSpout extends BaseRichSpout {
         // Initialize Metric Recorder
         this.metricsRecorder = getFactoryManager().createNewMetricsRecorder();
         this.metricsRecorder.open(getSpoutConfig(), getTopologyContext());
+        this.bufferDepthGauge = metricsRecorder.bindGauge(SpoutMetrics.DYNAMIC_SPOUT_BUFFER_DEPTH);
+        this.lastBufferDepth = -1;
 
         // Create MessageBuffer
         final MessageBuffer messageBuffer = getFactoryManager().createNewMessageBufferInstance();
@@ -228,6 +278,34 @@ public class DynamicSpout extends BaseRichSpout {
             getOutputCollector().reportError(reportedError);
         }
 
+        // Stop tracking anything for VirtualSpouts that have finished.
+        VirtualSpoutIdentifier finishedVirtualSpoutId;
+        while ((finishedVirtualSpoutId = getSpoutCoordinator().nextFinishedVirtualSpout()) != null) {
+            emitCounters.remove(finishedVirtualSpoutId);
+            ackCounters.remove(finishedVirtualSpoutId);
+            pipelineStats.remove(finishedVirtualSpoutId);
+        }
+
+        // Sample how deep the buffer is, only assigning the gauge when the depth changes.
+        final int bufferDepth = getMessageBus().messageSize();
+        if (bufferDepth != lastBufferDepth) {
+            bufferDepthGauge.assign(bufferDepth);
+            lastBufferDepth = bufferDepth;
+        }
+
+        // When configured to emit more than one tuple at a time, drain a batch of messages off of the MessageBus.
+        if (emitBatchSize > 1) {
+            try {
+                getMessageBus().nextMessages(emitBatch, emitBatchSize);
+                for (final Message message : emitBatch) {
+                    emitMessage(message);
+                }
+            } finally {
+                emitBatch.clear();
+            }
+            return;
+        }
+
         // Ask the MessageBus for the next message that should be emitted. If it returns null, then there's
         // nothing new to emit! If a Message object is returned, it contains the appropriately mapped MessageId and
         // Values for the tuple that should be emitted.
@@ -236,7 +314,14 @@ public class DynamicSpout extends BaseRichSpout {
             // Nothing new to emit!
             return;
         }
+        emitMessage(message);
+    }
 
+    /**
+     * Emit a message into the topology.
+     * @param message message to emit
+     */
+    private void emitMessage(final Message message) {
         // If this is a permanently failed message.
         if (message.isPermanentlyFailed()) {
             // Emit tuple via the output collector down the failed stream.
@@ -248,11 +333,57 @@ public class DynamicSpout extends BaseRichSpout {
 
         // Emit tuple via the output collector.
         // Attach the appropriate messageId so it can be tracked.
+        final PipelineStats virtualSpoutPipelineStats = getPipelineStats(message.getMessageId().getSrcVirtualSpoutId());
+        final long emitStartNanos = virtualSpoutPipelineStats.start(PipelineStage.EMIT);
+        message.setEmittedAtNanos(System.nanoTime());
         getOutputCollector().emit(getOutputStreamId(), message.getValues(), message.getMessageId());
+        virtualSpoutPipelineStats.stop(PipelineStage.EMIT, emitStartNanos, 1);
 
         // Update emit count metric for VirtualSpout this tuple originated from
-        getMetricsRecorder()
-            .count(SpoutMetrics.VIRTUAL_SPOUT_EMIT, message.getMessageId().getSrcVirtualSpoutId().toString());
+        getVirtualSpoutCounter(emitCounters, SpoutMetrics.VIRTUAL_SPOUT_EMIT, message.getMessageId().getSrcVirtualSpoutId())
+            .increment();
+    }
+
+    /**
+     * Get the counter for a metric of a VirtualSpout, binding it the first time it's counted.
+     * @param counters counters already bound for the metric, by VirtualSpout.
+     * @param metric metric to count.
+     * @param virtualSpoutIdentifier VirtualSpout to count the metric for.
+     * @return counter for the metric of the VirtualSpout.
+     */
+    private BoundCounter getVirtualSpoutCounter(
+        final Map<VirtualSpoutIdentifier, BoundCounter> counters,
+        final MetricDefinition metric,
+        final VirtualSpoutIdentifier virtualSpoutIdentifier
+    ) {
+        BoundCounter counter = counters.get(virtualSpoutIdentifier);
+        if (counter == null) {
+            counter = getMetricsRecorder().bindCounter(metric, virtualSpoutIdentifier.toString());
+            counters.put(virtualSpoutIdentifier, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Get the pipeline stats of a VirtualSpout, looking them up from the SpoutCoordinator the first time.
+     * @param virtualSpoutIdentifier VirtualSpout to get the pipeline stats of.
+     * @return pipeline stats of the VirtualSpout, or {@link PipelineStats#DISABLED} if pipeline stats are not enabled.
+     */
+    private PipelineStats getPipelineStats(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
+        if (!pipelineStatsEnabled) {
+            return PipelineStats.DISABLED;
+        }
+
+        PipelineStats virtualSpoutPipelineStats = pipelineStats.get(virtualSpoutIdentifier);
+        if (virtualSpoutPipelineStats == null) {
+            virtualSpoutPipelineStats = getSpoutCoordinator().getPipelineStats(virtualSpoutIdentifier);
+
+            // Don't hold on to anything for a VirtualSpout that isn't running, we'd never be told to drop it.
+            if (virtualSpoutPipelineStats.isEnabled()) {
+                pipelineStats.put(virtualSpoutIdentifier, virtualSpoutPipelineStats);
+            }
+        }
+        return virtualSpoutPipelineStats;
     }
 
     /**
@@ -363,8 +494,11 @@ public class DynamicSpout extends BaseRichSpout {
         // Ack the tuple via the Message Bus
         getMessageBus().ack(messageId);
 
-        // Update ack count metric for VirtualSpout this tuple originated from
-        getMetricsRecorder().count(SpoutMetrics.VIRTUAL_SPOUT_ACK, messageId.getSrcVirtualSpoutId());
+        // Update ack count metric for VirtualSpout this tuple originated from, unless it has since finished, in which case
+        // we've stopped counting for it and starting again would never be undone.
+        if (emitCounters.containsKey(messageId.getSrcVirtualSpoutId())) {
+            getVirtualSpoutCounter(ackCounters, SpoutMetrics.VIRTUAL_SPOUT_ACK, messageId.getSrcVirtualSpoutId()).increment();
+        }
     }
 
     /**
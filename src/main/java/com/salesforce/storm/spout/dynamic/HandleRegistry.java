@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns values as small integer handles, so objects created per tuple can hold and compare an int rather than
+ * a reference to the value itself.
+ *
+ * Handles are handed out sequentially starting at 0 and are never reclaimed, so this is only meant for values that come
+ * from a small fixed set, like namespaces.  Values that come and go, like VirtualSpout identifiers, must not be interned
+ * or the registry grows for as long as the JVM runs.  Handles are only meaningful within this JVM.
+ *
+ * @param <T> type of the values being interned.
+ */
+final class HandleRegistry<T> {
+
+    /**
+     * Handles, keyed by their value.
+     */
+    private final ConcurrentHashMap<T, Integer> handles = new ConcurrentHashMap<>();
+
+    /**
+     * Values, indexed by their handle.
+     */
+    private volatile Object[] values = new Object[16];
+
+    /**
+     * Number of handles handed out so far.  Guarded by this.
+     */
+    private int size = 0;
+
+    /**
+     * Get the handle for a value, interning the value if we haven't seen it before.
+     * @param value value to get the handle for.
+     * @return handle for the value.
+     */
+    int getHandle(final T value) {
+        Preconditions.checkNotNull(value, "Value cannot be null");
+
+        final Integer handle = handles.get(value);
+        if (handle != null) {
+            return handle;
+        }
+        return register(value);
+    }
+
+    /**
+     * Get the value a handle was handed out for.
+     * @param handle handle to resolve.
+     * @return value the handle was handed out for.
+     */
+    @SuppressWarnings("unchecked")
+    T getValue(final int handle) {
+        return (T) values[handle];
+    }
+
+    /**
+     * Get the number of handles handed out so far.
+     * @return number of handles handed out so far.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Hand out a new handle for a value, unless another thread beat us to it.
+     * @param value value to hand out a handle for.
+     * @return handle for the value.
+     */
+    private synchronized int register(final T value) {
+        final Integer existingHandle = handles.get(value);
+        if (existingHandle != null) {
+            return existingHandle;
+        }
+
+        // Store the value before publishing its handle, so anyone who can see the handle can resolve it.
+        final Object[] updatedValues = size < values.length ? values : Arrays.copyOf(values, values.length * 2);
+        updatedValues[size] = value;
+        values = updatedValues;
+
+        final int handle = size++;
+        handles.put(value, handle);
+        return handle;
+    }
+}
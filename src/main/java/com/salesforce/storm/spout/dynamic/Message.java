@@ -32,6 +32,11 @@ import org.apache.storm.tuple.Values;
  */
 public final class Message {
 
+    /**
+     * Returned by {@link #getEmittedAtNanos()} for a message that has not been emitted into the topology.
+     */
+    public static final long NOT_EMITTED = Long.MIN_VALUE;
+
     /**
      * MessageId contains information about what Topic, Partition, Offset, and Consumer this
      * message originated from.
@@ -51,6 +56,13 @@ public final class Message {
      */
     private final boolean isPermanentlyFailed;
 
+    /**
+     * Value of {@link System#nanoTime()} when DynamicSpout last emitted this message into the topology.
+     * Only written by the thread emitting into the topology, and only read once the emit has been acked or failed back to the
+     * VirtualSpout through the MessageBus, whose queues order the write before the read.  Not part of equality.
+     */
+    private long emittedAtNanos = NOT_EMITTED;
+
     /**
      * Constructor.
      * @param messageId contains information about what Topic, Partition, Offset, and Consumer this
@@ -98,6 +110,22 @@ public final class Message {
         return isPermanentlyFailed;
     }
 
+    /**
+     * Get when this message was last emitted into the topology.
+     * @return value of {@link System#nanoTime()} when this message was last emitted, or {@link #NOT_EMITTED}.
+     */
+    public long getEmittedAtNanos() {
+        return emittedAtNanos;
+    }
+
+    /**
+     * Record when this message is emitted into the topology, from the thread emitting it.
+     * @param emittedAtNanos value of {@link System#nanoTime()} when this message was emitted.
+     */
+    public void setEmittedAtNanos(final long emittedAtNanos) {
+        this.emittedAtNanos = emittedAtNanos;
+    }
+
     @Override
     public String toString() {
         return "Message{"
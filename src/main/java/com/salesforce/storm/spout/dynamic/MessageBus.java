@@ -25,14 +25,18 @@
 
 package com.salesforce.storm.spout.dynamic;
 
+import com.salesforce.storm.spout.dynamic.buffer.CountedQueues;
 import com.salesforce.storm.spout.dynamic.buffer.MessageBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Provides an abstraction for passing messages between the DynamicSpout instance
@@ -59,6 +63,22 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
      */
     private final Map<VirtualSpoutIdentifier, Queue<MessageId>> failedTuples = new ConcurrentHashMap<>();
 
+    /**
+     * Total number of acked messages waiting across all VirtualSpouts.
+     * ConcurrentLinkedQueue.size() walks the entire queue, so we track this as messages come and go instead.
+     */
+    private final LongAdder ackedTuplesSize = new LongAdder();
+
+    /**
+     * Total number of failed messages waiting across all VirtualSpouts.
+     */
+    private final LongAdder failedTuplesSize = new LongAdder();
+
+    /**
+     * Handlers by spout consumer id, run when a message is acked or failed so idle VirtualSpouts can be woken up.
+     */
+    private final Map<VirtualSpoutIdentifier, Runnable> wakeUpHandlers = new ConcurrentHashMap<>();
+
     /**
      * Buffer for errors that need to be reported.
      */
@@ -83,6 +103,11 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
         return messageBuffer.poll();
     }
 
+    @Override
+    public int nextMessages(final Collection<Message> messages, final int maxMessages) {
+        return messageBuffer.drainTo(messages, maxMessages);
+    }
+
     @Override
     public void ack(final MessageId id) {
         // Attempt to get queue for the appropriate VirtualSpout
@@ -97,6 +122,11 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
 
         // Otherwise we have a queue, so push onto it.
         queue.add(id);
+
+        // Unless the VirtualSpout was unregistered in the mean time, let it know it has work to do.
+        if (CountedQueues.added(ackedTuples, id.getSrcVirtualSpoutId(), queue, id, ackedTuplesSize)) {
+            wakeUp(id.getSrcVirtualSpoutId());
+        }
     }
 
     @Override
@@ -111,14 +141,24 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
             return;
         }
 
-        failedTuples.get(id.getSrcVirtualSpoutId()).add(id);
+        queue.add(id);
+
+        // Unless the VirtualSpout was unregistered in the mean time, let it know it has work to do.
+        if (CountedQueues.added(failedTuples, id.getSrcVirtualSpoutId(), queue, id, failedTuplesSize)) {
+            wakeUp(id.getSrcVirtualSpoutId());
+        }
+    }
+
+    @Override
+    public void registerWakeUpHandler(final VirtualSpoutIdentifier virtualSpoutIdentifier, final Runnable wakeUpHandler) {
+        wakeUpHandlers.put(virtualSpoutIdentifier, wakeUpHandler);
     }
 
     @Override
     public void registerVirtualSpout(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
         messageBuffer.addVirtualSpoutId(virtualSpoutIdentifier);
-        ackedTuples.put(virtualSpoutIdentifier, new ConcurrentLinkedQueue<>());
-        failedTuples.put(virtualSpoutIdentifier, new ConcurrentLinkedQueue<>());
+        CountedQueues.discard(ackedTuples.put(virtualSpoutIdentifier, new ConcurrentLinkedQueue<>()), ackedTuplesSize);
+        CountedQueues.discard(failedTuples.put(virtualSpoutIdentifier, new ConcurrentLinkedQueue<>()), failedTuplesSize);
     }
 
     @Override
@@ -126,6 +166,23 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
         messageBuffer.put(message);
     }
 
+    @Override
+    public void publishMessages(final Collection<Message> messages) throws InterruptedException {
+        messageBuffer.putAll(messages);
+    }
+
+    @Override
+    public int offerMessages(final List<Message> messages) throws InterruptedException {
+        int published = 0;
+        for (final Message message : messages) {
+            if (!messageBuffer.offer(message)) {
+                break;
+            }
+            published++;
+        }
+        return published;
+    }
+
     @Override
     public int messageSize() {
         return messageBuffer.size();
@@ -138,19 +195,39 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
 
     @Override
     public MessageId getAckedMessage(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
-        return ackedTuples.get(virtualSpoutIdentifier).poll();
+        final MessageId messageId = ackedTuples.get(virtualSpoutIdentifier).poll();
+        if (messageId != null) {
+            ackedTuplesSize.decrement();
+        }
+        return messageId;
     }
 
     @Override
     public MessageId getFailedMessage(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
-        return failedTuples.get(virtualSpoutIdentifier).poll();
+        final MessageId messageId = failedTuples.get(virtualSpoutIdentifier).poll();
+        if (messageId != null) {
+            failedTuplesSize.decrement();
+        }
+        return messageId;
     }
 
     @Override
     public void unregisterVirtualSpout(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
         messageBuffer.removeVirtualSpoutId(virtualSpoutIdentifier);
-        ackedTuples.remove(virtualSpoutIdentifier);
-        failedTuples.remove(virtualSpoutIdentifier);
+        CountedQueues.discard(ackedTuples.remove(virtualSpoutIdentifier), ackedTuplesSize);
+        CountedQueues.discard(failedTuples.remove(virtualSpoutIdentifier), failedTuplesSize);
+        wakeUpHandlers.remove(virtualSpoutIdentifier);
+    }
+
+    /**
+     * Run the wake up handler for the given VirtualSpout, if it has one registered.
+     * @param virtualSpoutIdentifier identifier of the VirtualSpout to wake up.
+     */
+    private void wakeUp(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
+        final Runnable wakeUpHandler = wakeUpHandlers.get(virtualSpoutIdentifier);
+        if (wakeUpHandler != null) {
+            wakeUpHandler.run();
+        }
     }
 
     /**
@@ -158,11 +235,8 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
      * @return size of the acked tuples that exist within the bus
      */
     public int ackSize() {
-        int size = 0;
-        for (final Queue queue : ackedTuples.values()) {
-            size += queue.size();
-        }
-        return size;
+        // A poll can be counted just before the add that preceded it, so never report less than empty.
+        return (int) Math.max(0, ackedTuplesSize.sum());
     }
 
     /**
@@ -170,10 +244,7 @@ public class MessageBus implements VirtualSpoutMessageBus, SpoutMessageBus {
      * @return size of the failed tuples that exist within the bus
      */
     public int failSize() {
-        int size = 0;
-        for (final Queue queue : failedTuples.values()) {
-            size += queue.size();
-        }
-        return size;
+        // A poll can be counted just before the add that preceded it, so never report less than empty.
+        return (int) Math.max(0, failedTuplesSize.sum());
     }
 }
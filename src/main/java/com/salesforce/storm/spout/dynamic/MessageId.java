@@ -29,21 +29,31 @@ import java.time.Clock;
 
 /**
  * This object is used as the MessageId for Tuples emitted to the Storm topology.
+ *
+ * MessageIds are created for every tuple and used as hash keys all along the ack path, so they are kept compact.
+ * The namespace is interned as a small integer handle and the hash code is computed up front, so equality compares
+ * primitives before it ever compares VirtualSpout identifiers.  Namespaces come from a small fixed set, but VirtualSpouts
+ * come and go over the life of a topology, so we keep a reference to the identifier rather than interning it forever.
  */
 public final class MessageId {
+    /**
+     * Interned namespaces.
+     */
+    private static final HandleRegistry<String> namespaces = new HandleRegistry<>();
+
     /**
      * Class Properties.
      */
-    private final String namespace;
+    private final int namespaceHandle;
     private final int partition;
     private final long offset;
     private final VirtualSpoutIdentifier srcVirtualSpoutId;
     private final long timestamp;
 
     /**
-     * Cached HashCode.
+     * Precomputed HashCode.
      */
-    private int hash = 0;
+    private final int hash;
 
     /**
      * Constructor.
@@ -53,15 +63,21 @@ public final class MessageId {
      * @param srcVirtualSpoutId - the VirtualSpout's identifier this tuple came from.
      */
     public MessageId(final String namespace, final int partition, final long offset, final VirtualSpoutIdentifier srcVirtualSpoutId) {
-        this.namespace = namespace;
+        this.namespaceHandle = namespaces.getHandle(namespace);
         this.partition = partition;
         this.offset = offset;
         this.srcVirtualSpoutId = srcVirtualSpoutId;
         this.timestamp = Clock.systemUTC().millis();
+
+        int result = namespaceHandle;
+        result = 31 * result + partition;
+        result = 31 * result + Long.hashCode(offset);
+        result = 31 * result + srcVirtualSpoutId.hashCode();
+        this.hash = result;
     }
     
     public String getNamespace() {
-        return namespace;
+        return namespaces.getValue(namespaceHandle);
     }
 
     public int getPartition() {
@@ -76,6 +92,23 @@ public final class MessageId {
         return srcVirtualSpoutId;
     }
 
+    /**
+     * Get the handle our namespace was interned as.
+     * @return handle our namespace was interned as.
+     */
+    int getNamespaceHandle() {
+        return namespaceHandle;
+    }
+
+    /**
+     * Get the handle a namespace is interned as, the same handle MessageIds from that namespace hold.
+     * @param namespace namespace to look up.
+     * @return handle the namespace is interned as.
+     */
+    static int getNamespaceHandle(final String namespace) {
+        return namespaces.getHandle(namespace);
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
@@ -87,27 +120,15 @@ public final class MessageId {
 
         MessageId that = (MessageId) other;
 
-        if (getPartition() != that.getPartition()) {
-            return false;
-        }
-        if (getOffset() != that.getOffset()) {
-            return false;
-        }
-        if (!getNamespace().equals(that.getNamespace())) {
-            return false;
-        }
-        return getSrcVirtualSpoutId().equals(that.getSrcVirtualSpoutId());
+        return hash == that.hash
+            && offset == that.offset
+            && partition == that.partition
+            && namespaceHandle == that.namespaceHandle
+            && (srcVirtualSpoutId == that.srcVirtualSpoutId || srcVirtualSpoutId.equals(that.srcVirtualSpoutId));
     }
 
     @Override
     public int hashCode() {
-        if (hash == 0) {
-            int result = getNamespace().hashCode();
-            result = 31 * result + getPartition();
-            result = 31 * result + (int) (getOffset() ^ (getOffset() >>> 32));
-            result = 31 * result + getSrcVirtualSpoutId().hashCode();
-            hash = result;
-        }
         return hash;
     }
 
@@ -116,10 +137,10 @@ public final class MessageId {
         final long diff = Clock.systemUTC().millis() - timestamp;
 
         return "MessageId{"
-                + "namespace='" + namespace + '\''
+                + "namespace='" + getNamespace() + '\''
                 + ", partition=" + partition
                 + ", offset=" + offset
-                + ", srcVirtualSpoutId='" + srcVirtualSpoutId + '\''
+                + ", srcVirtualSpoutId='" + getSrcVirtualSpoutId() + '\''
                 + ", timestamp='" + timestamp + " (" + diff + ")" + '\''
                 + '}';
     }
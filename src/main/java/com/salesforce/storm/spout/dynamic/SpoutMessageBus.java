@@ -25,6 +25,8 @@
 
 package com.salesforce.storm.spout.dynamic;
 
+import java.util.Collection;
+
 /**
  * Facade in front of MessageBus reducing available scope down to only the methods
  * that should be available to the main Spout/DynamicSpout instance.
@@ -43,6 +45,32 @@ public interface SpoutMessageBus {
      */
     Message nextMessage();
 
+    /**
+     * Move up to maxMessages of the next available Messages to be emitted into the topology into the given collection.
+     * This method should never block.
+     * @param messages collection to add the messages to
+     * @param maxMessages maximum number of messages to move
+     * @return number of messages moved into the collection
+     */
+    default int nextMessages(final Collection<Message> messages, final int maxMessages) {
+        int found = 0;
+        while (found < maxMessages) {
+            final Message message = nextMessage();
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            found++;
+        }
+        return found;
+    }
+
+    /**
+     * Get the number of messages waiting on the bus to be emitted into the topology.
+     * @return number of messages waiting on the bus
+     */
+    int messageSize();
+
     /**
      * Acks a tuple on the spout that it belongs to.
      * @param id tuple message id to ack
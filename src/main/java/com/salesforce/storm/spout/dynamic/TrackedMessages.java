@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tracks the Messages a VirtualSpout has emitted that have not yet been acked, keyed by their MessageId.
+ *
+ * With many tuples in flight per VirtualSpout a HashMap allocates an entry object per tuple, so instead
+ * Messages are stored in open addressed arrays, one table per namespace partition, keyed by offset as a primitive.
+ * Partition tables are themselves found through an open addressed table keyed by namespace handle and partition,
+ * so put, get and remove are O(1) and allocation free unless a table needs to grow, and finding every Message
+ * tracked for a partition only walks that partition's table.
+ *
+ * Not thread safe, like the VirtualSpout that owns it.
+ */
+final class TrackedMessages {
+
+    /**
+     * Initial capacity of each table.  Must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Partition tables, keyed by namespace handle and partition.
+     */
+    private final LongTable<LongTable<Message>> partitionTables = new LongTable<>();
+
+    /**
+     * Number of Messages tracked across every partition.
+     */
+    private int size = 0;
+
+    /**
+     * Start tracking a Message, replacing any Message tracked under the same MessageId.
+     * @param messageId id of the Message.
+     * @param message Message to track.
+     */
+    void put(final MessageId messageId, final Message message) {
+        final long partitionKey = getPartitionKey(messageId.getNamespaceHandle(), messageId.getPartition());
+        LongTable<Message> partitionTable = partitionTables.get(partitionKey);
+        if (partitionTable == null) {
+            partitionTable = new LongTable<>();
+            partitionTables.put(partitionKey, partitionTable);
+        }
+        if (partitionTable.put(messageId.getOffset(), message) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * Get a tracked Message.
+     * @param messageId id of the Message.
+     * @return the tracked Message, or null if it is not tracked.
+     */
+    Message get(final MessageId messageId) {
+        final LongTable<Message> partitionTable = getPartitionTable(messageId);
+        if (partitionTable == null) {
+            return null;
+        }
+
+        // Only offsets are keys within a partition, so make sure its from the same VirtualSpout too.
+        final Message message = partitionTable.get(messageId.getOffset());
+        return message != null && message.getMessageId().equals(messageId) ? message : null;
+    }
+
+    /**
+     * Determine if a Message is being tracked.
+     * @param messageId id of the Message.
+     * @return true if the Message is being tracked.
+     */
+    boolean contains(final MessageId messageId) {
+        return get(messageId) != null;
+    }
+
+    /**
+     * Stop tracking a Message.
+     * @param messageId id of the Message.
+     * @return the Message we stopped tracking, or null if it was not tracked.
+     */
+    Message remove(final MessageId messageId) {
+        if (get(messageId) == null) {
+            return null;
+        }
+        size--;
+        return getPartitionTable(messageId).remove(messageId.getOffset());
+    }
+
+    /**
+     * Get every Message tracked for a namespace partition.
+     * @param namespace namespace of the partition.
+     * @param partition the partition.
+     * @return every Message tracked for the namespace partition, in no particular order.
+     */
+    List<Message> getForPartition(final String namespace, final int partition) {
+        final LongTable<Message> partitionTable = partitionTables.get(
+            getPartitionKey(MessageId.getNamespaceHandle(namespace), partition)
+        );
+        if (partitionTable == null || partitionTable.size == 0) {
+            return Collections.emptyList();
+        }
+
+        final List<Message> messages = new ArrayList<>(partitionTable.size);
+        for (final Object message : partitionTable.values) {
+            if (message != null) {
+                messages.add((Message) message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Get the number of Messages being tracked.
+     * @return number of Messages being tracked.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Determine if no Messages are being tracked.
+     * @return true if no Messages are being tracked.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the table tracking the partition a MessageId belongs to.
+     * @param messageId id of the Message.
+     * @return table tracking the partition, or null if we've never tracked the partition.
+     */
+    private LongTable<Message> getPartitionTable(final MessageId messageId) {
+        return partitionTables.get(getPartitionKey(messageId.getNamespaceHandle(), messageId.getPartition()));
+    }
+
+    /**
+     * Combine a namespace handle and partition into a single key.
+     * @param namespaceHandle handle of the namespace.
+     * @param partition the partition.
+     * @return single key for the namespace partition.
+     */
+    private static long getPartitionKey(final int namespaceHandle, final int partition) {
+        return ((long) namespaceHandle << 32) | (partition & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Open addressed hash table of primitive long keys, using linear probing.
+     * Null values mark empty slots, so null values can not be stored.
+     *
+     * @param <V> type of the values.
+     */
+    private static final class LongTable<V> {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size = 0;
+
+        /**
+         * Get the value for a key.
+         * @param key key to look up.
+         * @return value for the key, or null if there isn't one.
+         */
+        @SuppressWarnings("unchecked")
+        private V get(final long key) {
+            for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return (V) values[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Store the value for a key.
+         * @param key key to store the value under.
+         * @param value value to store.
+         * @return the value previously stored for the key, or null if there wasn't one.
+         */
+        @SuppressWarnings("unchecked")
+        private V put(final long key, final V value) {
+            int slot = slot(key);
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    final V previous = (V) values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+
+            // Keep at most half full, so probe sequences stay short.
+            if (++size > (mask + 1) >> 1) {
+                resize();
+            }
+            return null;
+        }
+
+        /**
+         * Remove the value for a key.
+         * @param key key to remove.
+         * @return the value that was removed, or null if there wasn't one.
+         */
+        @SuppressWarnings("unchecked")
+        private V remove(final long key) {
+            int slot = slot(key);
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    final V previous = (V) values[slot];
+                    shiftBack(slot);
+                    size--;
+                    return previous;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Empty a slot, shifting later entries of the same probe sequence back so lookups never stop short.
+         * @param slotToEmpty slot to empty.
+         */
+        private void shiftBack(final int slotToEmpty) {
+            int emptySlot = slotToEmpty;
+            int slot = slotToEmpty;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (values[slot] == null) {
+                    break;
+                }
+
+                // Move the entry back unless its home slot lies cyclically within (emptySlot, slot].
+                final int home = slot(keys[slot]);
+                final boolean canMove = emptySlot <= slot
+                    ? home <= emptySlot || home > slot
+                    : home <= emptySlot && home > slot;
+                if (canMove) {
+                    keys[emptySlot] = keys[slot];
+                    values[emptySlot] = values[slot];
+                    emptySlot = slot;
+                }
+            }
+            values[emptySlot] = null;
+        }
+
+        /**
+         * Double our capacity, rehashing every entry.
+         */
+        private void resize() {
+            final long[] oldKeys = keys;
+            final Object[] oldValues = values;
+
+            keys = new long[oldKeys.length << 1];
+            values = new Object[oldValues.length << 1];
+            mask = keys.length - 1;
+
+            for (int index = 0; index < oldValues.length; index++) {
+                if (oldValues[index] == null) {
+                    continue;
+                }
+                int slot = slot(oldKeys[index]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[index];
+                values[slot] = oldValues[index];
+            }
+        }
+
+        /**
+         * Get the home slot of a key.
+         * @param key key to find the home slot of.
+         * @return home slot of the key.
+         */
+        private int slot(final long key) {
+            // Offsets are sequential, so spread them out before masking.
+            final long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -29,10 +29,15 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.salesforce.storm.spout.dynamic.consumer.Consumer;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerPeerContext;
+import com.salesforce.storm.spout.dynamic.consumer.LazyValues;
 import com.salesforce.storm.spout.dynamic.consumer.Record;
 import com.salesforce.storm.spout.dynamic.filter.FilterChain;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
 import com.salesforce.storm.spout.dynamic.handler.VirtualSpoutHandler;
+import com.salesforce.storm.spout.dynamic.metrics.BoundCounter;
+import com.salesforce.storm.spout.dynamic.metrics.LatencyTracker;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStage;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
 import com.salesforce.storm.spout.dynamic.metrics.SpoutMetrics;
 import com.salesforce.storm.spout.dynamic.retry.RetryManager;
 import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
@@ -40,7 +45,7 @@ import com.salesforce.storm.spout.dynamic.persistence.PersistenceAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
@@ -122,7 +127,7 @@ public class VirtualSpout implements DelegateSpout {
      * This map tracks all messages considered "in flight" and allows us to correlate
      * messages from messageIds passed to fail() and ack()
      */
-    private final Map<MessageId, Message> trackedMessages = new HashMap<>();
+    private final TrackedMessages trackedMessages = new TrackedMessages();
 
     /**
      * Contains messages that have permanently failed.
@@ -134,6 +139,24 @@ public class VirtualSpout implements DelegateSpout {
      */
     private final MetricsRecorder metricsRecorder;
 
+    /**
+     * Counters for metrics recorded on every tuple, bound once when we open.
+     */
+    private BoundCounter ackCounter;
+    private BoundCounter failCounter;
+    private BoundCounter filteredCounter;
+
+    /**
+     * Latencies from emitting a message to it being acked or failed, collected by the SpoutCoordinator's monitor thread.
+     */
+    private final LatencyTracker ackLatency = new LatencyTracker();
+    private final LatencyTracker failLatency = new LatencyTracker();
+
+    /**
+     * Records how our stages of the pipeline are performing, if enabled.
+     */
+    private PipelineStats pipelineStats = PipelineStats.DISABLED;
+
     /**
      * Handler for callbacks at various stages of a virtual spout's lifecycle.
      */
@@ -194,6 +217,11 @@ public class VirtualSpout implements DelegateSpout {
 
         logger.info("Open for VirtualSpout {} has starting state {} and ending state {}", getVirtualSpoutId(), startingState, endingState);
 
+        // Bind the counters we increment on every tuple, so we don't build their keys each time
+        ackCounter = getMetricsRecorder().bindCounter(SpoutMetrics.VIRTUAL_SPOUT_ACK, getVirtualSpoutId().toString());
+        failCounter = getMetricsRecorder().bindCounter(SpoutMetrics.VIRTUAL_SPOUT_FAIL, getVirtualSpoutId().toString());
+        filteredCounter = getMetricsRecorder().bindCounter(SpoutMetrics.VIRTUAL_SPOUT_FILTERED, getVirtualSpoutId().toString());
+
         // Create our failed msg retry manager & open
         retryManager = getFactoryManager().createNewFailedMsgRetryManagerInstance();
         retryManager.open(getSpoutConfig());
@@ -209,7 +237,9 @@ public class VirtualSpout implements DelegateSpout {
         final PersistenceAdapter persistenceAdapter = getFactoryManager().createNewPersistenceAdapterInstance();
         persistenceAdapter.open(getSpoutConfig());
 
-        // Open consumer
+        // Open consumer, letting it filter records early where it can
+        consumer.setFilterChain(getFilterChain());
+        consumer.setPipelineStats(pipelineStats);
         consumer.open(spoutConfig, getVirtualSpoutId(), consumerPeerContext, persistenceAdapter, metricsRecorder, startingState);
 
         // This is an approximation, after the consumer has been opened since we were not provided with a starting state
@@ -257,6 +287,63 @@ public class VirtualSpout implements DelegateSpout {
      */
     @Override
     public Message nextTuple() {
+        // Replay any failed or permanently failed messages first.
+        final Message replayMessage = nextReplayMessage();
+        if (replayMessage != null) {
+            return replayMessage;
+        }
+
+        // Grab the next message from Consumer instance.
+        final Record record = consumer.nextRecord();
+        if (record == null) {
+            logger.debug("Unable to find any new messages from consumer");
+            return null;
+        }
+        return createMessage(record);
+    }
+
+    /**
+     * Get up to maxMessages of the next Messages that should be played into the topology.
+     *
+     * Records that get filtered, or that exceed our ending offsets, count towards the returned work count
+     * and towards maxMessages even though no Message is added for them.
+     *
+     * @param messages collection to add the Messages that should be played into the topology to.
+     * @param maxMessages maximum number of records to process.
+     * @return number of records and replays processed, 0 if there was nothing to do.
+     */
+    @Override
+    public int nextTuples(final Collection<Message> messages, final int maxMessages) {
+        int workCount = 0;
+        while (workCount < maxMessages) {
+            // Replay any failed or permanently failed messages first.
+            final Message replayMessage = nextReplayMessage();
+            if (replayMessage != null) {
+                messages.add(replayMessage);
+                workCount++;
+                continue;
+            }
+
+            // Grab the next message from Consumer instance.
+            final Record record = consumer.nextRecord();
+            if (record == null) {
+                break;
+            }
+            workCount++;
+
+            final Message message = createMessage(record);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return workCount;
+    }
+
+    /**
+     * Get the next previously failed Message that should be replayed into the topology, if any.
+     * @return next Message that should be replayed, or null if none are ready to be replayed
+     */
+    private Message nextReplayMessage() {
         // Talk to a "failed tuple manager interface" object to see if any tuples
         // that failed previously are ready to be replayed.  This is an interface
         // meaning you can implement your own behavior here.  Maybe failed tuples never get replayed,
@@ -265,9 +352,10 @@ public class VirtualSpout implements DelegateSpout {
         // If so, emit that and return.
         final MessageId nextFailedMessageId = retryManager.nextFailedMessageToRetry();
         if (nextFailedMessageId != null) {
-            if (trackedMessages.containsKey(nextFailedMessageId)) {
+            final Message message = trackedMessages.get(nextFailedMessageId);
+            if (message != null) {
                 // Emit the tuple.
-                return trackedMessages.get(nextFailedMessageId);
+                return message;
             } else {
                 logger.warn("Unable to find tuple that should be replayed due to a fail {}", nextFailedMessageId);
                 retryManager.acked(nextFailedMessageId);
@@ -275,18 +363,16 @@ public class VirtualSpout implements DelegateSpout {
         }
 
         // Determine if we have any permanently failed messages queued.
-        if (!permanentlyFailedMessages.isEmpty()) {
-            // Emit the permanently failed message
-            return permanentlyFailedMessages.poll();
-        }
-
-        // Grab the next message from Consumer instance.
-        final Record record = consumer.nextRecord();
-        if (record == null) {
-            logger.debug("Unable to find any new messages from consumer");
-            return null;
-        }
+        // Returns null if the queue is empty.
+        return permanentlyFailedMessages.poll();
+    }
 
+    /**
+     * Create a tracked Message for a record pulled from the Consumer.
+     * @param record record pulled from the Consumer
+     * @return Message that should be played into the topology, or null if the record should not be emitted
+     */
+    private Message createMessage(final Record record) {
         // Create a Tuple Message Id
         final MessageId messageId = new MessageId(record.getNamespace(), record.getPartition(), record.getOffset(), getVirtualSpoutId());
 
@@ -307,13 +393,14 @@ public class VirtualSpout implements DelegateSpout {
 
         // Determine if this tuple should be filtered. If it IS filtered, loop and find the next one?
         // Loops through each step in the chain to filter a filter before emitting
+        final long filterStartNanos = pipelineStats.start(PipelineStage.FILTER);
         final boolean isFiltered  = getFilterChain().filter(message);
+        pipelineStats.stop(PipelineStage.FILTER, filterStartNanos, 1);
 
         // If the tuple is filtered
         if (isFiltered) {
             // Increment filtered metric
-            getMetricsRecorder()
-                .count(SpoutMetrics.VIRTUAL_SPOUT_FILTERED, getVirtualSpoutId().toString());
+            filteredCounter.increment();
 
             // Ack
             ack(messageId);
@@ -322,6 +409,11 @@ public class VirtualSpout implements DelegateSpout {
             return null;
         }
 
+        // Anything the filters didn't read is still encoded, decode it now that we know we'll emit it.
+        if (message.getValues() instanceof LazyValues) {
+            ((LazyValues) message.getValues()).decodeAll();
+        }
+
         // Track it message for potential retries.
         trackedMessages.put(messageId, message);
 
@@ -376,14 +468,18 @@ public class VirtualSpout implements DelegateSpout {
         consumer.commitOffset(messageId.getNamespace(), messageId.getPartition(), messageId.getOffset());
 
         // Remove this tuple from the spout where we track things in-case the tuple fails.
-        trackedMessages.remove(messageId);
+        final Message message = trackedMessages.remove(messageId);
+
+        // Record how long since DynamicSpout emitted this tuple, filtered messages were never emitted so aren't tracked.
+        if (message != null && message.getEmittedAtNanos() != Message.NOT_EMITTED) {
+            ackLatency.recordNanos(System.nanoTime() - message.getEmittedAtNanos());
+        }
 
         // Mark it as completed in the failed message handler if it exists.
         retryManager.acked(messageId);
 
         // update ack metric
-        getMetricsRecorder()
-            .count(SpoutMetrics.VIRTUAL_SPOUT_ACK, getVirtualSpoutId().toString());
+        ackCounter.increment();
     }
 
     @Override
@@ -401,12 +497,16 @@ public class VirtualSpout implements DelegateSpout {
             throw new IllegalArgumentException("Invalid msgId object type passed " + msgId.getClass());
         }
 
+        // Record how long since DynamicSpout emitted this tuple.
+        final Message message = trackedMessages.get(messageId);
+        if (message != null && message.getEmittedAtNanos() != Message.NOT_EMITTED) {
+            failLatency.recordNanos(System.nanoTime() - message.getEmittedAtNanos());
+        }
+
         // If this tuple shouldn't be replayed again
         if (!retryManager.retryFurther(messageId)) {
             logger.warn("Not retrying failed msgId any further {}", messageId);
 
-            // Grab message
-            final Message message = trackedMessages.get(messageId);
             if (message != null) {
                 // Add to permanently failed queue.
                 permanentlyFailedMessages.add(Message.createPermanentlyFailedMessage(message));
@@ -427,8 +527,7 @@ public class VirtualSpout implements DelegateSpout {
         retryManager.failed(messageId);
 
         // Update metric
-        getMetricsRecorder()
-            .count(SpoutMetrics.VIRTUAL_SPOUT_FAIL, getVirtualSpoutId().toString());
+        failCounter.increment();
     }
 
     /**
@@ -460,6 +559,21 @@ public class VirtualSpout implements DelegateSpout {
         return filterChain;
     }
 
+    @Override
+    public LatencyTracker getAckLatency() {
+        return ackLatency;
+    }
+
+    @Override
+    public LatencyTracker getFailLatency() {
+        return failLatency;
+    }
+
+    @Override
+    public void setPipelineStats(final PipelineStats pipelineStats) {
+        this.pipelineStats = pipelineStats;
+    }
+
     /**
      * Get the spout's current consumer state.
      * @return current consumer state
@@ -523,7 +637,12 @@ public class VirtualSpout implements DelegateSpout {
     public boolean unsubscribeTopicPartition(final String namespace, final int partition) {
         final boolean result = consumer.unsubscribeConsumerPartition(new ConsumerPartition(namespace, partition));
         if (result) {
-            logger.info("Unsubscribed from partition [{}-{}]", namespace, partition);
+            logger.info(
+                "Unsubscribed from partition [{}-{}] with {} tuples still in flight",
+                namespace,
+                partition,
+                trackedMessages.getForPartition(namespace, partition).size()
+            );
         }
         return result;
     }
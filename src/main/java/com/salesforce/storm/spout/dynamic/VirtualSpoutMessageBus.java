@@ -25,6 +25,9 @@
 
 package com.salesforce.storm.spout.dynamic;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Facade in front of MessageBus reducing available scope down to only the methods
  * that should be available to virtual spouts.
@@ -37,6 +40,16 @@ public interface VirtualSpoutMessageBus {
      */
     void registerVirtualSpout(final VirtualSpoutIdentifier virtualSpoutIdentifier);
 
+    /**
+     * Registers a handler to be run whenever a message is acked or failed for the given VirtualSpout.
+     * This allows an idle VirtualSpout to be woken up as soon as it has work to do.
+     * The handler is removed when the VirtualSpout is unregistered.
+     * @param virtualSpoutIdentifier identifier to register the handler for.
+     * @param wakeUpHandler handler to run, must be cheap and must not block.
+     */
+    default void registerWakeUpHandler(final VirtualSpoutIdentifier virtualSpoutIdentifier, final Runnable wakeUpHandler) {
+    }
+
     /**
      * Publish a new message onto the bus.
      * Depending on the implementation, this *may* be blocking.
@@ -45,6 +58,30 @@ public interface VirtualSpoutMessageBus {
      */
     void publishMessage(final Message message) throws InterruptedException;
 
+    /**
+     * Publish a batch of messages onto the bus, in order.
+     * Depending on the implementation, this *may* be blocking.
+     * @param messages messages to publish
+     * @throws InterruptedException if the operation is interrupted
+     */
+    default void publishMessages(final Collection<Message> messages) throws InterruptedException {
+        for (final Message message : messages) {
+            publishMessage(message);
+        }
+    }
+
+    /**
+     * Publish as many of a batch of messages onto the bus as there is room for, in order, without waiting for room.
+     * Depending on the implementation, this *may* be blocking.
+     * @param messages messages to publish
+     * @return number of messages from the start of the batch that were published
+     * @throws InterruptedException if the operation is interrupted
+     */
+    default int offerMessages(final List<Message> messages) throws InterruptedException {
+        publishMessages(messages);
+        return messages.size();
+    }
+
     /**
      * Get the number of message on the bus.
      * @return number of message on the bus
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.buffer;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a running count of the elements held across a map of per VirtualSpout queues, so the total does not
+ * need to be found by walking every queue.
+ *
+ * A queue can be removed from the map and discarded at any time, including between a producer looking it up
+ * and adding to it.  Producers count what they add through {@link #added(Map, Object, Queue, Object, LongAdder)}
+ * and whoever removes a queue discards it through {@link #discard(Queue, LongAdder)}, so an element added to a
+ * queue that was discarded out from under it is never counted twice, nor left counted forever.
+ */
+public final class CountedQueues {
+
+    /**
+     * Utility class, never instantiated.
+     */
+    private CountedQueues() {
+    }
+
+    /**
+     * Count an element that was just added to a queue.
+     *
+     * If the queue has since been removed from the map, the element is taken back out of it and uncounted, unless
+     * it was already discarded along with the rest of the queue.
+     *
+     * @param queues queues by key that the queue was looked up from.
+     * @param key key the queue was looked up under.
+     * @param queue queue the element was added to.
+     * @param element element that was added.
+     * @param size running count of elements across the queues.
+     * @param <K> type of the keys.
+     * @param <E> type of the elements.
+     * @return true if the element remains queued, false if its queue had been removed.
+     */
+    public static <K, E> boolean added(
+        final Map<K, ? extends Queue<E>> queues,
+        final K key,
+        final Queue<E> queue,
+        final E element,
+        final LongAdder size
+    ) {
+        size.increment();
+
+        // Any discard after this point sees our increment, so only an element it missed is ours to take back.
+        if (queues.get(key) == queue) {
+            return true;
+        }
+        if (queue.remove(element)) {
+            size.decrement();
+        }
+        return false;
+    }
+
+    /**
+     * Discard every element left within a queue that was removed from its map, uncounting each of them.
+     * @param queue queue that was removed, may be null.
+     * @param size running count of elements across the queues.
+     */
+    public static void discard(final Queue<?> queue, final LongAdder size) {
+        if (queue == null) {
+            return;
+        }
+        while (queue.poll() != null) {
+            size.decrement();
+        }
+    }
+}
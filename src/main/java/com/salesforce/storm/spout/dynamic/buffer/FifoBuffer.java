@@ -29,6 +29,7 @@ import com.salesforce.storm.spout.dynamic.Message;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
 import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -104,6 +105,16 @@ public class FifoBuffer implements MessageBuffer {
         messageBuffer.put(message);
     }
 
+    /**
+     * Attempt to put a new message onto the queue without waiting for room.
+     * @param message message to be added to the queue
+     * @return true if the message was added, false if the queue is full
+     */
+    @Override
+    public boolean offer(final Message message) {
+        return messageBuffer.offer(message);
+    }
+
     @Override
     public int size() {
         return messageBuffer.size();
@@ -118,6 +129,17 @@ public class FifoBuffer implements MessageBuffer {
         return messageBuffer.poll();
     }
 
+    /**
+     * Move up to maxMessages messages out of the queue, only acquiring the queue's lock once.
+     * @param messages collection to add the messages to
+     * @param maxMessages maximum number of messages to move
+     * @return number of messages moved into the collection
+     */
+    @Override
+    public int drainTo(final Collection<Message> messages, final int maxMessages) {
+        return messageBuffer.drainTo(messages, maxMessages);
+    }
+
     public BlockingQueue<Message> getUnderlyingQueue() {
         return messageBuffer;
     }
@@ -28,6 +28,7 @@ package com.salesforce.storm.spout.dynamic.buffer;
 import com.salesforce.storm.spout.dynamic.Message;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -65,6 +66,32 @@ public interface MessageBuffer {
      */
     void put(final Message message) throws InterruptedException;
 
+    /**
+     * Attempt to put a new message onto the queue without waiting for room.
+     * This lets a caller that must not block, such as a cooperatively scheduled VirtualSpout, give up its turn instead.
+     * Implementations should override this, by default we fall back to {@link #put(Message)} which may block.
+     * @param message message to be added to the queue
+     * @return true if the message was added, false if the queue is full
+     * @throws InterruptedException thrown if a thread is interrupted while blocked adding to the queue
+     */
+    default boolean offer(final Message message) throws InterruptedException {
+        put(message);
+        return true;
+    }
+
+    /**
+     * Put a batch of messages onto the queue.  This method is blocking if the queue buffer is full.
+     * Implementations should override this when they can add a batch with less synchronization than
+     * calling {@link #put(Message)} for each message.
+     * @param messages messages to be added to the queue, in order
+     * @throws InterruptedException thrown if a thread is interrupted while blocked adding to the queue
+     */
+    default void putAll(final Collection<Message> messages) throws InterruptedException {
+        for (final Message message : messages) {
+            put(message);
+        }
+    }
+
     /**
      * Get the size of the buffer.
      * @return size of the buffer
@@ -76,4 +103,25 @@ public interface MessageBuffer {
      * @return next message to be processed out of the queue
      */
     Message poll();
+
+    /**
+     * Move up to maxMessages messages out of the queue and into the given collection.  This method never blocks.
+     * Implementations should override this when they can remove a batch with less synchronization than
+     * calling {@link #poll()} for each message.
+     * @param messages collection to add the messages to
+     * @param maxMessages maximum number of messages to move
+     * @return number of messages moved into the collection
+     */
+    default int drainTo(final Collection<Message> messages, final int maxMessages) {
+        int drained = 0;
+        while (drained < maxMessages) {
+            final Message message = poll();
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            drained++;
+        }
+        return drained;
+    }
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.buffer;
+
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FIFO implementation backed by a preallocated, lock free, multi-producer single-consumer ring buffer.
+ *
+ * Many VirtualSpout threads may put onto this buffer at the same time, but only a single thread may
+ * poll from it, which is how the DynamicSpout uses its buffer.  Unlike {@link FifoBuffer} no nodes are
+ * allocated and no locks are taken per message.  When the buffer is full producers spin, yield, and then
+ * park for short periods until space frees up, so back pressure on the VirtualSpouts still applies.
+ *
+ * The configured max size is rounded up to the next power of two.
+ */
+public class MpscRingBuffer implements MessageBuffer {
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+
+    /**
+     * Largest capacity we'll allocate, the largest power of two an int can hold.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * How many times a blocked producer busy spins before it starts yielding.
+     */
+    private static final int MAX_SPINS = 100;
+
+    /**
+     * How many times a blocked producer yields before it starts parking.
+     */
+    private static final int MAX_YIELDS = 10;
+
+    /**
+     * Upper bound on how long a blocked producer parks for before checking for space again.
+     */
+    private static final long MAX_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Index into {@link #counters} of the next sequence producers will claim.
+     * Counters are spaced 16 longs apart so that they never share a cache line, even with adjacent line prefetching.
+     */
+    private static final int TAIL = 15;
+
+    /**
+     * Index into {@link #counters} of the next sequence the consumer will read.
+     */
+    private static final int HEAD = 31;
+
+    /**
+     * Holds the tail and head sequences, padded to avoid false sharing between producers and the consumer.
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(HEAD + 16);
+
+    /**
+     * The preallocated slots holding messages.
+     */
+    private AtomicReferenceArray<Message> slots;
+
+    /**
+     * For each slot, the sequence it is ready for.  A slot is free to be written for sequence N when it holds N,
+     * and is ready to be read for sequence N when it holds N + 1.
+     */
+    private AtomicLongArray sequences;
+
+    /**
+     * Number of slots, always a power of two.
+     */
+    private int capacity;
+
+    /**
+     * Mask used to map a sequence onto a slot index.
+     */
+    private int mask;
+
+    public MpscRingBuffer() {
+    }
+
+    /**
+     * Helper method for creating a default instance.
+     * @return factory method for create an instance of the buffer
+     */
+    public static MpscRingBuffer createDefaultInstance() {
+        Map<String, Object> map = new HashMap<>();
+        map.put(SpoutConfig.TUPLE_BUFFER_MAX_SIZE, DEFAULT_MAX_SIZE);
+
+        MpscRingBuffer buffer = new MpscRingBuffer();
+        buffer.open(map);
+
+        return buffer;
+    }
+
+    @Override
+    public void open(Map spoutConfig) {
+        // Defines the bounded size of our buffer.
+        Object maxBufferSizeObj = spoutConfig.get(SpoutConfig.TUPLE_BUFFER_MAX_SIZE);
+        int maxBufferSize = DEFAULT_MAX_SIZE;
+        if (maxBufferSizeObj != null && maxBufferSizeObj instanceof Number) {
+            maxBufferSize = ((Number) maxBufferSizeObj).intValue();
+        }
+
+        // Round up to a power of two so we can mask instead of mod.
+        capacity = roundUpToPowerOfTwo(maxBufferSize);
+        mask = capacity - 1;
+
+        // Preallocate our slots, each one free to be written for its first sequence.
+        slots = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int index = 0; index < capacity; index++) {
+            sequences.set(index, index);
+        }
+    }
+
+    /**
+     * Let the Implementation know that we're adding a new VirtualSpoutId.
+     * @param virtualSpoutId identifier of new Virtual Spout
+     */
+    @Override
+    public void addVirtualSpoutId(final VirtualSpoutIdentifier virtualSpoutId) {
+        // Nothing to do in this implementation.
+    }
+
+    /**
+     * Let the Implementation know that we're removing/cleaning up from closing a VirtualSpout.
+     * @param virtualSpoutId identifier of Virtual Spout to be cleaned up
+     */
+    @Override
+    public void removeVirtualSpoutId(final VirtualSpoutIdentifier virtualSpoutId) {
+        // Nothing to do in this implementation.
+    }
+
+    /**
+     * Put a new message onto the buffer.  This method is blocking if the buffer is full.
+     * @param message message to be added to the buffer
+     * @throws InterruptedException thrown if a thread is interrupted while blocked adding to the buffer
+     */
+    @Override
+    public void put(final Message message) throws InterruptedException {
+        if (message == null) {
+            throw new NullPointerException("Message cannot be null");
+        }
+
+        int attempts = 0;
+        long parkNs = 1;
+        while (!offer(message)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            // Back off in increasingly expensive steps while we wait for the consumer to free up space.
+            attempts++;
+            if (attempts <= MAX_SPINS) {
+                continue;
+            }
+            if (attempts <= MAX_SPINS + MAX_YIELDS) {
+                Thread.yield();
+                continue;
+            }
+            LockSupport.parkNanos(this, parkNs);
+            parkNs = Math.min(parkNs << 1, MAX_PARK_NS);
+        }
+    }
+
+    /**
+     * Attempt to put a new message onto the buffer without blocking.
+     * @param message message to be added to the buffer
+     * @return true if the message was added, false if the buffer is full
+     */
+    @Override
+    public boolean offer(final Message message) {
+        long tail = counters.get(TAIL);
+        while (true) {
+            final int index = (int) tail & mask;
+            final long difference = sequences.get(index) - tail;
+
+            if (difference == 0) {
+                // This slot is free for our sequence, try to claim it.
+                if (counters.compareAndSet(TAIL, tail, tail + 1)) {
+                    slots.lazySet(index, message);
+                    // Publish the slot to the consumer, ordered after the message is written.
+                    sequences.lazySet(index, tail + 1);
+                    return true;
+                }
+                tail = counters.get(TAIL);
+            } else if (difference < 0) {
+                // The consumer has not freed up this slot yet, we're full.
+                return false;
+            } else {
+                // Another producer claimed this sequence before us.
+                tail = counters.get(TAIL);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        // Read head first, so a concurrent poll can only make us over count, which we clamp.
+        final long head = counters.get(HEAD);
+        final long tail = counters.get(TAIL);
+        return (int) Math.max(0, Math.min(capacity, tail - head));
+    }
+
+    /**
+     * Get the next message to be processed out of the buffer.
+     * Must only be called by a single consumer thread.
+     * @return next message to be processed out of the buffer
+     */
+    @Override
+    public Message poll() {
+        final long head = counters.get(HEAD);
+        final Message message = take(head);
+        if (message != null) {
+            counters.lazySet(HEAD, head + 1);
+        }
+        return message;
+    }
+
+    /**
+     * Move up to maxMessages messages out of the buffer, only publishing our new head position once.
+     * Must only be called by a single consumer thread.
+     * @param messages collection to add the messages to
+     * @param maxMessages maximum number of messages to move
+     * @return number of messages moved into the collection
+     */
+    @Override
+    public int drainTo(final Collection<Message> messages, final int maxMessages) {
+        final long head = counters.get(HEAD);
+        int drained = 0;
+        while (drained < maxMessages) {
+            final Message message = take(head + drained);
+            if (message == null) {
+                break;
+            }
+            messages.add(message);
+            drained++;
+        }
+        if (drained > 0) {
+            counters.lazySet(HEAD, head + drained);
+        }
+        return drained;
+    }
+
+    /**
+     * Get the maximum number of messages this buffer can hold.
+     * @return maximum number of messages this buffer can hold
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Remove the message for the given sequence from its slot, freeing the slot up for producers.
+     * @param sequence sequence to take
+     * @return message for the sequence, or null if it has not been published yet
+     */
+    private Message take(final long sequence) {
+        final int index = (int) sequence & mask;
+        if (sequences.get(index) != sequence + 1) {
+            // Not published yet, we're empty.
+            return null;
+        }
+        final Message message = slots.get(index);
+        slots.lazySet(index, null);
+
+        // Free the slot up for the sequence one lap around the ring from this one.
+        sequences.lazySet(index, sequence + capacity);
+        return message;
+    }
+
+    /**
+     * Round up to the next power of two, within our supported bounds.
+     * @param value value to round up
+     * @return next power of two greater than or equal to value
+     */
+    private static int roundUpToPowerOfTwo(final int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        if (value >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
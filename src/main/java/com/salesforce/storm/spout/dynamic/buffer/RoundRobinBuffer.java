@@ -31,13 +31,14 @@ import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A round-robin implementation.  Each virtual spout has its own queue that gets added too.  A very chatty
@@ -60,6 +61,12 @@ public class RoundRobinBuffer implements MessageBuffer {
      */
     private final Map<VirtualSpoutIdentifier, BlockingQueue<Message>> messageBuffer = new ConcurrentHashMap<>();
 
+    /**
+     * Total number of messages across all of the VirtualSpout queues, updated as messages are put and polled
+     * so that size() does not need to visit every queue.
+     */
+    private final LongAdder totalSize = new LongAdder();
+
     /**
      * Defines the bounded size of our buffer PER VirtualSpout.
      */
@@ -118,7 +125,7 @@ public class RoundRobinBuffer implements MessageBuffer {
     @Override
     public void removeVirtualSpoutId(VirtualSpoutIdentifier virtualSpoutId) {
         synchronized (messageBuffer) {
-            messageBuffer.remove(virtualSpoutId);
+            CountedQueues.discard(messageBuffer.remove(virtualSpoutId), totalSize);
         }
     }
 
@@ -132,28 +139,58 @@ public class RoundRobinBuffer implements MessageBuffer {
         // Grab the source virtual spoutId
         final VirtualSpoutIdentifier virtualSpoutId = message.getMessageId().getSrcVirtualSpoutId();
 
-        // Add to correct buffer
-        BlockingQueue<Message> virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
+        // Put it onto the correct buffer.
+        final BlockingQueue<Message> virtualSpoutQueue = getOrCreateQueue(virtualSpoutId);
+        virtualSpoutQueue.put(message);
+        CountedQueues.added(messageBuffer, virtualSpoutId, virtualSpoutQueue, message, totalSize);
+    }
 
-        // If our queue doesn't exist
-        if (virtualSpoutQueue == null) {
-            // Attempt to put it
-            messageBuffer.putIfAbsent(virtualSpoutId, createNewEmptyQueue());
+    /**
+     * Attempt to put a new message onto the queue without waiting for room.
+     * @param message message to be added to the queue
+     * @return true if the message was added, false if the VirtualSpout's queue is full
+     */
+    @Override
+    public boolean offer(final Message message) {
+        final VirtualSpoutIdentifier virtualSpoutId = message.getMessageId().getSrcVirtualSpoutId();
+        final BlockingQueue<Message> virtualSpoutQueue = getOrCreateQueue(virtualSpoutId);
+        if (!virtualSpoutQueue.offer(message)) {
+            return false;
+        }
+        CountedQueues.added(messageBuffer, virtualSpoutId, virtualSpoutQueue, message, totalSize);
+        return true;
+    }
 
-            // Grab a reference.
-            virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
+    /**
+     * Put a batch of messages onto the queue.  This method is blocking if the queue buffer is full.
+     * Batches generally come from a single VirtualSpout, so we only look up its queue once.
+     * @param messages messages to be added to the queue, in order
+     * @throws InterruptedException thrown if a thread is interrupted while blocked adding to the queue
+     */
+    @Override
+    public void putAll(final Collection<Message> messages) throws InterruptedException {
+        VirtualSpoutIdentifier lastVirtualSpoutId = null;
+        BlockingQueue<Message> virtualSpoutQueue = null;
+
+        for (final Message message : messages) {
+            final VirtualSpoutIdentifier virtualSpoutId = message.getMessageId().getSrcVirtualSpoutId();
+            if (virtualSpoutQueue == null || !virtualSpoutId.equals(lastVirtualSpoutId)) {
+                virtualSpoutQueue = getOrCreateQueue(virtualSpoutId);
+                lastVirtualSpoutId = virtualSpoutId;
+            }
+            virtualSpoutQueue.put(message);
+            CountedQueues.added(messageBuffer, virtualSpoutId, virtualSpoutQueue, message, totalSize);
         }
-        // Put it.
-        virtualSpoutQueue.put(message);
     }
 
+    /**
+     * Get the size of the buffer, tracked as messages are put and polled rather than by visiting every queue.
+     * @return size of the buffer
+     */
     @Override
     public int size() {
-        int total = 0;
-        for (final Queue queue : messageBuffer.values()) {
-            total += queue.size();
-        }
-        return total;
+        // A poll can be counted just before the put that preceded it, so never report less than empty.
+        return (int) Math.max(0, totalSize.sum());
     }
 
     /**
@@ -185,9 +222,83 @@ public class RoundRobinBuffer implements MessageBuffer {
             }
             returnMsg = queue.poll();
         }
+        if (returnMsg != null) {
+            totalSize.decrement();
+        }
         return returnMsg;
     }
 
+    /**
+     * Move up to maxMessages messages out of the queue, round robining through the VirtualSpouts.
+     * Each VirtualSpout's queue is drained in chunks, so its lock is only acquired once per chunk,
+     * while still giving each VirtualSpout a fair share of the batch.
+     * @param messages collection to add the messages to
+     * @param maxMessages maximum number of messages to move
+     * @return number of messages moved into the collection
+     */
+    @Override
+    public int drainTo(final Collection<Message> messages, final int maxMessages) {
+        final int numberOfQueues = messageBuffer.size();
+        if (numberOfQueues == 0 || maxMessages <= 0) {
+            return 0;
+        }
+
+        // Give each VirtualSpout an equal share of the batch.
+        final int maxPerQueue = Math.max(1, maxMessages / numberOfQueues);
+
+        int drained = 0;
+        int queuesVisitedWithoutMessages = 0;
+        while (drained < maxMessages && queuesVisitedWithoutMessages < numberOfQueues) {
+            // If its null, or we hit the end, reset it.
+            if (consumerIdIterator == null || !consumerIdIterator.hasNext()) {
+                consumerIdIterator = messageBuffer.keySet().iterator();
+                if (!consumerIdIterator.hasNext()) {
+                    break;
+                }
+            }
+
+            // Find our buffer
+            final BlockingQueue<Message> queue = messageBuffer.get(consumerIdIterator.next());
+
+            // We missed?
+            if (queue == null) {
+                logger.info("Non-existent queue found, resetting iterator.");
+                consumerIdIterator = messageBuffer.keySet().iterator();
+                queuesVisitedWithoutMessages++;
+                continue;
+            }
+
+            final int drainedFromQueue = queue.drainTo(messages, Math.min(maxPerQueue, maxMessages - drained));
+            if (drainedFromQueue == 0) {
+                queuesVisitedWithoutMessages++;
+            } else {
+                queuesVisitedWithoutMessages = 0;
+                drained += drainedFromQueue;
+            }
+        }
+        totalSize.add(-drained);
+        return drained;
+    }
+
+    /**
+     * Get the queue for the given VirtualSpout, creating it if it does not exist yet.
+     * @param virtualSpoutId identifier of the VirtualSpout
+     * @return queue for the given VirtualSpout
+     */
+    private BlockingQueue<Message> getOrCreateQueue(final VirtualSpoutIdentifier virtualSpoutId) {
+        BlockingQueue<Message> virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
+
+        // If our queue doesn't exist
+        if (virtualSpoutQueue == null) {
+            // Attempt to put it
+            messageBuffer.putIfAbsent(virtualSpoutId, createNewEmptyQueue());
+
+            // Grab a reference.
+            virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
+        }
+        return virtualSpoutQueue;
+    }
+
     /**
      * Get a new LinkedBlockingQueue instance with a max size of our configured buffer.
      * @return new LinkedBlockingQueue instance with a max size of our configured buffer
@@ -35,11 +35,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -94,6 +94,12 @@ public class ThrottledMessageBuffer implements MessageBuffer {
      */
     private final Map<VirtualSpoutIdentifier, BlockingQueue<Message>> messageBuffer = new ConcurrentHashMap<>();
 
+    /**
+     * Total number of messages across all of the VirtualSpout queues, updated as messages are put and polled
+     * so that size() does not need to visit every queue.
+     */
+    private final LongAdder totalSize = new LongAdder();
+
     // Config values around buffer sizes.
     private int maxBufferSize = 2000;
     private int throttledBufferSize = 200;
@@ -163,7 +169,7 @@ public class ThrottledMessageBuffer implements MessageBuffer {
     @Override
     public void removeVirtualSpoutId(final VirtualSpoutIdentifier virtualSpoutId) {
         synchronized (messageBuffer) {
-            messageBuffer.remove(virtualSpoutId);
+            CountedQueues.discard(messageBuffer.remove(virtualSpoutId), totalSize);
         }
     }
 
@@ -174,10 +180,35 @@ public class ThrottledMessageBuffer implements MessageBuffer {
      */
     @Override
     public void put(final Message message) throws InterruptedException {
-        // Grab the source virtual spoutId
+        // Put it onto the correct buffer.
         final VirtualSpoutIdentifier virtualSpoutId = message.getMessageId().getSrcVirtualSpoutId();
+        final BlockingQueue<Message> virtualSpoutQueue = getOrCreateQueue(virtualSpoutId);
+        virtualSpoutQueue.put(message);
+        CountedQueues.added(messageBuffer, virtualSpoutId, virtualSpoutQueue, message, totalSize);
+    }
 
-        // Add to correct buffer
+    /**
+     * Attempt to put a new message onto the queue without waiting for room.
+     * @param message message to be added to the queue
+     * @return true if the message was added, false if the VirtualSpout's queue is full
+     */
+    @Override
+    public boolean offer(final Message message) {
+        final VirtualSpoutIdentifier virtualSpoutId = message.getMessageId().getSrcVirtualSpoutId();
+        final BlockingQueue<Message> virtualSpoutQueue = getOrCreateQueue(virtualSpoutId);
+        if (!virtualSpoutQueue.offer(message)) {
+            return false;
+        }
+        CountedQueues.added(messageBuffer, virtualSpoutId, virtualSpoutQueue, message, totalSize);
+        return true;
+    }
+
+    /**
+     * Get the queue for the given VirtualSpout, creating it if it does not exist yet.
+     * @param virtualSpoutId identifier of the VirtualSpout
+     * @return queue for the given VirtualSpout
+     */
+    private BlockingQueue<Message> getOrCreateQueue(final VirtualSpoutIdentifier virtualSpoutId) {
         BlockingQueue<Message> virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
 
         // If our queue doesn't exist
@@ -188,17 +219,17 @@ public class ThrottledMessageBuffer implements MessageBuffer {
             // Grab a reference.
             virtualSpoutQueue = messageBuffer.get(virtualSpoutId);
         }
-        // Put it.
-        virtualSpoutQueue.put(message);
+        return virtualSpoutQueue;
     }
 
+    /**
+     * Get the size of the buffer, tracked as messages are put and polled rather than by visiting every queue.
+     * @return size of the buffer
+     */
     @Override
     public int size() {
-        int total = 0;
-        for (final Queue queue : messageBuffer.values()) {
-            total += queue.size();
-        }
-        return total;
+        // A poll can be counted just before the put that preceded it, so never report less than empty.
+        return (int) Math.max(0, totalSize.sum());
     }
 
     @Override
@@ -226,6 +257,9 @@ public class ThrottledMessageBuffer implements MessageBuffer {
             }
             returnMsg = queue.poll();
         }
+        if (returnMsg != null) {
+            totalSize.decrement();
+        }
         return returnMsg;
     }
 
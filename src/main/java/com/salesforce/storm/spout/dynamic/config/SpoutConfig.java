@@ -27,9 +27,11 @@ package com.salesforce.storm.spout.dynamic.config;
 
 import com.salesforce.storm.spout.documentation.ConfigDocumentation;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutFactory;
+import com.salesforce.storm.spout.dynamic.coordinator.BackoffIdleStrategy;
 import com.salesforce.storm.spout.dynamic.handler.NoopSpoutHandler;
 import com.salesforce.storm.spout.dynamic.handler.NoopVirtualSpoutHandler;
 import com.salesforce.storm.spout.dynamic.kafka.Consumer;
+import com.salesforce.storm.spout.dynamic.kafka.KafkaConsumerConfig;
 import com.salesforce.storm.spout.dynamic.retry.ExponentialBackoffRetryManager;
 import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
 import com.salesforce.storm.spout.dynamic.buffer.RoundRobinBuffer;
@@ -79,6 +81,21 @@ public class SpoutConfig {
     )
     public static final String PERMANENTLY_FAILED_OUTPUT_STREAM_ID = "spout.permanently_failed_output_stream_id";
 
+    /**
+     * (int) Defines the maximum number of tuples the spout will emit each time Storm calls nextTuple().
+     * Values larger than 1 reduce per tuple overhead, but the number of pending tuples may then exceed
+     * topology.max.spout.pending by up to this value minus 1.
+     * Default Value: 1
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Defines the maximum number of tuples the spout will emit each time Storm calls nextTuple(). "
+        + "Values larger than 1 reduce per tuple overhead, but the number of pending tuples may then exceed "
+        + "topology.max.spout.pending by up to this value minus 1.",
+        type = Integer.class
+    )
+    public static final String EMIT_BATCH_SIZE = "spout.emit_batch_size";
+
 
 ///////////////////////////////////
 // Consumer Config
@@ -114,6 +131,93 @@ public class SpoutConfig {
     )
     public static final String PERSISTENCE_ADAPTER_CLASS = "spout.persistence_adapter.class";
 
+    /**
+     * (boolean) Defines if consumer state is flushed to the PersistenceAdapter in the background, rather than blocking
+     * the VirtualSpout until it has been written.  Only the latest state of each partition is written, and state is
+     * always flushed synchronously when the consumer is closed.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines if consumer state is flushed to the PersistenceAdapter in the background, rather than blocking "
+        + "the VirtualSpout until it has been written. Only the latest state of each partition is written, and state is "
+        + "always flushed synchronously when the consumer is closed.",
+        type = Boolean.class
+    )
+    public static final String PERSISTENCE_ASYNC_FLUSH_ENABLED = "spout.persistence.async_flush.enabled";
+
+///////////////////////////////////
+// Local Log Persistence Config
+///////////////////////////////////
+
+    /**
+     * (String) Defines the directory the LocalLogPersistenceAdapter stores its logs under.
+     * Should be on durable local storage rather than a temporary directory, or restarting won't recover offsets.
+     *
+     * Optional - Only required if you use the local log persistence implementation.
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines the directory the LocalLogPersistenceAdapter stores its logs under. Required by the "
+        + "LocalLogPersistenceAdapter, and should be on durable local storage rather than a temporary directory, or restarting "
+        + "won't recover offsets.",
+        type = String.class
+    )
+    public static final String PERSISTENCE_LOCAL_LOG_DIRECTORY = "spout.persistence.local_log.directory";
+
+    /**
+     * (int) Defines the size of each log file the LocalLogPersistenceAdapter creates, one per consumer partition.
+     * Once a log is full it wraps back around, overwriting superseded offsets.
+     * Default Value: 65536
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines the size of each log file the LocalLogPersistenceAdapter creates, one per consumer partition. "
+        + "Once a log is full it wraps back around, overwriting superseded offsets.",
+        type = Integer.class
+    )
+    public static final String PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES = "spout.persistence.local_log.file_size_bytes";
+
+    /**
+     * (long) Defines how often the LocalLogPersistenceAdapter forces its logs out to disk, in milliseconds.
+     * Bounds how much consumer state written since is lost if the host crashes, rather than just the worker.
+     * Default Value: 1000
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines how often the LocalLogPersistenceAdapter forces its logs out to disk, in milliseconds. "
+        + "Bounds how much consumer state written since is lost if the host crashes, rather than just the worker.",
+        type = Long.class
+    )
+    public static final String PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS = "spout.persistence.local_log.force_interval_ms";
+
+    /**
+     * (String) Defines which PersistenceAdapter implementation the LocalLogPersistenceAdapter replicates consumer
+     * state to in the background, so that it can be recovered on another host.  Leave unset to not replicate.
+     * Should be a full classpath to a class that implements the PersistenceAdapter interface.
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines which PersistenceAdapter implementation the LocalLogPersistenceAdapter replicates consumer "
+        + "state to in the background, so that it can be recovered on another host. Leave unset to not replicate. "
+        + "Should be a full classpath to a class that implements the PersistenceAdapter interface.",
+        type = String.class
+    )
+    public static final String PERSISTENCE_LOCAL_LOG_REPLICA_ADAPTER_CLASS = "spout.persistence.local_log.replica_adapter.class";
+
+    /**
+     * (long) Defines how often the LocalLogPersistenceAdapter replicates consumer state, in milliseconds.
+     * Only offsets that moved since they were last replicated are written.
+     * Default Value: 60000
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE,
+        description = "Defines how often the LocalLogPersistenceAdapter replicates consumer state, in milliseconds. "
+        + "Only offsets that moved since they were last replicated are written.",
+        type = Long.class
+    )
+    public static final String PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS = "spout.persistence.local_log.replication_interval_ms";
+
 ///////////////////////////////////
 // Zookeeper Persistence Config
 ///////////////////////////////////
@@ -185,6 +289,21 @@ public class SpoutConfig {
     )
     public static final String PERSISTENCE_ZK_RETRY_INTERVAL = "spout.persistence.zookeeper.retry_interval";
 
+    /**
+     * (Boolean) Defines if all partitions of a consumer are stored within a single compact binary node, rather than
+     * a node per partition.  Offsets previously stored a node per partition are still read, so this can be enabled
+     * on an existing topology.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.PERSISTENCE_ZOOKEEPER,
+        description = "Defines if all partitions of a consumer are stored within a single compact binary node, rather than "
+        + "a node per partition. Offsets previously stored a node per partition are still read, so this can be enabled "
+        + "on an existing topology.",
+        type = Boolean.class
+    )
+    public static final String PERSISTENCE_ZK_COMPACT_CONSUMER_STATE = "spout.persistence.zookeeper.compact_consumer_state";
+
 ///////////////////////////////////
 // Failed Message Retry Config
 ///////////////////////////////////
@@ -309,6 +428,19 @@ public class SpoutConfig {
     )
     public static final String METRICS_RECORDER_ENABLE_TASK_ID_PREFIX = "spout.metrics.enable_task_id_prefix";
 
+    /**
+     * (boolean) Defines if items processed and time spent are recorded for each stage of each VirtualSpout's pipeline,
+     * from polling the Consumer through to draining acks, using sampled timers.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Defines if items processed and time spent are recorded for each stage of each VirtualSpout's pipeline, "
+        + "from polling the Consumer through to draining acks, using sampled timers.",
+        type = Boolean.class
+    )
+    public static final String METRICS_PIPELINE_STATS_ENABLED = "spout.metrics.pipeline_stats.enabled";
+
 ///////////////////////////////////
 // Internal Coordinator Config
 ///////////////////////////////////
@@ -397,6 +529,124 @@ public class SpoutConfig {
     )
     public static final String MAX_CONCURRENT_VIRTUAL_SPOUTS = "spout.coordinator.max_concurrent_virtual_spouts";
 
+    /**
+     * (String) Defines how VirtualSpouts are scheduled onto threads.
+     * {@link #SCHEDULER_THREAD_POOL} runs each VirtualSpout on its own thread from a pool sized by
+     * {@link #MAX_CONCURRENT_VIRTUAL_SPOUTS}, queueing any VirtualSpouts past that limit.
+     * {@link #SCHEDULER_COOPERATIVE} time slices every VirtualSpout across a small number of shared worker threads,
+     * and so VirtualSpouts never wait on Kafka or a full message buffer while taking their turn.
+     * {@link #SCHEDULER_VIRTUAL_THREADS} runs each VirtualSpout on its own virtual thread, falling back to
+     * {@link #SCHEDULER_THREAD_POOL} when the JVM does not support virtual threads.
+     * Default Value: thread_pool
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Defines how VirtualSpouts are scheduled onto threads. 'thread_pool' runs each VirtualSpout on its own "
+        + "thread from a pool sized by spout.coordinator.max_concurrent_virtual_spouts, queueing any VirtualSpouts past that "
+        + "limit. 'cooperative' time slices every VirtualSpout across a small number of shared worker threads, and so "
+        + "VirtualSpouts never wait on Kafka or a full message buffer while taking their turn. "
+        + "'virtual_threads' runs each VirtualSpout on its own virtual thread, falling back to 'thread_pool' when the JVM "
+        + "does not support virtual threads.",
+        type = String.class
+    )
+    public static final String SCHEDULER = "spout.coordinator.scheduler";
+
+    /**
+     * Value for {@link #SCHEDULER} that runs each VirtualSpout on its own thread.
+     */
+    public static final String SCHEDULER_THREAD_POOL = "thread_pool";
+
+    /**
+     * Value for {@link #SCHEDULER} that time slices VirtualSpouts across shared worker threads.
+     */
+    public static final String SCHEDULER_COOPERATIVE = "cooperative";
+
+    /**
+     * Value for {@link #SCHEDULER} that runs each VirtualSpout on its own virtual thread, requires Java 21 or newer.
+     */
+    public static final String SCHEDULER_VIRTUAL_THREADS = "virtual_threads";
+
+    /**
+     * (int) The number of worker threads the cooperative scheduler time slices VirtualSpouts across.
+     * A value of 0 uses one worker thread per available processor.
+     * Default Value: 0
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "The number of worker threads the cooperative scheduler time slices VirtualSpouts across. "
+        + "A value of 0 uses one worker thread per available processor.",
+        type = Integer.class
+    )
+    public static final String COOPERATIVE_SCHEDULER_WORKER_THREADS = "spout.coordinator.cooperative_scheduler.worker_threads";
+
+    /**
+     * (int) The maximum number of tuples a VirtualSpout may emit, and acks and fails it may process, each time
+     * the cooperative scheduler gives it a turn on a worker thread.
+     * Default Value: 100
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "The maximum number of tuples a VirtualSpout may emit, and acks and fails it may process, each time "
+        + "the cooperative scheduler gives it a turn on a worker thread.",
+        type = Integer.class
+    )
+    public static final String COOPERATIVE_SCHEDULER_QUANTUM = "spout.coordinator.cooperative_scheduler.quantum";
+
+    /**
+     * (int) The maximum number of VirtualSpouts the virtual thread scheduler runs concurrently, any VirtualSpouts past
+     * that limit are queued.  Virtual threads are cheap, so this is independent of
+     * {@link #MAX_CONCURRENT_VIRTUAL_SPOUTS}, which sizes the platform thread pool.
+     * A value of 0 runs every VirtualSpout concurrently.
+     * Default Value: 0
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "The maximum number of VirtualSpouts the virtual thread scheduler runs concurrently, any VirtualSpouts "
+        + "past that limit are queued. A value of 0 runs every VirtualSpout concurrently.",
+        type = Integer.class
+    )
+    public static final String VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS =
+        "spout.coordinator.virtual_threads.max_concurrent_virtual_spouts";
+
+    /**
+     * (String) Defines which IdleStrategy implementation to use when a VirtualSpout has no work to do.
+     * Should be a full classpath to a class that implements the IdleStrategy interface.
+     * Default Value: com.salesforce.storm.spout.dynamic.coordinator.BackoffIdleStrategy
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Defines which IdleStrategy implementation to use when a VirtualSpout has no work to do. "
+        + "Should be a full classpath to a class that implements the IdleStrategy interface.",
+        type = String.class
+    )
+    public static final String IDLE_STRATEGY_CLASS = "spout.coordinator.idle_strategy.class";
+
+    /**
+     * (int) Defines the maximum number of messages a VirtualSpout will pull from its consumer and hand off
+     * to the tuple buffer at once.
+     * Default Value: 100
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Defines the maximum number of messages a VirtualSpout will pull from its consumer and hand off "
+        + "to the tuple buffer at once.",
+        type = Integer.class
+    )
+    public static final String VIRTUAL_SPOUT_BATCH_SIZE = "spout.coordinator.virtual_spout_batch_size";
+
+    /**
+     * (long) The longest a VirtualSpout with no work to do will park its thread for before checking for work again,
+     * in milliseconds.  Only used by the BackoffIdleStrategy.
+     * Default Value: 1
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.DYNAMIC_SPOUT,
+        description = "The longest a VirtualSpout with no work to do will park its thread for before checking for work again, "
+        + "in milliseconds.  Only used by the BackoffIdleStrategy.",
+        type = Long.class
+    )
+    public static final String IDLE_STRATEGY_MAX_PARK_MS = "spout.coordinator.idle_strategy.max_park_ms";
+
     /**
      * (String) Defines which SpoutHandler implementation to use.
      * Should be a fully qualified class path that implements the SpoutHandler interface.
@@ -463,6 +713,14 @@ public class SpoutConfig {
                 clonedConfig.get(PERMANENTLY_FAILED_OUTPUT_STREAM_ID)
             );
         }
+        if (!clonedConfig.containsKey(EMIT_BATCH_SIZE)) {
+            clonedConfig.put(EMIT_BATCH_SIZE, 1);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                EMIT_BATCH_SIZE,
+                clonedConfig.get(EMIT_BATCH_SIZE)
+            );
+        }
         if (!clonedConfig.containsKey(CONSUMER_CLASS)) {
             // For now default KafkaConsumer
             clonedConfig.put(CONSUMER_CLASS, Consumer.class.getName());
@@ -510,6 +768,14 @@ public class SpoutConfig {
                 clonedConfig.get(METRICS_RECORDER_CLASS)
             );
         }
+        if (!clonedConfig.containsKey(METRICS_PIPELINE_STATS_ENABLED)) {
+            clonedConfig.put(METRICS_PIPELINE_STATS_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                METRICS_PIPELINE_STATS_ENABLED,
+                clonedConfig.get(METRICS_PIPELINE_STATS_ENABLED)
+            );
+        }
         if (!clonedConfig.containsKey(MONITOR_THREAD_INTERVAL_MS)) {
             clonedConfig.put(MONITOR_THREAD_INTERVAL_MS, 2000L);
             logger.info(
@@ -534,6 +800,89 @@ public class SpoutConfig {
                 clonedConfig.get(CONSUMER_STATE_FLUSH_INTERVAL_MS)
             );
         }
+        if (!clonedConfig.containsKey(PERSISTENCE_ASYNC_FLUSH_ENABLED)) {
+            clonedConfig.put(PERSISTENCE_ASYNC_FLUSH_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                PERSISTENCE_ASYNC_FLUSH_ENABLED,
+                clonedConfig.get(PERSISTENCE_ASYNC_FLUSH_ENABLED)
+            );
+        }
+        if (!clonedConfig.containsKey(PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES)) {
+            clonedConfig.put(PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES, 65536);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES,
+                clonedConfig.get(PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES)
+            );
+        }
+        if (!clonedConfig.containsKey(PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS)) {
+            clonedConfig.put(PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS, 1000L);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS,
+                clonedConfig.get(PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS)
+            );
+        }
+        if (!clonedConfig.containsKey(PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS)) {
+            clonedConfig.put(PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS, 60000L);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS,
+                clonedConfig.get(PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.BITMAP_OFFSET_TRACKER_ENABLED)) {
+            clonedConfig.put(KafkaConsumerConfig.BITMAP_OFFSET_TRACKER_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.BITMAP_OFFSET_TRACKER_ENABLED,
+                clonedConfig.get(KafkaConsumerConfig.BITMAP_OFFSET_TRACKER_ENABLED)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED)) {
+            clonedConfig.put(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED,
+                clonedConfig.get(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.PREFETCH_ENABLED)) {
+            clonedConfig.put(KafkaConsumerConfig.PREFETCH_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.PREFETCH_ENABLED,
+                clonedConfig.get(KafkaConsumerConfig.PREFETCH_ENABLED)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.PREFETCH_MAX_BUFFERED_BATCHES)) {
+            clonedConfig.put(KafkaConsumerConfig.PREFETCH_MAX_BUFFERED_BATCHES, KafkaConsumerConfig.DEFAULT_PREFETCH_MAX_BUFFERED_BATCHES);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.PREFETCH_MAX_BUFFERED_BATCHES,
+                clonedConfig.get(KafkaConsumerConfig.PREFETCH_MAX_BUFFERED_BATCHES)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.SHARED_FETCH_ENABLED)) {
+            clonedConfig.put(KafkaConsumerConfig.SHARED_FETCH_ENABLED, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.SHARED_FETCH_ENABLED,
+                clonedConfig.get(KafkaConsumerConfig.SHARED_FETCH_ENABLED)
+            );
+        }
+        if (!clonedConfig.containsKey(KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS)) {
+            clonedConfig.put(
+                KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS,
+                KafkaConsumerConfig.DEFAULT_SHARED_FETCH_MAX_BUFFERED_RECORDS
+            );
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS,
+                clonedConfig.get(KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS)
+            );
+        }
         if (!clonedConfig.containsKey(MAX_CONCURRENT_VIRTUAL_SPOUTS)) {
             clonedConfig.put(MAX_CONCURRENT_VIRTUAL_SPOUTS, 10);
             logger.info(
@@ -542,6 +891,62 @@ public class SpoutConfig {
                 clonedConfig.get(MAX_CONCURRENT_VIRTUAL_SPOUTS)
             );
         }
+        if (!clonedConfig.containsKey(SCHEDULER)) {
+            clonedConfig.put(SCHEDULER, SCHEDULER_THREAD_POOL);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                SCHEDULER,
+                clonedConfig.get(SCHEDULER)
+            );
+        }
+        if (!clonedConfig.containsKey(COOPERATIVE_SCHEDULER_WORKER_THREADS)) {
+            clonedConfig.put(COOPERATIVE_SCHEDULER_WORKER_THREADS, 0);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                COOPERATIVE_SCHEDULER_WORKER_THREADS,
+                clonedConfig.get(COOPERATIVE_SCHEDULER_WORKER_THREADS)
+            );
+        }
+        if (!clonedConfig.containsKey(COOPERATIVE_SCHEDULER_QUANTUM)) {
+            clonedConfig.put(COOPERATIVE_SCHEDULER_QUANTUM, 100);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                COOPERATIVE_SCHEDULER_QUANTUM,
+                clonedConfig.get(COOPERATIVE_SCHEDULER_QUANTUM)
+            );
+        }
+        if (!clonedConfig.containsKey(VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS)) {
+            clonedConfig.put(VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS, 0);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS,
+                clonedConfig.get(VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS)
+            );
+        }
+        if (!clonedConfig.containsKey(IDLE_STRATEGY_CLASS)) {
+            clonedConfig.put(IDLE_STRATEGY_CLASS, BackoffIdleStrategy.class.getName());
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                IDLE_STRATEGY_CLASS,
+                clonedConfig.get(IDLE_STRATEGY_CLASS)
+            );
+        }
+        if (!clonedConfig.containsKey(IDLE_STRATEGY_MAX_PARK_MS)) {
+            clonedConfig.put(IDLE_STRATEGY_MAX_PARK_MS, 1L);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                IDLE_STRATEGY_MAX_PARK_MS,
+                clonedConfig.get(IDLE_STRATEGY_MAX_PARK_MS)
+            );
+        }
+        if (!clonedConfig.containsKey(VIRTUAL_SPOUT_BATCH_SIZE)) {
+            clonedConfig.put(VIRTUAL_SPOUT_BATCH_SIZE, 100);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                VIRTUAL_SPOUT_BATCH_SIZE,
+                clonedConfig.get(VIRTUAL_SPOUT_BATCH_SIZE)
+            );
+        }
         if (!clonedConfig.containsKey(TUPLE_BUFFER_CLASS)) {
             clonedConfig.put(TUPLE_BUFFER_CLASS, RoundRobinBuffer.class.getName());
             logger.info(
@@ -595,6 +1000,15 @@ public class SpoutConfig {
             );
         }
 
+        if (!clonedConfig.containsKey(PERSISTENCE_ZK_COMPACT_CONSUMER_STATE)) {
+            clonedConfig.put(PERSISTENCE_ZK_COMPACT_CONSUMER_STATE, false);
+            logger.info(
+                "Unspecified configuration value for {} using default value {}",
+                PERSISTENCE_ZK_COMPACT_CONSUMER_STATE,
+                clonedConfig.get(PERSISTENCE_ZK_COMPACT_CONSUMER_STATE)
+            );
+        }
+
         if (!clonedConfig.containsKey(SPOUT_HANDLER_CLASS)) {
             // If we don't have a spout handler configured use the noop one, which does nothing but helps
             // us avoid null pointers in the main spout code.
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Tracks which offsets for a specific namespace/partition have been started or processed, using a pair of
+ * ring buffer bitmaps indexed by (offset - base) instead of sorted sets of boxed offsets.
+ *
+ * The base is the lowest offset that has not yet been confirmed as finished.  As offsets below it become finished
+ * the base advances, clearing bits as it goes, so starting, finishing and retrieving the last finished offset are
+ * all O(1) amortized and do not allocate unless the number of outstanding offsets outgrows the ring, in which case
+ * its capacity is doubled.
+ *
+ * Offsets are not always dense, a range finished after filtering or a partition compacted down to a handful of records
+ * can jump ahead by far more than the ring holds.  Rather than growing the ring to span the jump, offsets started beyond
+ * it go into a ring of their own, and the offsets in between, which were never started, are skipped over all at once
+ * when every ring before them has finished.
+ *
+ * Starting an offset lower than the base while other offsets are still outstanding puts it in a new oldest ring, so it
+ * holds back the last finished offset until it has been finished.
+ *
+ * Semantics match {@link PartitionOffsetManager} with one exception, offsets within the started range that were
+ * never started themselves (gaps left by compaction for example) do not hold back the last finished offset.
+ */
+public class BitmapPartitionOffsetManager implements PartitionOffsetTracker {
+    private static final Logger logger = LoggerFactory.getLogger(BitmapPartitionOffsetManager.class);
+
+    /**
+     * Initial capacity of each ring, in bits.  Must be a power of two and a multiple of 64.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String namespace;
+    private final int partitionId;
+
+    // Rings of outstanding offsets, oldest first, each starting beyond where the one before it could reach.
+    // There is always at least one.
+    private final ArrayDeque<Ring> rings = new ArrayDeque<>();
+
+    private long lastFinishedOffset = 0;
+    private long lastStartedOffset = -1;
+
+    /**
+     * Constructor.
+     * @param namespace - What namespace this Partition belongs to.
+     * @param partitionId - What partition this instance represents.
+     * @param lastFinishedOffset - What offset should be considered the last "completed" offset.
+     */
+    public BitmapPartitionOffsetManager(final String namespace, final int partitionId, final long lastFinishedOffset) {
+        this.namespace = namespace;
+        this.partitionId = partitionId;
+        this.lastFinishedOffset = lastFinishedOffset;
+        this.rings.add(new Ring(lastFinishedOffset + 1));
+    }
+
+    /**
+     * Mark this offset as being emitted into the topology, but not yet confirmed/completed.
+     *
+     * Not thread safe.
+     *
+     * @param offset offset to start tracking
+     */
+    @Override
+    public void startOffset(final long offset) {
+        Ring ring = rings.getLast();
+        if (isEmpty()) {
+            // Nothing outstanding, so we can simply move the ring to wherever this offset is.
+            ring.reset(offset);
+        } else if (offset < rings.getFirst().base) {
+            // Out of order, back before every ring, so start a new oldest ring here to hold back the last finished offset.
+            ring = new Ring(offset);
+            rings.addFirst(ring);
+        } else if (offset > ring.highestStartedOffset + ring.getCapacity()) {
+            // Jumping further ahead than the ring holds, so start a new ring here rather than growing to span the jump.
+            ring = new Ring(offset);
+            rings.addLast(ring);
+        } else if (offset < ring.base) {
+            // Out of order, back before the newest ring, so it belongs to an older one.
+            ring = findRing(offset);
+        }
+
+        ring.start(offset);
+
+        if (offset >= lastStartedOffset) {
+            lastStartedOffset = offset;
+        } else {
+            logger.warn("Starting offsets out of order? {} >= {}", lastStartedOffset, offset);
+        }
+    }
+
+    /**
+     * Mark this offset as having completed processing.
+     *
+     * Not thread safe.
+     *
+     * @param offset offset to mark as completed
+     */
+    @Override
+    public void finishOffset(final long offset) {
+        final Ring ring = findRing(offset);
+        if (!ring.finish(offset)) {
+            logger.warn("[{}-{}] - Tried to ack unknown offset {}", namespace, partitionId, offset);
+            return;
+        }
+
+        // Only the oldest ring can move the last finished offset, once it runs dry the next ring takes over from it.
+        // A ring started out of order behind the others may finish below the last finished offset, which never moves back.
+        Ring oldestRing = rings.getFirst();
+        while (true) {
+            if (oldestRing.lastFinishedOffset != Ring.NONE_FINISHED) {
+                lastFinishedOffset = Math.max(lastFinishedOffset, oldestRing.lastFinishedOffset);
+            }
+            if (!oldestRing.isEmpty() || rings.size() == 1) {
+                break;
+            }
+            rings.removeFirst();
+            oldestRing = rings.getFirst();
+        }
+    }
+
+    /**
+     * Mark a range of offsets that were never started as having completed processing.
+     *
+     * Offsets that were never started do not hold back the last finished offset, so only the last offset of the range
+     * needs to be tracked, rather than every offset within it.
+     *
+     * Not thread safe.
+     *
+     * @param fromOffset first offset of the range.
+     * @param toOffset last offset of the range, inclusive.
+     */
+    @Override
+    public void finishOffsets(final long fromOffset, final long toOffset) {
+        startOffset(toOffset);
+        finishOffset(toOffset);
+    }
+
+    /**
+     * Get the last finished offset.
+     *
+     * Here a "finished" offset is the highest continuous offset.
+     *
+     * @return last offset considered "finished"
+     */
+    @Override
+    public long lastFinishedOffset() {
+        return lastFinishedOffset;
+    }
+
+    /**
+     * Get the largest offset whose tracking has been started.
+     *
+     * This is NOT the same as the "Last Finished Offset"
+     *
+     * @return largest offset whose tracking has been started
+     */
+    @Override
+    public long lastStartedOffset() {
+        // If the last started offset is -1 that means we haven't started tracking any offsets yet.
+        if (lastStartedOffset == -1) {
+            // So we'll return the last finished offset...
+            return lastFinishedOffset;
+        }
+        return lastStartedOffset;
+    }
+
+    /**
+     * Get the number of offsets the newest ring can currently hold.
+     * @return number of offsets the newest ring can currently hold.
+     */
+    int getCapacity() {
+        return rings.getLast().getCapacity();
+    }
+
+    /**
+     * Get the number of rings offsets are being tracked across.
+     * @return number of rings offsets are being tracked across.
+     */
+    int getNumberOfRings() {
+        return rings.size();
+    }
+
+    /**
+     * Are there any outstanding offsets.
+     * @return true if no offsets are outstanding.
+     */
+    private boolean isEmpty() {
+        return rings.size() == 1 && rings.getFirst().isEmpty();
+    }
+
+    /**
+     * Find the ring an offset belongs to, the newest ring starting at or before it.
+     * @param offset offset to find the ring of.
+     * @return ring the offset belongs to, or the oldest ring if the offset is before all of them.
+     */
+    private Ring findRing(final long offset) {
+        final Iterator<Ring> iterator = rings.descendingIterator();
+        Ring ring = iterator.next();
+        while (ring.base > offset && iterator.hasNext()) {
+            ring = iterator.next();
+        }
+        return ring;
+    }
+
+    /**
+     * Ring buffer bitmaps tracking a dense run of offsets, from its base up to the highest offset started within it.
+     */
+    private static final class Ring {
+        private static final long NONE_FINISHED = Long.MIN_VALUE;
+
+        // Bits for offsets where processing has been started
+        private long[] startedBits = new long[INITIAL_CAPACITY / 64];
+
+        // Bits for offsets that have been finished, but are pending the advancement of the base
+        private long[] finishedBits = new long[INITIAL_CAPACITY / 64];
+
+        // Capacity of the ring - 1, used to wrap indexes
+        private int mask = INITIAL_CAPACITY - 1;
+
+        // Index within the ring that represents the base offset
+        private int head = 0;
+
+        // Lowest offset that has not been confirmed as finished
+        private long base;
+
+        // Highest offset that has been started
+        private long highestStartedOffset;
+
+        // Highest started offset the base has advanced past, or NONE_FINISHED if it hasn't advanced past any
+        private long lastFinishedOffset = NONE_FINISHED;
+
+        private Ring(final long base) {
+            reset(base);
+        }
+
+        /**
+         * Move an empty ring to start at the given offset.
+         * @param offset offset the ring should start at.
+         */
+        private void reset(final long offset) {
+            base = offset;
+            head = 0;
+            highestStartedOffset = offset - 1;
+        }
+
+        /**
+         * Start an offset at or beyond our base.
+         * @param offset offset to start.
+         */
+        private void start(final long offset) {
+            // Make sure the ring can hold this offset
+            while (offset - base > mask) {
+                grow();
+            }
+
+            setBit(startedBits, index(offset));
+            highestStartedOffset = Math.max(highestStartedOffset, offset);
+        }
+
+        /**
+         * Finish an offset, advancing the base past every continuous finished offset.
+         * @param offset offset to finish.
+         * @return false if the offset is not outstanding within this ring.
+         */
+        private boolean finish(final long offset) {
+            if (offset < base || offset > highestStartedOffset) {
+                return false;
+            }
+
+            final int index = index(offset);
+            if (!isBitSet(startedBits, index) || isBitSet(finishedBits, index)) {
+                return false;
+            }
+            setBit(finishedBits, index);
+
+            // Advance the base past every continuous finished offset, skipping offsets that were never started.
+            while (base <= highestStartedOffset) {
+                final boolean isStarted = isBitSet(startedBits, head);
+                if (isStarted && !isBitSet(finishedBits, head)) {
+                    break;
+                }
+                if (isStarted) {
+                    lastFinishedOffset = base;
+                }
+                clearBit(startedBits, head);
+                clearBit(finishedBits, head);
+                head = (head + 1) & mask;
+                base++;
+            }
+            return true;
+        }
+
+        /**
+         * Are there any outstanding offsets within this ring.
+         * @return true if no offsets are outstanding.
+         */
+        private boolean isEmpty() {
+            return base > highestStartedOffset;
+        }
+
+        /**
+         * Get the number of offsets the ring can currently hold.
+         * @return number of offsets the ring can currently hold.
+         */
+        private int getCapacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Convert an offset into its index within the ring.
+         * @param offset offset to convert.
+         * @return index within the ring.
+         */
+        private int index(final long offset) {
+            return (int) ((head + (offset - base)) & mask);
+        }
+
+        /**
+         * Double the capacity of the ring, copying outstanding bits so the base sits at index 0.
+         */
+        private void grow() {
+            final int capacity = getCapacity();
+            final int newCapacity = capacity << 1;
+            if (newCapacity <= 0) {
+                throw new IllegalStateException("Unable to track more than " + capacity + " outstanding offsets");
+            }
+
+            final long[] newStartedBits = new long[newCapacity / 64];
+            final long[] newFinishedBits = new long[newCapacity / 64];
+
+            for (int x = 0; x < capacity; x++) {
+                final int index = (head + x) & mask;
+                if (isBitSet(startedBits, index)) {
+                    setBit(newStartedBits, x);
+                }
+                if (isBitSet(finishedBits, index)) {
+                    setBit(newFinishedBits, x);
+                }
+            }
+
+            startedBits = newStartedBits;
+            finishedBits = newFinishedBits;
+            mask = newCapacity - 1;
+            head = 0;
+        }
+    }
+
+    private static boolean isBitSet(final long[] bits, final int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(final long[] bits, final int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(final long[] bits, final int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
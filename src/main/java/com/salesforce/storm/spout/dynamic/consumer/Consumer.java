@@ -27,7 +27,9 @@ package com.salesforce.storm.spout.dynamic.consumer;
 
 import com.salesforce.storm.spout.dynamic.ConsumerPartition;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.filter.FilterChain;
 import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
 import com.salesforce.storm.spout.dynamic.persistence.PersistenceAdapter;
 
 import java.util.Map;
@@ -100,4 +102,24 @@ public interface Consumer {
      * @return true if unsubscribed, false if not.
      */
     boolean unsubscribeConsumerPartition(final ConsumerPartition consumerPartitionToUnsubscribe);
+
+    /**
+     * Hands the consumer the FilterChain of the VirtualSpout it belongs to, called before open().
+     * Consumers may optionally use it to filter records before deserializing them, see
+     * {@link com.salesforce.storm.spout.dynamic.filter.RawFilterChainStep}.
+     * @param filterChain FilterChain of the VirtualSpout the consumer belongs to.
+     */
+    default void setFilterChain(final FilterChain filterChain) {
+        // Most consumers leave filtering to the VirtualSpout.
+    }
+
+    /**
+     * Hands the consumer where to record how its stages of the VirtualSpout's pipeline are performing, called before open().
+     * Consumers may optionally record {@link com.salesforce.storm.spout.dynamic.metrics.PipelineStage#POLL} and
+     * {@link com.salesforce.storm.spout.dynamic.metrics.PipelineStage#DESERIALIZE} into it.
+     * @param pipelineStats statistics on the VirtualSpout's pipeline, which may be {@link PipelineStats#DISABLED}.
+     */
+    default void setPipelineStats(final PipelineStats pipelineStats) {
+        // Consumers that don't record their own stages can ignore this.
+    }
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.consumer;
+
+import org.apache.storm.tuple.Values;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Values that hold their fields in a raw form, and only decode each field the first time it is read.
+ *
+ * Messages that end up filtered never need their values decoded, or only the fields their filters look at,
+ * so deferring decoding skips the work for them.  Reading a single field through {@link #get(int)} decodes just that
+ * field, anything that looks at the values as a whole, including iterating, comparing, or serializing them,
+ * decodes every field first.  Like the rest of the Values passed around the spout, this is not thread safe.
+ */
+public abstract class LazyValues extends Values {
+
+    /**
+     * Which fields have been decoded so far.
+     */
+    private final boolean[] decoded;
+
+    /**
+     * Flipped once every field has been decoded, from then on we behave like plain Values.
+     */
+    private boolean fullyDecoded;
+
+    /**
+     * Constructor.
+     * @param rawValues fields in their raw form.
+     */
+    protected LazyValues(final Object... rawValues) {
+        super();
+        this.decoded = new boolean[rawValues.length];
+        this.fullyDecoded = rawValues.length == 0;
+        super.addAll(Arrays.asList(rawValues));
+    }
+
+    /**
+     * Decode a single field.
+     * @param index index of the field.
+     * @param rawValue field in its raw form.
+     * @return decoded field.
+     */
+    protected abstract Object decode(int index, Object rawValue);
+
+    /**
+     * Determine if a field has been decoded yet.
+     * @param index index of the field.
+     * @return true if the field has been decoded.
+     */
+    public boolean isDecoded(final int index) {
+        return fullyDecoded || decoded[index];
+    }
+
+    /**
+     * Decode every field that hasn't been decoded yet.
+     */
+    public void decodeAll() {
+        if (fullyDecoded) {
+            return;
+        }
+        for (int index = 0; index < decoded.length; index++) {
+            get(index);
+        }
+        fullyDecoded = true;
+    }
+
+    @Override
+    public Object get(final int index) {
+        if (!fullyDecoded && !decoded[index]) {
+            super.set(index, decode(index, super.get(index)));
+            decoded[index] = true;
+        }
+        return super.get(index);
+    }
+
+    @Override
+    public Object set(final int index, final Object element) {
+        decodeAll();
+        return super.set(index, element);
+    }
+
+    @Override
+    public boolean add(final Object element) {
+        decodeAll();
+        return super.add(element);
+    }
+
+    @Override
+    public void add(final int index, final Object element) {
+        decodeAll();
+        super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(final Collection<?> collection) {
+        decodeAll();
+        return super.addAll(collection);
+    }
+
+    @Override
+    public boolean addAll(final int index, final Collection<?> collection) {
+        decodeAll();
+        return super.addAll(index, collection);
+    }
+
+    @Override
+    public Object remove(final int index) {
+        decodeAll();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(final Object element) {
+        decodeAll();
+        return super.remove(element);
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> collection) {
+        decodeAll();
+        return super.removeAll(collection);
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> collection) {
+        decodeAll();
+        return super.retainAll(collection);
+    }
+
+    @Override
+    public boolean removeIf(final Predicate<? super Object> filter) {
+        decodeAll();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(final UnaryOperator<Object> operator) {
+        decodeAll();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(final Comparator<? super Object> comparator) {
+        decodeAll();
+        super.sort(comparator);
+    }
+
+    @Override
+    public void clear() {
+        decodeAll();
+        super.clear();
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        decodeAll();
+        return super.contains(element);
+    }
+
+    @Override
+    public boolean containsAll(final Collection<?> collection) {
+        decodeAll();
+        return super.containsAll(collection);
+    }
+
+    @Override
+    public int indexOf(final Object element) {
+        decodeAll();
+        return super.indexOf(element);
+    }
+
+    @Override
+    public int lastIndexOf(final Object element) {
+        decodeAll();
+        return super.lastIndexOf(element);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        decodeAll();
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator() {
+        decodeAll();
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator(final int index) {
+        decodeAll();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public List<Object> subList(final int fromIndex, final int toIndex) {
+        decodeAll();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<Object> spliterator() {
+        decodeAll();
+        return super.spliterator();
+    }
+
+    @Override
+    public void forEach(final java.util.function.Consumer<? super Object> action) {
+        decodeAll();
+        super.forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        decodeAll();
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(final T[] array) {
+        decodeAll();
+        return super.toArray(array);
+    }
+
+    @Override
+    public Object clone() {
+        decodeAll();
+        return super.clone();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        decodeAll();
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        decodeAll();
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        decodeAll();
+        return super.toString();
+    }
+
+    /**
+     * Serialize as plain decoded Values, raw fields may not be serializable.
+     * Protected rather than private so it also applies to subclasses.
+     * @return decoded Values to serialize in our place.
+     */
+    protected Object writeReplace() {
+        decodeAll();
+        return new Values(super.toArray());
+    }
+}
@@ -28,7 +28,8 @@ package com.salesforce.storm.spout.dynamic.consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
@@ -50,7 +51,7 @@ import java.util.TreeSet;
  *   The "last started offset" would be 5
  *   The "last finished offset" would be 3, since 0-3 have been finished, but 4 has not.
  */
-public class PartitionOffsetManager {
+public class PartitionOffsetManager implements PartitionOffsetTracker {
     private static final Logger logger = LoggerFactory.getLogger(PartitionOffsetManager.class);
     private final String namespace;
     private final int partitionId;
@@ -58,8 +59,9 @@ public class PartitionOffsetManager {
     // Offsets where processing has been started
     private final TreeSet<Long> trackedOffsets = new TreeSet<>();
 
-    // Offsets that have been finished, but are pending the advancement of the last finished offset
-    private final TreeSet<Long> finishedOffsets = new TreeSet<>();
+    // Runs of offsets that have been finished, but are pending the advancement of the last finished offset,
+    // keyed by the first offset of the run to the last offset of the run, inclusive
+    private final TreeMap<Long, Long> finishedOffsets = new TreeMap<>();
 
     private long lastFinishedOffset = 0;
     private long lastStartedOffset = -1;
@@ -99,6 +101,7 @@ public class PartitionOffsetManager {
      *
      * @param offset offset to start tracking
      */
+    @Override
     public void startOffset(final long offset) {
         trackedOffsets.add(offset);
 
@@ -116,6 +119,7 @@ public class PartitionOffsetManager {
      *
      * @param offset offset to mark as completed
      */
+    @Override
     public void finishOffset(final long offset) {
         if (!trackedOffsets.contains(offset)) {
             logger.warn("[{}-{}] - Tried to ack unknown offset {}", getNamespace(), getPartitionId(), offset);
@@ -129,39 +133,73 @@ public class PartitionOffsetManager {
             // No longer track this offset
             trackedOffsets.remove(offset);
 
-            // If we have no finished offsets, our last is the one we're handling right now
-            if (finishedOffsets.isEmpty()) {
-                lastFinishedOffset = offset;
-            } else {
-                // We need to walk through our finished offsets and look for skips
-                int increment = 1;
-
-                Iterator<Long> iterator = finishedOffsets.iterator();
-                while (iterator.hasNext()) {
-                    final long finishedOffset = iterator.next();
-                    // The next offset has finished, so we filter it and move onto the next
-                    if (offset == finishedOffset - increment) {
-                        lastFinishedOffset = finishedOffset;
-
-                        // Remove this entry from the tree
-                        iterator.remove();
-
-                        // Increment and continue;
-                        increment++;
-                    } else {
-                        // When there is a skip, we just stick with the offset we're currently handling since it's the most recent
-                        lastFinishedOffset = offset;
-                        trackedOffsets.remove(offset);
-                        break;
-                    }
-                }
+            // Our last is the one we're handling right now, unless it was started out of order behind it
+            lastFinishedOffset = Math.max(lastFinishedOffset, offset);
+
+            // Then walk through our finished runs, advancing through each one that continues on from it.
+            // When there is a skip, we stick with the offset we've advanced to, never falling back to the one
+            // we're handling, so the last finished offset can only ever move forward.
+            Map.Entry<Long, Long> finishedRun = finishedOffsets.firstEntry();
+            while (finishedRun != null && finishedRun.getKey() <= lastFinishedOffset + 1) {
+                lastFinishedOffset = Math.max(lastFinishedOffset, finishedRun.getValue());
+
+                // Remove this run from the tree
+                finishedOffsets.remove(finishedRun.getKey());
+                finishedRun = finishedOffsets.firstEntry();
             }
         } else {
             // Since it is finished we no longer need to track it
             trackedOffsets.remove(offset);
             // This is not the earliest offset, so we'll track it as a finished one to deal with later
-            finishedOffsets.add(offset);
+            addFinishedRun(offset, offset);
+        }
+    }
+
+    /**
+     * Mark a range of offsets that were never started as having completed processing.
+     *
+     * Not thread safe.
+     *
+     * @param fromOffset first offset of the range.
+     * @param toOffset last offset of the range, inclusive.
+     */
+    @Override
+    public void finishOffsets(final long fromOffset, final long toOffset) {
+        lastStartedOffset = Math.max(lastStartedOffset, toOffset);
+
+        // With nothing outstanding the whole range is finished right away, along with any runs left behind.
+        if (trackedOffsets.isEmpty()) {
+            lastFinishedOffset = toOffset;
+            finishedOffsets.clear();
+            return;
+        }
+
+        // Otherwise we wait on what's outstanding, tracking the whole range as a single finished run.
+        addFinishedRun(fromOffset, toOffset);
+    }
+
+    /**
+     * Track a run of finished offsets, merging it with the runs it continues on from or into.
+     * @param fromOffset first offset of the run.
+     * @param toOffset last offset of the run, inclusive.
+     */
+    private void addFinishedRun(final long fromOffset, final long toOffset) {
+        long runStart = fromOffset;
+        long runEnd = toOffset;
+
+        final Map.Entry<Long, Long> previousRun = finishedOffsets.floorEntry(fromOffset);
+        if (previousRun != null && previousRun.getValue() >= fromOffset - 1) {
+            runStart = previousRun.getKey();
+            runEnd = Math.max(runEnd, previousRun.getValue());
         }
+
+        final Map.Entry<Long, Long> nextRun = finishedOffsets.higherEntry(fromOffset);
+        if (nextRun != null && nextRun.getKey() <= toOffset + 1) {
+            finishedOffsets.remove(nextRun.getKey());
+            runEnd = Math.max(runEnd, nextRun.getValue());
+        }
+
+        finishedOffsets.put(runStart, runEnd);
     }
 
     /**
@@ -171,6 +209,7 @@ public class PartitionOffsetManager {
      *
      * @return last offset considered "finished"
      */
+    @Override
     public long lastFinishedOffset() {
         return lastFinishedOffset;
     }
@@ -182,6 +221,7 @@ public class PartitionOffsetManager {
      *
      * @return largest offset whose tracking has been started
      */
+    @Override
     public long lastStartedOffset() {
         // If the last started offset is -1 that means we haven't started tracking any offsets yet.
         if (lastStartedOffset == -1) {
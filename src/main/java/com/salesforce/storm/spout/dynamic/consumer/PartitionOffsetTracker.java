@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.consumer;
+
+/**
+ * Tracks which offsets for a specific namespace/partition have been started or processed.
+ *
+ * An offset is considered "started" when it has been emitted into the topology, but not yet confirmed
+ * as being fully completed.
+ *
+ * An offset is considered "finished" when it has been acked by the topology confirming it has been fully processed.
+ *
+ * The "last finished offset" is defined as being the HIGHEST continuous offset that has been "finished".
+ *
+ * Implementations are not expected to be thread safe.
+ */
+public interface PartitionOffsetTracker {
+
+    /**
+     * Mark this offset as being emitted into the topology, but not yet confirmed/completed.
+     * @param offset offset to start tracking
+     */
+    void startOffset(final long offset);
+
+    /**
+     * Mark this offset as having completed processing.
+     * @param offset offset to mark as completed
+     */
+    void finishOffset(final long offset);
+
+    /**
+     * Mark a range of offsets that were never started as having completed processing, such as records
+     * that were filtered before being emitted.  Every offset in the range must be higher than any started offset.
+     * @param fromOffset first offset of the range.
+     * @param toOffset last offset of the range, inclusive.
+     */
+    default void finishOffsets(final long fromOffset, final long toOffset) {
+        for (long offset = fromOffset; offset <= toOffset; offset++) {
+            startOffset(offset);
+            finishOffset(offset);
+        }
+    }
+
+    /**
+     * Get the last finished offset.
+     *
+     * Here a "finished" offset is the highest continuous offset.
+     *
+     * @return last offset considered "finished"
+     */
+    long lastFinishedOffset();
+
+    /**
+     * Get the largest offset whose tracking has been started.
+     *
+     * This is NOT the same as the "Last Finished Offset"
+     *
+     * @return largest offset whose tracking has been started
+     */
+    long lastStartedOffset();
+}
@@ -48,7 +48,28 @@ public class PartitionOffsetsManager {
      * Since offsets are managed on a per partition basis, each namespace/partition has its own ConsumerPartitionStateManagers
      * instance to track its own offset.  The state of these are what gets persisted via the ConsumerStateManager.
      */
-    private final Map<ConsumerPartition, PartitionOffsetManager> partitionStateManagers = new HashMap<>();
+    private final Map<ConsumerPartition, PartitionOffsetTracker> partitionStateManagers = new HashMap<>();
+
+    /**
+     * If true, offsets are tracked using {@link BitmapPartitionOffsetManager} instances rather than
+     * {@link PartitionOffsetManager} instances.
+     */
+    private final boolean useBitmapTracker;
+
+    /**
+     * Constructor, tracks offsets using {@link PartitionOffsetManager} instances.
+     */
+    public PartitionOffsetsManager() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param useBitmapTracker If true, track offsets using {@link BitmapPartitionOffsetManager} instances.
+     */
+    public PartitionOffsetsManager(final boolean useBitmapTracker) {
+        this.useBitmapTracker = useBitmapTracker;
+    }
 
     /**
      * Replaces/Adds tracking offsets for a new ConsumerPartition.
@@ -57,10 +78,16 @@ public class PartitionOffsetsManager {
      */
     public void replaceEntry(final ConsumerPartition consumerPartition, final long offset) {
         // Add new entry
-        partitionStateManagers.put(
-            consumerPartition,
-            new PartitionOffsetManager(consumerPartition.namespace(), consumerPartition.partition(), offset)
-        );
+        final String namespace = consumerPartition.namespace();
+        final int partition = consumerPartition.partition();
+
+        final PartitionOffsetTracker partitionOffsetTracker;
+        if (useBitmapTracker) {
+            partitionOffsetTracker = new BitmapPartitionOffsetManager(namespace, partition, offset);
+        } else {
+            partitionOffsetTracker = new PartitionOffsetManager(namespace, partition, offset);
+        }
+        partitionStateManagers.put(consumerPartition, partitionOffsetTracker);
     }
 
     /**
@@ -86,6 +113,21 @@ public class PartitionOffsetsManager {
         partitionStateManagers.get(consumerPartition).finishOffset(offset);
     }
 
+    /**
+     * Give the given ConsumerPartition, mark a range of offsets that were never started as having completed processing.
+     * @param consumerPartition The ConsumerPartition the offsets belong to
+     * @param fromOffset first offset of the range
+     * @param toOffset last offset of the range, inclusive
+     */
+    public void finishOffsets(final ConsumerPartition consumerPartition, final long fromOffset, final long toOffset) {
+        if (!partitionStateManagers.containsKey(consumerPartition)) {
+            logger.info("Attempted to finish offsets without a consumer partition in the state manager {} {}", consumerPartition, toOffset);
+            replaceEntry(consumerPartition, toOffset);
+        } else {
+            partitionStateManagers.get(consumerPartition).finishOffsets(fromOffset, toOffset);
+        }
+    }
+
     /**
      * Get the last finished offset for the given ConsumerPartition.
      * @param consumerPartition The ConsumerPartition to retrieve the last finished offset for
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Backs off in increasingly expensive steps when a {@link SpoutRunner} finds no work to do.
+ *
+ * First it busy spins, then it yields its thread, and finally it parks its thread for exponentially
+ * increasing periods of time, up to the configured maximum.  Any pass that does work resets the back off.
+ * Calling {@link #wake()} unparks the thread right away, so acks and fails are not delayed by the back off.
+ */
+public class BackoffIdleStrategy implements IdleStrategy {
+
+    /**
+     * How many idle passes we busy spin for before we start yielding.
+     */
+    private static final int MAX_SPINS = 100;
+
+    /**
+     * How many idle passes we yield for before we start parking.
+     */
+    private static final int MAX_YIELDS = 10;
+
+    /**
+     * The first park period, doubled on every idle pass after that.
+     */
+    private static final long MIN_PARK_NS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    /**
+     * Upper bound on how long we'll park for, in nanoseconds.
+     */
+    private long maxParkNs = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Number of idle passes we've spun for since the last reset.
+     */
+    private int spins = 0;
+
+    /**
+     * Number of idle passes we've yielded for since the last reset.
+     */
+    private int yields = 0;
+
+    /**
+     * How long the next park will be, in nanoseconds.
+     */
+    private long parkNs = MIN_PARK_NS;
+
+    /**
+     * The thread currently parked within {@link #idle(int)}, or null if none is parked.
+     */
+    private volatile Thread parkedThread = null;
+
+    /**
+     * Set by {@link #wake()} to signal that work may be available, and consumed by the idling thread.
+     */
+    private final AtomicBoolean wakeRequested = new AtomicBoolean(false);
+
+    @Override
+    public void open(final Map<String, Object> spoutConfig) {
+        if (spoutConfig.containsKey(SpoutConfig.IDLE_STRATEGY_MAX_PARK_MS)) {
+            maxParkNs = TimeUnit.MILLISECONDS.toNanos(
+                ((Number) spoutConfig.get(SpoutConfig.IDLE_STRATEGY_MAX_PARK_MS)).longValue()
+            );
+        }
+        // Always allow at least our minimum park period.
+        maxParkNs = Math.max(maxParkNs, MIN_PARK_NS);
+    }
+
+    @Override
+    public void idle(final int workCount) {
+        // If we did work, start over from the cheapest back off step.
+        if (workCount > 0) {
+            reset();
+            return;
+        }
+
+        if (spins < MAX_SPINS) {
+            spins++;
+            return;
+        }
+
+        if (yields < MAX_YIELDS) {
+            yields++;
+            Thread.yield();
+            return;
+        }
+
+        // Publish which thread is parking before checking for a wake request, wake() does the reverse,
+        // so one of us is guaranteed to see the other.
+        parkedThread = Thread.currentThread();
+        if (!wakeRequested.get()) {
+            LockSupport.parkNanos(this, parkNs);
+        }
+        parkedThread = null;
+
+        if (wakeRequested.getAndSet(false)) {
+            // We were woken up, so new work is likely waiting for us.
+            reset();
+        } else {
+            parkNs = Math.min(parkNs << 1, maxParkNs);
+        }
+    }
+
+    @Override
+    public void reset() {
+        spins = 0;
+        yields = 0;
+        parkNs = MIN_PARK_NS;
+
+        // Reset is called on every busy pass, so only consume a wake up when one is pending.  Consuming it
+        // atomically means a wake() racing with us is either consumed here or left pending, never lost.
+        if (wakeRequested.get()) {
+            wakeRequested.compareAndSet(true, false);
+        }
+    }
+
+    @Override
+    public void wake() {
+        // Avoid contending on the flag when a wake up is already pending.
+        if (!wakeRequested.get()) {
+            wakeRequested.compareAndSet(false, true);
+        }
+        final Thread thread = parkedThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Get the upper bound on how long we'll park for.
+     * @return upper bound on how long we'll park for, in nanoseconds.
+     */
+    long getMaxParkNs() {
+        return maxParkNs;
+    }
+}
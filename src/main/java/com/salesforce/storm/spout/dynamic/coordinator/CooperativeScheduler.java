@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.salesforce.storm.spout.dynamic.FactoryManager;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many {@link SpoutRunner} instances on a small, fixed number of shared worker threads.
+ *
+ * Rather than each VirtualSpout owning a thread for its whole life, runners are kept on a shared run queue.
+ * A worker takes the runner at the head of the queue, gives it a single turn bounded by the configured quantum,
+ * and then puts it back at the tail.  This gives every VirtualSpout fair progress no matter how many are running.
+ * Workers only start backing off via their {@link IdleStrategy} once a full lap over the run queue finds nothing to do.
+ * Whenever a tuple is acked or failed, only the worker that last gave its VirtualSpout a turn is woken up.
+ *
+ * Turns never wait on anything, as that would hold up every other VirtualSpout sharing the worker.  Messages that don't
+ * fit onto the message bus are held onto until a later turn, see {@link SpoutRunner#runOnce(int, boolean)}.  Opening,
+ * closing, and flushing the state of a VirtualSpout may wait on Kafka or its persistence adapter, so those are handed
+ * off to a separate pool of blocking threads.  The runner gets no turns until that finishes, and is then put back
+ * onto the run queue.
+ */
+class CooperativeScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CooperativeScheduler.class);
+
+    /**
+     * How long a worker waits on an empty run queue before checking if it should stop.
+     */
+    private static final long EMPTY_QUEUE_POLL_MS = 100L;
+
+    /**
+     * Runners waiting for their next turn.
+     */
+    private final BlockingQueue<Task> runQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Creates our worker threads.
+     */
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Number of worker threads to run.
+     */
+    private final int numberOfWorkers;
+
+    /**
+     * The maximum number of tuples emitted, acked, and failed during a single turn, each.
+     */
+    private final int quantum;
+
+    /**
+     * Runs opening, closing, and flushing the state of runners, which may block, off of our worker threads.
+     */
+    private final ExecutorService blockingExecutor;
+
+    /**
+     * One idle strategy per worker thread.
+     */
+    private final List<IdleStrategy> idleStrategies = new ArrayList<>();
+
+    /**
+     * Our worker threads.
+     */
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * Number of runners that have been submitted and not yet completed.
+     */
+    private final AtomicInteger taskCount = new AtomicInteger(0);
+
+    /**
+     * Number of runners that have completed.
+     */
+    private final AtomicLong completedTaskCount = new AtomicLong(0);
+
+    /**
+     * Index of the next worker to wake up when a runner is submitted.
+     */
+    private final AtomicInteger nextWorkerToWake = new AtomicInteger(0);
+
+    /**
+     * Flag used to signal our workers to stop.
+     */
+    private volatile boolean keepRunning = true;
+
+    /**
+     * State flag.
+     */
+    private boolean isOpen = false;
+
+    /**
+     * Constructor.
+     * @param topologyConfig Storm topology config.
+     * @param threadFactory Creates our worker threads.
+     */
+    CooperativeScheduler(final Map<String, Object> topologyConfig, final ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+
+        final int configuredWorkers = ((Number) topologyConfig.get(SpoutConfig.COOPERATIVE_SCHEDULER_WORKER_THREADS)).intValue();
+        this.numberOfWorkers = configuredWorkers > 0 ? configuredWorkers : Runtime.getRuntime().availableProcessors();
+        this.quantum = Math.max(1, ((Number) topologyConfig.get(SpoutConfig.COOPERATIVE_SCHEDULER_QUANTUM)).intValue());
+
+        // Blocking threads come and go with blocking operations, so one slow runner never holds up another's flush.
+        this.blockingExecutor = Executors.newCachedThreadPool(threadFactory);
+
+        for (int worker = 0; worker < numberOfWorkers; worker++) {
+            final IdleStrategy idleStrategy = FactoryManager.createNewInstance(
+                (String) topologyConfig.get(SpoutConfig.IDLE_STRATEGY_CLASS)
+            );
+            idleStrategy.open(topologyConfig);
+            idleStrategies.add(idleStrategy);
+        }
+    }
+
+    /**
+     * Starts our worker threads.
+     */
+    synchronized void open() {
+        Preconditions.checkState(!isOpen, "Cannot call open() multiple times!");
+        isOpen = true;
+
+        for (final IdleStrategy idleStrategy : idleStrategies) {
+            final Thread worker = threadFactory.newThread(() -> runWorker(idleStrategy));
+            workers.add(worker);
+            worker.start();
+        }
+        logger.info("Started {} cooperative scheduler workers with a quantum of {}", numberOfWorkers, quantum);
+    }
+
+    /**
+     * Schedule a runner onto our workers.
+     * @param spoutRunner runner to schedule.
+     * @return future that completes once the runner has been closed, or exceptionally if it throws an exception.
+     */
+    CompletableFuture<Void> submit(final SpoutRunner spoutRunner) {
+        final Task task = new Task(spoutRunner);
+        taskCount.incrementAndGet();
+        runQueue.add(task);
+
+        // Any one worker is enough to pick up the new runner.
+        wakeNextWorker();
+        return task.completableFuture;
+    }
+
+    /**
+     * Stop our workers, waiting for all runners to complete.
+     *
+     * Runners should have already been requested to stop.
+     *
+     * @param maxWaitMs maximum time to wait for runners to complete, in milliseconds.
+     */
+    void close(final long maxWaitMs) {
+        // Wait for our runners to finish.
+        final long endTime = System.currentTimeMillis() + maxWaitMs;
+        try {
+            while (taskCount.get() > 0 && System.currentTimeMillis() < endTime) {
+                wakeWorkers();
+                Thread.sleep(10L);
+            }
+        } catch (final InterruptedException ex) {
+            logger.error("Interrupted while stopping: {}", ex.getMessage(), ex);
+        }
+
+        if (taskCount.get() > 0) {
+            logger.warn("Forcing unclean shutdown of {} cooperatively scheduled VirtualSpouts", taskCount.get());
+        }
+
+        // Stop our workers.
+        keepRunning = false;
+        for (final Thread worker : workers) {
+            worker.interrupt();
+        }
+        blockingExecutor.shutdownNow();
+        runQueue.clear();
+    }
+
+    /**
+     * Wake up a single worker, any one of them is enough to pick up a runner put onto the run queue.
+     */
+    private void wakeNextWorker() {
+        idleStrategies.get(Math.floorMod(nextWorkerToWake.getAndIncrement(), numberOfWorkers)).wake();
+    }
+
+    /**
+     * Wake up any idle workers, as there may be work for them to do.
+     */
+    void wakeWorkers() {
+        for (final IdleStrategy idleStrategy : idleStrategies) {
+            idleStrategy.wake();
+        }
+    }
+
+    /**
+     * Get the number of runners that have been submitted and not yet completed.
+     * @return number of runners that have been submitted and not yet completed
+     */
+    int getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * Get the number of runners that have completed.
+     * @return number of runners that have completed
+     */
+    long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    /**
+     * Get the number of worker threads.
+     * @return number of worker threads
+     */
+    int getNumberOfWorkers() {
+        return numberOfWorkers;
+    }
+
+    /**
+     * Get the maximum number of tuples emitted, acked, and failed during a single turn, each.
+     * @return maximum number of tuples emitted, acked, and failed during a single turn, each
+     */
+    int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Run loop for a single worker thread.
+     * @param idleStrategy what to do when there is no work to be done.
+     */
+    private void runWorker(final IdleStrategy idleStrategy) {
+        // Number of turns in a row where we found nothing to do.
+        int turnsWithoutWork = 0;
+
+        while (keepRunning && !Thread.currentThread().isInterrupted()) {
+            final Task task;
+            try {
+                task = runQueue.poll(EMPTY_QUEUE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException interruptedException) {
+                break;
+            }
+            if (task == null) {
+                continue;
+            }
+
+            final int workCount = task.runTurn(idleStrategy);
+            if (task.blockingOperation != null) {
+                runBlocking(task);
+            } else if (task.completableFuture.isDone()) {
+                completeTask();
+            } else {
+                runQueue.add(task);
+            }
+
+            if (workCount > 0) {
+                turnsWithoutWork = 0;
+                idleStrategy.idle(workCount);
+                continue;
+            }
+
+            // Only back off once we've made a full lap over the run queue, shared with the other workers, without any work.
+            turnsWithoutWork++;
+            final int lapLength = Math.max(1, (taskCount.get() + numberOfWorkers - 1) / numberOfWorkers);
+            if (turnsWithoutWork >= lapLength) {
+                idleStrategy.idle(0);
+            }
+        }
+    }
+
+    /**
+     * Hand a task's blocking operation off to our blocking threads, putting the task back onto the run queue once it's done.
+     * @param task task with a blocking operation to run.
+     */
+    private void runBlocking(final Task task) {
+        final Runnable blockingOperation = task.blockingOperation;
+        task.blockingOperation = null;
+        try {
+            blockingExecutor.execute(() -> {
+                try {
+                    blockingOperation.run();
+                } catch (final Exception ex) {
+                    task.fail(ex);
+                    completeTask();
+                    return;
+                }
+                runQueue.add(task);
+                wakeNextWorker();
+            });
+        } catch (final RejectedExecutionException rejectedExecutionException) {
+            // We're shutting down, just as when a worker is interrupted the runner is dropped.
+            logger.warn("Dropping {} as we are shutting down", task.spoutRunner.getSpout().getVirtualSpoutId());
+        }
+    }
+
+    /**
+     * Record that a task has completed, it will not be given any more turns.
+     */
+    private void completeTask() {
+        taskCount.decrementAndGet();
+        completedTaskCount.incrementAndGet();
+    }
+
+    /**
+     * A runner and its lifecycle as it takes turns on our workers.
+     */
+    private class Task {
+        private final SpoutRunner spoutRunner;
+        private final CompletableFuture<Void> completableFuture = new CompletableFuture<>();
+        private boolean isSpoutOpen = false;
+
+        /**
+         * Operation that may block, set during a turn and run on our blocking threads before the next turn.
+         * Like the rest of our state it's only touched by whichever thread currently holds the task.
+         */
+        private Runnable blockingOperation = null;
+
+        /**
+         * Idle strategy of the worker that last gave our runner a turn, woken up when our runner has work to do.
+         */
+        private volatile IdleStrategy owner = null;
+
+        /**
+         * Constructor.
+         * @param spoutRunner runner to take turns running.
+         */
+        Task(final SpoutRunner spoutRunner) {
+            this.spoutRunner = spoutRunner;
+        }
+
+        /**
+         * Give our runner a single turn.
+         * Turns are always handed between workers through the run queue, so no two workers ever run the same task at once.
+         * @param idleStrategy idle strategy of the worker giving the turn.
+         * @return how much work was done, 0 if there was nothing to do.
+         */
+        int runTurn(final IdleStrategy idleStrategy) {
+            owner = idleStrategy;
+            try {
+                // If someone cancelled us, stop giving the runner turns.
+                if (completableFuture.isDone()) {
+                    if (isSpoutOpen) {
+                        blockingOperation = this::closeSpout;
+                        return 1;
+                    }
+                    return 0;
+                }
+
+                if (!isSpoutOpen) {
+                    // If we were stopped before we ever got a turn, there's nothing to clean up.
+                    if (spoutRunner.isFinished()) {
+                        completableFuture.complete(null);
+                        return 0;
+                    }
+                    blockingOperation = this::openSpout;
+                    return 1;
+                }
+
+                if (spoutRunner.isFinished()) {
+                    blockingOperation = this::closeSpout;
+                    return 1;
+                }
+
+                try {
+                    int workCount = spoutRunner.runOnce(quantum, false);
+                    if (spoutRunner.isFlushDue()) {
+                        blockingOperation = spoutRunner::flushState;
+                        workCount++;
+                    }
+                    return workCount;
+                } catch (final InterruptedException interruptedException) {
+                    // Our worker is being shut down, stop this runner just as a dedicated thread would.
+                    logger.error("Shutting down due to interruption {}", interruptedException.getMessage(), interruptedException);
+                    Thread.currentThread().interrupt();
+                    spoutRunner.closeSpout();
+                    completableFuture.complete(null);
+                    return 0;
+                }
+            } catch (final Exception ex) {
+                fail(ex);
+                return 0;
+            }
+        }
+
+        /**
+         * Open our runner's spout, run on our blocking threads.
+         */
+        private void openSpout() {
+            spoutRunner.openSpout(this::wake);
+            isSpoutOpen = true;
+        }
+
+        /**
+         * Close our runner's spout, run on our blocking threads.  Completes our future unless someone cancelled it.
+         */
+        private void closeSpout() {
+            spoutRunner.closeSpout();
+            isSpoutOpen = false;
+            completableFuture.complete(null);
+        }
+
+        /**
+         * Stop giving our runner turns because it threw an exception.
+         * @param ex exception thrown by our runner.
+         */
+        void fail(final Exception ex) {
+            // We don't handle restarting this instance.  Instead its SpoutCoordinator which that ownership falls to.
+            logger.error(
+                "SpoutRunner for {} threw an exception {}",
+                spoutRunner.getSpout().getVirtualSpoutId(),
+                ex.getMessage(),
+                ex
+            );
+            completableFuture.completeExceptionally(ex);
+        }
+
+        /**
+         * Wake up the worker that last gave our runner a turn, it's the one that may be idling waiting on us.
+         */
+        void wake() {
+            final IdleStrategy idleStrategy = owner;
+            if (idleStrategy != null) {
+                idleStrategy.wake();
+            }
+        }
+    }
+}
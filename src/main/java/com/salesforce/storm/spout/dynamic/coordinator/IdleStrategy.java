@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import java.util.Map;
+
+/**
+ * Determines what a {@link SpoutRunner} does when a pass through its run loop found no work to do.
+ *
+ * Each {@link SpoutRunner} gets its own instance, so implementations only need to be safe for calling
+ * {@link #wake()} from other threads.
+ */
+public interface IdleStrategy {
+
+    /**
+     * Initialization.
+     * @param spoutConfig spout configuration.
+     */
+    void open(Map<String, Object> spoutConfig);
+
+    /**
+     * Called by the owning {@link SpoutRunner} at the end of every pass through its run loop.
+     * @param workCount how many units of work (tuples, acks, fails, flushes) were done during the pass.
+     *                  A value of 0 means the pass found nothing to do, and the implementation may choose to back off.
+     */
+    void idle(int workCount);
+
+    /**
+     * Reset any back off state, the next idle pass starts over from the least expensive back off step.
+     */
+    void reset();
+
+    /**
+     * Called from other threads when new work may be available for the owning {@link SpoutRunner}.
+     * Implementations that park should return from {@link #idle(int)} early when this is called.
+     */
+    void wake();
+}
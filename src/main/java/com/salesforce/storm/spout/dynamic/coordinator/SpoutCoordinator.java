@@ -36,16 +36,22 @@ import com.salesforce.storm.spout.dynamic.DelegateSpout;
 import com.salesforce.storm.spout.dynamic.VirtualSpout;
 import com.salesforce.storm.spout.dynamic.exception.SpoutAlreadyExistsException;
 import com.salesforce.storm.spout.dynamic.exception.SpoutDoesNotExistException;
+import com.salesforce.storm.spout.dynamic.filter.FilterChainStepIdentifier;
+import com.salesforce.storm.spout.dynamic.filter.FilterChainStepStats;
 import com.salesforce.storm.spout.dynamic.metrics.SpoutMetrics;
 import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStage;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -66,9 +72,16 @@ public class SpoutCoordinator implements Runnable {
 
     /**
      * The executor service that we submit VirtualSpouts to run within.
+     * Null when VirtualSpouts are cooperatively scheduled.
      */
     private final ThreadPoolExecutor executor;
 
+    /**
+     * Time slices VirtualSpouts across shared worker threads.
+     * Null unless VirtualSpouts are cooperatively scheduled.
+     */
+    private final CooperativeScheduler cooperativeScheduler;
+
     /**
      * Internal map of VirtualSpoutIdentifiers and SpoutRunner/CompletableFuture instances.
      * As VirtualSpouts are removed from the newSpoutQueue and started, they are added onto
@@ -76,6 +89,21 @@ public class SpoutCoordinator implements Runnable {
      */
     private final Map<VirtualSpoutIdentifier, SpoutContext> runningSpouts = new ConcurrentHashMap<>();
 
+    /**
+     * How each running VirtualSpout's pipeline is performing, when pipeline stats are enabled.
+     * Entries are created as a VirtualSpout is started and removed once it finishes.
+     */
+    private final Map<VirtualSpoutIdentifier, PipelineStats> pipelineStats = new ConcurrentHashMap<>();
+
+    /**
+     * VirtualSpouts that have finished, whether removed or not, so that anything tracked per VirtualSpout elsewhere can be dropped.
+     */
+    private final Queue<VirtualSpoutIdentifier> finishedSpouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Whether or not we're recording how each VirtualSpout's pipeline is performing.
+     */
+    private final boolean pipelineStatsEnabled;
 
     /**
      * Routes messages in a ThreadSafe manner from VirtualSpouts to the SpoutCoordinator.
@@ -147,14 +175,44 @@ public class SpoutCoordinator implements Runnable {
         this.metricsRecorder = metricsRecorder;
         this.threadContext = threadContext;
 
+        this.pipelineStatsEnabled = (Boolean) this.topologyConfig.get(SpoutConfig.METRICS_PIPELINE_STATS_ENABLED);
+
         // Create new ThreadFactory
         final String threadName = "[" + DynamicSpout.class.getSimpleName() + ":" + getClass().getSimpleName() + "] "
             + VirtualSpout.class.getSimpleName() + " Pool %d on " + threadContext.toString() + " ";
+        // When running on virtual threads, VirtualSpouts are only limited by the virtual thread concurrency cap.
+        if (isVirtualThreadScheduled()) {
+            final int maxConcurrentVirtualSpouts = getVirtualThreadsMaxConcurrentVirtualSpouts();
+            this.cooperativeScheduler = null;
+            this.executor = new ThreadPoolExecutor(
+                maxConcurrentVirtualSpouts,
+                maxConcurrentVirtualSpouts,
+                1L, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                // Virtual threads are always daemon threads, so leave that alone.
+                new ThreadFactoryBuilder()
+                    .setNameFormat(threadName)
+                    .setThreadFactory(VirtualThreads.newThreadFactory())
+                    .build()
+            );
+            // Idle virtual threads cost next to nothing, but there is no reason to keep them once they have timed out.
+            this.executor.allowCoreThreadTimeOut(true);
+            return;
+        }
+
         final ThreadFactory threadFactory = new ThreadFactoryBuilder()
             .setNameFormat(threadName)
             .setDaemon(false)
             .build();
 
+        // When cooperatively scheduling, VirtualSpouts share a fixed number of worker threads.
+        if (isCooperativelyScheduled()) {
+            this.executor = null;
+            this.cooperativeScheduler = new CooperativeScheduler(getTopologyConfig(), threadFactory);
+            return;
+        }
+        this.cooperativeScheduler = null;
+
         /*
          * Create our executor service with a fixed thread size.
          * Its configured to:
@@ -184,6 +242,11 @@ public class SpoutCoordinator implements Runnable {
         Preconditions.checkState(!isOpen, "Cannot call open() multiple times!");
         isOpen = true;
 
+        // Start up our workers when cooperatively scheduling.
+        if (cooperativeScheduler != null) {
+            cooperativeScheduler.open();
+        }
+
         // Create and name thread.
         final String threadName = "[" + DynamicSpout.class.getSimpleName() + ":" + getClass().getSimpleName() + "] "
             + "Monitor for " + threadContext.toString();
@@ -228,6 +291,28 @@ public class SpoutCoordinator implements Runnable {
         return runningSpouts.get(virtualSpoutIdentifier).getSpoutRunner().getSpout();
     }
 
+    /**
+     * Get the statistics on how a running VirtualSpout's pipeline is performing.
+     *
+     * The same instance is returned for the same identifier until the VirtualSpout finishes, so it may be held on to
+     * until the identifier is handed out by {@link #nextFinishedVirtualSpout()}.
+     *
+     * @param virtualSpoutIdentifier identifier of the VirtualSpout.
+     * @return statistics on the VirtualSpout's pipeline, or {@link PipelineStats#DISABLED} if pipeline stats are not enabled
+     *         or the VirtualSpout is not running.
+     */
+    public PipelineStats getPipelineStats(final VirtualSpoutIdentifier virtualSpoutIdentifier) {
+        return pipelineStats.getOrDefault(virtualSpoutIdentifier, PipelineStats.DISABLED);
+    }
+
+    /**
+     * Get the next VirtualSpout that has finished running, so anything tracked for it can be dropped.
+     * @return identifier of the next VirtualSpout that has finished, or null if there are none.
+     */
+    public VirtualSpoutIdentifier nextFinishedVirtualSpout() {
+        return finishedSpouts.poll();
+    }
+
     /**
      * Signals to a VirtualSpout to stop, ultimately removing it from the monitor.
      * This call will block waiting for the VirtualSpout instance to shutdown.
@@ -336,16 +421,29 @@ public class SpoutCoordinator implements Runnable {
         logger.info("Preparing thread for spout {}", spout.getVirtualSpoutId());
         final VirtualSpoutIdentifier virtualSpoutIdentifier = spout.getVirtualSpoutId();
 
+        // Hand the spout where to record how its pipeline is performing, before it's opened.
+        final PipelineStats spoutPipelineStats = pipelineStatsEnabled ? new PipelineStats(true) : PipelineStats.DISABLED;
+        if (spoutPipelineStats.isEnabled()) {
+            pipelineStats.put(virtualSpoutIdentifier, spoutPipelineStats);
+        }
+        spout.setPipelineStats(spoutPipelineStats);
+
         // Create new spout runner instance.
         final SpoutRunner spoutRunner = new SpoutRunner(
             spout,
             getVirtualSpoutMessageBus(),
             getClock(),
-            getTopologyConfig()
+            getTopologyConfig(),
+            spoutPipelineStats
         );
 
-        // Run as a CompletableFuture
-        final CompletableFuture<Void> completableFuture = CompletableFuture.runAsync(spoutRunner, getExecutor());
+        // Run as a CompletableFuture, either on its own thread or cooperatively on shared workers.
+        final CompletableFuture<Void> completableFuture;
+        if (cooperativeScheduler != null) {
+            completableFuture = cooperativeScheduler.submit(spoutRunner);
+        } else {
+            completableFuture = CompletableFuture.runAsync(spoutRunner, getExecutor());
+        }
 
         // Create SpoutContext
         final SpoutContext spoutContext = new SpoutContext(spoutRunner, completableFuture);
@@ -382,8 +480,10 @@ public class SpoutCoordinator implements Runnable {
                 logger.info("{} seems to have finished, cleaning up", virtualSpoutIdentifier);
             }
 
-            // And cleanup, Remove from spoutInstances
+            // And cleanup, Remove from spoutInstances along with anything else tracked for it.
             runningSpouts.remove(virtualSpoutIdentifier);
+            pipelineStats.remove(virtualSpoutIdentifier);
+            finishedSpouts.add(virtualSpoutIdentifier);
 
             // We have no value to return
             return null;
@@ -412,30 +512,52 @@ public class SpoutCoordinator implements Runnable {
         lastStatusReport = now;
 
         // Show a status report
-        logger.info(
-            "Active Tasks: {}, Queued Tasks: {}, ThreadPool Size: {}/{}, Completed Tasks: {}, Errored Tasks: {}, Total Tasks Submitted: {}",
-            executor.getActiveCount(),
-            executor.getQueue().size(),
-            executor.getPoolSize(),
-            executor.getMaximumPoolSize(),
-            executor.getCompletedTaskCount(),
-            getNumberOfFailedTasks(),
-            executor.getTaskCount()
-        );
+        if (cooperativeScheduler != null) {
+            logger.info(
+                "Scheduled Tasks: {}, Workers: {}, Completed Tasks: {}, Errored Tasks: {}",
+                cooperativeScheduler.getTaskCount(),
+                cooperativeScheduler.getNumberOfWorkers(),
+                cooperativeScheduler.getCompletedTaskCount(),
+                getNumberOfFailedTasks()
+            );
+        } else {
+            logger.info(
+                "Active Tasks: {}, Queued Tasks: {}, ThreadPool Size: {}/{}, Completed Tasks: {}, Errored Tasks: {}, "
+                + "Total Tasks Submitted: {}",
+                executor.getActiveCount(),
+                executor.getQueue().size(),
+                executor.getPoolSize(),
+                executor.getMaximumPoolSize(),
+                executor.getCompletedTaskCount(),
+                getNumberOfFailedTasks(),
+                executor.getTaskCount()
+            );
+        }
         logger.info("MessageBuffer size: {}, Running VirtualSpoutIds: {}",
             getVirtualSpoutMessageBus().messageSize(), runningSpouts.keySet()
         );
 
         // Report to metrics record
         getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_BUFFER_SIZE, getVirtualSpoutMessageBus().messageSize());
-        getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_RUNNING, executor.getActiveCount());
-        getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_QUEUED, executor.getQueue().size());
         getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_ERRORED, getNumberOfFailedTasks());
-        getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_COMPLETED, executor.getCompletedTaskCount());
-        getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_POOL_SIZE, executor.getPoolSize());
+        if (cooperativeScheduler != null) {
+            // Every cooperatively scheduled VirtualSpout is running, none are ever left queued.
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_RUNNING, cooperativeScheduler.getTaskCount());
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_QUEUED, 0);
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_COMPLETED, cooperativeScheduler.getCompletedTaskCount());
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_POOL_SIZE, cooperativeScheduler.getNumberOfWorkers());
+        } else {
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_RUNNING, executor.getActiveCount());
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_QUEUED, executor.getQueue().size());
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_COMPLETED, executor.getCompletedTaskCount());
+            getMetricsRecorder().assignValue(SpoutMetrics.SPOUT_COORDINATOR_POOL_SIZE, executor.getPoolSize());
+        }
 
         // Loop through spouts instances
         try {
+            // Pipelines of every virtual spout, logged together as a single line.
+            final StringBuilder pipelines = new StringBuilder();
+
             // Loop thru all of them to get virtualSpout Ids.
             for (final SpoutContext spoutContext : runningSpouts.values()) {
                 final DelegateSpout spout = spoutContext.getSpoutRunner().getSpout();
@@ -458,6 +580,75 @@ public class SpoutCoordinator implements Runnable {
                     spout.getFilterChain().getSteps().size(),
                     spout.getVirtualSpoutId().toString()
                 );
+
+                // Report how each filter on this virtual spout is performing.
+                final String virtualSpoutId = spout.getVirtualSpoutId().toString();
+                for (final Map.Entry<FilterChainStepIdentifier, FilterChainStepStats> entry
+                    : spout.getFilterChain().getStepStats().entrySet()) {
+                    final String stepId = entry.getKey().toString();
+                    final FilterChainStepStats stats = entry.getValue();
+
+                    getMetricsRecorder().assignValue(
+                        SpoutMetrics.VIRTUAL_SPOUT_FILTER_STEP_EVALUATIONS, stats.getEvaluations(), virtualSpoutId, stepId
+                    );
+                    getMetricsRecorder().assignValue(
+                        SpoutMetrics.VIRTUAL_SPOUT_FILTER_STEP_HITS, stats.getHits(), virtualSpoutId, stepId
+                    );
+                    getMetricsRecorder().assignValue(
+                        SpoutMetrics.VIRTUAL_SPOUT_FILTER_STEP_EVALUATION_TIME, stats.getAverageEvaluationTimeMs(), virtualSpoutId, stepId
+                    );
+                }
+
+                // Report how much time this virtual spout has spent idle vs doing work.
+                getMetricsRecorder().assignValue(
+                    SpoutMetrics.VIRTUAL_SPOUT_IDLE_TIME,
+                    spoutContext.getSpoutRunner().getIdleTimeMs(),
+                    spout.getVirtualSpoutId().toString()
+                );
+                getMetricsRecorder().assignValue(
+                    SpoutMetrics.VIRTUAL_SPOUT_BUSY_TIME,
+                    spoutContext.getSpoutRunner().getBusyTimeMs(),
+                    spout.getVirtualSpoutId().toString()
+                );
+
+                // Report how each stage of this virtual spout's pipeline is performing.
+                final PipelineStats spoutPipelineStats = getPipelineStats(spout.getVirtualSpoutId());
+                if (spoutPipelineStats.isEnabled()) {
+                    for (final PipelineStage stage : PipelineStage.values()) {
+                        getMetricsRecorder().assignValue(
+                            SpoutMetrics.VIRTUAL_SPOUT_PIPELINE_ITEMS,
+                            spoutPipelineStats.getItems(stage),
+                            virtualSpoutId,
+                            stage.getKey()
+                        );
+                        getMetricsRecorder().assignValue(
+                            SpoutMetrics.VIRTUAL_SPOUT_PIPELINE_TIME,
+                            spoutPipelineStats.getEstimatedTimeMs(stage),
+                            virtualSpoutId,
+                            stage.getKey()
+                        );
+                    }
+                    if (pipelines.length() > 0) {
+                        pipelines.append(' ');
+                    }
+                    pipelines.append(virtualSpoutId).append('[').append(spoutPipelineStats).append(']');
+                }
+
+                // Report the latencies from emit to ack or fail since our last report.
+                if (spout.getAckLatency() != null) {
+                    getMetricsRecorder().recordLatencies(
+                        SpoutMetrics.VIRTUAL_SPOUT_ACK_LATENCY, spout.getAckLatency().getIntervalHistogram(), virtualSpoutId
+                    );
+                }
+                if (spout.getFailLatency() != null) {
+                    getMetricsRecorder().recordLatencies(
+                        SpoutMetrics.VIRTUAL_SPOUT_FAIL_LATENCY, spout.getFailLatency().getIntervalHistogram(), virtualSpoutId
+                    );
+                }
+            }
+
+            if (pipelines.length() > 0) {
+                logger.info("Pipelines: {}", pipelines);
             }
         } catch (final Throwable throwable) {
             // report the error up.
@@ -477,13 +668,15 @@ public class SpoutCoordinator implements Runnable {
         // Flip keepRunning flag to false to shutdown long lived thread.
         keepRunning = false;
 
-        // Ask the executor to shut down, this will prevent it from
-        // accepting/starting new tasks.
-        executor.shutdown();
+        if (executor != null) {
+            // Ask the executor to shut down, this will prevent it from
+            // accepting/starting new tasks.
+            executor.shutdown();
 
-        // Empty our run queue, this will prevent queued virtual spouts from getting started
-        // during the shutdown process.
-        executor.getQueue().clear();
+            // Empty our run queue, this will prevent queued virtual spouts from getting started
+            // during the shutdown process.
+            executor.getQueue().clear();
+        }
 
         // Stop spoutPartitionProgressMonitor
         if (spoutPartitionProgressMonitor != null) {
@@ -495,19 +688,25 @@ public class SpoutCoordinator implements Runnable {
             spoutContext.getSpoutRunner().requestStop();
         }
 
-        // Wait for the executor to cleanly shut down
-        try {
-            logger.info("Waiting a maximum of {} ms for thread pool to shutdown", getMaxTerminationWaitTimeMs());
-            executor.awaitTermination(getMaxTerminationWaitTimeMs(), TimeUnit.MILLISECONDS);
-        } catch (final InterruptedException ex) {
-            logger.error("Interrupted while stopping: {}", ex.getMessage(), ex);
-        }
+        if (cooperativeScheduler != null) {
+            // Wait for our cooperatively scheduled spouts to close, and stop our workers.
+            logger.info("Waiting a maximum of {} ms for cooperative scheduler to shutdown", getMaxTerminationWaitTimeMs());
+            cooperativeScheduler.close(getMaxTerminationWaitTimeMs());
+        } else {
+            // Wait for the executor to cleanly shut down
+            try {
+                logger.info("Waiting a maximum of {} ms for thread pool to shutdown", getMaxTerminationWaitTimeMs());
+                executor.awaitTermination(getMaxTerminationWaitTimeMs(), TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ex) {
+                logger.error("Interrupted while stopping: {}", ex.getMessage(), ex);
+            }
 
-        // If we didn't shut down cleanly
-        if (!executor.isTerminated()) {
-            // Force a shut down
-            logger.warn("Forcing unclean shutdown of thread pool");
-            executor.shutdownNow();
+            // If we didn't shut down cleanly
+            if (!executor.isTerminated()) {
+                // Force a shut down
+                logger.warn("Forcing unclean shutdown of thread pool");
+                executor.shutdownNow();
+            }
         }
 
         // Clear our our internal state.
@@ -565,6 +764,45 @@ public class SpoutCoordinator implements Runnable {
         return ((Number) getTopologyConfig().get(SpoutConfig.MAX_CONCURRENT_VIRTUAL_SPOUTS)).intValue();
     }
 
+    /**
+     * Determine if VirtualSpouts are cooperatively scheduled across shared worker threads.
+     * @return true if VirtualSpouts are cooperatively scheduled, false if each gets its own thread
+     */
+    boolean isCooperativelyScheduled() {
+        return SpoutConfig.SCHEDULER_COOPERATIVE.equals(getTopologyConfig().get(SpoutConfig.SCHEDULER));
+    }
+
+    /**
+     * Determine if each VirtualSpout runs on its own virtual thread.
+     * When virtual threads were requested but the JVM does not support them we fall back to the thread pool.
+     * @return true if each VirtualSpout runs on its own virtual thread, false if not
+     */
+    boolean isVirtualThreadScheduled() {
+        if (!SpoutConfig.SCHEDULER_VIRTUAL_THREADS.equals(getTopologyConfig().get(SpoutConfig.SCHEDULER))) {
+            return false;
+        }
+        if (!VirtualThreads.isSupported()) {
+            logger.warn(
+                "{} is set to {} but this JVM does not support virtual threads, falling back to {}",
+                SpoutConfig.SCHEDULER,
+                SpoutConfig.SCHEDULER_VIRTUAL_THREADS,
+                SpoutConfig.SCHEDULER_THREAD_POOL
+            );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the maximum number of VirtualSpouts that run concurrently on virtual threads.
+     * @return maximum number of VirtualSpouts that run concurrently on virtual threads
+     */
+    int getVirtualThreadsMaxConcurrentVirtualSpouts() {
+        final Object value = getTopologyConfig().get(SpoutConfig.VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS);
+        final int maxConcurrentVirtualSpouts = value == null ? 0 : ((Number) value).intValue();
+        return maxConcurrentVirtualSpouts > 0 ? maxConcurrentVirtualSpouts : Integer.MAX_VALUE;
+    }
+
     /**
      * Get the spout partition progress monitor so we can track and report spout progress.
      * @return spout partition progress monitor
@@ -612,6 +850,14 @@ public class SpoutCoordinator implements Runnable {
         return executor;
     }
 
+    /**
+     * Get the cooperative scheduler for spout instances.
+     * @return cooperative scheduler for spout instances, or null if spouts are not cooperatively scheduled
+     */
+    CooperativeScheduler getCooperativeScheduler() {
+        return cooperativeScheduler;
+    }
+
     /**
      * Get the number of failed spout instances.
      * @return number of failed spout instances.
@@ -25,6 +25,7 @@
 
 package com.salesforce.storm.spout.dynamic.coordinator;
 
+import com.salesforce.storm.spout.dynamic.FactoryManager;
 import com.salesforce.storm.spout.dynamic.Message;
 import com.salesforce.storm.spout.dynamic.Tools;
 import com.salesforce.storm.spout.dynamic.MessageId;
@@ -32,12 +33,17 @@ import com.salesforce.storm.spout.dynamic.VirtualSpoutMessageBus;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
 import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 import com.salesforce.storm.spout.dynamic.DelegateSpout;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStage;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages running a VirtualSpout instance.
@@ -72,6 +78,43 @@ class SpoutRunner implements Runnable {
      */
     private final long startTime;
 
+    /**
+     * Maximum number of messages we pull from the spout and publish onto the message bus at once.
+     */
+    private final int batchSize;
+
+    /**
+     * Reused for handing batches of messages from the spout to the message bus.
+     */
+    private final List<Message> messageBatch;
+
+    /**
+     * Determines what we do when a pass through our run loop finds no work to do.
+     */
+    private final IdleStrategy idleStrategy;
+
+    /**
+     * Records how our stages of the spout's pipeline are performing, if enabled.
+     */
+    private final PipelineStats pipelineStats;
+
+    /**
+     * Total time spent within our {@link IdleStrategy}, in nanoseconds.
+     * Only written by the thread running this instance, but read by the monitor thread for reporting.
+     */
+    private volatile long idleTimeNs = 0;
+
+    /**
+     * When our run loop started, in nanoseconds, or 0 if it has not started yet.
+     */
+    private volatile long runLoopStartNs = 0;
+
+    /**
+     * The last time we flushed the spout's state, in milliseconds.
+     * Only accessed by the thread currently running this instance.
+     */
+    private long lastFlush = 0;
+
     /**
      * This flag is used to signal for this instance to cleanly stop.
      * Marked as volatile because currently its accessed via multiple threads.
@@ -92,11 +135,42 @@ class SpoutRunner implements Runnable {
         final VirtualSpoutMessageBus virtualSpoutMessageBus,
         final Clock clock,
         final Map<String, Object> topologyConfig
+    ) {
+        this(spout, virtualSpoutMessageBus, clock, topologyConfig, PipelineStats.DISABLED);
+    }
+
+    /**
+     * Constructor that makes use of a count down latch.
+     * Countdown latches are useful for orchestrating startup.
+     *
+     * @param spout The VirtualSpout instance to run.
+     * @param virtualSpoutMessageBus The ThreadSafe message bus for communicating between DynamicSpout and VirtualSpout.
+     * @param clock Clock instance.
+     * @param topologyConfig Topology configuration.
+     * @param pipelineStats Records how the spout's pipeline is performing.
+     */
+    SpoutRunner(
+        final DelegateSpout spout,
+        final VirtualSpoutMessageBus virtualSpoutMessageBus,
+        final Clock clock,
+        final Map<String, Object> topologyConfig,
+        final PipelineStats pipelineStats
     ) {
         this.spout = spout;
         this.virtualSpoutMessageBus = virtualSpoutMessageBus;
         this.clock = clock;
         this.topologyConfig = Tools.immutableCopy(topologyConfig);
+        this.pipelineStats = pipelineStats;
+
+        // Create our batch, sized for the largest batch we'll hand off.
+        this.batchSize = Math.max(1, getVirtualSpoutBatchSize());
+        this.messageBatch = new ArrayList<>(batchSize);
+
+        // Create our idle strategy
+        this.idleStrategy = FactoryManager.createNewInstance(
+            (String) getTopologyConfig().get(SpoutConfig.IDLE_STRATEGY_CLASS)
+        );
+        this.idleStrategy.open(getTopologyConfig());
 
         // Record start time.
         this.startTime = getClock().millis();
@@ -105,70 +179,34 @@ class SpoutRunner implements Runnable {
     @Override
     public void run() {
         try {
-            final VirtualSpoutIdentifier virtualSpoutId = spout.getVirtualSpoutId();
-
             // Append VirtualSpoutId to thread name
-            Thread.currentThread().setName(Thread.currentThread().getName() + virtualSpoutId.toString());
-
-            logger.info("Opening {} spout", virtualSpoutId);
-            spout.open();
+            Thread.currentThread().setName(Thread.currentThread().getName() + spout.getVirtualSpoutId().toString());
 
-            // Let all of our queues know about our new instance.
-            getVirtualSpoutMessageBus().registerVirtualSpout(virtualSpoutId);
-
-            // Record the last time we flushed.
-            long lastFlush = getClock().millis();
+            openSpout();
 
             // Loop forever until one of the following is true:
             // 1 - someone requests the spout to stop,
             // 2 - the spout is marked as completed,
             // 3 - Our thread gets interrupted.
-            while (!isStopRequested() && !spout.isCompleted() && !Thread.currentThread().isInterrupted()) {
-                // First look for any new tuples to be emitted.
-                final Message message = spout.nextTuple();
-                if (message != null) {
-                    try {
-                        getVirtualSpoutMessageBus().publishMessage(message);
-                    } catch (final InterruptedException interruptedException) {
-                        logger.error("Shutting down due to interruption {}", interruptedException.getMessage(), interruptedException);
-                        break;
-                    }
+            while (!isFinished()) {
+                // Do as much work as we can during this pass.
+                final int workCount;
+                try {
+                    workCount = runOnce(Integer.MAX_VALUE);
+                } catch (final InterruptedException interruptedException) {
+                    logger.error("Shutting down due to interruption {}", interruptedException.getMessage(), interruptedException);
+                    break;
                 }
 
-                // Ack everything that needs to be acked
-                MessageId messageId;
-                do {
-                    messageId = getVirtualSpoutMessageBus().getAckedMessage(virtualSpoutId);
-                    if (messageId != null) {
-                        spout.ack(messageId);
-                    }
-                } while (messageId != null);
-
-                // Fail everything that needs to be failed
-                do {
-                    messageId = getVirtualSpoutMessageBus().getFailedMessage(virtualSpoutId);
-                    if (messageId != null) {
-                        spout.fail(messageId);
-                    }
-                } while (messageId != null);
-
-                // Periodically we flush the state of the spout to capture progress
-                final long now = getClock().millis();
-                if ((lastFlush + getConsumerStateFlushIntervalMs()) < now) {
-                    logger.debug("Flushing state for spout {}", virtualSpoutId);
-                    spout.flushState();
-                    lastFlush = now;
+                // If we found nothing to do, back off according to our idle strategy.
+                final long idleStartNs = System.nanoTime();
+                idleStrategy.idle(workCount);
+                if (workCount == 0) {
+                    idleTimeNs += System.nanoTime() - idleStartNs;
                 }
             }
 
-            // Looks like someone requested that we stop this instance.
-            // So we call close on it, and log our run time.
-            final Duration runtime = Duration.ofMillis(getClock().millis() - getStartTime());
-            logger.info("Closing {} spout, total run time was {}", virtualSpoutId, Tools.prettyDuration(runtime));
-            spout.close();
-
-            // Remove our entries from our queues.
-            getVirtualSpoutMessageBus().unregisterVirtualSpout(virtualSpoutId);
+            closeSpout();
         } catch (final Exception ex) {
             // We don't handle restarting this instance.  Instead its Spout Monitor which that ownership falls to.
             // We'll log the error, and bubble up the exception.
@@ -179,12 +217,197 @@ class SpoutRunner implements Runnable {
         }
     }
 
+    /**
+     * Open the spout and register it with the message bus, getting it ready for calls to {@link #runOnce(int)}.
+     */
+    void openSpout() {
+        openSpout(idleStrategy::wake);
+    }
+
+    /**
+     * Open the spout and register it with the message bus, getting it ready for calls to {@link #runOnce(int)}.
+     * @param wakeUpHandler run whenever a tuple from this spout is acked or failed.
+     */
+    void openSpout(final Runnable wakeUpHandler) {
+        final VirtualSpoutIdentifier virtualSpoutId = spout.getVirtualSpoutId();
+
+        logger.info("Opening {} spout", virtualSpoutId);
+        spout.open();
+
+        // Let all of our queues know about our new instance.
+        getVirtualSpoutMessageBus().registerVirtualSpout(virtualSpoutId);
+
+        // Wake up from idling whenever a tuple is acked or failed.
+        getVirtualSpoutMessageBus().registerWakeUpHandler(virtualSpoutId, wakeUpHandler);
+
+        // Record the last time we flushed.
+        lastFlush = getClock().millis();
+
+        // Record when we started looping, for tracking busy vs idle time.
+        runLoopStartNs = System.nanoTime();
+    }
+
+    /**
+     * Make a single pass over the spout, emitting new tuples, handling acks and fails, and flushing state when due.
+     *
+     * @param maxWorkPerStep upper bound on the number of tuples emitted, acked, and failed during this pass, each.
+     *                       This allows a scheduler to limit how long a single pass can run for.
+     * @return how much work was done, 0 if there was nothing to do.
+     * @throws InterruptedException if interrupted while blocked publishing messages onto the message bus.
+     */
+    int runOnce(final int maxWorkPerStep) throws InterruptedException {
+        return runOnce(maxWorkPerStep, true);
+    }
+
+    /**
+     * Make a single pass over the spout, emitting new tuples, handling acks and fails, and flushing state when due.
+     *
+     * @param maxWorkPerStep upper bound on the number of tuples emitted, acked, and failed during this pass, each.
+     *                       This allows a scheduler to limit how long a single pass can run for.
+     * @param mayBlock false if we must never wait on the message bus to make room, or on flushing state.  Messages that
+     *                 don't fit are then held onto and published during a later pass, before any new tuples are pulled
+     *                 from the spout.  Flushing state is left to the caller, see {@link #isFlushDue()}.
+     * @return how much work was done, 0 if there was nothing to do.
+     * @throws InterruptedException if interrupted while blocked publishing messages onto the message bus.
+     */
+    int runOnce(final int maxWorkPerStep, final boolean mayBlock) throws InterruptedException {
+        final VirtualSpoutIdentifier virtualSpoutId = spout.getVirtualSpoutId();
+
+        // First look for any new tuples to be emitted, and hand them off as a batch.
+        final int maxMessages = Math.min(batchSize, maxWorkPerStep);
+        int workCount = mayBlock ? publishNextTuples(maxMessages) : offerNextTuples(maxMessages);
+
+        // Ack everything that needs to be acked, up to our limit.
+        final long ackStartNanos = pipelineStats.start(PipelineStage.ACK);
+        int acked = 0;
+        while (acked < maxWorkPerStep) {
+            final MessageId messageId = getVirtualSpoutMessageBus().getAckedMessage(virtualSpoutId);
+            if (messageId == null) {
+                break;
+            }
+            spout.ack(messageId);
+            acked++;
+        }
+        pipelineStats.stop(PipelineStage.ACK, ackStartNanos, acked);
+        workCount += acked;
+
+        // Fail everything that needs to be failed, up to our limit.
+        final long failStartNanos = pipelineStats.start(PipelineStage.FAIL);
+        int failed = 0;
+        while (failed < maxWorkPerStep) {
+            final MessageId messageId = getVirtualSpoutMessageBus().getFailedMessage(virtualSpoutId);
+            if (messageId == null) {
+                break;
+            }
+            spout.fail(messageId);
+            failed++;
+        }
+        pipelineStats.stop(PipelineStage.FAIL, failStartNanos, failed);
+        workCount += failed;
+
+        // Periodically we flush the state of the spout to capture progress
+        if (mayBlock && isFlushDue()) {
+            flushState();
+            workCount++;
+        }
+        return workCount;
+    }
+
+    /**
+     * Determine if the spout's state is due to be flushed.
+     * @return true if it has been longer than the flush interval since we last flushed.
+     */
+    boolean isFlushDue() {
+        return (lastFlush + getConsumerStateFlushIntervalMs()) < getClock().millis();
+    }
+
+    /**
+     * Flush the state of the spout to capture its progress, this may wait on the spout's persistence adapter.
+     */
+    void flushState() {
+        logger.debug("Flushing state for spout {}", spout.getVirtualSpoutId());
+        spout.flushState();
+        lastFlush = getClock().millis();
+    }
+
+    /**
+     * Pull up to maxMessages of the next tuples from the spout, and publish them onto the message bus.
+     * @param maxMessages maximum number of messages to pull from the spout.
+     * @return how much work was done, 0 if there was nothing to do.
+     * @throws InterruptedException if interrupted while blocked publishing messages onto the message bus.
+     */
+    private int publishNextTuples(final int maxMessages) throws InterruptedException {
+        final int workCount = spout.nextTuples(messageBatch, maxMessages);
+        if (!messageBatch.isEmpty()) {
+            try {
+                final long putStartNanos = pipelineStats.start(PipelineStage.BUFFER_PUT);
+                getVirtualSpoutMessageBus().publishMessages(messageBatch);
+                pipelineStats.stop(PipelineStage.BUFFER_PUT, putStartNanos, messageBatch.size());
+            } finally {
+                messageBatch.clear();
+            }
+        }
+        return workCount;
+    }
+
+    /**
+     * Pull up to maxMessages of the next tuples from the spout, and publish as many as there is room for onto the
+     * message bus without waiting.  Whatever doesn't fit is held onto, and published first on our next pass.
+     * @param maxMessages maximum number of messages to pull from the spout.
+     * @return how much work was done, 0 if there was nothing to do.
+     * @throws InterruptedException if interrupted while publishing messages onto the message bus.
+     */
+    private int offerNextTuples(final int maxMessages) throws InterruptedException {
+        // Anything left over from an earlier pass goes first, so we never reorder the spout's messages.
+        final boolean isLeftOver = !messageBatch.isEmpty();
+        final int workCount = isLeftOver ? 0 : spout.nextTuples(messageBatch, maxMessages);
+        if (messageBatch.isEmpty()) {
+            return workCount;
+        }
+
+        final long putStartNanos = pipelineStats.start(PipelineStage.BUFFER_PUT);
+        final int published = getVirtualSpoutMessageBus().offerMessages(messageBatch);
+        pipelineStats.stop(PipelineStage.BUFFER_PUT, putStartNanos, published);
+        messageBatch.subList(0, published).clear();
+        return isLeftOver ? published : workCount;
+    }
+
+    /**
+     * Determine if we should stop making passes over the spout.
+     * @return true if stop has been requested, the spout has completed, or our thread has been interrupted.
+     */
+    boolean isFinished() {
+        return isStopRequested() || spout.isCompleted() || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Close the spout and unregister it from the message bus.
+     */
+    void closeSpout() {
+        final VirtualSpoutIdentifier virtualSpoutId = spout.getVirtualSpoutId();
+
+        // Looks like someone requested that we stop this instance.
+        // So we call close on it, and log our run time.
+        final Duration runtime = Duration.ofMillis(getClock().millis() - getStartTime());
+        logger.info("Closing {} spout, total run time was {}", virtualSpoutId, Tools.prettyDuration(runtime));
+        spout.close();
+
+        // Drop anything we were still waiting on room to publish, it was never emitted.
+        messageBatch.clear();
+
+        // Remove our entries from our queues.
+        getVirtualSpoutMessageBus().unregisterVirtualSpout(virtualSpoutId);
+    }
+
     /**
      * Call this method to request this SpoutRunner instance to cleanly stop.
      */
     void requestStop() {
         logger.info("Requested stop on {}", spout.getVirtualSpoutId());
         requestedStop = true;
+
+        // If we're idling, wake up so we notice the stop request right away.
+        idleStrategy.wake();
     }
 
     /**
@@ -228,6 +451,42 @@ class SpoutRunner implements Runnable {
         return ((Number) getTopologyConfig().get(SpoutConfig.CONSUMER_STATE_FLUSH_INTERVAL_MS)).longValue();
     }
 
+    /**
+     * Get the maximum number of messages we pull from the spout and publish onto the message bus at once.
+     * @return maximum number of messages we pull from the spout and publish onto the message bus at once
+     */
+    int getVirtualSpoutBatchSize() {
+        return ((Number) getTopologyConfig().get(SpoutConfig.VIRTUAL_SPOUT_BATCH_SIZE)).intValue();
+    }
+
+    /**
+     * Get the total time our run loop has spent idle, waiting for work.
+     * @return total time our run loop has spent idle, in milliseconds
+     */
+    long getIdleTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(idleTimeNs);
+    }
+
+    /**
+     * Get the total time our run loop has spent doing work.
+     * @return total time our run loop has spent doing work, in milliseconds
+     */
+    long getBusyTimeMs() {
+        final long startNs = runLoopStartNs;
+        if (startNs == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, System.nanoTime() - startNs - idleTimeNs));
+    }
+
+    /**
+     * Get the idle strategy used by our run loop.
+     * @return idle strategy used by our run loop
+     */
+    IdleStrategy getIdleStrategy() {
+        return idleStrategy;
+    }
+
     DelegateSpout getSpout() {
         return spout;
     }
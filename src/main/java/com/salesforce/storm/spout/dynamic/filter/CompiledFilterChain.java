@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+import com.salesforce.storm.spout.dynamic.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the steps in a {@link FilterChain}, laid out for evaluating messages quickly.
+ *
+ * {@link IndexedFilterChainStep}s are grouped into a hash index per index name, keyed by the key each step matches on,
+ * so only the steps that could possibly filter a message are evaluated.  Every other step is evaluated in turn.
+ */
+final class CompiledFilterChain {
+
+    /**
+     * A chain with no steps at all.
+     */
+    static final CompiledFilterChain EMPTY = new CompiledFilterChain(new HashMap<>(), new HashMap<>());
+
+    private final Index[] indexes;
+    private final CompiledStep[] unindexedSteps;
+    private final CompiledStep[] rawSteps;
+
+    /**
+     * Compile the given steps.
+     * @param steps steps to compile, by identifier.
+     * @param stats statistics to record against for each step, by identifier.
+     */
+    CompiledFilterChain(
+        final Map<FilterChainStepIdentifier, FilterChainStep> steps,
+        final Map<FilterChainStepIdentifier, FilterChainStepStats> stats
+    ) {
+        final Map<String, Map<Object, List<CompiledStep>>> stepsByIndex = new HashMap<>();
+        final Map<String, IndexedFilterChainStep> keyExtractors = new HashMap<>();
+        final List<CompiledStep> unindexedSteps = new ArrayList<>();
+        final List<CompiledStep> rawSteps = new ArrayList<>();
+
+        for (final Map.Entry<FilterChainStepIdentifier, FilterChainStep> entry : steps.entrySet()) {
+            final FilterChainStep step = entry.getValue();
+            final CompiledStep compiledStep = new CompiledStep(step, stats.get(entry.getKey()));
+
+            if (step instanceof IndexedFilterChainStep) {
+                final IndexedFilterChainStep indexedStep = (IndexedFilterChainStep) step;
+                keyExtractors.putIfAbsent(indexedStep.getIndexName(), indexedStep);
+                stepsByIndex
+                    .computeIfAbsent(indexedStep.getIndexName(), (name) -> new HashMap<>())
+                    .computeIfAbsent(indexedStep.getIndexKey(), (key) -> new ArrayList<>())
+                    .add(compiledStep);
+            } else {
+                unindexedSteps.add(compiledStep);
+            }
+
+            if (step instanceof RawFilterChainStep && ((RawFilterChainStep) step).supportsRawFiltering()) {
+                rawSteps.add(compiledStep);
+            }
+        }
+
+        this.indexes = new Index[stepsByIndex.size()];
+        int index = 0;
+        for (final Map.Entry<String, Map<Object, List<CompiledStep>>> entry : stepsByIndex.entrySet()) {
+            final Map<Object, CompiledStep[]> stepsByKey = new HashMap<>();
+            for (final Map.Entry<Object, List<CompiledStep>> keyEntry : entry.getValue().entrySet()) {
+                stepsByKey.put(keyEntry.getKey(), keyEntry.getValue().toArray(new CompiledStep[0]));
+            }
+            this.indexes[index++] = new Index(keyExtractors.get(entry.getKey()), stepsByKey);
+        }
+        this.unindexedSteps = unindexedSteps.toArray(new CompiledStep[0]);
+        this.rawSteps = rawSteps.toArray(new CompiledStep[0]);
+    }
+
+    /**
+     * Process a message through the chain.
+     * @param message message to process.
+     * @param timed true to time the evaluation of each step.
+     * @return Should this message be filtered out? True means yes.
+     */
+    boolean filter(final Message message, final boolean timed) {
+        for (final Index index : indexes) {
+            final CompiledStep[] candidates = index.stepsByKey.get(index.keyExtractor.extractIndexKey(message));
+            if (candidates != null && filter(candidates, message, timed)) {
+                return true;
+            }
+        }
+
+        return filter(unindexedSteps, message, timed);
+    }
+
+    /**
+     * Process a record through the steps of the chain that can filter raw records.
+     * @param rawMessage record to process.
+     * @return Should this record be filtered out? True means yes.
+     */
+    boolean filterRaw(final RawMessage rawMessage) {
+        for (final CompiledStep step : rawSteps) {
+            final boolean isFiltered = ((RawFilterChainStep) step.step).filterRaw(rawMessage);
+            step.stats.recordEvaluation(isFiltered);
+            if (isFiltered) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Determine if any step in the chain can filter raw records.
+     * @return true if any step in the chain can filter raw records.
+     */
+    boolean hasRawSteps() {
+        return rawSteps.length > 0;
+    }
+
+    private static boolean filter(final CompiledStep[] steps, final Message message, final boolean timed) {
+        for (final CompiledStep step : steps) {
+            if (step.filter(message, timed)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A step along with the statistics recorded against it.
+     */
+    private static final class CompiledStep {
+        private final FilterChainStep step;
+        private final FilterChainStepStats stats;
+
+        private CompiledStep(final FilterChainStep step, final FilterChainStepStats stats) {
+            this.step = step;
+            this.stats = stats;
+        }
+
+        private boolean filter(final Message message, final boolean timed) {
+            final boolean isFiltered;
+            if (timed) {
+                final long start = System.nanoTime();
+                isFiltered = step.filter(message);
+                stats.recordTiming(System.nanoTime() - start);
+            } else {
+                isFiltered = step.filter(message);
+            }
+            stats.recordEvaluation(isFiltered);
+            return isFiltered;
+        }
+    }
+
+    /**
+     * Steps sharing an index name, by the key they match on.
+     */
+    private static final class Index {
+        private final IndexedFilterChainStep keyExtractor;
+        private final Map<Object, CompiledStep[]> stepsByKey;
+
+        private Index(final IndexedFilterChainStep keyExtractor, final Map<Object, CompiledStep[]> stepsByKey) {
+            this.keyExtractor = keyExtractor;
+            this.stepsByKey = stepsByKey;
+        }
+    }
+}
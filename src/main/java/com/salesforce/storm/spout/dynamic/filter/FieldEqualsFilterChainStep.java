@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+import com.google.common.base.Preconditions;
+import com.salesforce.storm.spout.dynamic.Message;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Filters messages where a given field of their values equals a given value, for example a tenant id.
+ */
+public class FieldEqualsFilterChainStep implements IndexedFilterChainStep {
+
+    /**
+     * Position of the field within the message's values.
+     */
+    private final int fieldIndex;
+
+    /**
+     * Value of the field for messages that should be filtered.
+     */
+    private final Serializable value;
+
+    /**
+     * Filters messages where a given field of their values equals a given value.
+     * @param fieldIndex position of the field within the message's values.
+     * @param value value of the field for messages that should be filtered.
+     */
+    public FieldEqualsFilterChainStep(final int fieldIndex, final Serializable value) {
+        Preconditions.checkArgument(fieldIndex >= 0, "Field index must not be negative.");
+        this.fieldIndex = fieldIndex;
+        this.value = value;
+    }
+
+    @Override
+    public boolean filter(final Message message) {
+        final Object fieldValue = extractIndexKey(message);
+        return value == null ? fieldValue == null : value.equals(fieldValue);
+    }
+
+    @Override
+    public String getIndexName() {
+        return "field." + fieldIndex;
+    }
+
+    @Override
+    public Object getIndexKey() {
+        return value;
+    }
+
+    @Override
+    public Object extractIndexKey(final Message message) {
+        final List<Object> values = message.getValues();
+        return fieldIndex < values.size() ? values.get(fieldIndex) : null;
+    }
+
+    /**
+     * Get the position of the field within the message's values.
+     * @return position of the field within the message's values.
+     */
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+    /**
+     * Get the value of the field for messages that should be filtered.
+     * @return value of the field for messages that should be filtered.
+     */
+    public Serializable getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+
+        final FieldEqualsFilterChainStep that = (FieldEqualsFilterChainStep) other;
+
+        return fieldIndex == that.fieldIndex && (value != null ? value.equals(that.value) : that.value == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * fieldIndex + (value != null ? value.hashCode() : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "FieldEqualsFilterChainStep{"
+            + "fieldIndex=" + fieldIndex
+            + ", value=" + value
+            + '}';
+    }
+}
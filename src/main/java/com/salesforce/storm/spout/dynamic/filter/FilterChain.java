@@ -28,15 +28,36 @@ package com.salesforce.storm.spout.dynamic.filter;
 import com.google.common.base.Preconditions;
 import com.salesforce.storm.spout.dynamic.Message;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Process a filter through a chain of steps, giving the next step the result of the previous one.
+ *
+ * Every change to the steps recompiles the chain, so that {@link IndexedFilterChainStep}s are looked up from a hash index
+ * rather than evaluated one by one.  Statistics are kept on how each step performs, see {@link #getStepStats()}.
  */
 public class FilterChain {
 
+    /**
+     * One in this many messages has the evaluation of each step timed, must be a power of two.
+     */
+    private static final int TIMING_SAMPLE_RATE = 64;
+
     private final Map<FilterChainStepIdentifier, FilterChainStep> steps = new ConcurrentHashMap<>();
+    private final Map<FilterChainStepIdentifier, FilterChainStepStats> stepStats = new ConcurrentHashMap<>();
+
+    /**
+     * Snapshot of our steps, recompiled whenever they change.
+     */
+    private volatile CompiledFilterChain compiledChain = CompiledFilterChain.EMPTY;
+
+    /**
+     * Number of messages filtered, used to sample which ones get timed.  Only ever touched by the thread filtering
+     * messages, a lost update from another thread only shifts which messages are sampled.
+     */
+    private int filterCount = 0;
 
     /**
      * Add a step to the filter chain.
@@ -48,7 +69,11 @@ public class FilterChain {
     public FilterChain addStep(final FilterChainStepIdentifier id, final FilterChainStep step) {
         Preconditions.checkNotNull(id, "FilterChainStepIdentifier is required to add a step.");
         Preconditions.checkNotNull(step, "Cannot add a null FilterChainStep to the FilterChain.");
-        this.steps.put(id, step);
+        synchronized (this) {
+            this.steps.put(id, step);
+            this.stepStats.put(id, new FilterChainStepStats());
+            compile();
+        }
         return this;
     }
 
@@ -60,7 +85,12 @@ public class FilterChain {
      */
     public FilterChainStep removeStep(final FilterChainStepIdentifier id) {
         Preconditions.checkNotNull(id, "FilterChainStepIdentifier is required to remove a step.");
-        return this.steps.remove(id);
+        synchronized (this) {
+            final FilterChainStep step = this.steps.remove(id);
+            this.stepStats.remove(id);
+            compile();
+            return step;
+        }
     }
 
     /**
@@ -70,18 +100,29 @@ public class FilterChain {
      * @return Should this message be filtered out? True means yes.
      */
     public boolean filter(final Message message) {
-        // No steps = nothing to filter by
-        if (steps.values().isEmpty()) {
-            return false;
-        }
+        final boolean timed = (++filterCount & (TIMING_SAMPLE_RATE - 1)) == 0;
+        return compiledChain.filter(message, timed);
+    }
 
-        for (FilterChainStep step : steps.values()) {
-            if (step.filter(message)) {
-                return true;
-            }
-        }
+    /**
+     * Process a record through the steps of the chain that can filter raw records.
+     *
+     * Records this returns false for may still be filtered by the rest of the chain once deserialized.
+     *
+     * @param rawMessage The record to be processed by this chain
+     * @return Should this record be filtered out? True means yes.
+     */
+    public boolean filterRaw(final RawMessage rawMessage) {
+        return compiledChain.filterRaw(rawMessage);
+    }
 
-        return false;
+    /**
+     * Determine if any step in the chain can filter raw records.
+     *
+     * @return true if any step in the chain can filter raw records.
+     */
+    public boolean hasRawFilterChainSteps() {
+        return compiledChain.hasRawSteps();
     }
 
     /**
@@ -104,10 +145,18 @@ public class FilterChain {
 
     /**
      * Get a map of the filter chain steps by filter chain step identifier.
-     * @return map of the filter chain steps by filter chain step identifier.
+     * @return read only map of the filter chain steps by filter chain step identifier.
      */
     public Map<FilterChainStepIdentifier,FilterChainStep> getSteps() {
-        return steps;
+        return Collections.unmodifiableMap(steps);
+    }
+
+    /**
+     * Get statistics on how each step in the chain has performed, by filter chain step identifier.
+     * @return read only map of statistics on each step, by filter chain step identifier.
+     */
+    public Map<FilterChainStepIdentifier,FilterChainStepStats> getStepStats() {
+        return Collections.unmodifiableMap(stepStats);
     }
 
     /**
@@ -128,6 +177,13 @@ public class FilterChain {
         return steps.get(filterChainStepIdentifier);
     }
 
+    /**
+     * Recompile the chain from the current steps, must be called while holding our lock.
+     */
+    private void compile() {
+        compiledChain = new CompiledFilterChain(steps, stepStats);
+    }
+
     @Override
     public String toString() {
         return "FilterChain{"
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics on how often a step in a {@link FilterChain} is evaluated, how often it filters and how long it takes.
+ *
+ * Only a sample of evaluations are timed, to keep the cost of timing off of every message.
+ *
+ * Counts are plain fields, only ever written by the thread filtering messages so that recording them costs no more
+ * than an increment.  Other threads reading them, such as when reporting metrics, may see values that lag behind.
+ */
+public class FilterChainStepStats {
+
+    private long evaluations = 0;
+    private long hits = 0;
+    private long timedEvaluations = 0;
+    private long timedNanos = 0;
+
+    /**
+     * Record an evaluation of the step.
+     * @param isFiltered true if the step filtered the message.
+     */
+    void recordEvaluation(final boolean isFiltered) {
+        evaluations++;
+        if (isFiltered) {
+            hits++;
+        }
+    }
+
+    /**
+     * Record how long a sampled evaluation of the step took.
+     * @param elapsedNanos how long the evaluation took, in nanoseconds.
+     */
+    void recordTiming(final long elapsedNanos) {
+        timedEvaluations++;
+        timedNanos += elapsedNanos;
+    }
+
+    /**
+     * Get the number of times the step has been evaluated.
+     * @return number of times the step has been evaluated.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Get the number of times the step has filtered a message.
+     * @return number of times the step has filtered a message.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the average time a sampled evaluation of the step has taken.
+     * @return average time a sampled evaluation of the step has taken, in milliseconds, or 0 if none have been sampled.
+     */
+    public double getAverageEvaluationTimeMs() {
+        final long timed = timedEvaluations;
+        if (timed == 0) {
+            return 0;
+        }
+        return (double) timedNanos / timed / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterChainStepStats{"
+            + "evaluations=" + getEvaluations()
+            + ", hits=" + getHits()
+            + ", averageEvaluationTimeMs=" + getAverageEvaluationTimeMs()
+            + '}';
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+import com.salesforce.storm.spout.dynamic.Message;
+
+/**
+ * A {@link FilterChainStep} that only ever filters messages with a given key, such as a tenant id held in one of its fields.
+ *
+ * Declaring the key lets a {@link FilterChain} look up the handful of steps that could match a message from a hash index,
+ * rather than running every step in the chain against it.  Steps that share an index name share an index, so they must
+ * extract keys from messages the same way.
+ */
+public interface IndexedFilterChainStep extends FilterChainStep {
+
+    /**
+     * Get the name of the index this step belongs to.
+     * @return name of the index this step belongs to.
+     */
+    String getIndexName();
+
+    /**
+     * Get the key of the messages this step may filter, this step must never filter a message with a different key.
+     * @return key of the messages this step may filter.
+     */
+    Object getIndexKey();
+
+    /**
+     * Extract the key a message is indexed by.
+     * @param message message to extract the key from.
+     * @return key the message is indexed by.
+     */
+    Object extractIndexKey(Message message);
+}
@@ -30,7 +30,7 @@ import com.salesforce.storm.spout.dynamic.Message;
 /**
  * Negates a {@link FilterChainStep} basically doing the opposite of the intended filtering.
  */
-public class NegatingFilterChainStep implements FilterChainStep {
+public class NegatingFilterChainStep implements RawFilterChainStep {
 
     private final FilterChainStep step;
 
@@ -42,6 +42,21 @@ public class NegatingFilterChainStep implements FilterChainStep {
         return !this.step.filter(message);
     }
 
+    /**
+     * Negates the raw decision of the wrapped step, only usable when the wrapped step supports raw filtering.
+     * @param rawMessage The record to be processed by this step of the chain
+     * @return Should this record be filtered out? True means yes.
+     */
+    @Override
+    public boolean filterRaw(final RawMessage rawMessage) {
+        return !((RawFilterChainStep) this.step).filterRaw(rawMessage);
+    }
+
+    @Override
+    public boolean supportsRawFiltering() {
+        return step instanceof RawFilterChainStep && ((RawFilterChainStep) step).supportsRawFiltering();
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
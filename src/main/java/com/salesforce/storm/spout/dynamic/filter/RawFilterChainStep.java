@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+/**
+ * A {@link FilterChainStep} that can also decide on a record from its raw key and headers, before it is deserialized.
+ *
+ * Consumers that support it run these steps as soon as records are read, so records they filter are never deserialized
+ * or tracked individually.  The raw decision must always agree with {@link #filter(com.salesforce.storm.spout.dynamic.Message)}
+ * for the same record, records that make it past the raw check are still run through the entire chain.
+ */
+public interface RawFilterChainStep extends FilterChainStep {
+
+    /**
+     * Decide if a record should be filtered, from its raw form.
+     *
+     * @param rawMessage The record to be processed by this step of the chain
+     * @return Should this record be filtered out? True means yes.
+     */
+    boolean filterRaw(RawMessage rawMessage);
+
+    /**
+     * Determine if {@link #filterRaw(RawMessage)} can be used, steps that wrap other steps may depend on what they wrap.
+     * @return true if {@link #filterRaw(RawMessage)} can be used.
+     */
+    default boolean supportsRawFiltering() {
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+/**
+ * A record as it was read by a Consumer, before it has been deserialized into a {@link com.salesforce.storm.spout.dynamic.Message}.
+ *
+ * Consumers may reuse a single instance for every record they read, so steps must not hold on to it.
+ */
+public interface RawMessage {
+
+    /**
+     * Get the namespace the record came from.
+     * @return namespace the record came from.
+     */
+    String getNamespace();
+
+    /**
+     * Get the partition the record came from.
+     * @return partition the record came from.
+     */
+    int getPartition();
+
+    /**
+     * Get the offset the record came from.
+     * @return offset the record came from.
+     */
+    long getOffset();
+
+    /**
+     * Get the serialized key of the record.
+     * @return serialized key of the record, or null if it has none.
+     */
+    byte[] getKey();
+
+    /**
+     * Get the value of a header on the record, if the same header appears more than once the last one wins.
+     * @param name name of the header.
+     * @return value of the header, or null if the record has no such header.
+     */
+    byte[] getHeader(String name);
+}
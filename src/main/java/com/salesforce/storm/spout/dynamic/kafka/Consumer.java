@@ -34,8 +34,15 @@ import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
 import com.salesforce.storm.spout.dynamic.consumer.PartitionOffsetsManager;
 import com.salesforce.storm.spout.dynamic.consumer.Record;
+import com.salesforce.storm.spout.dynamic.filter.FilterChain;
+import com.salesforce.storm.spout.dynamic.filter.RawMessage;
 import com.salesforce.storm.spout.dynamic.kafka.deserializer.Deserializer;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.metrics.BoundTimer;
 import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStage;
+import com.salesforce.storm.spout.dynamic.metrics.PipelineStats;
+import com.salesforce.storm.spout.dynamic.persistence.ConsumerStateFlusher;
 import com.salesforce.storm.spout.dynamic.persistence.PersistenceAdapter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
@@ -44,20 +51,25 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.apache.storm.tuple.Values;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * A high level kafka consumer that handles state/log offset management in a way that supports
@@ -96,6 +108,11 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     private static final Logger logger = LoggerFactory.getLogger(Consumer.class);
 
+    /**
+     * How long to wait in poll() for the brokers to return records, in milliseconds.
+     */
+    private static final long POLL_TIMEOUT_MS = 300;
+
     /**
      * KafkaConsumer configuration.
      */
@@ -106,6 +123,34 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     private KafkaConsumer<byte[], byte[]> kafkaConsumer;
 
+    /**
+     * When shared fetching is enabled, records are fetched through this instance which is shared with all other
+     * consumers in the worker consuming the same topic.  We then have no KafkaConsumer of our own, metadata requests
+     * are run through the shared fetcher instead.
+     */
+    private SharedFetcher sharedFetcher = null;
+
+    /**
+     * When shared fetching is enabled, keeps our assignment and positions and reads what the shared fetcher fetched.
+     */
+    private SharedFetcher.Reader sharedReader = null;
+
+    /**
+     * When prefetching is enabled, our KafkaConsumer is polled ahead of us on a thread of its own, and may only be
+     * used through this instance, see {@link #withKafkaConsumer(boolean, Function)}.
+     */
+    private PrefetchingFetcher prefetcher = null;
+
+    /**
+     * Looks up end offsets for our partitions in the background, shared by every consumer of the same brokers.
+     */
+    private EndOffsetsService endOffsetsService = null;
+
+    /**
+     * Partitions we've registered with the end offsets service.
+     */
+    private final Set<TopicPartition> endOffsetsPartitions = new HashSet<>();
+
     /**
      * Boolean to prevent double initialization.
      */
@@ -118,21 +163,36 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     private PersistenceAdapter persistenceAdapter;
 
+    /**
+     * When asynchronous flushing is enabled, consumer state is persisted in the background through this instance.
+     */
+    private ConsumerStateFlusher consumerStateFlusher = null;
+
     /**
      * MetricsRecorder for reporting metrics from the consumer.
      */
     private MetricsRecorder metricsRecorder;
 
+    /**
+     * Times each batch fetched ahead, bound once when we start prefetching.
+     */
+    private BoundTimer prefetchFetchLatencyTimer;
+
     /**
      * Our Deserializer, it deserializes messages from Kafka into objects.
      */
     private Deserializer deserializer;
 
+    /**
+     * When parallel deserialization is enabled, records are deserialized in the background through this instance.
+     */
+    private ParallelDeserializer parallelDeserializer = null;
+
     /**
      * Since offsets are managed on a per partition basis, each namespace/partition has its own ConsumerPartitionStateManagers
      * instance to track its own offset.  The state of these are what gets persisted via the ConsumerStateManager.
      */
-    private final PartitionOffsetsManager partitionOffsetsManager = new PartitionOffsetsManager();
+    private PartitionOffsetsManager partitionOffsetsManager = new PartitionOffsetsManager();
 
     /**
      * Used to buffers messages read from Kafka.
@@ -144,6 +204,42 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     private Iterator<ConsumerRecord<byte[], byte[]>> bufferIterator = null;
 
+    /**
+     * When parallel deserialization is enabled, this is the same instance as bufferIterator and holds the deserialized values.
+     */
+    private ParallelDeserializer.Batch deserializingBatch = null;
+
+    /**
+     * FilterChain of our VirtualSpout, used to filter records before they're deserialized.
+     */
+    private FilterChain filterChain = null;
+
+    /**
+     * Records how long we spend polling and deserializing, if enabled.
+     */
+    private PipelineStats pipelineStats = PipelineStats.DISABLED;
+
+    /**
+     * Reused to hand records to our FilterChain in their raw form.
+     */
+    private final KafkaRawMessage rawMessage = new KafkaRawMessage();
+
+    /**
+     * Runs of polled records our FilterChain rejected in their raw form, in the order they were fetched, waiting to be
+     * finished once every buffered record fetched before them has been started.
+     */
+    private final ArrayDeque<FilteredRun> filteredRuns = new ArrayDeque<>();
+
+    /**
+     * Number of records handed out of our buffer so far, used to tell which filtered runs were fetched before the next one.
+     */
+    private int bufferedRecordsConsumed = 0;
+
+    /**
+     * How long we wait for records when polling, in milliseconds.
+     */
+    private long pollTimeoutMs = POLL_TIMEOUT_MS;
+
     /**
      * Clock instance, for controlling time based operations.
      */
@@ -241,12 +337,39 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
             (String) spoutConfig.get(KafkaConsumerConfig.DESERIALIZER_CLASS)
         );
 
+        // Optionally track offsets using bitmaps
+        if ((Boolean) spoutConfig.get(KafkaConsumerConfig.BITMAP_OFFSET_TRACKER_ENABLED)) {
+            this.partitionOffsetsManager = new PartitionOffsetsManager(true);
+        }
+
+        // Optionally persist consumer state in the background
+        if ((Boolean) spoutConfig.get(SpoutConfig.PERSISTENCE_ASYNC_FLUSH_ENABLED)) {
+            this.consumerStateFlusher = new ConsumerStateFlusher(persistenceAdapter);
+        }
+
+        // Optionally deserialize records in the background
+        if ((Boolean) spoutConfig.get(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED)) {
+            this.parallelDeserializer = new ParallelDeserializer(deserializer);
+        }
+
+        // Cooperatively scheduled VirtualSpouts share their threads with others, so we must never wait on the brokers
+        if (SpoutConfig.SCHEDULER_COOPERATIVE.equals(spoutConfig.get(SpoutConfig.SCHEDULER))) {
+            this.pollTimeoutMs = 0;
+        }
+
         // Save references
         this.consumerConfig = consumerConfig;
         this.persistenceAdapter = persistenceAdapter;
         this.metricsRecorder = metricsRecorder;
         this.deserializer = deserializer;
 
+        // Optionally share fetching with the other consumers in this worker, rather than having a KafkaConsumer of our own
+        if ((Boolean) spoutConfig.get(KafkaConsumerConfig.SHARED_FETCH_ENABLED)) {
+            final int maxBufferedRecords = ((Number) spoutConfig.get(KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS)).intValue();
+            sharedFetcher = SharedFetcherRegistry.acquire(consumerConfig, maxBufferedRecords);
+            sharedReader = sharedFetcher.register();
+        }
+
         // Get partitions
         List<TopicPartition> topicPartitions = getPartitions();
         if (topicPartitions.isEmpty()) {
@@ -256,7 +379,7 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         logger.info("Assigning namespace and partitions = {}", topicPartitions);
 
         // Assign our consumer to the given partitions
-        getKafkaConsumer().assign(topicPartitions);
+        assign(topicPartitions);
 
         for (TopicPartition topicPartition : topicPartitions) {
             Long startingOffset = null;
@@ -281,16 +404,16 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
                     topicPartition.partition(),
                     (offset + 1)
                 );
-                getKafkaConsumer().seek(topicPartition, (offset + 1));
+                seek(topicPartition, (offset + 1));
             } else {
                 // We do not have an existing offset saved, so start from the head
-                getKafkaConsumer().seekToBeginning(Collections.singletonList(topicPartition));
+                seekToBeginning(Collections.singletonList(topicPartition));
 
                 // This preserve the 0.10.0.x behavior where a seekToBeginning() call followed by position() on an
                 // otherwise empty partition would yield us a -1.  In 0.11.0.x it throws this exception if the
                 // partition is empty.
                 try {
-                    offset = getKafkaConsumer().position(topicPartition) - 1;
+                    offset = position(topicPartition) - 1;
                 } catch (InvalidOffsetException ex) {
                     logger.info("{} appears to be empty!", topicPartition);
                     offset = -1L;
@@ -308,6 +431,28 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
                 offset
             );
         }
+
+        // Look up end offsets for reporting lag in the background, so we never wait on the brokers to report it
+        endOffsetsService = EndOffsetsServiceRegistry.acquire(consumerConfig);
+        endOffsetsPartitions.addAll(topicPartitions);
+        endOffsetsService.register(endOffsetsPartitions);
+
+        // Optionally fetch ahead on a thread of our own, now that we're positioned on every partition.
+        // Deserializing in parallel always fetches ahead, otherwise we'd only fetch the next batch once this one was deserialized.
+        final boolean isPrefetchEnabled = (Boolean) spoutConfig.get(KafkaConsumerConfig.PREFETCH_ENABLED);
+        if (isPrefetchEnabled || parallelDeserializer != null) {
+            if (sharedFetcher != null) {
+                // Shared fetching already fetches ahead on a thread of its own
+                if (isPrefetchEnabled) {
+                    logger.warn("Prefetching is not supported along with shared fetching, not prefetching for {}", getConsumerId());
+                }
+            } else {
+                final int maxBufferedBatches = ((Number) spoutConfig.get(KafkaConsumerConfig.PREFETCH_MAX_BUFFERED_BATCHES)).intValue();
+                prefetchFetchLatencyTimer = metricsRecorder.bindTimer(KafkaMetrics.KAFKA_PREFETCH_FETCH_LATENCY, getConsumerId());
+                prefetcher = new PrefetchingFetcher(getKafkaConsumer(), maxBufferedBatches, getConsumerId());
+                prefetcher.start();
+            }
+        }
     }
 
     /**
@@ -332,20 +477,35 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         // Iterate to next result
         final ConsumerRecord<byte[], byte[]> nextRecord = bufferIterator.next();
 
+        // Finish what we filtered in bulk ahead of this record, before we start tracking it
+        finishRawFiltered(bufferedRecordsConsumed++);
+
         // Create consumerPartition instance
         final ConsumerPartition consumerPartition = new ConsumerPartition(nextRecord.topic(), nextRecord.partition());
 
         // Track this new message's state
         partitionOffsetsManager.startOffset(consumerPartition, nextRecord.offset());
 
-        // Deserialize into values
-        final Values deserializedValues = getDeserializer().deserialize(
-            nextRecord.topic(),
-            nextRecord.partition(),
-            nextRecord.offset(),
-            nextRecord.key(),
-            nextRecord.value()
-        );
+        // If this was the last buffered record, whatever was filtered after it is finished too
+        if (!bufferIterator.hasNext()) {
+            finishRawFiltered(Integer.MAX_VALUE);
+        }
+
+        // Deserialize into values, or wait on the values being deserialized in the background
+        final long deserializeStartNanos = pipelineStats.start(PipelineStage.DESERIALIZE);
+        final Values deserializedValues;
+        if (deserializingBatch != null) {
+            deserializedValues = deserializingBatch.getValues();
+        } else {
+            deserializedValues = getDeserializer().deserialize(
+                nextRecord.topic(),
+                nextRecord.partition(),
+                nextRecord.offset(),
+                nextRecord.key(),
+                nextRecord.value()
+            );
+        }
+        pipelineStats.stop(PipelineStage.DESERIALIZE, deserializeStartNanos, 1);
 
         // Handle null
         if (deserializedValues == null) {
@@ -363,12 +523,85 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         return new Record(nextRecord.topic(), nextRecord.partition(), nextRecord.offset(), deserializedValues);
     }
 
+    /**
+     * Run polled records through our FilterChain in their raw form, before any of them are deserialized.
+     * Records that are filtered are grouped into runs, to be finished all at once as we reach them.
+     * @param records records that were polled.
+     * @return records that were not filtered, in the order they were fetched.
+     */
+    private ConsumerRecords<byte[], byte[]> rawFilter(final ConsumerRecords<byte[], byte[]> records) {
+        if (filterChain == null || !filterChain.hasRawFilterChainSteps() || records.isEmpty()) {
+            return records;
+        }
+
+        // Keep partitions in the order they were fetched, which is the order we'll hand records out in
+        final Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> unfiltered = new LinkedHashMap<>();
+        int unfilteredCount = 0;
+        for (final TopicPartition topicPartition : records.partitions()) {
+            final List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(topicPartition);
+            final List<ConsumerRecord<byte[], byte[]>> unfilteredRecords = new ArrayList<>(partitionRecords.size());
+
+            // Runs are broken by any record that isn't filtered, and by moving onto the next partition
+            FilteredRun filteredRun = null;
+            for (final ConsumerRecord<byte[], byte[]> record : partitionRecords) {
+                rawMessage.record = record;
+                final boolean isFiltered = filterChain.filterRaw(rawMessage);
+                rawMessage.record = null;
+
+                if (!isFiltered) {
+                    unfilteredRecords.add(record);
+                    unfilteredCount++;
+                    filteredRun = null;
+                    continue;
+                }
+                if (filteredRun == null) {
+                    filteredRun = new FilteredRun(
+                        new ConsumerPartition(record.topic(), record.partition()),
+                        record.offset(),
+                        unfilteredCount
+                    );
+                    filteredRuns.add(filteredRun);
+                }
+                filteredRun.toOffset = record.offset();
+                filteredRun.count++;
+            }
+
+            if (!unfilteredRecords.isEmpty()) {
+                unfiltered.put(topicPartition, unfilteredRecords);
+            }
+        }
+
+        if (unfilteredCount == records.count()) {
+            return records;
+        }
+        return new ConsumerRecords<>(unfiltered);
+    }
+
+    /**
+     * Mark each run of filtered records fetched ahead of the given number of buffered records as completed, a run at a time.
+     * @param recordsConsumed number of buffered records handed out before the next one.
+     */
+    private void finishRawFiltered(final int recordsConsumed) {
+        while (!filteredRuns.isEmpty() && filteredRuns.peek().recordsBefore <= recordsConsumed) {
+            final FilteredRun filteredRun = filteredRuns.poll();
+            partitionOffsetsManager.finishOffsets(filteredRun.consumerPartition, filteredRun.fromOffset, filteredRun.toOffset);
+            metricsRecorder.countBy(
+                KafkaMetrics.KAFKA_RAW_FILTERED,
+                filteredRun.count,
+                filteredRun.consumerPartition.namespace(), filteredRun.consumerPartition.partition()
+            );
+        }
+    }
+
     /**
      * Reports kafka consumer statistics at an interval.
      * Currently this reports
      *   - "endOffset" or TAIL position of the kafka topic/partition.
      *   - "currentOffset" or the position the consumer is currently per topic/partition.
      *   - "lag" or difference between currentOffset and endOffset position.
+     *
+     * End offsets are looked up in the background by our {@link EndOffsetsService}, here we only read the last ones
+     * it found, partitions it has yet to look up are skipped until the next report.
      */
     private void reportStatus() {
         // If we've reported status more recently than 30 seconds we skip over this.
@@ -376,18 +609,17 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
             return;
         }
 
-        // Grab the TAIL offset positions for ONLY the topic partitions this consumer is managing.
-        final Map<TopicPartition, Long> endOffsetsMap = getKafkaConsumer().endOffsets(
-            getKafkaConsumer().assignment()
-        );
-
         // Grab the consumer's current state for the last offsets it considers completed.
         final ConsumerState consumerState = getCurrentState();
 
-        // Loop through
-        for (final Map.Entry<TopicPartition, Long> entry : endOffsetsMap.entrySet()) {
-            final TopicPartition topicPartition = entry.getKey();
-            final long endOffset = entry.getValue();
+        // Loop through ONLY the topic partitions this consumer is managing.
+        for (final TopicPartition topicPartition : endOffsetsPartitions) {
+            // Grab the last TAIL offset position found for this topic and partition.
+            final Long endOffset = endOffsetsService.getEndOffset(topicPartition);
+            if (endOffset == null) {
+                // Not looked up yet
+                continue;
+            }
 
             // Assign the value for endOffset for this topic and partition.
             metricsRecorder.assignValue(
@@ -448,6 +680,7 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
 
     /**
      * Forces the Consumer's current state to be persisted.
+     * When asynchronous flushing is enabled the state is handed off to be persisted in the background instead.
      * @return A copy of the state that was persisted.
      */
     @Override
@@ -455,19 +688,18 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         // Get the current state
         final ConsumerState consumerState = partitionOffsetsManager.getCurrentState();
 
-        // Persist each partition offset
-
-        for (Map.Entry<ConsumerPartition, Long> entry : consumerState.entrySet()) {
-            final ConsumerPartition consumerPartition = entry.getKey();
-            final long lastFinishedOffset = entry.getValue();
+        // Hand it off without waiting for it to be written
+        if (consumerStateFlusher != null) {
+            consumerStateFlusher.submit(getConsumerId(), consumerState);
+            return consumerState;
+        }
 
-            // Persist it.
-            persistenceAdapter.persistConsumerState(
-                getConsumerId(),
-                consumerPartition.partition(),
-                lastFinishedOffset
-            );
+        // Persist every partition offset together
+        final Map<Integer, Long> offsets = new HashMap<>();
+        for (final Map.Entry<ConsumerPartition, Long> entry : consumerState.entrySet()) {
+            offsets.put(entry.getKey().partition(), entry.getValue());
         }
+        persistenceAdapter.persistConsumerStates(getConsumerId(), offsets);
 
         // return the state.
         return consumerState;
@@ -489,17 +721,22 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
     private void fillBuffer(final int trips) {
         // If our buffer is null, or our iterator is at the end
         if (buffer == null || !bufferIterator.hasNext()) {
+            // Every buffered record has been handed out, so whatever was filtered after the last of them is finished too
+            finishRawFiltered(Integer.MAX_VALUE);
 
             // If we have no assigned partitions to consume from, then don't call poll()
             // The underlying consumer call here does NOT make an API call, so this is safe to call within this loop.
-            if (getKafkaConsumer().assignment().isEmpty()) {
+            // When prefetching, our fetch thread already handles this for us.
+            if (prefetcher == null && assignment().isEmpty()) {
                 // No assigned partitions, nothing to consume :)
                 return;
             }
 
             // Time to refill the buffer
             try {
-                buffer = getKafkaConsumer().poll(300);
+                final long pollStartNanos = pipelineStats.start(PipelineStage.POLL);
+                buffer = poll();
+                pipelineStats.stop(PipelineStage.POLL, pollStartNanos, buffer.count());
             } catch (OffsetOutOfRangeException outOfRangeException) {
                 // Handle it
                 handleOffsetOutOfRange(outOfRangeException);
@@ -507,6 +744,7 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
                 // Clear out so we can attempt next time.
                 buffer = null;
                 bufferIterator = null;
+                deserializingBatch = null;
 
                 // Why 5? Because it's less than 6.
                 if (trips >= 5) {
@@ -522,11 +760,161 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
                 return;
             }
 
-            // Create new iterator
-            bufferIterator = buffer.iterator();
+            // Filter records in their raw form, so those our filters reject are never deserialized
+            final int polledCount = buffer.count();
+            buffer = rawFilter(buffer);
+            bufferedRecordsConsumed = 0;
+
+            // If our filters rejected every record, poll again rather than handing back nothing
+            if (buffer.isEmpty() && polledCount > 0 && trips < 5) {
+                finishRawFiltered(Integer.MAX_VALUE);
+                bufferIterator = Collections.emptyIterator();
+                deserializingBatch = null;
+                fillBuffer(trips + 1);
+                return;
+            }
+
+            // Create new iterator, kicking off deserialization in the background if enabled
+            if (parallelDeserializer != null) {
+                deserializingBatch = parallelDeserializer.submit(buffer);
+                bufferIterator = deserializingBatch;
+            } else {
+                bufferIterator = buffer.iterator();
+            }
         }
     }
 
+    /**
+     * Poll for new records, either directly from our KafkaConsumer or through the shared fetcher.
+     * @return records read from kafka.
+     */
+    private ConsumerRecords<byte[], byte[]> poll() {
+        if (prefetcher != null) {
+            return takePrefetched();
+        }
+
+        if (sharedReader != null) {
+            return sharedReader.poll(pollTimeoutMs);
+        }
+        return getKafkaConsumer().poll(pollTimeoutMs);
+    }
+
+    /**
+     * Take the next batch fetched ahead by our prefetching thread, waiting as long as a poll would for one.
+     * @return records read from kafka.
+     */
+    private ConsumerRecords<byte[], byte[]> takePrefetched() {
+        final PrefetchingFetcher.Fetched fetched = prefetcher.take(pollTimeoutMs);
+        metricsRecorder.assignValue(KafkaMetrics.KAFKA_PREFETCH_BUFFERED_BATCHES, prefetcher.getBufferedBatches(), getConsumerId());
+        if (fetched == null) {
+            return ConsumerRecords.empty();
+        }
+
+        prefetchFetchLatencyTimer.recordNanos(fetched.getFetchLatencyNanos());
+        return fetched.getRecords();
+    }
+
+    /**
+     * Run a call against our KafkaConsumer, handing it over to our prefetching thread if prefetching is enabled.
+     * @param repositions true if the call may move the position of any partition.
+     * @param call call to run.
+     * @param <T> type of result.
+     * @return result of the call.
+     */
+    private <T> T withKafkaConsumer(final boolean repositions, final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+        if (prefetcher != null) {
+            return prefetcher.execute(repositions, call);
+        }
+        return call.apply(getKafkaConsumer());
+    }
+
+    /**
+     * Run a call that only looks up metadata, through the shared fetcher if shared fetching is enabled.
+     * @param call call to run, which must not change the assignment or position of any partition.
+     * @param <T> type of result.
+     * @return result of the call.
+     */
+    private <T> T withMetadataConsumer(final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+        if (sharedFetcher != null) {
+            return sharedFetcher.execute(call);
+        }
+        return withKafkaConsumer(false, call);
+    }
+
+    /**
+     * Assign partitions to consume.
+     * @param topicPartitions partitions to consume.
+     */
+    private void assign(final Collection<TopicPartition> topicPartitions) {
+        if (sharedReader != null) {
+            sharedReader.assign(topicPartitions);
+            return;
+        }
+        withKafkaConsumer(true, (kafkaConsumer) -> {
+            kafkaConsumer.assign(topicPartitions);
+            return null;
+        });
+    }
+
+    /**
+     * Get the partitions we're consuming.
+     * @return partitions we're consuming.
+     */
+    private Set<TopicPartition> assignment() {
+        if (sharedReader != null) {
+            return sharedReader.assignment();
+        }
+        return withKafkaConsumer(false, KafkaConsumer::assignment);
+    }
+
+    /**
+     * Move to the given position within a partition.
+     * @param topicPartition partition to move within.
+     * @param offset offset of the next record to consume.
+     */
+    private void seek(final TopicPartition topicPartition, final long offset) {
+        if (sharedReader != null) {
+            sharedReader.seek(topicPartition, offset);
+            return;
+        }
+        withKafkaConsumer(true, (kafkaConsumer) -> {
+            kafkaConsumer.seek(topicPartition, offset);
+            return null;
+        });
+    }
+
+    /**
+     * Move to the earliest available position within each of the given partitions.
+     * @param topicPartitions partitions to move within.
+     */
+    private void seekToBeginning(final Collection<TopicPartition> topicPartitions) {
+        if (sharedReader != null) {
+            final Map<TopicPartition, Long> beginningOffsets = withMetadataConsumer(
+                (kafkaConsumer) -> kafkaConsumer.beginningOffsets(topicPartitions)
+            );
+            for (final Map.Entry<TopicPartition, Long> entry : beginningOffsets.entrySet()) {
+                sharedReader.seek(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        withKafkaConsumer(true, (kafkaConsumer) -> {
+            kafkaConsumer.seekToBeginning(topicPartitions);
+            return null;
+        });
+    }
+
+    /**
+     * Get our position within a partition.
+     * @param topicPartition partition to get our position within.
+     * @return offset of the next record to consume.
+     */
+    private long position(final TopicPartition topicPartition) {
+        if (sharedReader != null) {
+            return sharedReader.position(topicPartition);
+        }
+        return withKafkaConsumer(false, (kafkaConsumer) -> kafkaConsumer.position(topicPartition));
+    }
+
     /**
      * This method handles when a partition seek/retrieve request was out of bounds.
      * This happens in two scenarios:
@@ -549,8 +937,9 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
             // The offset that was in the error
             final long exceptionOffset = outOfRangeException.offsetOutOfRangePartitions().get(topicPartition);
             // What kafka says the last offset is
-            final long endingOffset = getKafkaConsumer().endOffsets(Collections.singletonList(topicPartition))
-                .get(topicPartition);
+            final long endingOffset = withMetadataConsumer(
+                (kafkaConsumer) -> kafkaConsumer.endOffsets(Collections.singletonList(topicPartition)).get(topicPartition)
+            );
 
             logger.warn("Offset Out of Range for partition {} at offset {}, kafka says last offset in partition is {}",
                 topicPartition.partition(), exceptionOffset, endingOffset);
@@ -567,10 +956,7 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
                 );
 
                 // Seek to the end we found above.  The end may have moved since we last asked, which is why we are not doing seekToEnd()
-                getKafkaConsumer().seek(
-                    topicPartition,
-                    endingOffset
-                );
+                seek(topicPartition, endingOffset);
 
                 partitionOffsetsManager.replaceEntry(
                     new ConsumerPartition(topicPartition.topic(), topicPartition.partition()),
@@ -603,13 +989,13 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         logger.info("Seeking to earliest offset on partitions {}", topicPartitions);
         // If you call this with an empty set it resets everything that the consumer is assigned, which is probably
         // not what you want...
-        getKafkaConsumer().seekToBeginning(topicPartitions);
+        seekToBeginning(topicPartitions);
 
         // Now for each partition
         for (TopicPartition topicPartition : topicPartitions) {
             // Determine the current offset now that we've seeked to earliest
             // We subtract one from this offset and set that as the last "committed" offset.
-            final long newOffset = getKafkaConsumer().position(topicPartition) - 1;
+            final long newOffset = position(topicPartition) - 1;
 
             // We need to reset the saved offset to the current value
             // Replace PartitionOffsetManager with new instance from new position.
@@ -625,18 +1011,47 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     @Override
     public void close() {
-        // If our consumer is already null
-        if (kafkaConsumer == null) {
+        // If our consumer is already closed
+        if (kafkaConsumer == null && sharedFetcher == null) {
             // Do nothing.
             return;
         }
 
+        // Make sure any state handed off to be persisted in the background has been written.
+        if (consumerStateFlusher != null) {
+            consumerStateFlusher.flush();
+        }
+
         // Close out persistence manager.
         persistenceAdapter.close();
 
-        // Call close on underlying consumer
-        kafkaConsumer.close();
-        kafkaConsumer = null;
+        // Let go of the shared fetcher, the last consumer using it will close it.
+        if (sharedFetcher != null) {
+            sharedFetcher.unregister(sharedReader);
+            SharedFetcherRegistry.release(sharedFetcher);
+            sharedFetcher = null;
+            sharedReader = null;
+        }
+
+        // Let go of the end offsets service, the last consumer using it will close it.
+        if (endOffsetsService != null) {
+            endOffsetsService.unregister(endOffsetsPartitions);
+            endOffsetsPartitions.clear();
+            EndOffsetsServiceRegistry.release(endOffsetsService);
+            endOffsetsService = null;
+        }
+
+        // Stop fetching ahead, after which our KafkaConsumer is ours to close.
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+
+        // Call close on underlying consumer, if we have one of our own
+        if (kafkaConsumer != null) {
+            kafkaConsumer.close();
+            kafkaConsumer = null;
+        }
     }
 
     /**
@@ -647,6 +1062,30 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         return consumerConfig;
     }
 
+    /**
+     * Get the shared fetcher instance, if shared fetching is enabled.
+     * @return shared fetcher instance, or null.
+     */
+    SharedFetcher getSharedFetcher() {
+        return sharedFetcher;
+    }
+
+    /**
+     * Get the prefetching fetcher instance, if prefetching is enabled.
+     * @return prefetching fetcher instance, or null.
+     */
+    PrefetchingFetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * Get the end offsets service instance.
+     * @return end offsets service instance, or null if not open.
+     */
+    EndOffsetsService getEndOffsetsService() {
+        return endOffsetsService;
+    }
+
     /**
      * Get the persistence adapter instance.
      * @return persistence adapter instance.
@@ -664,7 +1103,7 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         Set<ConsumerPartition> assignedPartitions = new HashSet<>();
 
         // Loop over resumes from underlying kafka consumer
-        for (TopicPartition topicPartition : getKafkaConsumer().assignment()) {
+        for (TopicPartition topicPartition : assignment()) {
             // Convert object type
             assignedPartitions.add(new ConsumerPartition(topicPartition.topic(), topicPartition.partition()));
         }
@@ -698,7 +1137,15 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         }
 
         // Reassign consumer
-        kafkaConsumer.assign(reassignedTopicPartitions);
+        assign(reassignedTopicPartitions);
+
+        // Stop looking up the end offset of the partition we no longer consume
+        final TopicPartition topicPartitionToUnsubscribe = new TopicPartition(
+            consumerPartitionToUnsubscribe.namespace(), consumerPartitionToUnsubscribe.partition()
+        );
+        if (endOffsetsService != null && endOffsetsPartitions.remove(topicPartitionToUnsubscribe)) {
+            endOffsetsService.unregister(Collections.singletonList(topicPartitionToUnsubscribe));
+        }
 
         // return boolean
         return true;
@@ -723,6 +1170,24 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
         return getConsumerConfig().getConsumerId();
     }
 
+    /**
+     * Hands us the FilterChain of our VirtualSpout, so we can filter records before deserializing them.
+     * @param filterChain FilterChain of our VirtualSpout.
+     */
+    @Override
+    public void setFilterChain(final FilterChain filterChain) {
+        this.filterChain = filterChain;
+    }
+
+    /**
+     * Hands us where to record how long we spend polling and deserializing.
+     * @param pipelineStats statistics on our VirtualSpout's pipeline.
+     */
+    @Override
+    public void setPipelineStats(final PipelineStats pipelineStats) {
+        this.pipelineStats = pipelineStats;
+    }
+
     /**
      * Get this instances deserializer instance.
      * @return deserializer instance.
@@ -740,6 +1205,11 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
     public void removeConsumerState() {
         logger.info("Removing Consumer state for ConsumerId: {}", getConsumerId());
 
+        // Make sure nothing waiting to be persisted in the background writes the state back after we've removed it.
+        if (consumerStateFlusher != null) {
+            consumerStateFlusher.clear(getConsumerId());
+        }
+
         final Set<ConsumerPartition> consumerPartitions = partitionOffsetsManager.getAllManagedConsumerPartitions();
         for (ConsumerPartition consumerPartition : consumerPartitions) {
             getPersistenceAdapter().clearConsumerState(getConsumerId(), consumerPartition.partition());
@@ -752,7 +1222,9 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
      */
     private List<TopicPartition> getPartitions() {
         // Ask Kafka for all of the partitions that are available
-        final List<PartitionInfo> allPartitionInfos = getKafkaConsumer().partitionsFor(consumerConfig.getTopic());
+        final List<PartitionInfo> allPartitionInfos = withMetadataConsumer(
+            (kafkaConsumer) -> kafkaConsumer.partitionsFor(consumerConfig.getTopic())
+        );
 
         // Convert all of our partition info objects into a primitive list of the partition ids
         final int[] allPartitionIds = allPartitionInfos.stream().map(PartitionInfo::partition).mapToInt(i -> i).toArray();
@@ -788,4 +1260,59 @@ public class Consumer implements com.salesforce.storm.spout.dynamic.consumer.Con
     private String getTopicPartitionMetricKey(final String topic, final int partition, final String metric) {
         return "topic." + topic + ".partition." + partition + "." + metric;
     }
+
+    /**
+     * A run of consecutive records from a single partition that our FilterChain rejected in their raw form.
+     */
+    private static final class FilteredRun {
+        private final ConsumerPartition consumerPartition;
+        private final long fromOffset;
+        private long toOffset;
+        private long count = 0;
+
+        /**
+         * Number of buffered records fetched before this run.
+         */
+        private final int recordsBefore;
+
+        private FilteredRun(final ConsumerPartition consumerPartition, final long fromOffset, final int recordsBefore) {
+            this.consumerPartition = consumerPartition;
+            this.fromOffset = fromOffset;
+            this.toOffset = fromOffset;
+            this.recordsBefore = recordsBefore;
+        }
+    }
+
+    /**
+     * Exposes a ConsumerRecord to our FilterChain in its raw form.
+     */
+    private static final class KafkaRawMessage implements RawMessage {
+        private ConsumerRecord<byte[], byte[]> record;
+
+        @Override
+        public String getNamespace() {
+            return record.topic();
+        }
+
+        @Override
+        public int getPartition() {
+            return record.partition();
+        }
+
+        @Override
+        public long getOffset() {
+            return record.offset();
+        }
+
+        @Override
+        public byte[] getKey() {
+            return record.key();
+        }
+
+        @Override
+        public byte[] getHeader(final String name) {
+            final Header header = record.headers().lastHeader(name);
+            return header == null ? null : header.value();
+        }
+    }
 }
@@ -27,11 +27,13 @@ package com.salesforce.storm.spout.dynamic.kafka;
 
 import com.salesforce.storm.spout.documentation.ClassSpec;
 import com.salesforce.storm.spout.documentation.DocGenerator;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -61,7 +63,7 @@ public class DocTask {
     private static void generateConfigDocs(final Path inputPath) throws IOException {
         final String tagArg = "KAFKA_CONSUMER_CONFIGURATION";
         final List<ClassSpec> classSpecs = new ArrayList<>();
-        classSpecs.add(new ClassSpec(KafkaConsumerConfig.class));
+        classSpecs.add(new ClassSpec(KafkaConsumerConfig.class, SpoutConfig.setDefaults(new HashMap<>())));
 
         final DocGenerator docGenerator = new DocGenerator(inputPath, tagArg, classSpecs);
         docGenerator.generateConfigDocs();
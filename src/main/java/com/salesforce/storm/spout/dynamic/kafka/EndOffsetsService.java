@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the end offsets of every partition registered by the {@link Consumer}s within a worker sharing the same
+ * brokers, in one request per interval, on a thread of its own.
+ *
+ * Consumers read the cached end offsets when reporting their lag, so they never wait on the brokers to do so.
+ */
+class EndOffsetsService {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EndOffsetsService.class);
+
+    /**
+     * How often end offsets are looked up, mirrors how often {@link Consumer} reports its status.
+     */
+    static final long REFRESH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Key this service is registered under within the {@link EndOffsetsServiceRegistry}.
+     */
+    private final String key;
+
+    /**
+     * KafkaConsumer used to look up end offsets, only ever touched from our executor.
+     */
+    private final KafkaConsumer<byte[], byte[]> kafkaConsumer;
+
+    /**
+     * Runs every lookup, one at a time.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Number of consumers that registered each partition.
+     */
+    private final Map<TopicPartition, Integer> registeredPartitions = new ConcurrentHashMap<>();
+
+    /**
+     * Last end offset looked up for each partition.
+     */
+    private final Map<TopicPartition, Long> endOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * Number of consumers currently using this service, guarded by the {@link EndOffsetsServiceRegistry}.
+     */
+    private int referenceCount = 0;
+
+    /**
+     * Constructor.
+     * @param key key this service is registered under.
+     * @param kafkaConsumer KafkaConsumer to look up end offsets with.
+     */
+    EndOffsetsService(final String key, final KafkaConsumer<byte[], byte[]> kafkaConsumer) {
+        this.key = key;
+        this.kafkaConsumer = kafkaConsumer;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("dynamic-spout-end-offsets-%d")
+                .setDaemon(true)
+                .build()
+        );
+        this.executor.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_MS, REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start looking up end offsets for the given partitions, the first lookup happens right away.
+     * @param topicPartitions partitions to look up end offsets for.
+     */
+    void register(final Collection<TopicPartition> topicPartitions) {
+        for (final TopicPartition topicPartition : topicPartitions) {
+            registeredPartitions.merge(topicPartition, 1, Integer::sum);
+        }
+        executor.execute(this::refresh);
+    }
+
+    /**
+     * Stop looking up end offsets for the given partitions, unless another consumer registered them too.
+     * @param topicPartitions partitions to stop looking up end offsets for.
+     */
+    void unregister(final Collection<TopicPartition> topicPartitions) {
+        for (final TopicPartition topicPartition : topicPartitions) {
+            final Integer remaining = registeredPartitions.computeIfPresent(
+                topicPartition,
+                (partition, count) -> count > 1 ? count - 1 : null
+            );
+            if (remaining == null) {
+                endOffsets.remove(topicPartition);
+            }
+        }
+    }
+
+    /**
+     * Get the last end offset looked up for a partition.
+     * @param topicPartition partition to get the end offset of.
+     * @return last end offset looked up for the partition, or null if it has not been looked up yet.
+     */
+    Long getEndOffset(final TopicPartition topicPartition) {
+        return endOffsets.get(topicPartition);
+    }
+
+    /**
+     * Look up end offsets for every registered partition, in one request.
+     */
+    void refresh() {
+        final List<TopicPartition> topicPartitions = new ArrayList<>(registeredPartitions.keySet());
+        if (topicPartitions.isEmpty()) {
+            return;
+        }
+
+        try {
+            final Map<TopicPartition, Long> results = kafkaConsumer.endOffsets(topicPartitions);
+            for (final Map.Entry<TopicPartition, Long> entry : results.entrySet()) {
+                // Skip any partition unregistered while we were waiting on the brokers
+                if (entry.getValue() != null && registeredPartitions.containsKey(entry.getKey())) {
+                    endOffsets.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (final RuntimeException exception) {
+            // We'll try again next interval, in the meantime consumers report the last end offsets we found
+            logger.warn("Failed to look up end offsets for {}: {}", key, exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Get the key this service is registered under.
+     * @return key this service is registered under.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Add a reference to this service.
+     */
+    void retain() {
+        referenceCount++;
+    }
+
+    /**
+     * Remove a reference to this service.
+     * @return number of references remaining.
+     */
+    int release() {
+        return --referenceCount;
+    }
+
+    /**
+     * Stop looking up end offsets and close the underlying KafkaConsumer.
+     */
+    void close() {
+        logger.info("Closing end offsets service {}", key);
+        executor.execute(kafkaConsumer::close);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("End offsets service {} did not stop in time", key);
+            }
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Hands out {@link EndOffsetsService} instances so that every {@link Consumer} within a worker consuming from the same
+ * brokers shares a single one.
+ *
+ * Services are reference counted, the last consumer to release a service closes it.
+ */
+final class EndOffsetsServiceRegistry {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EndOffsetsServiceRegistry.class);
+
+    /**
+     * Services currently in use, keyed by brokers.
+     */
+    private static final Map<String, EndOffsetsService> services = new HashMap<>();
+
+    /**
+     * Static utility class, no instances.
+     */
+    private EndOffsetsServiceRegistry() {
+    }
+
+    /**
+     * Get the service for the brokers of the given consumer, creating it if no other consumer is using one.
+     * @param consumerConfig configuration of the consumer asking for a service.
+     * @return service shared by all consumers of the same brokers.
+     */
+    static synchronized EndOffsetsService acquire(final KafkaConsumerConfig consumerConfig) {
+        final String key = consumerConfig.getKafkaConsumerProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG);
+
+        EndOffsetsService service = services.get(key);
+        if (service == null) {
+            logger.info("Creating end offsets service {}", key);
+
+            // Looking up end offsets needs nothing more than the brokers and our byte array deserializers
+            final Properties properties = new Properties();
+            properties.putAll(consumerConfig.getKafkaConsumerProperties());
+            properties.remove(ConsumerConfig.GROUP_ID_CONFIG);
+            properties.put(ConsumerConfig.CLIENT_ID_CONFIG, "dynamic-spout-end-offsets");
+
+            service = new EndOffsetsService(key, new KafkaConsumer<>(properties));
+            services.put(key, service);
+        }
+        service.retain();
+
+        return service;
+    }
+
+    /**
+     * Release a service previously acquired, closing it if no other consumer is using it.
+     * @param service service to release.
+     */
+    static synchronized void release(final EndOffsetsService service) {
+        if (service.release() > 0) {
+            return;
+        }
+        services.remove(service.getKey());
+        service.close();
+    }
+
+    /**
+     * Get the number of services currently in use.
+     * @return number of services currently in use.
+     */
+    static synchronized int size() {
+        return services.size();
+    }
+}
@@ -88,6 +88,100 @@ public class KafkaConsumerConfig {
     )
     public static final String CONSUMER_ID_PREFIX = SpoutConfig.VIRTUAL_SPOUT_ID_PREFIX;
 
+    /**
+     * (boolean) Defines if consumers within the same worker consuming the same topic should share a single
+     * underlying KafkaConsumer for fetching records, rather than each fetching the same records from the brokers.
+     * Records are fetched on a dedicated thread, each consumer still tracks its own position and offsets.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines if consumers within the same worker consuming the same topic should share a single "
+        + "underlying KafkaConsumer for fetching records, rather than each fetching the same records from the brokers. "
+        + "Records are fetched on a dedicated thread, each consumer still tracks its own position and offsets.",
+        type = Boolean.class
+    )
+    public static final String SHARED_FETCH_ENABLED = "spout.kafka.shared_fetch.enabled";
+
+    /**
+     * (int) Defines the maximum number of fetched records to keep buffered per partition when shared fetching is enabled.
+     * Consumers reading within the buffered range share records without going back to the brokers.
+     * Default Value: 10000
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines the maximum number of fetched records to keep buffered per partition when shared fetching "
+        + "is enabled. Consumers reading within the buffered range share records without going back to the brokers.",
+        type = Integer.class
+    )
+    public static final String SHARED_FETCH_MAX_BUFFERED_RECORDS = "spout.kafka.shared_fetch.max_buffered_records";
+
+    /**
+     * Default value for {@link #SHARED_FETCH_MAX_BUFFERED_RECORDS}.
+     */
+    public static final int DEFAULT_SHARED_FETCH_MAX_BUFFERED_RECORDS = 10_000;
+
+    /**
+     * (boolean) Defines if consumers should track in flight offsets using a ring buffer bitmap rather than sorted sets.
+     * The bitmap avoids boxing and allocating per offset, which matters at high message rates.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines if consumers should track in flight offsets using a ring buffer bitmap rather than sorted sets. "
+        + "The bitmap avoids boxing and allocating per offset, which matters at high message rates.",
+        type = Boolean.class
+    )
+    public static final String BITMAP_OFFSET_TRACKER_ENABLED = "spout.kafka.bitmap_offset_tracker.enabled";
+
+    /**
+     * (boolean) Defines if consumers should deserialize fetched records on a fork join pool shared by the worker, rather
+     * than on the thread consuming them.  Records are still handed out in order, but the Deserializer must be thread safe.
+     * Also enables {@link #PREFETCH_ENABLED}, so the next batch is fetched while the current one is being deserialized.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines if consumers should deserialize fetched records on a fork join pool shared by the worker, rather "
+        + "than on the thread consuming them. Records are still handed out in order, but the Deserializer must be thread safe. "
+        + "Also enables prefetching, so the next batch is fetched while the current one is being deserialized.",
+        type = Boolean.class
+    )
+    public static final String PARALLEL_DESERIALIZATION_ENABLED = "spout.kafka.parallel_deserialization.enabled";
+
+    /**
+     * (boolean) Defines if consumers should poll Kafka on a dedicated thread that keeps fetching ahead of the records being
+     * consumed, rather than only polling once every fetched record has been consumed.  Always enabled along with
+     * {@link #PARALLEL_DESERIALIZATION_ENABLED}.
+     * Default Value: false
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines if consumers should poll Kafka on a dedicated thread that keeps fetching ahead of the records being "
+        + "consumed, rather than only polling once every fetched record has been consumed. Always enabled along with parallel "
+        + "deserialization.",
+        type = Boolean.class
+    )
+    public static final String PREFETCH_ENABLED = "spout.kafka.prefetch.enabled";
+
+    /**
+     * (int) Defines the maximum number of batches a consumer keeps fetched ahead when prefetching is enabled.  Fetching
+     * blocks once this many are waiting to be consumed.
+     * Default Value: 1
+     */
+    @ConfigDocumentation(
+        category = ConfigDocumentation.Category.KAFKA,
+        description = "Defines the maximum number of batches a consumer keeps fetched ahead when prefetching is enabled. "
+        + "Fetching blocks once this many are waiting to be consumed.",
+        type = Integer.class
+    )
+    public static final String PREFETCH_MAX_BUFFERED_BATCHES = "spout.kafka.prefetch.max_buffered_batches";
+
+    /**
+     * Default value for {@link #PREFETCH_MAX_BUFFERED_BATCHES}.
+     */
+    public static final int DEFAULT_PREFETCH_MAX_BUFFERED_BATCHES = 1;
+
     private final Properties kafkaConsumerProperties = new Properties();
     private final String topic;
     private final String consumerId;
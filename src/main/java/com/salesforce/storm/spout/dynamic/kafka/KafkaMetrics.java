@@ -62,4 +62,32 @@ public final class KafkaMetrics {
         dynamicValues = { "topic", "partition" }
     )
     public static final MetricDefinition KAFKA_LAG = new ClassMetric(KafkaConsumer.class, "topic.{}.partition.{}.lag");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.COUNTER,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.KAFKA,
+        description = "Records filtered from their raw key and headers, before being deserialized.",
+        dynamicValues = { "topic", "partition" }
+    )
+    public static final MetricDefinition KAFKA_RAW_FILTERED = new ClassMetric(KafkaConsumer.class, "topic.{}.partition.{}.rawFiltered");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.TIMER,
+        unit = MetricDocumentation.Unit.TIME_MICROSECONDS,
+        category = MetricDocumentation.Category.KAFKA,
+        description = "Time taken to fetch each batch of records when prefetching.",
+        dynamicValues = { "consumerId" }
+    )
+    public static final MetricDefinition KAFKA_PREFETCH_FETCH_LATENCY = new ClassMetric(KafkaConsumer.class, "consumer.{}.fetchLatency");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.KAFKA,
+        description = "Batches fetched ahead and waiting to be consumed when prefetching.",
+        dynamicValues = { "consumerId" }
+    )
+    public static final MetricDefinition KAFKA_PREFETCH_BUFFERED_BATCHES =
+        new ClassMetric(KafkaConsumer.class, "consumer.{}.prefetchBufferedBatches");
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.salesforce.storm.spout.dynamic.kafka.deserializer.Deserializer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.storm.tuple.Values;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Deserializes batches of records on a fork join pool shared by every {@link Consumer} in the worker, so a single
+ * consumer is not limited to the one core its SpoutRunner thread runs on.
+ *
+ * Each batch is split by partition, and each partition into slices of consecutive records, with every slice deserialized
+ * by a task of its own.  Records are handed back in the same order they were fetched in, so offsets are still started
+ * and finished in order on each partition.  The Deserializer is called from many threads at once, so it must be thread safe.
+ */
+final class ParallelDeserializer {
+
+    /**
+     * Most records deserialized by a single task, so that a busy partition is still spread across the pool.
+     */
+    static final int SLICE_SIZE = 128;
+
+    private final Deserializer deserializer;
+    private final ForkJoinPool pool;
+
+    /**
+     * Deserializes records on the pool shared by every consumer in the worker.
+     * @param deserializer deserializer to deserialize records with.
+     */
+    ParallelDeserializer(final Deserializer deserializer) {
+        this(deserializer, SharedPoolHolder.POOL);
+    }
+
+    /**
+     * Deserializes records on the given pool.
+     * @param deserializer deserializer to deserialize records with.
+     * @param pool pool to deserialize records on.
+     */
+    ParallelDeserializer(final Deserializer deserializer, final ForkJoinPool pool) {
+        this.deserializer = deserializer;
+        this.pool = pool;
+    }
+
+    /**
+     * Start deserializing a batch of records in the background.
+     * @param records records to deserialize.
+     * @return the records, in the order they should be consumed in, along with their values once deserialized.
+     */
+    Batch submit(final ConsumerRecords<byte[], byte[]> records) {
+        final List<Slice> slices = new ArrayList<>();
+        for (final TopicPartition topicPartition : records.partitions()) {
+            final List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(topicPartition);
+            for (int from = 0; from < partitionRecords.size(); from += SLICE_SIZE) {
+                final Slice slice = new Slice(partitionRecords.subList(from, Math.min(from + SLICE_SIZE, partitionRecords.size())));
+                pool.execute(slice);
+                slices.add(slice);
+            }
+        }
+        return new Batch(slices);
+    }
+
+    /**
+     * Iterates over a batch of records being deserialized in the background.
+     */
+    final class Batch implements Iterator<ConsumerRecord<byte[], byte[]>> {
+        private final List<Slice> slices;
+        private int sliceIndex = 0;
+        private int recordIndex = 0;
+
+        /**
+         * Slice and index within it of the last record handed out by {@link #next()}.
+         */
+        private Slice lastSlice = null;
+        private int lastRecordIndex = 0;
+
+        private Batch(final List<Slice> slices) {
+            this.slices = slices;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (sliceIndex < slices.size() && recordIndex >= slices.get(sliceIndex).records.size()) {
+                sliceIndex++;
+                recordIndex = 0;
+            }
+            return sliceIndex < slices.size();
+        }
+
+        @Override
+        public ConsumerRecord<byte[], byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastSlice = slices.get(sliceIndex);
+            lastRecordIndex = recordIndex++;
+            return lastSlice.records.get(lastRecordIndex);
+        }
+
+        /**
+         * Get the values of the last record handed out by {@link #next()}, waiting for it to be deserialized if need be.
+         * If the deserializer threw while deserializing the record, the same exception is thrown from here.
+         * @return deserialized values of the record, or null if the deserializer returned null.
+         */
+        Values getValues() {
+            if (lastSlice == null) {
+                throw new IllegalStateException("next() has not been called");
+            }
+            lastSlice.join();
+
+            final Object result = lastSlice.results[lastRecordIndex];
+            if (result instanceof RuntimeException) {
+                throw (RuntimeException) result;
+            }
+            return (Values) result;
+        }
+    }
+
+    /**
+     * Deserializes a run of consecutive records from a single partition, in order.
+     */
+    private final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ConsumerRecord<byte[], byte[]>> records;
+
+        /**
+         * Deserialized values for each record, or the exception the deserializer threw for it.
+         */
+        private final Object[] results;
+
+        private Slice(final List<ConsumerRecord<byte[], byte[]>> records) {
+            this.records = records;
+            this.results = new Object[records.size()];
+        }
+
+        @Override
+        protected void compute() {
+            for (int index = 0; index < records.size(); index++) {
+                final ConsumerRecord<byte[], byte[]> record = records.get(index);
+                try {
+                    results[index] = deserializer.deserialize(
+                        record.topic(),
+                        record.partition(),
+                        record.offset(),
+                        record.key(),
+                        record.value()
+                    );
+                } catch (final RuntimeException exception) {
+                    // Hand this back to the consumer when it gets to the record, the rest of the slice is still good.
+                    results[index] = exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lazily creates the pool shared by every consumer in the worker.
+     */
+    private static final class SharedPoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            (pool) -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("dynamic-spout-deserializer-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            // Run slices in the order they were submitted in, consumers wait on the oldest ones first
+            true
+        );
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Polls a {@link KafkaConsumer} on a dedicated thread, keeping up to a bounded number of batches fetched ahead of the
+ * {@link Consumer} it belongs to, so the consumer does not have to wait out a fetch round trip for every batch.
+ *
+ * KafkaConsumer is not thread safe, so once started this thread is the only one that touches it.  Everything else the
+ * consumer needs done with it is handed over as a command and run between polls.  Commands that move the position of
+ * any partition first drop the batches fetched ahead and seek back to the first record of each, so nothing is skipped.
+ */
+final class PrefetchingFetcher {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PrefetchingFetcher.class);
+
+    /**
+     * How long a single poll waits for records, which also bounds how long a command waits to be run.
+     */
+    static final long POLL_TIMEOUT_MS = 100;
+
+    /**
+     * How long we wait on a full handoff queue before checking for commands again.
+     */
+    private static final long OFFER_TIMEOUT_MS = 10;
+
+    private final KafkaConsumer<byte[], byte[]> kafkaConsumer;
+    private final BlockingQueue<Fetched> handoff;
+    private final BlockingQueue<Command<?>> commands = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Fetched batch waiting for room in the handoff queue, only touched by our thread.
+     */
+    private Fetched pending = null;
+
+    /**
+     * Set after a fetch found a partition out of range, fetching stops until the consumer has moved its position.
+     * Only touched by our thread.
+     */
+    private boolean paused = false;
+
+    /**
+     * Fetches ahead on the given KafkaConsumer, which must not be touched by anything else once started.
+     * @param kafkaConsumer KafkaConsumer to fetch with.
+     * @param maxBufferedBatches most batches to keep fetched ahead of the consumer.
+     * @param consumerId id of the consumer we fetch for, used to name our thread.
+     */
+    PrefetchingFetcher(final KafkaConsumer<byte[], byte[]> kafkaConsumer, final int maxBufferedBatches, final String consumerId) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.handoff = new ArrayBlockingQueue<>(maxBufferedBatches);
+        this.thread = new Thread(this::run, "dynamic-spout-prefetch-" + consumerId);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start fetching ahead.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Take the next fetched batch, waiting up to the given time for one.
+     * @param timeoutMs most time to wait for a batch, in milliseconds.
+     * @return next fetched batch, or null if none was fetched in time.
+     */
+    Fetched take(final long timeoutMs) {
+        try {
+            return handoff.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of batches fetched ahead and waiting to be taken.
+     * @return number of batches fetched ahead and waiting to be taken.
+     */
+    int getBufferedBatches() {
+        return handoff.size();
+    }
+
+    /**
+     * Run a call against the KafkaConsumer on our thread, waiting for its result.
+     * @param repositions true if the call may move the position of any partition.
+     * @param call call to run.
+     * @param <T> type of result.
+     * @return result of the call.
+     */
+    <T> T execute(final boolean repositions, final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+        final Command<T> command = new Command<>(repositions, call);
+        commands.add(command);
+
+        while (true) {
+            try {
+                return command.result.get(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException timeoutException) {
+                if (!thread.isAlive()) {
+                    throw new IllegalStateException("Prefetching thread is no longer running");
+                }
+            } catch (final ExecutionException executionException) {
+                final Throwable cause = executionException.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(interruptedException);
+            }
+        }
+    }
+
+    /**
+     * Stop fetching and wait for our thread to finish, after which the KafkaConsumer may be used or closed by the caller.
+     */
+    void close() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Prefetching thread {} did not stop in time", thread.getName());
+        }
+    }
+
+    /**
+     * Main loop of our thread.
+     */
+    private void run() {
+        try {
+            while (running) {
+                // Run anything the consumer asked of us first
+                Command<?> command;
+                while ((command = commands.poll()) != null) {
+                    runCommand(command);
+                }
+
+                if (pending == null && !paused) {
+                    pending = fetch();
+                }
+
+                if (pending != null) {
+                    // Block while the consumer is behind, but not for so long that commands go waiting
+                    if (handoff.offer(pending, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        pending = null;
+                    }
+                } else if (paused || kafkaConsumer.assignment().isEmpty()) {
+                    // Nothing to fetch, so wait on the next command instead
+                    command = commands.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (command != null) {
+                        runCommand(command);
+                    }
+                }
+            }
+        } catch (final InterruptedException interruptedException) {
+            logger.info("Prefetching thread {} interrupted, stopping", thread.getName());
+        } catch (final Throwable throwable) {
+            logger.error("Prefetching thread {} failed: {}", thread.getName(), throwable.getMessage(), throwable);
+        } finally {
+            // Anyone still waiting on a command would otherwise only find out when they next check on us
+            Command<?> command;
+            while ((command = commands.poll()) != null) {
+                command.result.completeExceptionally(new IllegalStateException("Prefetching thread is no longer running"));
+            }
+        }
+    }
+
+    /**
+     * Fetch the next batch of records.
+     * @return fetched batch, or null if nothing was fetched.
+     */
+    private Fetched fetch() {
+        if (kafkaConsumer.assignment().isEmpty()) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final ConsumerRecords<byte[], byte[]> records = kafkaConsumer.poll(POLL_TIMEOUT_MS);
+            if (records.isEmpty()) {
+                return null;
+            }
+            return new Fetched(records, null, System.nanoTime() - start);
+        } catch (final OffsetOutOfRangeException outOfRangeException) {
+            // Polling again would just fail again, so wait for the consumer to handle it and move its position
+            paused = true;
+            return new Fetched(null, outOfRangeException, System.nanoTime() - start);
+        } catch (final RuntimeException exception) {
+            return new Fetched(null, exception, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Run a command, dropping the batches fetched ahead first if it may move the position of any partition.
+     * @param command command to run.
+     */
+    private void runCommand(final Command<?> command) {
+        if (command.repositions) {
+            rewind();
+        }
+        command.run(kafkaConsumer);
+    }
+
+    /**
+     * Drop every batch fetched ahead, seeking each partition back to the first record we dropped from it.
+     */
+    private void rewind() {
+        final List<Fetched> dropped = new ArrayList<>();
+        handoff.drainTo(dropped);
+        if (pending != null) {
+            dropped.add(pending);
+            pending = null;
+        }
+        paused = false;
+
+        // Batches are in the order they were fetched in, so the first record we see for a partition is its earliest
+        final Map<TopicPartition, Long> rewindOffsets = new HashMap<>();
+        for (final Fetched fetched : dropped) {
+            if (fetched.records == null) {
+                continue;
+            }
+            for (final TopicPartition topicPartition : fetched.records.partitions()) {
+                final List<ConsumerRecord<byte[], byte[]>> records = fetched.records.records(topicPartition);
+                if (!records.isEmpty()) {
+                    rewindOffsets.putIfAbsent(topicPartition, records.get(0).offset());
+                }
+            }
+        }
+
+        for (final Map.Entry<TopicPartition, Long> entry : rewindOffsets.entrySet()) {
+            if (kafkaConsumer.assignment().contains(entry.getKey())) {
+                logger.debug("Rewinding {} to {} after dropping records fetched ahead", entry.getKey(), entry.getValue());
+                kafkaConsumer.seek(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * A batch fetched ahead, or the exception fetching it threw.
+     */
+    static final class Fetched {
+        private final ConsumerRecords<byte[], byte[]> records;
+        private final RuntimeException exception;
+        private final long fetchLatencyNanos;
+
+        private Fetched(final ConsumerRecords<byte[], byte[]> records, final RuntimeException exception, final long fetchLatencyNanos) {
+            this.records = records;
+            this.exception = exception;
+            this.fetchLatencyNanos = fetchLatencyNanos;
+        }
+
+        /**
+         * Get the fetched records, throwing the exception fetching them threw if it failed.
+         * @return fetched records.
+         */
+        ConsumerRecords<byte[], byte[]> getRecords() {
+            if (exception != null) {
+                throw exception;
+            }
+            return records;
+        }
+
+        /**
+         * Get how long the fetch took.
+         * @return how long the fetch took, in nanoseconds.
+         */
+        long getFetchLatencyNanos() {
+            return fetchLatencyNanos;
+        }
+    }
+
+    /**
+     * A call to run against the KafkaConsumer on our thread.
+     * @param <T> type of result.
+     */
+    private static final class Command<T> {
+        private final boolean repositions;
+        private final Function<KafkaConsumer<byte[], byte[]>, T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Command(final boolean repositions, final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+            this.repositions = repositions;
+            this.call = call;
+        }
+
+        private void run(final KafkaConsumer<byte[], byte[]> kafkaConsumer) {
+            try {
+                result.complete(call.apply(kafkaConsumer));
+            } catch (final RuntimeException exception) {
+                result.completeExceptionally(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,799 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.google.common.base.Preconditions;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Multiplexes a single underlying {@link KafkaConsumer} fetch stream across many logical {@link Consumer} instances.
+ *
+ * Each logical consumer reads through a {@link Reader} of its own, which keeps its own assignment and position per
+ * partition.  A dedicated thread owns the KafkaConsumer and fetches on behalf of every reader, appending what comes back
+ * to windows of records kept per partition.  Readers take records straight out of those windows without ever waiting on
+ * a fetch in progress, so logical consumers reading overlapping offset ranges (for example the firehose and any number
+ * of sidelines which are caught up) share the same broker I/O and the very same fetched records.  A reader positioned
+ * outside of every window has our thread seek to and fetch its position, while every other reader keeps on reading.
+ *
+ * Instances are shared per worker and handed out by {@link SharedFetcherRegistry}.
+ */
+final class SharedFetcher {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SharedFetcher.class);
+
+    /**
+     * How long a single poll waits for records, which also bounds how long a command waits to be run.
+     */
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    /**
+     * Position of a reader that has not been told where to start on a partition yet.
+     */
+    private static final long UNKNOWN_POSITION = -1L;
+
+    /**
+     * Key this fetcher is registered under within the {@link SharedFetcherRegistry}.
+     */
+    private final String key;
+
+    /**
+     * The underlying KafkaConsumer that does all of the actual fetching from the brokers, only touched by our thread.
+     */
+    private final KafkaConsumer<byte[], byte[]> kafkaConsumer;
+
+    /**
+     * Maximum number of records to keep buffered for any single partition.
+     */
+    private final int maxBufferedRecords;
+
+    /**
+     * Windows of fetched records by partition, written by our thread and read by every reader.
+     */
+    private final Map<TopicPartition, Windows> windowsByPartition = new ConcurrentHashMap<>();
+
+    /**
+     * Every reader currently registered.
+     */
+    private final Set<Reader> readers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Calls waiting to be run against the KafkaConsumer on our thread.
+     */
+    private final BlockingQueue<Command<?>> commands = new LinkedBlockingQueue<>();
+
+    /**
+     * Where the KafkaConsumer fetches from next for each partition, only touched by our thread.
+     */
+    private final Map<TopicPartition, Long> fetchPositions = new HashMap<>();
+
+    /**
+     * Partitions whose last fetch carried on from where the one before it left off, only touched by our thread.
+     * When readers of a partition want different positions we alternate between carrying on and seeking,
+     * so a reader at the head of a partition never starves one that is catching up.
+     */
+    private final Set<TopicPartition> continuedLastFetch = new HashSet<>();
+
+    /**
+     * Readers waiting on new records wait on this monitor, which is only ever held for an instant.
+     */
+    private final Object fetchedMonitor = new Object();
+
+    /**
+     * Incremented every time our thread publishes newly fetched records.
+     */
+    private volatile long fetchedVersion = 0;
+
+    /**
+     * Set whenever a reader's assignment changes, so our thread updates what the KafkaConsumer is assigned.
+     */
+    private volatile boolean assignmentChanged = false;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Number of logical consumers using this fetcher, guarded by the {@link SharedFetcherRegistry}.
+     */
+    private int referenceCount = 0;
+
+    /**
+     * Constructor.
+     * @param key key this fetcher is registered under.
+     * @param kafkaConsumer underlying KafkaConsumer to fetch with, which must not be touched by anything else once started.
+     * @param maxBufferedRecords maximum number of records to keep buffered per partition.
+     */
+    SharedFetcher(final String key, final KafkaConsumer<byte[], byte[]> kafkaConsumer, final int maxBufferedRecords) {
+        Preconditions.checkArgument(maxBufferedRecords > 0, "Max buffered records must be greater than zero");
+
+        this.key = key;
+        this.kafkaConsumer = kafkaConsumer;
+        this.maxBufferedRecords = maxBufferedRecords;
+        this.thread = new Thread(this::run, "dynamic-spout-shared-fetch-" + key);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start fetching.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Register a new logical consumer, which starts out assigned no partitions.
+     * @return reader for the logical consumer to read through.
+     */
+    Reader register() {
+        final Reader reader = new Reader();
+        readers.add(reader);
+        return reader;
+    }
+
+    /**
+     * Unregister a logical consumer, it's reader may no longer be used.
+     * @param reader reader of the logical consumer.
+     */
+    void unregister(final Reader reader) {
+        readers.remove(reader);
+        assignmentChanged = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Run a call against the KafkaConsumer on our thread, waiting for its result.
+     * Calls must not change the assignment or position of any partition, they're for looking up metadata.
+     * @param call call to run.
+     * @param <T> type of result.
+     * @return result of the call.
+     */
+    <T> T execute(final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+        final Command<T> command = new Command<>(call);
+        commands.add(command);
+        LockSupport.unpark(thread);
+
+        while (true) {
+            try {
+                return command.result.get(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException timeoutException) {
+                if (!thread.isAlive()) {
+                    throw new IllegalStateException("Shared fetching thread is no longer running");
+                }
+            } catch (final ExecutionException executionException) {
+                final Throwable cause = executionException.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(interruptedException);
+            }
+        }
+    }
+
+    /**
+     * Get the key this fetcher was registered under.
+     * @return key this fetcher was registered under.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Increment the number of logical consumers using this fetcher.
+     */
+    void retain() {
+        referenceCount++;
+    }
+
+    /**
+     * Decrement the number of logical consumers using this fetcher.
+     * @return number of logical consumers still using this fetcher.
+     */
+    int release() {
+        return --referenceCount;
+    }
+
+    /**
+     * Stop fetching and wait for our thread to close the KafkaConsumer, dropping anything buffered.
+     */
+    void close() {
+        logger.info("Closing shared fetcher {}", key);
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Shared fetching thread {} did not stop in time", thread.getName());
+        }
+        windowsByPartition.clear();
+    }
+
+    /**
+     * Main loop of our thread.
+     */
+    private void run() {
+        try {
+            while (running) {
+                // Run anything the logical consumers asked of us first
+                Command<?> command;
+                while ((command = commands.poll()) != null) {
+                    command.run(kafkaConsumer);
+                }
+
+                if (assignmentChanged) {
+                    updateAssignment();
+                }
+
+                final Map<TopicPartition, Long> targets = findFetchTargets();
+                if (targets.isEmpty()) {
+                    // Every reader is reading from what we've already fetched, wait until one of them runs out
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(POLL_TIMEOUT_MS));
+                    continue;
+                }
+                fetch(targets);
+            }
+        } catch (final Throwable throwable) {
+            logger.error("Shared fetching thread {} failed: {}", thread.getName(), throwable.getMessage(), throwable);
+        } finally {
+            // Anyone still waiting on a command would otherwise only find out when they next check on us
+            Command<?> command;
+            while ((command = commands.poll()) != null) {
+                command.result.completeExceptionally(new IllegalStateException("Shared fetching thread is no longer running"));
+            }
+            kafkaConsumer.close();
+        }
+    }
+
+    /**
+     * Assign the KafkaConsumer every partition any reader is assigned, and nothing else.
+     */
+    private void updateAssignment() {
+        // Cleared first, so a change made while we're updating is picked up on our next pass.
+        assignmentChanged = false;
+
+        final Set<TopicPartition> assigned = new HashSet<>();
+        for (final Reader reader : readers) {
+            assigned.addAll(reader.assignment());
+        }
+        if (assigned.equals(kafkaConsumer.assignment())) {
+            return;
+        }
+
+        logger.info("Shared fetcher {} now fetching {}", key, assigned);
+        kafkaConsumer.assign(assigned);
+
+        // Nothing gets fetched for a partition until a reader runs out of records for it.
+        kafkaConsumer.pause(assigned);
+        windowsByPartition.keySet().retainAll(assigned);
+        fetchPositions.keySet().retainAll(assigned);
+        continuedLastFetch.retainAll(assigned);
+        for (final TopicPartition topicPartition : assigned) {
+            windowsByPartition.putIfAbsent(topicPartition, new Windows());
+        }
+    }
+
+    /**
+     * Find the position to fetch from for every partition where a reader has run out of records.
+     * @return position to fetch from by partition.
+     */
+    private Map<TopicPartition, Long> findFetchTargets() {
+        final Map<TopicPartition, Long> targets = new HashMap<>();
+        final Set<TopicPartition> stillFailed = new HashSet<>();
+
+        for (final Reader reader : readers) {
+            for (final Map.Entry<TopicPartition, AtomicLong> entry : reader.positions.entrySet()) {
+                final TopicPartition topicPartition = entry.getKey();
+                final long position = entry.getValue().get();
+                final Windows windows = windowsByPartition.get(topicPartition);
+                if (position == UNKNOWN_POSITION || windows == null) {
+                    continue;
+                }
+                if (windows.failedOffset == position) {
+                    // The reader has yet to move on from the offset we failed to fetch
+                    stillFailed.add(topicPartition);
+                    continue;
+                }
+                if (windows.find(position) != null) {
+                    continue;
+                }
+
+                final Long target = targets.get(topicPartition);
+                final boolean preferSeeking = continuedLastFetch.contains(topicPartition);
+                if (target == null
+                    || (isContinuing(topicPartition, target) == preferSeeking
+                    && isContinuing(topicPartition, position) != preferSeeking)) {
+                    targets.put(topicPartition, position);
+                }
+            }
+        }
+
+        // Once no reader wants an offset we failed to fetch, forget about it
+        for (final Map.Entry<TopicPartition, Windows> entry : windowsByPartition.entrySet()) {
+            if (!stillFailed.contains(entry.getKey())) {
+                entry.getValue().failedOffset = UNKNOWN_POSITION;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Determine if fetching a partition from a position carries on from where its last fetch left off, needing no seek.
+     * @param topicPartition partition to fetch.
+     * @param position position to fetch from.
+     * @return true if fetching needs no seek.
+     */
+    private boolean isContinuing(final TopicPartition topicPartition, final long position) {
+        final Long fetchPosition = fetchPositions.get(topicPartition);
+        return fetchPosition != null && fetchPosition == position;
+    }
+
+    /**
+     * Fetch the given partitions, publishing what comes back to our windows.
+     * @param targets position to fetch from by partition.
+     */
+    private void fetch(final Map<TopicPartition, Long> targets) {
+        // Only fetch the partitions readers ran out of records for.
+        kafkaConsumer.pause(kafkaConsumer.assignment());
+        for (final Map.Entry<TopicPartition, Long> entry : targets.entrySet()) {
+            if (!isContinuing(entry.getKey(), entry.getValue())) {
+                kafkaConsumer.seek(entry.getKey(), entry.getValue());
+            }
+        }
+        kafkaConsumer.resume(targets.keySet());
+
+        final ConsumerRecords<byte[], byte[]> records;
+        try {
+            records = kafkaConsumer.poll(POLL_TIMEOUT_MS);
+        } catch (final OffsetOutOfRangeException outOfRangeException) {
+            // Hand the failure to the readers positioned there, they'll move themselves somewhere valid
+            for (final Map.Entry<TopicPartition, Long> entry : outOfRangeException.offsetOutOfRangePartitions().entrySet()) {
+                final Windows windows = windowsByPartition.get(entry.getKey());
+                if (windows != null) {
+                    windows.failedOffset = entry.getValue();
+                }
+                fetchPositions.remove(entry.getKey());
+            }
+            publish();
+            return;
+        } catch (final RuntimeException exception) {
+            logger.error("Shared fetcher {} failed to fetch {}: {}", key, targets, exception.getMessage(), exception);
+            fetchPositions.keySet().removeAll(targets.keySet());
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(POLL_TIMEOUT_MS));
+            return;
+        }
+
+        boolean fetchedAny = false;
+        for (final Map.Entry<TopicPartition, Long> entry : targets.entrySet()) {
+            final TopicPartition topicPartition = entry.getKey();
+            final long startOffset = entry.getValue();
+            if (isContinuing(topicPartition, startOffset)) {
+                continuedLastFetch.add(topicPartition);
+            } else {
+                continuedLastFetch.remove(topicPartition);
+            }
+
+            // Position accounts for gaps such as compacted offsets or transaction markers.
+            final long endOffset = kafkaConsumer.position(topicPartition);
+            fetchPositions.put(topicPartition, endOffset);
+            if (endOffset <= startOffset) {
+                continue;
+            }
+
+            final Windows windows = windowsByPartition.get(topicPartition);
+            windows.add(new Segment(startOffset, endOffset, records.records(topicPartition)));
+            evict(topicPartition, windows);
+            fetchedAny = true;
+        }
+
+        if (fetchedAny) {
+            publish();
+        }
+    }
+
+    /**
+     * Keep the number of records buffered for a partition within bounds.  Readers only ever move forward, so we first
+     * drop what every reader has already moved past, and then the oldest records that no reader is positioned within.
+     * @param topicPartition partition to evict records of.
+     * @param windows windows of the partition.
+     */
+    private void evict(final TopicPartition topicPartition, final Windows windows) {
+        final List<Segment> segments = new ArrayList<>(Arrays.asList(windows.segments));
+        int bufferedRecords = 0;
+        for (final Segment segment : segments) {
+            bufferedRecords += segment.records.size();
+        }
+        if (bufferedRecords <= maxBufferedRecords) {
+            return;
+        }
+
+        final List<Long> positions = new ArrayList<>();
+        for (final Reader reader : readers) {
+            final AtomicLong position = reader.positions.get(topicPartition);
+            if (position != null && position.get() != UNKNOWN_POSITION) {
+                positions.add(position.get());
+            }
+        }
+        final long minimumPosition = positions.isEmpty() ? Long.MAX_VALUE : Collections.min(positions);
+
+        // Segments are ordered by offset, so this is oldest first.
+        for (int pass = 0; pass < 2 && bufferedRecords > maxBufferedRecords; pass++) {
+            for (int index = 0; index < segments.size() && bufferedRecords > maxBufferedRecords; index++) {
+                final Segment segment = segments.get(index);
+                final boolean isDroppable = pass == 0
+                    ? segment.endOffset <= minimumPosition
+                    : positions.stream().noneMatch(segment::contains);
+                if (isDroppable) {
+                    segments.remove(index--);
+                    bufferedRecords -= segment.records.size();
+                }
+            }
+        }
+        windows.segments = segments.toArray(new Segment[0]);
+    }
+
+    /**
+     * Let every reader waiting on new records know to look again.
+     */
+    private void publish() {
+        synchronized (fetchedMonitor) {
+            fetchedVersion++;
+            fetchedMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for our thread to publish newly fetched records.
+     * @param version value of {@link #fetchedVersion} the caller last saw.
+     * @param deadlineNanos value of {@link System#nanoTime()} to stop waiting at.
+     * @return true if records were published, false if we ran out of time.
+     */
+    private boolean awaitFetched(final long version, final long deadlineNanos) {
+        synchronized (fetchedMonitor) {
+            while (fetchedVersion == version) {
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(fetchedMonitor, remainingNanos);
+                } catch (final InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A single logical consumer's view of the fetcher, with its own assignment and positions.
+     * Only the logical consumer it belongs to may use it.
+     */
+    final class Reader {
+
+        /**
+         * Position by partition, replaced as a whole when our assignment changes so our fetch thread always sees
+         * a consistent view of it.
+         */
+        private volatile Map<TopicPartition, AtomicLong> positions = Collections.emptyMap();
+
+        /**
+         * Set when a read moved us along any partition.
+         */
+        private boolean moved = false;
+
+        /**
+         * Assign the given partitions, keeping our position on any we were already assigned.
+         * @param topicPartitions partitions to read.
+         */
+        void assign(final Collection<TopicPartition> topicPartitions) {
+            final Map<TopicPartition, AtomicLong> newPositions = new HashMap<>();
+            for (final TopicPartition topicPartition : topicPartitions) {
+                final AtomicLong position = positions.get(topicPartition);
+                newPositions.put(topicPartition, position != null ? position : new AtomicLong(UNKNOWN_POSITION));
+            }
+            positions = Collections.unmodifiableMap(newPositions);
+            assignmentChanged = true;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Get the partitions we're assigned.
+         * @return partitions we're assigned.
+         */
+        Set<TopicPartition> assignment() {
+            return positions.keySet();
+        }
+
+        /**
+         * Move to the given position within a partition.
+         * @param topicPartition partition to move within.
+         * @param offset offset of the next record to read.
+         */
+        void seek(final TopicPartition topicPartition, final long offset) {
+            getPosition(topicPartition).set(offset);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Get our position within a partition.
+         * @param topicPartition partition to get our position within.
+         * @return offset of the next record to read.
+         */
+        long position(final TopicPartition topicPartition) {
+            return getPosition(topicPartition).get();
+        }
+
+        /**
+         * Read the records at our position within each partition, moving past them.
+         * When nothing has been fetched at any of our positions, wait up to the given time for it to be.
+         * @param timeoutMs most time to wait for records, in milliseconds.
+         * @return records read.
+         * @throws OffsetOutOfRangeException if fetching from our position within a partition failed.
+         */
+        ConsumerRecords<byte[], byte[]> poll(final long timeoutMs) {
+            final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (true) {
+                // Read the version first, so anything published after we start reading wakes us up.
+                final long version = fetchedVersion;
+                final ConsumerRecords<byte[], byte[]> records = read();
+                if (!records.isEmpty()) {
+                    return records;
+                }
+                if (moved) {
+                    // We only moved over a gap, try again from where we landed.
+                    continue;
+                }
+
+                // Let our fetch thread know we're waiting on it.
+                LockSupport.unpark(thread);
+                if (!awaitFetched(version, deadlineNanos)) {
+                    return records;
+                }
+            }
+        }
+
+        /**
+         * Read whatever has been fetched at our position within each partition, without waiting.
+         * @return records read.
+         */
+        private ConsumerRecords<byte[], byte[]> read() {
+            moved = false;
+            Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> results = null;
+            for (final Map.Entry<TopicPartition, AtomicLong> entry : positions.entrySet()) {
+                final TopicPartition topicPartition = entry.getKey();
+                final long position = entry.getValue().get();
+                final Windows windows = windowsByPartition.get(topicPartition);
+                if (position == UNKNOWN_POSITION || windows == null) {
+                    continue;
+                }
+                if (windows.failedOffset == position) {
+                    throw new OffsetOutOfRangeException(Collections.singletonMap(topicPartition, position));
+                }
+
+                final Segment segment = windows.find(position);
+                if (segment == null) {
+                    continue;
+                }
+                entry.getValue().set(segment.endOffset);
+                moved = true;
+
+                // Every reader shares the same fetched records.
+                final List<ConsumerRecord<byte[], byte[]>> records = segment.getRecordsFrom(position);
+                if (!records.isEmpty()) {
+                    if (results == null) {
+                        results = new HashMap<>();
+                    }
+                    results.put(topicPartition, records);
+                }
+            }
+            if (results == null) {
+                return ConsumerRecords.empty();
+            }
+            return new ConsumerRecords<>(results);
+        }
+
+        /**
+         * Get our position within a partition, validating that we're assigned it.
+         * @param topicPartition partition to get our position within.
+         * @return our position within the partition.
+         */
+        private AtomicLong getPosition(final TopicPartition topicPartition) {
+            final AtomicLong position = positions.get(topicPartition);
+            if (position == null) {
+                throw new IllegalStateException("No current assignment for partition " + topicPartition);
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Windows of records fetched for a single partition, made up of segments that are each the result of a single fetch.
+     * Only our thread changes these, and it does so by replacing the segments as a whole, so readers never need a lock.
+     */
+    private static final class Windows {
+
+        /**
+         * Fetched segments, ordered by start offset.  Segments may overlap, but never one within another.
+         */
+        private volatile Segment[] segments = new Segment[0];
+
+        /**
+         * Offset we last failed to fetch because it is out of range, or {@link #UNKNOWN_POSITION}.
+         */
+        private volatile long failedOffset = UNKNOWN_POSITION;
+
+        /**
+         * Find the segment holding the given position, if one exists.
+         * @param position position to look for.
+         * @return segment holding the position, or null.
+         */
+        Segment find(final long position) {
+            final Segment[] segments = this.segments;
+
+            // Binary search for the last segment starting at or before the position.
+            int low = 0;
+            int high = segments.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (segments[middle].startOffset <= position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (low == 0 || !segments[low - 1].contains(position)) {
+                return null;
+            }
+            return segments[low - 1];
+        }
+
+        /**
+         * Add a newly fetched segment, dropping any segments it covers.
+         * @param segment segment to add.
+         */
+        void add(final Segment segment) {
+            final List<Segment> newSegments = new ArrayList<>(segments.length + 1);
+            for (final Segment existing : segments) {
+                final boolean isCovered = existing.startOffset >= segment.startOffset && existing.endOffset <= segment.endOffset;
+                if (!isCovered) {
+                    newSegments.add(existing);
+                }
+            }
+            newSegments.add(segment);
+            newSegments.sort((first, second) -> Long.compare(first.startOffset, second.startOffset));
+            segments = newSegments.toArray(new Segment[0]);
+        }
+    }
+
+    /**
+     * A contiguous run of records fetched for a single partition, never changed once fetched.
+     */
+    private static final class Segment {
+
+        /**
+         * First offset covered by this segment.
+         */
+        private final long startOffset;
+
+        /**
+         * Offset directly after the last offset covered by this segment, where the next fetch should begin.
+         */
+        private final long endOffset;
+
+        /**
+         * Records held in this segment, ordered by offset.
+         */
+        private final List<ConsumerRecord<byte[], byte[]>> records;
+
+        private Segment(final long startOffset, final long endOffset, final List<ConsumerRecord<byte[], byte[]>> records) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.records = Collections.unmodifiableList(records);
+        }
+
+        private boolean contains(final long offset) {
+            return offset >= startOffset && offset < endOffset;
+        }
+
+        /**
+         * Get every record in this segment at or after the given offset, as a view rather than a copy.
+         * @param offset offset to start from.
+         * @return records at or after the given offset.
+         */
+        private List<ConsumerRecord<byte[], byte[]>> getRecordsFrom(final long offset) {
+            // Binary search for the first record at or after the offset.
+            int low = 0;
+            int high = records.size();
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (records.get(middle).offset() < offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return records.subList(low, records.size());
+        }
+    }
+
+    /**
+     * A call to run against the KafkaConsumer on our thread.
+     * @param <T> type of result.
+     */
+    private static final class Command<T> {
+        private final Function<KafkaConsumer<byte[], byte[]>, T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Command(final Function<KafkaConsumer<byte[], byte[]>, T> call) {
+            this.call = call;
+        }
+
+        private void run(final KafkaConsumer<byte[], byte[]> kafkaConsumer) {
+            try {
+                result.complete(call.apply(kafkaConsumer));
+            } catch (final RuntimeException exception) {
+                result.completeExceptionally(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out {@link SharedFetcher} instances so that every {@link Consumer} within a worker consuming the same topic
+ * from the same brokers, with the same buffering limit, shares a single underlying KafkaConsumer.
+ *
+ * Fetchers are reference counted, the last logical consumer to release a fetcher closes it.
+ */
+final class SharedFetcherRegistry {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SharedFetcherRegistry.class);
+
+    /**
+     * Fetchers currently in use, keyed by brokers, topic and maximum number of buffered records.
+     */
+    private static final Map<String, SharedFetcher> fetchers = new HashMap<>();
+
+    /**
+     * Static utility class, no instances.
+     */
+    private SharedFetcherRegistry() {
+    }
+
+    /**
+     * Get the fetcher for the given brokers and topic, creating it if no other consumer is using one.
+     * Each fetcher fetches whichever partitions the logical consumers reading through it are assigned.
+     * @param consumerConfig configuration of the logical consumer asking for a fetcher.
+     * @param maxBufferedRecords maximum number of records to keep buffered per partition.
+     * @return fetcher shared by all logical consumers of the same topic.
+     */
+    static synchronized SharedFetcher acquire(final KafkaConsumerConfig consumerConfig, final int maxBufferedRecords) {
+        final String key = consumerConfig.getKafkaConsumerProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG)
+            + "/" + consumerConfig.getTopic()
+            + "/" + maxBufferedRecords;
+
+        SharedFetcher sharedFetcher = fetchers.get(key);
+        if (sharedFetcher == null) {
+            logger.info("Creating shared fetcher {}", key);
+            sharedFetcher = new SharedFetcher(
+                key,
+                new KafkaConsumer<>(consumerConfig.getKafkaConsumerProperties()),
+                maxBufferedRecords
+            );
+            sharedFetcher.start();
+            fetchers.put(key, sharedFetcher);
+        }
+        sharedFetcher.retain();
+
+        return sharedFetcher;
+    }
+
+    /**
+     * Release a fetcher previously acquired, closing it if no other consumer is using it.
+     * @param sharedFetcher fetcher to release.
+     */
+    static synchronized void release(final SharedFetcher sharedFetcher) {
+        if (sharedFetcher.release() > 0) {
+            return;
+        }
+        fetchers.remove(sharedFetcher.getKey());
+        sharedFetcher.close();
+    }
+
+    /**
+     * Get the number of fetchers currently in use.
+     * @return number of fetchers currently in use.
+     */
+    static synchronized int size() {
+        return fetchers.size();
+    }
+}
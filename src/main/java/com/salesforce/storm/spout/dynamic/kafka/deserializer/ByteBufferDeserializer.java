@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka.deserializer;
+
+import org.apache.storm.tuple.Values;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Deserializer} that works on ByteBuffers rather than byte arrays.
+ *
+ * The buffers wrap the bytes handed to us by Kafka without copying them, so implementations can decode just the
+ * slices they care about.  Implementations may also return {@link com.salesforce.storm.spout.dynamic.consumer.LazyValues}
+ * to defer decoding until a field is read, which skips decoding entirely for messages that get filtered.
+ */
+public interface ByteBufferDeserializer extends Deserializer {
+
+    /**
+     * This is the method your implementation would need define.
+     * A null return value from here will result in this message being ignored.
+     *
+     * Values are held on to for as long as the message is in flight, so they must not be reused for other messages,
+     * and implementations must not hold on to the buffers beyond the Values they return.
+     *
+     * @param topic - represents what topic this message came from.
+     * @param partition - represents what partition this message came from.
+     * @param offset - represents what offset this message came from.
+     * @param key - buffer holding the key, or null if the message has no key.
+     * @param value - buffer holding the value, or null if the message has no value.
+     * @return Values that should be emitted by the spout to the topology.
+     */
+    Values deserialize(final String topic, final int partition, final long offset, final ByteBuffer key, final ByteBuffer value);
+
+    /**
+     * Wraps the byte arrays as ByteBuffers, without copying them.
+     *
+     * @param topic - represents what topic this message came from.
+     * @param partition - represents what partition this message came from.
+     * @param offset - represents what offset this message came from.
+     * @param key - byte array representing the key.
+     * @param value - byte array representing the value.
+     * @return Values that should be emitted by the spout to the topology.
+     */
+    @Override
+    default Values deserialize(final String topic, final int partition, final long offset, final byte[] key, final byte[] value) {
+        return deserialize(
+            topic,
+            partition,
+            offset,
+            key == null ? null : ByteBuffer.wrap(key),
+            value == null ? null : ByteBuffer.wrap(value)
+        );
+    }
+}
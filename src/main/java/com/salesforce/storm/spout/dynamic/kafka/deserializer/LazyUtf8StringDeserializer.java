@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka.deserializer;
+
+import com.salesforce.storm.spout.dynamic.consumer.LazyValues;
+import org.apache.storm.tuple.Values;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deserializes the key and message fields as UTF8 Strings, just like {@link Utf8StringDeserializer}, but only
+ * decodes each field the first time it is read.
+ *
+ * Messages that get filtered without their fields being read are never decoded, and a filter that only looks at the
+ * key never decodes the value.
+ */
+public class LazyUtf8StringDeserializer implements ByteBufferDeserializer {
+
+    @Override
+    public Values deserialize(String topic, int partition, long offset, ByteBuffer key, ByteBuffer value) {
+        // If the value is null we wholesale abandon and don't return anything.
+        if (value == null) {
+            return null;
+        }
+
+        // Kafka messages can have null keys.
+        return new Utf8Values(key, value);
+    }
+
+    /**
+     * Decode a buffer as a UTF8 String.
+     * @param buffer buffer to decode.
+     * @return decoded String.
+     */
+    static String decode(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+        }
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    /**
+     * Values holding UTF8 encoded buffers, decoded on first read.
+     */
+    private static class Utf8Values extends LazyValues {
+        private Utf8Values(final ByteBuffer key, final ByteBuffer value) {
+            super(key, value);
+        }
+
+        @Override
+        protected Object decode(final int index, final Object rawValue) {
+            return rawValue == null ? null : LazyUtf8StringDeserializer.decode((ByteBuffer) rawValue);
+        }
+    }
+}
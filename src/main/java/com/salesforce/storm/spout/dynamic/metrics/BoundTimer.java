@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+/**
+ * A timer resolved once from a {@link MetricDefinition} and its parameters by {@link MetricsRecorder#bindTimer},
+ * so that timing something does not build its key again.
+ *
+ * Rather than keeping start times within the timer, {@link #start()} hands back the start time for the caller to hold on to and
+ * pass to {@link #stop(long)}.  Timing a section costs two calls to {@link System#nanoTime()}, shares no state between threads
+ * and allocates nothing, so the same timer may be used to time overlapping sections from any number of threads.
+ */
+@FunctionalInterface
+public interface BoundTimer {
+
+    /**
+     * Start timing.
+     * @return start time to pass to {@link #stop(long)}.
+     */
+    default long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stop timing and record the elapsed time.
+     * @param startNanos start time returned by {@link #start()}.
+     * @return time elapsed, in nanoseconds.
+     */
+    default long stop(final long startNanos) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        recordNanos(elapsedNanos);
+        return elapsedNanos;
+    }
+
+    /**
+     * Record an elapsed time.
+     * @param elapsedNanos time elapsed, in nanoseconds.
+     */
+    void recordNanos(final long elapsedNanos);
+}
@@ -33,6 +33,7 @@ import org.apache.storm.task.TopologyContext;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * {@link MetricsRecorder} implementation for Storm 1.2+ based off DropwizardMetrics.
@@ -50,6 +51,7 @@ public class DropwizardRecorder implements MetricsRecorder {
     private final Map<MetricDefinition, Timer> timers = new ConcurrentHashMap<>();
     private final Map<MetricDefinition, Counter> counters = new ConcurrentHashMap<>();
     private final Map<MetricDefinition, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> latencyGauges = new ConcurrentHashMap<>();
 
     @Override
     public void open(final Map<String, Object> spoutConfig, final TopologyContext topologyContext) {
@@ -98,6 +100,30 @@ public class DropwizardRecorder implements MetricsRecorder {
         );
     }
 
+    @Override
+    public BoundCounter bindCounter(final MetricDefinition metric, final Object... metricParameters) {
+        // Registering hands back the counter already registered under the same key, if there is one
+        final Counter counter = getTopologyContext().registerCounter(keyBuilder.build(metric, metricParameters));
+        return counter::inc;
+    }
+
+    @Override
+    public BoundGauge bindGauge(final MetricDefinition metric, final Object... metricParameters) {
+        final Histogram histogram = getTopologyContext().registerHistogram(keyBuilder.build(metric, metricParameters));
+        return (value) -> {
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException("Supplied value must be an instance of Number.");
+            }
+            histogram.update(((Number) value).longValue());
+        };
+    }
+
+    @Override
+    public BoundTimer bindTimer(final MetricDefinition metric, final Object... metricParameters) {
+        final Timer timer = getTopologyContext().registerTimer(keyBuilder.build(metric, metricParameters));
+        return (elapsedNanos) -> timer.update(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
     @Override
     public void startTimer(MetricDefinition metric, Object... metricParameters) {
         timerManager.start(keyBuilder.build(metric, metricParameters));
@@ -119,6 +145,37 @@ public class DropwizardRecorder implements MetricsRecorder {
         timers.get(metric).update(elapsedTimeMs, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Record the latencies collected in a histogram.
+     *
+     * Each {@link LatencyPercentile} is published through a gauge holding the value from the most recent histogram, rather than
+     * through a {@link Histogram}, which would compute percentiles of our percentiles.
+     *
+     * @param metric metric definition.
+     * @param histogram histogram of latencies to record.
+     * @param metricParameters when a {@link MetricDefinition} supports interpolation on it's key, for example "foo.{}.bar" the {}
+     */
+    @Override
+    public void recordLatencies(MetricDefinition metric, org.HdrHistogram.Histogram histogram, Object... metricParameters) {
+        final String key = keyBuilder.build(metric, metricParameters);
+        for (final LatencyPercentile percentile : LatencyPercentile.values()) {
+            getLatencyGauge(key + percentile.getSuffix()).set(percentile.getValue(histogram));
+        }
+    }
+
+    /**
+     * Get the value backing a latency gauge, registering the gauge the first time its key is seen.
+     * @param key key of the gauge.
+     * @return value backing the gauge.
+     */
+    private AtomicLong getLatencyGauge(final String key) {
+        return latencyGauges.computeIfAbsent(key, (newKey) -> {
+            final AtomicLong value = new AtomicLong();
+            getTopologyContext().registerGauge(newKey, value::get);
+            return value;
+        });
+    }
+
     private TopologyContext getTopologyContext() {
         if (topologyContext == null) {
             throw new IllegalStateException(
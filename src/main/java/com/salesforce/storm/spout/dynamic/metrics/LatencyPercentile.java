@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The values of a latency histogram published by {@link MetricsRecorder#recordLatencies}, along with the suffix
+ * appended to the metric key to publish each of them under.
+ */
+public enum LatencyPercentile {
+    P50(".p50", 50.0),
+    P99(".p99", 99.0),
+    P999(".p999", 99.9),
+    MAX(".max", 100.0);
+
+    private final String suffix;
+    private final double percentile;
+
+    LatencyPercentile(final String suffix, final double percentile) {
+        this.suffix = suffix;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Get the suffix appended to the metric key.
+     * @return suffix appended to the metric key.
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Get this percentile's value from a histogram.
+     * @param histogram histogram to read from.
+     * @return value at this percentile, or 0 if the histogram is empty.
+     */
+    public long getValue(final Histogram histogram) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+}
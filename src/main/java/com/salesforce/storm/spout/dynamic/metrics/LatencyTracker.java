@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latencies into an HDR histogram, in microseconds.
+ *
+ * Recording is wait free, so latencies can be recorded from the thread doing the work while another thread
+ * periodically collects everything recorded since it last looked with {@link #getIntervalHistogram()}.
+ */
+public class LatencyTracker {
+
+    /**
+     * How many significant decimal digits values are kept to.
+     */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * Records latencies, automatically resizing to fit whatever it is handed.
+     */
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+    /**
+     * Histogram handed back by the last interval, recycled for the next one.
+     */
+    private Histogram intervalHistogram = null;
+
+    /**
+     * Record a latency.
+     * @param elapsedNanos how long elapsed, in nanoseconds.
+     */
+    public void recordNanos(final long elapsedNanos) {
+        // The clock can't go backwards, but guard against it since a histogram rejects negative values.
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(elapsedNanos, 0L)));
+    }
+
+    /**
+     * Get every latency recorded since the last time this was called.
+     *
+     * The returned histogram is recycled by the next call, so it should not be held on to.
+     *
+     * @return histogram of latencies, in microseconds, recorded since the last call.
+     */
+    public synchronized Histogram getIntervalHistogram() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        return intervalHistogram;
+    }
+}
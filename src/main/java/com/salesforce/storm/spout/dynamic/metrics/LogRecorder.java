@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Metrics recorder that dumps metrics to logs.
@@ -55,7 +56,38 @@ public class LogRecorder implements MetricsRecorder {
 
     @Override
     public void countBy(final MetricDefinition metric, final long incrementBy, final Object... metricParameters) {
+        countByKey(generateKey(metric, metricParameters), incrementBy);
+    }
+
+    @Override
+    public void assignValue(final MetricDefinition metric, final Object value, final Object... metricParameters) {
+        assignValueByKey(generateKey(metric, metricParameters), value);
+    }
+
+    @Override
+    public BoundCounter bindCounter(final MetricDefinition metric, final Object... metricParameters) {
+        final String key = generateKey(metric, metricParameters);
+        return (incrementBy) -> countByKey(key, incrementBy);
+    }
+
+    @Override
+    public BoundGauge bindGauge(final MetricDefinition metric, final Object... metricParameters) {
+        final String key = generateKey(metric, metricParameters);
+        return (value) -> assignValueByKey(key, value);
+    }
+
+    @Override
+    public BoundTimer bindTimer(final MetricDefinition metric, final Object... metricParameters) {
         final String key = generateKey(metric, metricParameters);
+        return (elapsedNanos) -> {
+            // Check first, so we don't box the elapsed time when it won't be logged.
+            if (logger.isDebugEnabled()) {
+                logger.debug("[TIMER] {} + {}us", key, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+            }
+        };
+    }
+
+    private void countByKey(final String key, final long incrementBy) {
         synchronized (counters) {
             final long newValue = counters.getOrDefault(key, 0L) + incrementBy;
             counters.put(key, newValue);
@@ -63,9 +95,7 @@ public class LogRecorder implements MetricsRecorder {
         }
     }
 
-    @Override
-    public void assignValue(final MetricDefinition metric, final Object value, final Object... metricParameters) {
-        final String key = generateKey(metric, metricParameters);
+    private void assignValueByKey(final String key, final Object value) {
         assignedValues.put(key, value);
         logger.debug("[ASSIGNED] {} => {}", key, value);
     }
@@ -25,9 +25,11 @@
 
 package com.salesforce.storm.spout.dynamic.metrics;
 
+import org.HdrHistogram.Histogram;
 import org.apache.storm.task.TopologyContext;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Any implementation of this should be written to be thread safe.  This instance
@@ -105,6 +107,52 @@ public interface MetricsRecorder {
         assignValue(metric, value, new Object[0]);
     }
 
+    /**
+     * Resolve a counter once, so that it may be incremented over and over without building its key each time.
+     *
+     * Implementations should override this to hand back a handle directly on their underlying counter, the default
+     * falls back to {@link #countBy(MetricDefinition, long, Object...)}.
+     *
+     * @param metric metric definition.
+     * @param metricParameters when a {@link MetricDefinition} supports interpolation on it's key, for example "foo.{}.bar" the {}
+     *                         can be replace with the supplied parameters.
+     * @return counter bound to the metric and its parameters.
+     */
+    default BoundCounter bindCounter(final MetricDefinition metric, final Object... metricParameters) {
+        return (incrementBy) -> countBy(metric, incrementBy, metricParameters);
+    }
+
+    /**
+     * Resolve a gauge once, so that it may be assigned over and over without building its key each time.
+     *
+     * Implementations should override this to hand back a handle directly on their underlying gauge, the default
+     * falls back to {@link #assignValue(MetricDefinition, Object, Object...)}.
+     *
+     * @param metric metric definition.
+     * @param metricParameters when a {@link MetricDefinition} supports interpolation on it's key, for example "foo.{}.bar" the {}
+     *                         can be replace with the supplied parameters.
+     * @return gauge bound to the metric and its parameters.
+     */
+    default BoundGauge bindGauge(final MetricDefinition metric, final Object... metricParameters) {
+        return (value) -> assignValue(metric, value, metricParameters);
+    }
+
+    /**
+     * Resolve a timer once, so that sections may be timed over and over without building its key or tracking start times by key.
+     *
+     * Prefer this over {@link #startTimer(MetricDefinition, Object...)} and {@link #stopTimer(MetricDefinition, Object...)} for
+     * anything timed on every tuple.  Implementations should override this to hand back a handle directly on their underlying timer,
+     * recording at a finer precision than milliseconds, the default falls back to {@link #recordTimer(MetricDefinition, long, Object...)}.
+     *
+     * @param metric metric definition.
+     * @param metricParameters when a {@link MetricDefinition} supports interpolation on it's key, for example "foo.{}.bar" the {}
+     *                         can be replace with the supplied parameters.
+     * @return timer bound to the metric and its parameters.
+     */
+    default BoundTimer bindTimer(final MetricDefinition metric, final Object... metricParameters) {
+        return (elapsedNanos) -> recordTimer(metric, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), metricParameters);
+    }
+
     /**
      * Starts a timer for the given sourceClass and metricName.
      * @param metric metric definition.
@@ -147,4 +195,22 @@ public interface MetricsRecorder {
      *                         can be replace with the supplied parameters.
      */
     void recordTimer(final MetricDefinition metric, final long elapsedTimeMs, final Object... metricParameters);
+
+    /**
+     * Record the latencies collected in a histogram, publishing each {@link LatencyPercentile} as its own gauge under the
+     * metric's key followed by the percentile's suffix, for example "foo.p99".
+     *
+     * Implementations should override this to resolve the key once, the default falls back to
+     * {@link #assignValue(MetricDefinition, Object, Object...)} for each percentile.
+     *
+     * @param metric metric definition.
+     * @param histogram histogram of latencies to record.
+     * @param metricParameters when a {@link MetricDefinition} supports interpolation on it's key, for example "foo.{}.bar" the {}
+     *                         can be replace with the supplied parameters.
+     */
+    default void recordLatencies(final MetricDefinition metric, final Histogram histogram, final Object... metricParameters) {
+        for (final LatencyPercentile percentile : LatencyPercentile.values()) {
+            assignValue(new CustomMetric(metric.getKey() + percentile.getSuffix()), percentile.getValue(histogram), metricParameters);
+        }
+    }
 }
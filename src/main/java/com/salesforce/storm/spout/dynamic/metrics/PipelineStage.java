@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+/**
+ * The stages a message passes through on its way from a Consumer out into the topology and back, tracked by {@link PipelineStats}.
+ */
+public enum PipelineStage {
+    /**
+     * Polling the Consumer's source for a batch of records, or waiting on one to be fetched in the background.
+     */
+    POLL("poll"),
+
+    /**
+     * Deserializing a record, or waiting on it to be deserialized in the background.
+     */
+    DESERIALIZE("deserialize"),
+
+    /**
+     * Running a message through the VirtualSpout's FilterChain.
+     */
+    FILTER("filter"),
+
+    /**
+     * Publishing a batch of messages onto the MessageBuffer, including any time spent blocked on it being full.
+     */
+    BUFFER_PUT("bufferPut"),
+
+    /**
+     * Emitting a message into the topology from DynamicSpout.nextTuple().
+     */
+    EMIT("emit"),
+
+    /**
+     * Draining acked messages back into the VirtualSpout.
+     */
+    ACK("ack"),
+
+    /**
+     * Draining failed messages back into the VirtualSpout.
+     */
+    FAIL("fail");
+
+    private final String key;
+
+    PipelineStage(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the name of the stage used within metric keys and logs.
+     * @return name of the stage used within metric keys and logs.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics on how many items each {@link PipelineStage} processes for a VirtualSpout, and how much time it spends doing so.
+ *
+ * Only a sample of calls are timed, the total time of a stage is estimated from the average of those.  Which calls are sampled
+ * is decided per thread, so stages recorded from different threads never contend over it.  When disabled, recording is a single
+ * branch and nothing is ever counted or timed.
+ *
+ * <pre>
+ * final long startNanos = pipelineStats.start(PipelineStage.FILTER);
+ * ... do the work ...
+ * pipelineStats.stop(PipelineStage.FILTER, startNanos, 1);
+ * </pre>
+ */
+public class PipelineStats {
+
+    /**
+     * Shared instance that records nothing, for when pipeline stats are not enabled.
+     */
+    public static final PipelineStats DISABLED = new PipelineStats(false);
+
+    /**
+     * Returned by {@link #start(PipelineStage)} for calls that are not sampled.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * Time one out of every this many calls, on average.  Must be a power of two.
+     */
+    private static final int TIMING_SAMPLE_RATE = 64;
+
+    private final boolean enabled;
+    private final StageStats[] stageStats = new StageStats[PipelineStage.values().length];
+
+    /**
+     * Create new, empty, statistics.
+     * @param enabled false to create an instance that records nothing.
+     */
+    public PipelineStats(final boolean enabled) {
+        this.enabled = enabled;
+        for (int index = 0; index < stageStats.length; index++) {
+            stageStats[index] = new StageStats();
+        }
+    }
+
+    /**
+     * Start a call to a stage, deciding whether or not it is sampled.
+     * @param stage stage being called.
+     * @return start time to pass to {@link #stop(PipelineStage, long, long)}, or {@link #NOT_SAMPLED}.
+     */
+    public long start(final PipelineStage stage) {
+        if (!enabled || (ThreadLocalRandom.current().nextInt() & (TIMING_SAMPLE_RATE - 1)) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish a call to a stage.  Calls that processed no items, such as empty polls, are recorded and timed too, as the
+     * time a stage spends finding there's nothing to do is still time spent.
+     * @param stage stage being called.
+     * @param startNanos value returned by {@link #start(PipelineStage)}.
+     * @param items number of items the call processed.
+     */
+    public void stop(final PipelineStage stage, final long startNanos, final long items) {
+        if (!enabled) {
+            return;
+        }
+
+        final StageStats stats = stageStats[stage.ordinal()];
+        stats.calls.increment();
+        if (items > 0) {
+            stats.items.add(items);
+        }
+        if (startNanos != NOT_SAMPLED) {
+            stats.timedCalls.increment();
+            stats.timedNanos.add(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Determine if anything is recorded.
+     * @return true if anything is recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the number of items a stage has processed.
+     * @param stage stage to get the items of.
+     * @return number of items the stage has processed.
+     */
+    public long getItems(final PipelineStage stage) {
+        return stageStats[stage.ordinal()].items.sum();
+    }
+
+    /**
+     * Get the estimated total time a stage has spent processing items.
+     * @param stage stage to get the time of.
+     * @return estimated total time the stage has spent, in milliseconds, or 0 if no calls have been sampled.
+     */
+    public long getEstimatedTimeMs(final PipelineStage stage) {
+        final StageStats stats = stageStats[stage.ordinal()];
+        final long timed = stats.timedCalls.sum();
+        if (timed == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((long) ((double) stats.timedNanos.sum() / timed * stats.calls.sum()));
+    }
+
+    /**
+     * Describes each stage compactly, as its name followed by items processed and estimated time spent.
+     * @return each stage, for example "poll=1200/35ms deserialize=1200/4ms ...".
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (final PipelineStage stage : PipelineStage.values()) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder
+                .append(stage.getKey())
+                .append('=')
+                .append(getItems(stage))
+                .append('/')
+                .append(getEstimatedTimeMs(stage))
+                .append("ms");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Statistics on a single stage.
+     */
+    private static final class StageStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder timedCalls = new LongAdder();
+        private final LongAdder timedNanos = new LongAdder();
+    }
+}
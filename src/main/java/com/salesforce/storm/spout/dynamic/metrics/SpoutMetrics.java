@@ -25,6 +25,7 @@
 
 package com.salesforce.storm.spout.dynamic.metrics;
 
+import com.salesforce.storm.spout.dynamic.DynamicSpout;
 import com.salesforce.storm.spout.dynamic.VirtualSpout;
 import com.salesforce.storm.spout.dynamic.coordinator.SpoutCoordinator;
 import com.salesforce.storm.spout.documentation.MetricDocumentation;
@@ -34,6 +35,14 @@ import com.salesforce.storm.spout.documentation.MetricDocumentation;
  */
 public final class SpoutMetrics {
 
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Messages waiting in the internal MessageBuffer, sampled each time the spout is asked for the next tuple."
+    )
+    public static final MetricDefinition DYNAMIC_SPOUT_BUFFER_DEPTH = new ClassMetric(DynamicSpout.class, "bufferDepth");
+
     @MetricDocumentation(
         type = MetricDocumentation.Type.GAUGE,
         unit = MetricDocumentation.Unit.NUMBER,
@@ -91,6 +100,15 @@ public final class SpoutMetrics {
     )
     public static final MetricDefinition VIRTUAL_SPOUT_ACK = new ClassMetric(VirtualSpout.class, "{}.ack");
 
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MICROSECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Time from emit to ack per VirtualSpout instance, published as .p50, .p99, .p999 and .max gauges.",
+        dynamicValues = { "virtualSpoutIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_ACK_LATENCY = new ClassMetric(VirtualSpout.class, "{}.ackLatency");
+
     @MetricDocumentation(
         type = MetricDocumentation.Type.COUNTER,
         unit = MetricDocumentation.Unit.NUMBER,
@@ -119,6 +137,24 @@ public final class SpoutMetrics {
     )
     public static final MetricDefinition VIRTUAL_SPOUT_EMIT = new ClassMetric(VirtualSpout.class, "{}.emit");
 
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MILLISECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Total time the VirtualSpout instance has spent idle waiting for work.",
+        dynamicValues = { "virtualSpoutIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_IDLE_TIME = new ClassMetric(VirtualSpout.class, "{}.idleTime");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MILLISECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Total time the VirtualSpout instance has spent doing work.",
+        dynamicValues = { "virtualSpoutIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_BUSY_TIME = new ClassMetric(VirtualSpout.class, "{}.busyTime");
+
     @MetricDocumentation(
         type = MetricDocumentation.Type.COUNTER,
         unit = MetricDocumentation.Unit.NUMBER,
@@ -128,6 +164,15 @@ public final class SpoutMetrics {
     )
     public static final MetricDefinition VIRTUAL_SPOUT_FAIL = new ClassMetric(VirtualSpout.class, "{}.fail");
 
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MICROSECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Time from emit to fail per VirtualSpout instance, published as .p50, .p99, .p999 and .max gauges.",
+        dynamicValues = { "virtualSpoutIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_FAIL_LATENCY = new ClassMetric(VirtualSpout.class, "{}.failLatency");
+
     @MetricDocumentation(
         type = MetricDocumentation.Type.COUNTER,
         unit = MetricDocumentation.Unit.NUMBER,
@@ -137,6 +182,54 @@ public final class SpoutMetrics {
     )
     public static final MetricDefinition VIRTUAL_SPOUT_FILTERED = new ClassMetric(VirtualSpout.class, "{}.filtered");
 
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "How many times a Filter has been evaluated against messages on the VirtualSpout instance.",
+        dynamicValues = { "virtualSpoutIdentifier", "filterChainStepIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_FILTER_STEP_EVALUATIONS =
+        new ClassMetric(VirtualSpout.class, "{}.filter.{}.evaluations");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "How many messages a Filter has filtered on the VirtualSpout instance.",
+        dynamicValues = { "virtualSpoutIdentifier", "filterChainStepIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_FILTER_STEP_HITS =
+        new ClassMetric(VirtualSpout.class, "{}.filter.{}.hits");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MILLISECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Average time a sample of evaluations of a Filter on the VirtualSpout instance have taken.",
+        dynamicValues = { "virtualSpoutIdentifier", "filterChainStepIdentifier" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_FILTER_STEP_EVALUATION_TIME =
+        new ClassMetric(VirtualSpout.class, "{}.filter.{}.averageEvaluationTime");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.NUMBER,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Number of items a stage of the VirtualSpout instance's pipeline has processed, when pipeline stats are enabled.",
+        dynamicValues = { "virtualSpoutIdentifier", "pipelineStage" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_PIPELINE_ITEMS = new ClassMetric(VirtualSpout.class, "{}.pipeline.{}.items");
+
+    @MetricDocumentation(
+        type = MetricDocumentation.Type.GAUGE,
+        unit = MetricDocumentation.Unit.TIME_MILLISECONDS,
+        category = MetricDocumentation.Category.DYNAMIC_SPOUT,
+        description = "Estimated total time a stage of the VirtualSpout instance's pipeline has spent, when pipeline stats are enabled.",
+        dynamicValues = { "virtualSpoutIdentifier", "pipelineStage" }
+    )
+    public static final MetricDefinition VIRTUAL_SPOUT_PIPELINE_TIME = new ClassMetric(VirtualSpout.class, "{}.pipeline.{}.time");
+
     @MetricDocumentation(
         type = MetricDocumentation.Type.GAUGE,
         unit = MetricDocumentation.Unit.NUMBER,
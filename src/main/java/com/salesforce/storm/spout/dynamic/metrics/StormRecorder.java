@@ -26,14 +26,19 @@
 package com.salesforce.storm.spout.dynamic.metrics;
 
 import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.HdrHistogram.Histogram;
+import org.apache.storm.metric.api.AssignableMetric;
+import org.apache.storm.metric.api.CountMetric;
 import org.apache.storm.metric.api.MeanReducer;
 import org.apache.storm.metric.api.MultiCountMetric;
 import org.apache.storm.metric.api.MultiReducedMetric;
+import org.apache.storm.metric.api.ReducedMetric;
 import org.apache.storm.task.TopologyContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A wrapper for recording metrics in Storm
@@ -133,6 +138,33 @@ public class StormRecorder implements MetricsRecorder {
         assignedValues.scope(key).setValue(value);
     }
 
+    @Override
+    public BoundCounter bindCounter(final MetricDefinition metric, final Object... metricParameters) {
+        // Storm resets the value of each scoped metric, rather than replacing it, so we can hold on to it
+        final CountMetric countMetric = counters.scope(generateKey(metric, metricParameters));
+        return countMetric::incrBy;
+    }
+
+    @Override
+    public BoundGauge bindGauge(final MetricDefinition metric, final Object... metricParameters) {
+        final AssignableMetric assignableMetric = assignedValues.scope(generateKey(metric, metricParameters));
+        return assignableMetric::setValue;
+    }
+
+    @Override
+    public BoundTimer bindTimer(final MetricDefinition metric, final Object... metricParameters) {
+        // Bound timers are handed nanoseconds, truncating them to milliseconds would record most timings as 0,
+        // so they're kept in microseconds under keys of their own rather than mixed in with millisecond timings.
+        final String key = generateKey(metric, metricParameters);
+        final ReducedMetric timer = timers.scope(key + "_us");
+        final CountMetric totalTime = counters.scope(key + "_totalTimeUs");
+        return (elapsedNanos) -> {
+            final long elapsedTimeUs = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+            timer.update(elapsedTimeUs);
+            totalTime.incrBy(elapsedTimeUs);
+        };
+    }
+
     @Override
     public void startTimer(final MetricDefinition metric, final Object... metricParameters) {
         final String key = generateKey(metric, metricParameters);
@@ -157,6 +189,14 @@ public class StormRecorder implements MetricsRecorder {
         recordTimer(key, elapsedTimeMs);
     }
 
+    @Override
+    public void recordLatencies(final MetricDefinition metric, final Histogram histogram, final Object... metricParameters) {
+        final String key = generateKey(metric, metricParameters);
+        for (final LatencyPercentile percentile : LatencyPercentile.values()) {
+            assignedValues.scope(key + percentile.getSuffix()).setValue(percentile.getValue(histogram));
+        }
+    }
+
     /**
      * Internal helper to record the value of a timer.
      * @param key String representation of the key to record the timer under
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.salesforce.storm.spout.dynamic.ConsumerPartition;
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists consumer state through a {@link PersistenceAdapter} in the background, so that flushing state never blocks
+ * consuming on the round trip to the persistence layer.
+ *
+ * Only the latest offset submitted for each partition is kept, so repeated submits between writes coalesce into a
+ * single write per partition.  Offsets that haven't moved since they were last persisted are not written again.
+ * Writes for all partitions of a consumer are issued together using
+ * {@link PersistenceAdapter#persistConsumerStatesAsync(String, Map)}, and at most one round of writes is in flight at a
+ * time, so offsets always land in the order they were submitted.
+ */
+public class ConsumerStateFlusher {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerStateFlusher.class);
+
+    /**
+     * Issues writes for every flusher within the worker.  Writes are only issued here, not waited on, so one thread is plenty.
+     */
+    private static final Executor executor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("[" + ConsumerStateFlusher.class.getSimpleName() + "] %d")
+            .setDaemon(true)
+            .build()
+    );
+
+    /**
+     * Persistence adapter we persist state through.
+     */
+    private final PersistenceAdapter persistenceAdapter;
+
+    /**
+     * Latest offsets submitted that have not been written yet.
+     */
+    private final Map<PartitionKey, Long> pendingOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * Offsets we have successfully persisted, so we can skip writing them again.
+     */
+    private final Map<PartitionKey, Long> persistedOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * Set while a background flush has been handed to the executor and not yet started, to avoid queueing more than one.
+     */
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(false);
+
+    /**
+     * The round of writes currently in flight, or the last one to complete.
+     */
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+    /**
+     * Constructor.
+     * @param persistenceAdapter persistence adapter we persist state through.
+     */
+    public ConsumerStateFlusher(final PersistenceAdapter persistenceAdapter) {
+        this.persistenceAdapter = Objects.requireNonNull(persistenceAdapter, "PersistenceAdapter is required");
+    }
+
+    /**
+     * Hand over the latest state of a consumer to be persisted in the background, this never blocks.
+     * @param consumerId The consumer's id.
+     * @param consumerState state of the consumer to persist.
+     */
+    public void submit(final String consumerId, final ConsumerState consumerState) {
+        for (final Map.Entry<ConsumerPartition, Long> entry : consumerState.entrySet()) {
+            pendingOffsets.put(new PartitionKey(consumerId, entry.getKey().partition()), entry.getValue());
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Hand over the latest offsets of a consumer to be persisted in the background, this never blocks.
+     * @param consumerId The consumer's id.
+     * @param offsets offsets of the consumer to persist, keyed by partition id.
+     */
+    public void submit(final String consumerId, final Map<Integer, Long> offsets) {
+        for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            pendingOffsets.put(new PartitionKey(consumerId, entry.getKey()), entry.getValue());
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Persist all submitted state, waiting for it to be written.
+     * Any writes already in flight land first, so they can never overwrite what we write here.
+     */
+    public void flush() {
+        // Failed writes are put back into pending, so they'll be retried below.
+        waitForQuietly(getInFlight());
+        waitFor(startFlush());
+    }
+
+    /**
+     * Drop any submitted state for a consumer that has not been written yet, waiting for writes already in flight to land.
+     * Used before removing a consumer's state, so we don't write it back afterwards.
+     * @param consumerId The consumer's id.
+     */
+    public void clear(final String consumerId) {
+        removePending(consumerId);
+        waitForQuietly(getInFlight());
+
+        // Failed writes put their offsets back, so drop them again now that nothing is in flight.
+        removePending(consumerId);
+        persistedOffsets.keySet().removeIf((partitionKey) -> partitionKey.consumerId.equals(consumerId));
+    }
+
+    /**
+     * Get the number of partitions with submitted state that has not been written yet.
+     * @return number of partitions with submitted state that has not been written yet.
+     */
+    int getPendingCount() {
+        return pendingOffsets.size();
+    }
+
+    /**
+     * Hand a flush to the executor, unless one is already waiting to run.
+     */
+    private void scheduleFlush() {
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flushInBackground);
+        }
+    }
+
+    /**
+     * Run on the executor, starts writing anything pending and schedules another flush if more shows up meanwhile.
+     */
+    private void flushInBackground() {
+        isFlushScheduled.set(false);
+        startFlush().whenComplete((result, throwable) -> {
+            // If we failed, wait for the next submit to try again rather than hammering the persistence layer.
+            if (throwable == null && !pendingOffsets.isEmpty()) {
+                scheduleFlush();
+            }
+        });
+    }
+
+    /**
+     * Start writing any pending offsets that have moved, unless a round of writes is already in flight.
+     * @return the round of writes in flight.
+     */
+    private synchronized CompletableFuture<Void> startFlush() {
+        // Only one round of writes at a time, whatever is pending gets picked up once it completes.
+        if (!inFlight.isDone()) {
+            return inFlight;
+        }
+
+        // Group what's pending by consumer, so each consumer's partitions are written together.
+        final Map<String, Map<Integer, Long>> offsetsByConsumerId = new HashMap<>();
+        final Iterator<Map.Entry<PartitionKey, Long>> iterator = pendingOffsets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<PartitionKey, Long> entry = iterator.next();
+            final PartitionKey partitionKey = entry.getKey();
+            final Long offset = entry.getValue();
+
+            // Removes the entry only if it was not replaced with a newer offset since we read it.
+            pendingOffsets.remove(partitionKey, offset);
+
+            // Skip writing offsets that haven't moved.
+            if (offset.equals(persistedOffsets.get(partitionKey))) {
+                continue;
+            }
+            offsetsByConsumerId
+                .computeIfAbsent(partitionKey.consumerId, (consumerId) -> new HashMap<>())
+                .put(partitionKey.partitionId, offset);
+        }
+
+        final List<CompletableFuture<Void>> writes = new ArrayList<>(offsetsByConsumerId.size());
+        for (final Map.Entry<String, Map<Integer, Long>> entry : offsetsByConsumerId.entrySet()) {
+            writes.add(write(entry.getKey(), entry.getValue()));
+        }
+
+        inFlight = CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+        return inFlight;
+    }
+
+    /**
+     * Write the offsets of a consumer, recording them once persisted.
+     * @param consumerId The consumer's id.
+     * @param offsets offsets to write, keyed by partition id.
+     * @return future completed once the offsets have been persisted.
+     */
+    private CompletableFuture<Void> write(final String consumerId, final Map<Integer, Long> offsets) {
+        CompletableFuture<Void> write;
+        try {
+            write = persistenceAdapter.persistConsumerStatesAsync(consumerId, offsets);
+        } catch (final RuntimeException ex) {
+            write = new CompletableFuture<>();
+            write.completeExceptionally(ex);
+        }
+
+        return write.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+                    persistedOffsets.put(new PartitionKey(consumerId, entry.getKey()), entry.getValue());
+                }
+                return;
+            }
+            logger.error("Unable to persist offsets {} for {}: {}", offsets, consumerId, throwable.getMessage(), throwable);
+
+            // Put them back for the next flush to retry, unless newer offsets have been submitted since.
+            for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+                pendingOffsets.putIfAbsent(new PartitionKey(consumerId, entry.getKey()), entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * Get the round of writes currently in flight.
+     * @return the round of writes currently in flight.
+     */
+    private synchronized CompletableFuture<Void> getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Drop any submitted state for a consumer that has not been written yet.
+     * @param consumerId The consumer's id.
+     */
+    private void removePending(final String consumerId) {
+        pendingOffsets.keySet().removeIf((partitionKey) -> partitionKey.consumerId.equals(consumerId));
+    }
+
+    /**
+     * Wait for a round of writes to complete.
+     * @param future round of writes to wait for.
+     */
+    private void waitFor(final CompletableFuture<Void> future) {
+        try {
+            future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Wait for a round of writes to complete, ignoring failures which have already been logged.
+     * @param future round of writes to wait for.
+     */
+    private void waitForQuietly(final CompletableFuture<Void> future) {
+        try {
+            waitFor(future);
+        } catch (final RuntimeException ex) {
+            logger.debug("Previous flush failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Identifies a partition of a consumer.
+     */
+    private static final class PartitionKey {
+        private final String consumerId;
+        private final int partitionId;
+
+        private PartitionKey(final String consumerId, final int partitionId) {
+            this.consumerId = consumerId;
+            this.partitionId = partitionId;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            final PartitionKey that = (PartitionKey) other;
+            return partitionId == that.partitionId && consumerId.equals(that.consumerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * consumerId.hashCode() + partitionId;
+        }
+
+        @Override
+        public String toString() {
+            return consumerId + "/" + partitionId;
+        }
+    }
+}
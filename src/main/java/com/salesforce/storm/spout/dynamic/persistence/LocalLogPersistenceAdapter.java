@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.salesforce.storm.spout.dynamic.FactoryManager;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistence layer that appends consumer state to memory mapped, checksummed logs on the worker's local disk.
+ *
+ * Persisting an offset is a write to memory, so flushing state costs microseconds rather than a network round trip,
+ * and restarting on the same host recovers the exact offsets.  Logs are forced out to disk in the background on an
+ * interval, which bounds what a host crash can lose.  Optionally consumer state is also replicated in the
+ * background to another PersistenceAdapter at a lower frequency, so that restarting on another host only
+ * replays what was processed since the last replication.
+ */
+public class LocalLogPersistenceAdapter implements PersistenceAdapter {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LocalLogPersistenceAdapter.class);
+
+    /**
+     * Default size of each log file.
+     */
+    static final int DEFAULT_FILE_SIZE_BYTES = 64 * 1024;
+
+    /**
+     * Default interval we replicate at.
+     */
+    static final long DEFAULT_REPLICATION_INTERVAL_MS = 60000L;
+
+    /**
+     * Default interval we force our logs out to disk at.
+     */
+    static final long DEFAULT_FORCE_INTERVAL_MS = 1000L;
+
+    /**
+     * Runs forcing and replication for every instance within the worker, neither does much so one thread is plenty.
+     */
+    private static final ScheduledExecutorService scheduler = createScheduler();
+
+    /**
+     * Directory we store our logs under.
+     */
+    private Path directory;
+
+    /**
+     * Size of each log file we create.
+     */
+    private int fileSizeBytes = DEFAULT_FILE_SIZE_BYTES;
+
+    /**
+     * Open logs, keyed by consumer id and then partition id.
+     */
+    private final Map<String, Map<Integer, OffsetLog>> offsetLogs = new HashMap<>();
+
+    /**
+     * Periodically forces our logs out to disk.
+     */
+    private ScheduledFuture<?> forcing = null;
+
+    /**
+     * Adapter we replicate to, or null if not replicating.
+     */
+    private PersistenceAdapter replicaAdapter = null;
+
+    /**
+     * Writes to our replica in the background, or null if not replicating.
+     */
+    private volatile ConsumerStateFlusher replicaFlusher = null;
+
+    /**
+     * Periodically replicates to our replica, or null if not replicating.
+     */
+    private ScheduledFuture<?> replication = null;
+
+    /**
+     * Loads in configuration, and opens our replica if we have one.
+     * @param spoutConfig spout configuration.
+     */
+    @Override
+    public void open(final Map<String, Object> spoutConfig) {
+        final String consumerIdPrefix = (String) spoutConfig.get(SpoutConfig.VIRTUAL_SPOUT_ID_PREFIX);
+        Preconditions.checkArgument(
+            !Strings.isNullOrEmpty(consumerIdPrefix),
+            "Consumer id prefix is required"
+        );
+
+        // Temporary directories get cleaned out from under us, so there's no sensible default.
+        final String configuredDirectory = (String) spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_DIRECTORY);
+        Preconditions.checkArgument(
+            !Strings.isNullOrEmpty(configuredDirectory),
+            "Local log directory is required"
+        );
+
+        // Like our Zookeeper root, our directory is the configured directory + our consumer id prefix
+        this.directory = Paths.get(configuredDirectory, sanitize(consumerIdPrefix));
+
+        if (spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES) instanceof Number) {
+            fileSizeBytes = ((Number) spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES)).intValue();
+        }
+        Preconditions.checkArgument(
+            fileSizeBytes >= OffsetLog.RECORD_SIZE,
+            "Log file size must be at least %s bytes", OffsetLog.RECORD_SIZE
+        );
+
+        // Periodically force our logs out to disk, so they survive the host crashing and not just the worker.
+        long forceIntervalMs = DEFAULT_FORCE_INTERVAL_MS;
+        if (spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS) instanceof Number) {
+            forceIntervalMs = ((Number) spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_FORCE_INTERVAL_MS)).longValue();
+        }
+        forcing = scheduler.scheduleWithFixedDelay(this::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+
+        // Optionally replicate to another adapter
+        final String replicaAdapterClass = (String) spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_REPLICA_ADAPTER_CLASS);
+        if (!Strings.isNullOrEmpty(replicaAdapterClass)) {
+            long replicationIntervalMs = DEFAULT_REPLICATION_INTERVAL_MS;
+            if (spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS) instanceof Number) {
+                replicationIntervalMs = ((Number) spoutConfig.get(SpoutConfig.PERSISTENCE_LOCAL_LOG_REPLICATION_INTERVAL_MS)).longValue();
+            }
+
+            replicaAdapter = FactoryManager.createNewInstance(replicaAdapterClass);
+            replicaAdapter.open(spoutConfig);
+            replicaFlusher = new ConsumerStateFlusher(replicaAdapter);
+            replication = scheduler.scheduleWithFixedDelay(
+                this::replicate,
+                replicationIntervalMs,
+                replicationIntervalMs,
+                TimeUnit.MILLISECONDS
+            );
+        }
+        logger.info("Storing consumer state under {}, replicating to {}", this.directory, replicaAdapterClass);
+    }
+
+    /**
+     * Close up shop, writing our logs out to disk and finishing replication.
+     */
+    @Override
+    public void close() {
+        if (forcing != null) {
+            forcing.cancel(false);
+            forcing = null;
+        }
+
+        if (replication != null) {
+            replication.cancel(false);
+            replication = null;
+
+            // Make sure our replica catches up before we go.
+            replicate();
+            replicaFlusher.flush();
+            replicaAdapter.close();
+            replicaFlusher = null;
+            replicaAdapter = null;
+        }
+
+        synchronized (this) {
+            for (final Map<Integer, OffsetLog> partitionLogs : offsetLogs.values()) {
+                for (final OffsetLog offsetLog : partitionLogs.values()) {
+                    closeQuietly(offsetLog);
+                }
+            }
+            offsetLogs.clear();
+        }
+    }
+
+    /**
+     * Pass in the consumer state that you'd like persisted.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @param offset offset for the partition to be persisted
+     */
+    @Override
+    public void persistConsumerState(final String consumerId, final int partitionId, final long offset) {
+        getOffsetLog(consumerId, partitionId, true).append(offset);
+    }
+
+    /**
+     * Retrieves the consumer state, from our local log or from our replica, whichever is further ahead.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @return offset that was persisted.
+     */
+    @Override
+    public Long retrieveConsumerState(final String consumerId, final int partitionId) {
+        final OffsetLog offsetLog = getOffsetLog(consumerId, partitionId, false);
+        final Long localOffset = offsetLog == null ? null : offsetLog.getOffset();
+        if (replicaAdapter == null) {
+            return localOffset;
+        }
+
+        // Our local log may be left over from when we last ran on this host, with another host having moved on since.
+        final Long replicaOffset = replicaAdapter.retrieveConsumerState(consumerId, partitionId);
+        if (localOffset == null || (replicaOffset != null && replicaOffset > localOffset)) {
+            if (localOffset != null) {
+                logger.info(
+                    "Local log for {} partition {} is at {} behind replica at {}, using replica",
+                    consumerId, partitionId, localOffset, replicaOffset
+                );
+            }
+            return replicaOffset;
+        }
+        return localOffset;
+    }
+
+    /**
+     * Removes consumer state, both locally and from our replica.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     */
+    @Override
+    public void clearConsumerState(final String consumerId, final int partitionId) {
+        // Validate we're in a state that can be used.
+        verifyHasBeenOpened();
+
+        final Path path = getOffsetLogPath(consumerId, partitionId);
+        synchronized (this) {
+            final Map<Integer, OffsetLog> partitionLogs = offsetLogs.getOrDefault(consumerId, Collections.emptyMap());
+            final OffsetLog offsetLog = partitionLogs.remove(partitionId);
+            if (offsetLog != null) {
+                closeQuietly(offsetLog);
+            }
+            if (partitionLogs.isEmpty()) {
+                offsetLogs.remove(consumerId);
+            }
+
+            logger.info("Delete state from {}", path);
+            try {
+                Files.deleteIfExists(path);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        if (replicaAdapter != null) {
+            // Drops what's waiting to be replicated for the whole consumer, the rest is handed over again next time.
+            replicaFlusher.clear(consumerId);
+            replicaAdapter.clearConsumerState(consumerId, partitionId);
+        }
+    }
+
+    /**
+     * Force every open log out to disk.
+     */
+    void force() {
+        final List<OffsetLog> logs = new ArrayList<>();
+        synchronized (this) {
+            for (final Map<Integer, OffsetLog> partitionLogs : offsetLogs.values()) {
+                logs.addAll(partitionLogs.values());
+            }
+        }
+
+        // Force outside of our lock, so opening and clearing logs never waits on the disk.
+        for (final OffsetLog offsetLog : logs) {
+            try {
+                offsetLog.force();
+            } catch (final RuntimeException ex) {
+                // Don't let a failure stop us from forcing the rest, or from forcing next time around.
+                logger.error("Failed to force {}: {}", offsetLog.getPath(), ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Hand the latest offsets over to be written to our replica, only offsets that moved get written.
+     */
+    void replicate() {
+        final ConsumerStateFlusher flusher = replicaFlusher;
+        if (flusher == null) {
+            return;
+        }
+
+        final Map<String, Map<Integer, Long>> offsetsByConsumerId = new HashMap<>();
+        synchronized (this) {
+            for (final Map.Entry<String, Map<Integer, OffsetLog>> consumerEntry : offsetLogs.entrySet()) {
+                final Map<Integer, Long> offsets = new HashMap<>();
+                for (final Map.Entry<Integer, OffsetLog> partitionEntry : consumerEntry.getValue().entrySet()) {
+                    final Long offset = partitionEntry.getValue().getOffset();
+                    if (offset != null) {
+                        offsets.put(partitionEntry.getKey(), offset);
+                    }
+                }
+                offsetsByConsumerId.put(consumerEntry.getKey(), offsets);
+            }
+        }
+
+        try {
+            for (final Map.Entry<String, Map<Integer, Long>> entry : offsetsByConsumerId.entrySet()) {
+                flusher.submit(entry.getKey(), entry.getValue());
+            }
+        } catch (final RuntimeException ex) {
+            // Don't let a failure stop us from replicating next time around.
+            logger.error("Failed to replicate consumer state: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Get the file we store the log of a consumer partition in.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @return file we store the log of the consumer partition in.
+     */
+    Path getOffsetLogPath(final String consumerId, final int partitionId) {
+        return directory.resolve(sanitize(consumerId)).resolve(partitionId + ".log");
+    }
+
+    /**
+     * Get the adapter we replicate to.
+     * @return adapter we replicate to, or null if not replicating.
+     */
+    PersistenceAdapter getReplicaAdapter() {
+        return replicaAdapter;
+    }
+
+    /**
+     * Get the log of a consumer partition, opening it if needed.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @param create true to create the log if it doesn't exist, false to return null instead.
+     * @return log of the consumer partition.
+     */
+    private synchronized OffsetLog getOffsetLog(final String consumerId, final int partitionId, final boolean create) {
+        verifyHasBeenOpened();
+
+        final Map<Integer, OffsetLog> partitionLogs = offsetLogs.computeIfAbsent(consumerId, (key) -> new HashMap<>());
+        OffsetLog offsetLog = partitionLogs.get(partitionId);
+        if (offsetLog != null) {
+            return offsetLog;
+        }
+
+        final Path path = getOffsetLogPath(consumerId, partitionId);
+        if (!create && !Files.exists(path)) {
+            return null;
+        }
+        try {
+            offsetLog = OffsetLog.open(path, fileSizeBytes);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        partitionLogs.put(partitionId, offsetLog);
+        return offsetLog;
+    }
+
+    /**
+     * Close a log, logging rather than throwing any failure.
+     * @param offsetLog log to close.
+     */
+    private void closeQuietly(final OffsetLog offsetLog) {
+        try {
+            offsetLog.close();
+        } catch (final IOException ex) {
+            logger.error("Failed to close {}: {}", offsetLog.getPath(), ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Makes sure we don't try to interact w/ this instance unless its been properly opened.
+     */
+    private void verifyHasBeenOpened() {
+        if (directory == null) {
+            throw new IllegalStateException("Instance has not been initialized via open() call yet!");
+        }
+    }
+
+    /**
+     * Make an identifier safe to use as a file name, keeping distinct identifiers distinct.
+     *
+     * Identifiers are URL encoded, with dots encoded too so that no identifier becomes "." or "..".
+     *
+     * @param identifier identifier to make safe.
+     * @return identifier safe to use as a file name.
+     */
+    static String sanitize(final String identifier) {
+        try {
+            return URLEncoder.encode(identifier, StandardCharsets.UTF_8.name()).replace(".", "%2E");
+        } catch (final UnsupportedEncodingException ex) {
+            // Every JVM supports UTF-8
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Create the scheduler we run replication on.
+     * @return scheduler we run replication on.
+     */
+    private static ScheduledExecutorService createScheduler() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+            1,
+            new ThreadFactoryBuilder()
+                .setNameFormat("[" + LocalLogPersistenceAdapter.class.getSimpleName() + "] Replication %d")
+                .setDaemon(true)
+                .build()
+        );
+        // Don't hold on to instances that have been closed.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Memory mapped, checksummed log of the offsets of a single consumer partition.
+ *
+ * Each append writes a fixed size record of the offset, an ever increasing sequence number, and a CRC32 of the two,
+ * so appending is a handful of writes to memory that the OS writes back to disk for us.  The record with the highest
+ * sequence number and a valid checksum is the latest offset, so a torn write can only ever lose the record being written.
+ *
+ * Every record before the latest one is superseded, so once the log is full it compacts by wrapping back around
+ * and overwriting the oldest records.
+ */
+final class OffsetLog implements Closeable {
+
+    /**
+     * Logger for logging logs.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(OffsetLog.class);
+
+    /**
+     * Each record holds the offset, its sequence number, and a checksum of both.
+     */
+    static final int RECORD_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Number of leading bytes of each record covered by its checksum.
+     */
+    private static final int CHECKSUMMED_SIZE = Long.BYTES + Long.BYTES;
+
+    /**
+     * File backing the log.
+     */
+    private final Path path;
+
+    /**
+     * Channel the log was mapped from.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The memory mapped log.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Number of records the log can hold before it wraps around.
+     */
+    private final int capacity;
+
+    /**
+     * Reused to checksum records.
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Sequence number of the latest record, 0 when the log is empty.
+     */
+    private long sequence = 0;
+
+    /**
+     * Slot the next record is written into.
+     */
+    private int nextSlot = 0;
+
+    /**
+     * Latest offset in the log, or null when the log is empty.
+     */
+    private Long offset = null;
+
+    /**
+     * Constructor, use {@link #open(Path, int)}.
+     */
+    private OffsetLog(final Path path, final FileChannel channel, final MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity() / RECORD_SIZE;
+    }
+
+    /**
+     * Open the log at the given path, creating it if it doesn't exist and recovering the latest offset if it does.
+     * @param path file backing the log.
+     * @param fileSizeBytes size of the file to create, an existing file keeps its size.
+     * @return the opened log.
+     * @throws IOException if we fail to open or map the file.
+     */
+    static OffsetLog open(final Path path, final int fileSizeBytes) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        final FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            // Keep the size of an existing log, so changing the configured size never loses what it holds.
+            long size = channel.size() >= RECORD_SIZE ? channel.size() : fileSizeBytes;
+            size = Math.max(RECORD_SIZE, size - (size % RECORD_SIZE));
+
+            final OffsetLog offsetLog = new OffsetLog(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            offsetLog.recover();
+            return offsetLog;
+        } catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Append an offset to the log.
+     * @param offset offset to append.
+     */
+    synchronized void append(final long offset) {
+        // Everything before the latest record is superseded, so compact by wrapping back around.
+        if (nextSlot >= capacity) {
+            logger.debug("Compacting {}", path);
+            nextSlot = 0;
+        }
+
+        // Write the checksum last, a record is only valid once it has landed.
+        final int position = nextSlot * RECORD_SIZE;
+        buffer.putLong(position, offset);
+        buffer.putLong(position + Long.BYTES, sequence + 1);
+        buffer.putInt(position + CHECKSUMMED_SIZE, checksum(position));
+
+        sequence++;
+        nextSlot++;
+        this.offset = offset;
+    }
+
+    /**
+     * Get the latest offset in the log.
+     * @return latest offset in the log, or null when the log is empty.
+     */
+    synchronized Long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Ask the OS to write the log out to disk, waiting until it has.
+     *
+     * Doesn't hold our lock, so appends never wait on the disk.  A record appended while forcing may or may not
+     * make it out, and if it only partially does its checksum won't match, so it's skipped when recovering.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Write the log out to disk and close it.
+     * @throws IOException if we fail to close the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Get the file backing the log.
+     * @return file backing the log.
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the number of records the log can hold before it wraps around.
+     * @return number of records the log can hold before it wraps around.
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Find the latest valid record in the log.
+     */
+    private void recover() {
+        for (int slot = 0; slot < capacity; slot++) {
+            final int position = slot * RECORD_SIZE;
+            final long recordSequence = buffer.getLong(position + Long.BYTES);
+
+            // Skip unwritten, torn and superseded records.
+            if (recordSequence <= sequence || buffer.getInt(position + CHECKSUMMED_SIZE) != checksum(position)) {
+                continue;
+            }
+
+            sequence = recordSequence;
+            offset = buffer.getLong(position);
+            nextSlot = slot + 1;
+        }
+    }
+
+    /**
+     * Checksum the record at the given position.
+     * @param position position of the record.
+     * @return checksum of the record.
+     */
+    private int checksum(final int position) {
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position);
+        record.limit(position + CHECKSUMMED_SIZE);
+
+        checksum.reset();
+        checksum.update(record);
+        return (int) checksum.getValue();
+    }
+}
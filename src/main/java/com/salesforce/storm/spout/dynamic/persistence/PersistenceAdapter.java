@@ -25,7 +25,10 @@
 
 package com.salesforce.storm.spout.dynamic.persistence;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface that controls persistence of state.
@@ -52,6 +55,54 @@ public interface PersistenceAdapter {
      */
     void persistConsumerState(final String consumerId, final int partitionId, final long offset);
 
+    /**
+     * Pass in the consumer state that you'd like persisted, without waiting for it to be written.
+     * Implementations backed by a remote store should override this to pipeline their writes, by default the
+     * state is persisted synchronously via {@link #persistConsumerState(String, int, long)}.
+     * @param consumerId The consumer's id.
+     * @param partitionId The partition id
+     * @param offset Offset of the consumer on the given partition
+     * @return future completed once the state has been persisted.
+     */
+    default CompletableFuture<Void> persistConsumerStateAsync(final String consumerId, final int partitionId, final long offset) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            persistConsumerState(consumerId, partitionId, offset);
+            future.complete(null);
+        } catch (final RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Pass in the state of many partitions of a consumer that you'd like persisted together.
+     * Implementations should override this when they can persist many partitions cheaper than one at a time,
+     * by default each partition is persisted via {@link #persistConsumerState(String, int, long)}.
+     * @param consumerId The consumer's id.
+     * @param offsets Offsets of the consumer, keyed by partition id.
+     */
+    default void persistConsumerStates(final String consumerId, final Map<Integer, Long> offsets) {
+        for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            persistConsumerState(consumerId, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Pass in the state of many partitions of a consumer that you'd like persisted together, without waiting for it to be written.
+     * By default each partition is persisted via {@link #persistConsumerStateAsync(String, int, long)}.
+     * @param consumerId The consumer's id.
+     * @param offsets Offsets of the consumer, keyed by partition id.
+     * @return future completed once the state of every partition has been persisted.
+     */
+    default CompletableFuture<Void> persistConsumerStatesAsync(final String consumerId, final Map<Integer, Long> offsets) {
+        final List<CompletableFuture<Void>> writes = new ArrayList<>(offsets.size());
+        for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            writes.add(persistConsumerStateAsync(consumerId, entry.getKey(), entry.getValue()));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+    }
+
     /**
      * Retrieves the consumer state from the persistence layer.
      * @param consumerId The consumer's id.
@@ -34,8 +34,14 @@ import org.apache.curator.framework.CuratorFramework;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Persistence layer implemented using Zookeeper.
@@ -48,6 +54,11 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
      */
     private static final Logger logger = LoggerFactory.getLogger(ZookeeperPersistenceAdapter.class);
 
+    /**
+     * Version of the compact binary format consumer state is stored in, so we can change it later.
+     */
+    private static final byte COMPACT_CONSUMER_STATE_VERSION = 1;
+
     /**
      * Helper for common tasks with Curator.
      */
@@ -63,6 +74,16 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
      */
     private CuratorFramework curator;
 
+    /**
+     * Defines if we store all partitions of a consumer within a single compact node, rather than a node per partition.
+     */
+    private boolean isCompactConsumerState = false;
+
+    /**
+     * When storing compactly, the offsets of every partition of each consumer, so we only read them from zookeeper once.
+     */
+    private final Map<String, CompactConsumerState> compactConsumerStates = new HashMap<>();
+
     /**
      * Loads in configuration and sets up zookeeper/curator connection.
      * @param spoutConfig spout configuration.
@@ -96,6 +117,9 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         );
 
         this.curatorHelper = new CuratorHelper(curator);
+
+        final Object compactConsumerState = spoutConfig.get(SpoutConfig.PERSISTENCE_ZK_COMPACT_CONSUMER_STATE);
+        this.isCompactConsumerState = compactConsumerState instanceof Boolean && (Boolean) compactConsumerState;
     }
 
     /**
@@ -109,6 +133,9 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         curator.close();
         curatorHelper = null;
         curator = null;
+        synchronized (this) {
+            compactConsumerStates.clear();
+        }
     }
 
     /**
@@ -122,6 +149,11 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         // Validate we're in a state that can be used.
         verifyHasBeenOpened();
 
+        if (isCompactConsumerState()) {
+            persistConsumerStates(consumerId, Collections.singletonMap(partitionId, offset));
+            return;
+        }
+
         // Persist!
         curatorHelper.writeBytes(
             getZkConsumerStatePathForPartition(consumerId, partitionId),
@@ -129,6 +161,97 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         );
     }
 
+    /**
+     * Pass in the state of many partitions of a consumer that you'd like persisted, all are written within a single
+     * Zookeeper transaction.
+     * @param consumerId consumer id.
+     * @param offsets offsets to be persisted, keyed by partition id.
+     */
+    @Override
+    public void persistConsumerStates(final String consumerId, final Map<Integer, Long> offsets) {
+        // Validate we're in a state that can be used.
+        verifyHasBeenOpened();
+
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        // Persist all partitions into a single node!  Writes are issued in the order we merge them.
+        // The node exists after our first write, so optimistically set its data rather than checking it exists first.
+        if (isCompactConsumerState()) {
+            final CompactConsumerState consumerState = getCompactConsumerState(consumerId);
+            synchronized (consumerState) {
+                final CompactWrite write = mergeCompactConsumerState(consumerState, offsets);
+                curatorHelper.writeBytes(Collections.singletonMap(
+                    getZkCompactConsumerStatePath(consumerId),
+                    encodeCompactConsumerState(write.offsets)
+                ));
+                confirmCompactWrite(consumerState, write);
+            }
+            return;
+        }
+
+        // Persist each partition into its own node, all at once!
+        final Map<String, byte[]> pathsToBytes = new LinkedHashMap<>();
+        for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            pathsToBytes.put(
+                getZkConsumerStatePathForPartition(consumerId, entry.getKey()),
+                String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8)
+            );
+        }
+        curatorHelper.writeBytes(pathsToBytes);
+    }
+
+    /**
+     * Pass in the consumer state that you'd like persisted, without waiting on Zookeeper.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @param offset offset for the partition to be persisted
+     * @return future completed once Zookeeper has acknowledged the write.
+     */
+    @Override
+    public CompletableFuture<Void> persistConsumerStateAsync(final String consumerId, final int partitionId, final long offset) {
+        // Validate we're in a state that can be used.
+        verifyHasBeenOpened();
+
+        if (isCompactConsumerState()) {
+            return persistConsumerStatesAsync(consumerId, Collections.singletonMap(partitionId, offset));
+        }
+
+        // Persist, in the background!
+        return curatorHelper.writeBytesAsync(
+            getZkConsumerStatePathForPartition(consumerId, partitionId),
+            String.valueOf(offset).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * Pass in the state of many partitions of a consumer that you'd like persisted, without waiting on Zookeeper.
+     * @param consumerId consumer id.
+     * @param offsets offsets to be persisted, keyed by partition id.
+     * @return future completed once Zookeeper has acknowledged every write.
+     */
+    @Override
+    public CompletableFuture<Void> persistConsumerStatesAsync(final String consumerId, final Map<Integer, Long> offsets) {
+        // Validate we're in a state that can be used.
+        verifyHasBeenOpened();
+
+        // Persist all partitions into a single node, in the background!  Writes are issued in the order we merge them.
+        if (isCompactConsumerState()) {
+            final CompactConsumerState consumerState = getCompactConsumerState(consumerId);
+            synchronized (consumerState) {
+                final CompactWrite write = mergeCompactConsumerState(consumerState, offsets);
+                return curatorHelper.writeBytesAsync(
+                    getZkCompactConsumerStatePath(consumerId),
+                    encodeCompactConsumerState(write.offsets)
+                ).thenRun(() -> confirmCompactWrite(consumerState, write));
+            }
+        }
+
+        // Pipeline a write per partition.
+        return PersistenceAdapter.super.persistConsumerStatesAsync(consumerId, offsets);
+    }
+
     /**
      * Retrieves the consumer state from the persistence layer.
      * @param consumerId consumer id.
@@ -140,6 +263,14 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         // Validate we're in a state that can be used.
         verifyHasBeenOpened();
 
+        if (isCompactConsumerState()) {
+            final Long offset = getPersistedCompactOffset(consumerId, partitionId);
+            if (offset != null) {
+                return offset;
+            }
+            // Fall back to state persisted before we stored it compactly.
+        }
+
         // Read!
         final String path = getZkConsumerStatePathForPartition(consumerId, partitionId);
 
@@ -161,8 +292,18 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         // Validate we're in a state that can be used.
         verifyHasBeenOpened();
 
-        // Delete!
         final String path = getZkConsumerStatePathForPartition(consumerId, partitionId);
+
+        if (isCompactConsumerState()) {
+            clearCompactConsumerState(consumerId, partitionId);
+
+            // Only touch the node per partition if we have state persisted before we stored it compactly.
+            if (curatorHelper.readBytes(path) == null) {
+                return;
+            }
+        }
+
+        // Delete!
         logger.info("Delete state from Zookeeper at {}", path);
         curatorHelper.deleteNode(path);
 
@@ -180,6 +321,143 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
         return getZkRoot() + "/consumers/" + consumerId + "/" + String.valueOf(partitionId);
     }
 
+    /**
+     * Get the full zookeeper path to where our consumer state is stored for all partitions when storing it compactly.
+     * @return full zookeeper path to where our consumer state is stored for all partitions
+     */
+    String getZkCompactConsumerStatePath(final String consumerId) {
+        return getZkRoot() + "/consumer_states/" + consumerId;
+    }
+
+    /**
+     * Determine if we store all partitions of a consumer within a single compact node.
+     * @return true if we store all partitions of a consumer within a single compact node, false if a node per partition.
+     */
+    boolean isCompactConsumerState() {
+        return isCompactConsumerState;
+    }
+
+    /**
+     * Get the offsets of every partition of a consumer stored compactly, reading them from zookeeper the first time.
+     * @param consumerId consumer id.
+     * @return offsets of every partition of the consumer.
+     */
+    private synchronized CompactConsumerState getCompactConsumerState(final String consumerId) {
+        CompactConsumerState consumerState = compactConsumerStates.get(consumerId);
+        if (consumerState == null) {
+            final byte[] bytes = curatorHelper.readBytes(getZkCompactConsumerStatePath(consumerId));
+            consumerState = new CompactConsumerState(bytes == null ? new TreeMap<>() : decodeCompactConsumerState(bytes));
+            compactConsumerStates.put(consumerId, consumerState);
+        }
+        return consumerState;
+    }
+
+    /**
+     * Get the offset zookeeper has acknowledged for a partition of a consumer stored compactly.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     * @return offset zookeeper has acknowledged for the partition, or null if there isn't one.
+     */
+    private synchronized Long getPersistedCompactOffset(final String consumerId, final int partitionId) {
+        return getCompactConsumerState(consumerId).persistedOffsets.get(partitionId);
+    }
+
+    /**
+     * Merge new offsets into those of every partition of a consumer stored compactly, for the next write.
+     * @param consumerState offsets of every partition of the consumer.
+     * @param offsets offsets to merge, keyed by partition id.
+     * @return write of every partition of the consumer.
+     */
+    private synchronized CompactWrite mergeCompactConsumerState(
+        final CompactConsumerState consumerState,
+        final Map<Integer, Long> offsets
+    ) {
+        consumerState.latestOffsets.putAll(offsets);
+        return new CompactWrite(++consumerState.issuedWrites, new TreeMap<>(consumerState.latestOffsets));
+    }
+
+    /**
+     * Record that zookeeper has acknowledged a write, unless it has already acknowledged a later one.
+     * @param consumerState offsets of every partition of the consumer.
+     * @param write write zookeeper has acknowledged.
+     */
+    private synchronized void confirmCompactWrite(final CompactConsumerState consumerState, final CompactWrite write) {
+        if (write.number > consumerState.persistedWrite) {
+            consumerState.persistedWrite = write.number;
+            consumerState.persistedOffsets = write.offsets;
+        }
+    }
+
+    /**
+     * Remove a partition from those of a consumer stored compactly, removing the node once no partitions are left.
+     * @param consumerId consumer id.
+     * @param partitionId partition id
+     */
+    private void clearCompactConsumerState(final String consumerId, final int partitionId) {
+        final CompactConsumerState consumerState = getCompactConsumerState(consumerId);
+        synchronized (consumerState) {
+            final CompactWrite write;
+            synchronized (this) {
+                if (consumerState.latestOffsets.remove(partitionId) == null) {
+                    return;
+                }
+                write = new CompactWrite(++consumerState.issuedWrites, new TreeMap<>(consumerState.latestOffsets));
+            }
+
+            final String path = getZkCompactConsumerStatePath(consumerId);
+            if (write.offsets.isEmpty()) {
+                logger.info("Delete state from Zookeeper at {}", path);
+                curatorHelper.deleteNode(path);
+                synchronized (this) {
+                    compactConsumerStates.remove(consumerId, consumerState);
+                }
+            } else {
+                curatorHelper.writeBytes(path, encodeCompactConsumerState(write.offsets));
+            }
+            confirmCompactWrite(consumerState, write);
+        }
+    }
+
+    /**
+     * Encode the offsets of every partition of a consumer into our compact binary format.
+     * A version byte, the number of partitions, and then each partition id followed by its offset.
+     * @param offsets offsets of every partition of the consumer, keyed by partition id.
+     * @return compact binary encoding of the offsets.
+     */
+    static byte[] encodeCompactConsumerState(final Map<Integer, Long> offsets) {
+        final ByteBuffer buffer = ByteBuffer.allocate(
+            Byte.BYTES + Integer.BYTES + offsets.size() * (Integer.BYTES + Long.BYTES)
+        );
+        buffer.put(COMPACT_CONSUMER_STATE_VERSION);
+        buffer.putInt(offsets.size());
+        for (final Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            buffer.putInt(entry.getKey());
+            buffer.putLong(entry.getValue());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decode the offsets of every partition of a consumer from our compact binary format.
+     * @param bytes compact binary encoding of the offsets.
+     * @return offsets of every partition of the consumer, keyed by partition id.
+     */
+    static Map<Integer, Long> decodeCompactConsumerState(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final byte version = buffer.get();
+        Preconditions.checkState(
+            version == COMPACT_CONSUMER_STATE_VERSION,
+            "Unknown compact consumer state version %s", version
+        );
+
+        final Map<Integer, Long> offsets = new TreeMap<>();
+        final int numberOfPartitions = buffer.getInt();
+        for (int index = 0; index < numberOfPartitions; index++) {
+            offsets.put(buffer.getInt(), buffer.getLong());
+        }
+        return offsets;
+    }
+
     /**
      * Get the zookeeper root path.
      * @return zookeeper root path
@@ -196,4 +474,40 @@ public class ZookeeperPersistenceAdapter implements PersistenceAdapter {
             throw new IllegalStateException("Instance has not been initialized via open() call yet!");
         }
     }
+
+    /**
+     * Offsets of every partition of a consumer stored compactly.
+     *
+     * Writes for a consumer are merged and issued while holding its lock, so they reach zookeeper in the order we merge
+     * them, while the adapter wide lock is only held to merge and read offsets, never across a round trip to zookeeper.
+     */
+    private static final class CompactConsumerState {
+        // Offsets including every write issued, which each new write builds upon
+        private final Map<Integer, Long> latestOffsets;
+
+        // Offsets zookeeper has acknowledged, which is what we hand back when asked
+        private Map<Integer, Long> persistedOffsets;
+
+        // Number of writes issued, and the number of the latest write zookeeper has acknowledged
+        private long issuedWrites = 0;
+        private long persistedWrite = 0;
+
+        private CompactConsumerState(final Map<Integer, Long> persistedOffsets) {
+            this.latestOffsets = new TreeMap<>(persistedOffsets);
+            this.persistedOffsets = persistedOffsets;
+        }
+    }
+
+    /**
+     * A write of the offsets of every partition of a consumer stored compactly.
+     */
+    private static final class CompactWrite {
+        private final long number;
+        private final Map<Integer, Long> offsets;
+
+        private CompactWrite(final long number, final Map<Integer, Long> offsets) {
+            this.number = number;
+            this.offsets = offsets;
+        }
+    }
 }
@@ -27,6 +27,8 @@ package com.salesforce.storm.spout.dynamic.persistence.zookeeper;
 
 import com.salesforce.storm.spout.dynamic.JSON;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
@@ -34,7 +36,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Helper methods for common tasks when working with Curator.
@@ -46,6 +54,11 @@ public class CuratorHelper {
      */
     private static final Logger logger = LoggerFactory.getLogger(CuratorHelper.class);
 
+    /**
+     * How many times we'll attempt a transaction writing many nodes, when others create or delete them underneath us.
+     */
+    private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
     /**
      * Curator instance.
      */
@@ -137,6 +150,184 @@ public class CuratorHelper {
         }
     }
 
+    /**
+     * Write byte arrays into many zookeeper nodes within a single transaction, either all are written or none are.
+     *
+     * We optimistically set the data of every node first, which is a single round trip once the nodes exist.  Only
+     * if some don't exist yet do we list their parents to find out which need creating instead.  If nodes are created
+     * or deleted underneath us in the mean time, we list them again and retry rather than dropping the writes.
+     *
+     * @param pathsToBytes data to write, keyed by the path of the node to write it into.
+     */
+    public void writeBytes(final Map<String, byte[]> pathsToBytes) {
+        if (pathsToBytes.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Make sure our curator client has started.
+            ensureCuratorHasStarted();
+
+            try {
+                final List<CuratorOp> operations = new ArrayList<>(pathsToBytes.size());
+                for (final Map.Entry<String, byte[]> entry : pathsToBytes.entrySet()) {
+                    operations.add(curator.transactionOp().setData().forPath(entry.getKey(), entry.getValue()));
+                }
+                curator.transaction().forOperations(operations);
+                return;
+            } catch (final KeeperException.NoNodeException noNodeException) {
+                logger.debug("Some of the nodes {} do not exist yet, creating them.", pathsToBytes.keySet());
+            }
+
+            for (int attempt = 1;; attempt++) {
+                try {
+                    curator.transaction().forOperations(getCreateOrSetDataOperations(pathsToBytes));
+                    return;
+                } catch (final KeeperException.NodeExistsException | KeeperException.NoNodeException ex) {
+                    // Someone created or deleted nodes between us listing them and writing them, so list them again.
+                    if (attempt >= MAX_TRANSACTION_ATTEMPTS) {
+                        throw ex;
+                    }
+                    logger.debug("Nodes {} changed underneath us, retrying: {}", pathsToBytes.keySet(), ex.getMessage());
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Unable to write bytes to Zookeeper {} {}", ex, ex.getStackTrace());
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Build the operations writing each node, listing their parents to find out which nodes need creating and which
+     * already exist and only need their data set.
+     * @param pathsToBytes data to write, keyed by the path of the node to write it into.
+     * @return operations writing each node.
+     * @throws Exception if we fail talking to Zookeeper.
+     */
+    private List<CuratorOp> getCreateOrSetDataOperations(final Map<String, byte[]> pathsToBytes) throws Exception {
+        final Map<String, Set<String>> childrenByParentPath = new HashMap<>();
+        final List<CuratorOp> operations = new ArrayList<>(pathsToBytes.size());
+        for (final Map.Entry<String, byte[]> entry : pathsToBytes.entrySet()) {
+            final String path = entry.getKey();
+            final String parentPath = path.substring(0, path.lastIndexOf('/'));
+            final String nodeName = path.substring(path.lastIndexOf('/') + 1);
+
+            Set<String> children = childrenByParentPath.get(parentPath);
+            if (children == null) {
+                children = getChildrenCreatingIfNeeded(parentPath);
+                childrenByParentPath.put(parentPath, children);
+            }
+
+            if (children.contains(nodeName)) {
+                operations.add(curator.transactionOp().setData().forPath(path, entry.getValue()));
+            } else {
+                operations.add(curator.transactionOp().create().withMode(CreateMode.PERSISTENT).forPath(path, entry.getValue()));
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * List the children of a node, creating it and its parents if it doesn't exist.
+     * @param path node to list the children of.
+     * @return names of the node's children.
+     * @throws Exception if we fail talking to Zookeeper.
+     */
+    private Set<String> getChildrenCreatingIfNeeded(final String path) throws Exception {
+        try {
+            return new HashSet<>(curator.getChildren().forPath(path));
+        } catch (final KeeperException.NoNodeException noNodeException) {
+            try {
+                curator.create()
+                    .creatingParentsIfNeeded()
+                    .withMode(CreateMode.PERSISTENT)
+                    .forPath(path, new byte[0]);
+            } catch (final KeeperException.NodeExistsException nodeExistsException) {
+                // Someone else created it between our list and create, that's fine.
+                logger.debug("Node {} was created underneath us.", path);
+            }
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Write a byte array into a zookeeper node without waiting on Zookeeper, so many writes may be pipelined.
+     *
+     * Unlike {@link #writeBytes(String, byte[])} we don't check if the node exists first, we optimistically set its
+     * data and only create it if that tells us it doesn't exist, saving a round trip for every write after the first.
+     *
+     * @param path path to write data into.
+     * @param bytes data to write into the node.
+     * @return future completed once Zookeeper has acknowledged the write.
+     */
+    public CompletableFuture<Void> writeBytesAsync(final String path, final byte[] bytes) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            // Make sure our curator client has started.
+            ensureCuratorHasStarted();
+
+            curator.setData()
+                .inBackground((client, event) -> {
+                    if (event.getResultCode() == KeeperException.Code.NONODE.intValue()) {
+                        createAsync(path, bytes, future);
+                        return;
+                    }
+                    completeAsync(event, future);
+                })
+                .forPath(path, bytes);
+        } catch (final Exception ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Create a zookeeper node holding the given bytes without waiting on Zookeeper.
+     * @param path path to create.
+     * @param bytes data to write into the node.
+     * @param future future to complete once Zookeeper has acknowledged the write.
+     */
+    private void createAsync(final String path, final byte[] bytes, final CompletableFuture<Void> future) {
+        try {
+            curator.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.PERSISTENT)
+                .inBackground((client, event) -> {
+                    if (event.getResultCode() == KeeperException.Code.NODEEXISTS.intValue()) {
+                        // Someone created the node between our set and create, so go back to setting its data.
+                        logger.debug("Node {} was created underneath us, setting its data instead.", path);
+                        writeBytesAsync(path, bytes).whenComplete((result, throwable) -> {
+                            if (throwable != null) {
+                                future.completeExceptionally(throwable);
+                            } else {
+                                future.complete(null);
+                            }
+                        });
+                        return;
+                    }
+                    completeAsync(event, future);
+                })
+                .forPath(path, bytes);
+        } catch (final Exception ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Complete a future from the result of a background Curator operation.
+     * @param event result of the background Curator operation.
+     * @param future future to complete.
+     */
+    private void completeAsync(final CuratorEvent event, final CompletableFuture<Void> future) {
+        final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+        if (code == KeeperException.Code.OK) {
+            future.complete(null);
+            return;
+        }
+        logger.error("Unable to write bytes to Zookeeper {} {}", event.getPath(), code);
+        future.completeExceptionally(KeeperException.create(code, event.getPath()));
+    }
+
     /**
      * Internal method to delete a node from Zookeeper.
      * @param path node to delete.
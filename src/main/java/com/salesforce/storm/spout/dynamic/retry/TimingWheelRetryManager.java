@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.retry;
+
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retries failed tuples using the same exponential back-off as {@link ExponentialBackoffRetryManager}, but schedules
+ * them on a hashed timing wheel rather than a sorted map.
+ *
+ * The wheel is an array of buckets, one per millisecond, that wraps around.  A failed tuple is linked into the bucket
+ * of the millisecond it should be retried at, and unlinked again when it fails again or gets acked, so scheduling and
+ * cancelling a retry is constant time no matter how many tuples have failed.  As time passes the buckets we pass over
+ * are swept, moving due tuples onto a ready list that {@link #nextFailedMessageToRetry()} pops from.
+ *
+ * The wheel only ever holds tuples due within the turn we're sweeping.  Tuples due on a later turn are linked into an
+ * overflow wheel with a bucket per turn instead, and cascaded down into the wheel once their turn comes around, so
+ * sweeping never walks over tuples that aren't due yet.  The overflow wheel covers a little over 17 minutes, more than
+ * the default max delay, only tuples due beyond that are passed over by a cascade and left for a later one.
+ */
+public class TimingWheelRetryManager implements RetryManager {
+
+    /**
+     * Number of bits of a millisecond that pick its bucket, the rest make up the turn of the wheel it falls in.
+     */
+    private static final int WHEEL_BITS = 12;
+
+    /**
+     * Number of buckets in the wheel, one per millisecond.
+     */
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    /**
+     * Used to map a millisecond onto its bucket.
+     */
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Number of buckets in the overflow wheel, one per turn of the wheel. Must be a power of 2.
+     */
+    static final int OVERFLOW_SIZE = 256;
+
+    /**
+     * Used to map a turn onto its overflow bucket.
+     */
+    private static final int OVERFLOW_MASK = OVERFLOW_SIZE - 1;
+
+    /**
+     * Define our retry limit.
+     * A value of less than 0 will mean we'll retry forever
+     * A value of 0 means we'll never retry.
+     * A value of greater than 0 sets an upper bound of number of retries.
+     */
+    private int retryLimit = -1;
+
+    // Initial delay after a tuple fails for the first time, in milliseconds.
+    private long initialRetryDelayMs = 2000;
+
+    // Each time we fail, double our delay, so 4, 8, 16 seconds, etc.
+    private double retryDelayMultiplier = 2.0;
+
+    // Maximum delay between successive retries, defaults to 15 minutes.
+    private long retryDelayMaxMs = 900000;
+
+    /**
+     * Every tuple we're tracking, whether its waiting to be retried or in flight.
+     * Each entry carries its own fail count, so we don't box a counter per tuple.
+     */
+    private Map<MessageId, Entry> entries;
+
+    /**
+     * The wheel of buckets, indexed by the millisecond tuples are due at, holding tuples due within the turn we're sweeping.
+     */
+    private Bucket[] wheel;
+
+    /**
+     * The overflow wheel of buckets, indexed by the turn of the wheel tuples are due in, holding tuples due on later turns.
+     */
+    private Bucket[] overflow;
+
+    /**
+     * Tuples that are due to be retried, in the order they became due.
+     */
+    private Bucket ready;
+
+    /**
+     * The last millisecond we swept the wheel up to, or Long.MIN_VALUE if we haven't swept yet.
+     */
+    private long lastSweptMs = Long.MIN_VALUE;
+
+    /**
+     * Used to control timing around retries.
+     * Also allows us to inject a mock clock for testing.
+     */
+    private transient Clock clock = Clock.systemUTC();
+
+    /**
+     * Called to initialize this implementation.
+     * @param spoutConfig used to pass in any configuration values.
+     */
+    @Override
+    public void open(Map<String, Object> spoutConfig) {
+        // Load config options.
+        if (spoutConfig.containsKey(SpoutConfig.RETRY_MANAGER_RETRY_LIMIT)) {
+            retryLimit = ((Number) spoutConfig.get(SpoutConfig.RETRY_MANAGER_RETRY_LIMIT)).intValue();
+        }
+        if (spoutConfig.containsKey(SpoutConfig.RETRY_MANAGER_INITIAL_DELAY_MS)) {
+            initialRetryDelayMs = ((Number) spoutConfig.get(SpoutConfig.RETRY_MANAGER_INITIAL_DELAY_MS)).longValue();
+        }
+        if (spoutConfig.containsKey(SpoutConfig.RETRY_MANAGER_DELAY_MULTIPLIER)) {
+            retryDelayMultiplier = ((Number) spoutConfig.get(SpoutConfig.RETRY_MANAGER_DELAY_MULTIPLIER)).doubleValue();
+        }
+        if (spoutConfig.containsKey(SpoutConfig.RETRY_MANAGER_MAX_DELAY_MS)) {
+            retryDelayMaxMs = ((Number) spoutConfig.get(SpoutConfig.RETRY_MANAGER_MAX_DELAY_MS)).longValue();
+        }
+
+        // Init data structures.
+        entries = new HashMap<>();
+        wheel = new Bucket[WHEEL_SIZE];
+        for (int index = 0; index < WHEEL_SIZE; index++) {
+            wheel[index] = new Bucket();
+        }
+        overflow = new Bucket[OVERFLOW_SIZE];
+        for (int index = 0; index < OVERFLOW_SIZE; index++) {
+            overflow[index] = new Bucket();
+        }
+        ready = new Bucket();
+        lastSweptMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * Mark a messageId as having failed and schedule it to be retried.
+     * @param messageId messageId to track as having failed.
+     */
+    @Override
+    public void failed(MessageId messageId) {
+        final long now = getClock().millis();
+        sweep(now);
+
+        Entry entry = entries.get(messageId);
+        if (entry == null) {
+            entry = new Entry(messageId);
+            entries.put(messageId, entry);
+        } else if (entry.bucket != null) {
+            // Still scheduled from a previous fail, cancel it.
+            entry.bucket.remove(entry);
+        }
+        entry.failCount++;
+
+        // Calculate how many milliseconds to wait until the next retry
+        long additionalTime = (long) (getInitialRetryDelayMs() * Math.pow(getRetryDelayMultiplier(), entry.failCount - 1));
+        if (additionalTime > getRetryDelayMaxMs()) {
+            // If its over our configured max delay, use max delay
+            additionalTime = getRetryDelayMaxMs();
+        }
+        entry.retryTime = now + additionalTime;
+        schedule(entry);
+    }
+
+    @Override
+    public void acked(MessageId messageId) {
+        final Entry entry = entries.remove(messageId);
+        if (entry != null && entry.bucket != null) {
+            entry.bucket.remove(entry);
+        }
+    }
+
+    @Override
+    public MessageId nextFailedMessageToRetry() {
+        // If we already have something due, skip sweeping
+        if (ready.head == null) {
+            sweep(getClock().millis());
+        }
+
+        final Entry entry = ready.head;
+        if (entry == null) {
+            // Nothing to expire
+            return null;
+        }
+
+        // Now in flight, keep the entry around so we remember its fail count.
+        ready.remove(entry);
+        return entry.messageId;
+    }
+
+    @Override
+    public boolean retryFurther(MessageId messageId) {
+        // If max retries is set to 0, we will never retry any tuple.
+        if (getRetryLimit() == 0) {
+            return false;
+        }
+
+        // If max retries is less than 0, we'll retry forever
+        if (getRetryLimit() < 0) {
+            return true;
+        }
+
+        // If we have exceeded our max retry limit, then we shouldn't retry
+        return getNumberOfTimesFailed(messageId) < retryLimit;
+    }
+
+    /**
+     * Get the max number of times a failed tuple will be retried.
+     * @return max number of times a failed tuple will be retried.
+     */
+    public int getRetryLimit() {
+        return retryLimit;
+    }
+
+    /**
+     * Get the minimum time between retries, in milliseconds.
+     * @return minimum time between retries, in milliseconds.
+     */
+    public long getInitialRetryDelayMs() {
+        return initialRetryDelayMs;
+    }
+
+    /**
+     * Get the configured retry delay multiplier.
+     * @return configured retry delay multiplier.
+     */
+    public double getRetryDelayMultiplier() {
+        return retryDelayMultiplier;
+    }
+
+    /**
+     * Get the configured max delay time, in milliseconds.
+     * @return configured max delay time, in milliseconds.
+     */
+    public long getRetryDelayMaxMs() {
+        return retryDelayMaxMs;
+    }
+
+    /**
+     * Used internally and in tests.
+     * @param messageId messageId to look up.
+     * @return number of times the messageId has failed, 0 if we're not tracking it.
+     */
+    int getNumberOfTimesFailed(final MessageId messageId) {
+        final Entry entry = entries.get(messageId);
+        return entry == null ? 0 : entry.failCount;
+    }
+
+    /**
+     * Used internally and in tests.
+     * @param messageId messageId to look up.
+     * @return true if the messageId has been handed out for retry and has not failed or been acked since.
+     */
+    boolean isInFlight(final MessageId messageId) {
+        final Entry entry = entries.get(messageId);
+        return entry != null && entry.bucket == null;
+    }
+
+    /**
+     * Used in tests.
+     * @return number of tuples we're tracking.
+     */
+    int getTrackedCount() {
+        return entries.size();
+    }
+
+    /**
+     * Get the configured clock implementation.
+     *
+     * This is useful when writing tests.
+     *
+     * @return configured clock implementation.
+     */
+    Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * For injecting a clock implementation.
+     *
+     * Useful for testing.
+     *
+     * @param clock the clock implementation to use.
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sweep the buckets we've passed over since our last sweep, moving tuples that are due onto our ready list.
+     * @param now current time in milliseconds.
+     */
+    private void sweep(final long now) {
+        // First sweep just marks where we start from.
+        if (lastSweptMs == Long.MIN_VALUE) {
+            lastSweptMs = now;
+            return;
+        }
+        if (now <= lastSweptMs) {
+            return;
+        }
+
+        // Everything on the wheel is due within the turn we last swept in, so each bucket we've passed is entirely due.
+        final long lastTurn = getTurn(lastSweptMs);
+        final long sweepTo = Math.min(now, ((lastTurn + 1) << WHEEL_BITS) - 1);
+        for (long time = lastSweptMs + 1; time <= sweepTo; time++) {
+            final Bucket bucket = wheel[(int) (time & WHEEL_MASK)];
+            while (bucket.head != null) {
+                final Entry entry = bucket.head;
+                bucket.remove(entry);
+                ready.add(entry);
+            }
+        }
+        lastSweptMs = now;
+
+        // Cascade the overflow bucket of each turn we've moved into, visiting each bucket at most once.
+        final long nowTurn = getTurn(now);
+        for (long turn = Math.max(lastTurn + 1, nowTurn - OVERFLOW_MASK); turn <= nowTurn; turn++) {
+            final Bucket bucket = overflow[(int) (turn & OVERFLOW_MASK)];
+            Entry entry = bucket.head;
+            while (entry != null) {
+                final Entry next = entry.next;
+                // Tuples due on a later turn of the overflow wheel stay put.
+                if (getTurn(entry.retryTime) <= turn) {
+                    bucket.remove(entry);
+                    schedule(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    /**
+     * Link an entry in where it belongs given how far we've swept.  That's our ready list if it's already due, the wheel
+     * if it's due within the turn we're sweeping, otherwise the overflow bucket of the turn it's due in.
+     * @param entry entry to link.
+     */
+    private void schedule(final Entry entry) {
+        if (entry.retryTime <= lastSweptMs) {
+            ready.add(entry);
+        } else if (getTurn(entry.retryTime) == getTurn(lastSweptMs)) {
+            wheel[(int) (entry.retryTime & WHEEL_MASK)].add(entry);
+        } else {
+            overflow[(int) (getTurn(entry.retryTime) & OVERFLOW_MASK)].add(entry);
+        }
+    }
+
+    /**
+     * Get the turn of the wheel a millisecond falls in.
+     * @param timeMs time in milliseconds.
+     * @return turn of the wheel the time falls in.
+     */
+    private static long getTurn(final long timeMs) {
+        return timeMs >> WHEEL_BITS;
+    }
+
+    /**
+     * A tracked tuple, linked into the bucket it is scheduled in.
+     */
+    private static final class Entry {
+        private final MessageId messageId;
+        private int failCount = 0;
+        private long retryTime;
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(final MessageId messageId) {
+            this.messageId = messageId;
+        }
+    }
+
+    /**
+     * Doubly linked list of entries, so entries can be unlinked in constant time.
+     */
+    private static final class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        /**
+         * Link an entry onto the end of this bucket.
+         * @param entry entry to link.
+         */
+        private void add(final Entry entry) {
+            entry.bucket = this;
+            entry.previous = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        /**
+         * Unlink an entry from this bucket.
+         * @param entry entry to unlink.
+         */
+        private void remove(final Entry entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+        }
+    }
+}
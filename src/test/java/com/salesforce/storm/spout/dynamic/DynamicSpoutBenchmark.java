@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import com.salesforce.storm.spout.dynamic.buffer.RoundRobinBuffer;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
+import com.salesforce.storm.spout.dynamic.mocks.MockTopologyContext;
+import com.salesforce.storm.spout.dynamic.persistence.InMemoryPersistenceAdapter;
+import org.apache.storm.spout.SpoutOutputCollector;
+import org.apache.storm.tuple.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks emitting messages out of the {@link DynamicSpout} and acking them, through its {@link MessageBus}.
+ *
+ * Each invocation plays the part of a VirtualSpout by publishing messages onto the bus, lets the spout emit them,
+ * acks every emitted tuple as Storm would, and then collects the acks back off of the bus as the VirtualSpout would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class DynamicSpoutBenchmark {
+
+    /**
+     * How many tuples the spout may emit per call to nextTuple().
+     */
+    @Param({"1", "100"})
+    public int emitBatchSize;
+
+    /**
+     * Which buffer implementation sits between the VirtualSpouts and the spout.
+     */
+    @Param({"RoundRobinBuffer", "MpscRingBuffer"})
+    public String buffer;
+
+    private final VirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("Benchmark");
+    private final Values values = new Values("key", "value");
+    private final List<Message> messages = new ArrayList<>();
+    private final BlackholeOutputCollector outputCollector = new BlackholeOutputCollector();
+    private DynamicSpout spout;
+    private VirtualSpoutMessageBus messageBus;
+    private long offset;
+
+    /**
+     * Open a fresh spout every trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final Map<String, Object> config = SpoutConfig.setDefaults(new HashMap<>());
+        config.put(SpoutConfig.VIRTUAL_SPOUT_ID_PREFIX, "Benchmark");
+        config.put(SpoutConfig.PERSISTENCE_ADAPTER_CLASS, InMemoryPersistenceAdapter.class.getName());
+        config.put(SpoutConfig.METRICS_RECORDER_CLASS, LogRecorder.class.getName());
+        config.put(SpoutConfig.TUPLE_BUFFER_CLASS, RoundRobinBuffer.class.getPackage().getName() + "." + buffer);
+        config.put(SpoutConfig.EMIT_BATCH_SIZE, emitBatchSize);
+
+        spout = new DynamicSpout(config);
+        spout.open(config, new MockTopologyContext(), outputCollector);
+
+        // We play the part of a VirtualSpout on the other side of the bus
+        messageBus = (VirtualSpoutMessageBus) spout.getMessageBus();
+        messageBus.registerVirtualSpout(virtualSpoutId);
+        offset = 0;
+    }
+
+    /**
+     * Close our spout.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        spout.close();
+    }
+
+    /**
+     * Publish a batch of messages, emit them out of the spout, and ack them back to our VirtualSpout.
+     * @return number of tuples acked.
+     * @throws InterruptedException if interrupted while blocked publishing.
+     */
+    @Benchmark
+    public int nextTupleAndAck() throws InterruptedException {
+        for (int count = 0; count < emitBatchSize; count++) {
+            messages.add(new Message(new MessageId("Benchmark", 0, offset++, virtualSpoutId), values));
+        }
+        messageBus.publishMessages(messages);
+        messages.clear();
+
+        spout.nextTuple();
+        for (final Object messageId : outputCollector.emittedMessageIds) {
+            spout.ack(messageId);
+        }
+        outputCollector.emittedMessageIds.clear();
+
+        int acked = 0;
+        while (messageBus.getAckedMessage(virtualSpoutId) != null) {
+            acked++;
+        }
+        return acked;
+    }
+
+    /**
+     * Discards everything emitted, only holding on to message ids until they're acked.
+     */
+    private static class BlackholeOutputCollector extends SpoutOutputCollector {
+        private final List<Object> emittedMessageIds = new ArrayList<>();
+
+        BlackholeOutputCollector() {
+            super(null);
+        }
+
+        @Override
+        public List<Integer> emit(final String streamId, final List<Object> tuple, final Object messageId) {
+            emittedMessageIds.add(messageId);
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Integer> emit(final String streamId, final List<Object> tuple) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void reportError(final Throwable error) {
+            throw new RuntimeException(error);
+        }
+    }
+}
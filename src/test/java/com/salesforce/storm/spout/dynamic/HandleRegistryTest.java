@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test that {@link HandleRegistry} interns values.
+ */
+public class HandleRegistryTest {
+
+    /**
+     * Tests that equal values share a handle, and that handles resolve back to their values.
+     */
+    @Test
+    public void testGetHandle() {
+        final HandleRegistry<String> registry = new HandleRegistry<>();
+
+        final int handle1 = registry.getHandle("MyTopic");
+        final int handle2 = registry.getHandle("MyOtherTopic");
+        assertEquals(0, handle1, "First handle should be 0");
+        assertEquals(1, handle2, "Second handle should be 1");
+        assertNotEquals(handle1, handle2, "Different values should have different handles");
+
+        // Equal value should get the same handle
+        assertEquals(handle1, registry.getHandle(new String("MyTopic")));
+        assertEquals(2, registry.size(), "Should only have handed out 2 handles");
+
+        assertEquals("MyTopic", registry.getValue(handle1));
+        assertEquals("MyOtherTopic", registry.getValue(handle2));
+    }
+
+    /**
+     * Tests that we keep resolving handles as the registry grows.
+     */
+    @Test
+    public void testGrowth() {
+        final HandleRegistry<String> registry = new HandleRegistry<>();
+        for (int index = 0; index < 1000; index++) {
+            assertEquals(index, registry.getHandle("Value" + index));
+        }
+        for (int index = 0; index < 1000; index++) {
+            assertEquals("Value" + index, registry.getValue(index));
+        }
+    }
+
+    /**
+     * Tests that null values are rejected.
+     */
+    @Test
+    public void testNullValue() {
+        final HandleRegistry<String> registry = new HandleRegistry<>();
+        assertThrows(NullPointerException.class, () -> registry.getHandle(null));
+    }
+}
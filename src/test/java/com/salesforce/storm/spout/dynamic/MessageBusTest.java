@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -311,6 +312,77 @@ public class MessageBusTest {
         verify(mockBuffer, times(1)).removeVirtualSpoutId(vspoutId);
     }
 
+    /**
+     * Validates that ack and fail sizes track messages as they are added, polled, and discarded on unregister.
+     */
+    @Test
+    public void testAckAndFailSize() {
+        final MessageBus messageBus = new MessageBus(mock(MessageBuffer.class));
+
+        final VirtualSpoutIdentifier vspoutId1 = new DefaultVirtualSpoutIdentifier("id1");
+        final VirtualSpoutIdentifier vspoutId2 = new DefaultVirtualSpoutIdentifier("id2");
+        messageBus.registerVirtualSpout(vspoutId1);
+        messageBus.registerVirtualSpout(vspoutId2);
+
+        // Ack 3 and fail 2 across both VirtualSpouts
+        messageBus.ack(new MessageId("Topic", 1, 1L, vspoutId1));
+        messageBus.ack(new MessageId("Topic", 1, 2L, vspoutId1));
+        messageBus.ack(new MessageId("Topic", 1, 3L, vspoutId2));
+        messageBus.fail(new MessageId("Topic", 1, 4L, vspoutId1));
+        messageBus.fail(new MessageId("Topic", 1, 5L, vspoutId2));
+        assertEquals(3, messageBus.ackSize(), "Should have 3 acks");
+        assertEquals(2, messageBus.failSize(), "Should have 2 fails");
+
+        // Poll one of each
+        messageBus.getAckedMessage(vspoutId1);
+        messageBus.getFailedMessage(vspoutId1);
+        assertEquals(2, messageBus.ackSize(), "Should have 2 acks");
+        assertEquals(1, messageBus.failSize(), "Should have 1 fail");
+
+        // Polling an empty queue should not change anything
+        messageBus.getFailedMessage(vspoutId1);
+        assertEquals(1, messageBus.failSize(), "Should have 1 fail");
+
+        // Unregistering discards whatever that VirtualSpout had left
+        messageBus.unregisterVirtualSpout(vspoutId1);
+        assertEquals(1, messageBus.ackSize(), "Should have 1 ack");
+        assertEquals(1, messageBus.failSize(), "Should have 1 fail");
+
+        messageBus.unregisterVirtualSpout(vspoutId2);
+        assertEquals(0, messageBus.ackSize(), "Should have no acks");
+        assertEquals(0, messageBus.failSize(), "Should have no fails");
+    }
+
+    /**
+     * Validates that registered wake up handlers are run on ack and fail, and removed on unregister.
+     */
+    @Test
+    public void testWakeUpHandler() {
+        final MessageBus messageBus = new MessageBus(mock(MessageBuffer.class));
+
+        final VirtualSpoutIdentifier vspoutId = new DefaultVirtualSpoutIdentifier("id");
+        final MessageId messageId = new MessageId("Topic", 1, 123L, vspoutId);
+        final AtomicInteger wakeUpCount = new AtomicInteger(0);
+
+        // Register
+        messageBus.registerVirtualSpout(vspoutId);
+        messageBus.registerWakeUpHandler(vspoutId, wakeUpCount::incrementAndGet);
+
+        // Ack and fail should both wake up the VirtualSpout
+        messageBus.ack(messageId);
+        assertEquals(1, wakeUpCount.get(), "Ack should run the wake up handler");
+        messageBus.fail(messageId);
+        assertEquals(2, wakeUpCount.get(), "Fail should run the wake up handler");
+
+        // Unregister and re-register without a handler
+        messageBus.unregisterVirtualSpout(vspoutId);
+        messageBus.registerVirtualSpout(vspoutId);
+
+        messageBus.ack(messageId);
+        messageBus.fail(messageId);
+        assertEquals(2, wakeUpCount.get(), "Handler should have been removed on unregister");
+    }
+
     /**
      * Validates nothing bad happens when we attempt to ack a messageId for an unregistered VirtualSpoutId.
      */
@@ -354,4 +426,36 @@ public class MessageBusTest {
         // Call unregister when our VSpout hasn't been registered.
         messageBus.unregisterVirtualSpout(vspoutId);
     }
+
+    /**
+     * Validates acks and fails racing a VirtualSpout being unregistered never leave the bus counting them.
+     */
+    @Test
+    public void testAckAndFailSizeWhenUnregisteredConcurrently() throws InterruptedException {
+        final MessageBus messageBus = new MessageBus(mock(MessageBuffer.class));
+        final VirtualSpoutIdentifier vspoutId = new DefaultVirtualSpoutIdentifier("id");
+        final MessageId messageId = new MessageId("Topic", 1, 123L, vspoutId);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            latch.countDown();
+            for (int counter = 0; counter < 10_000; counter++) {
+                messageBus.ack(messageId);
+                messageBus.fail(messageId);
+            }
+        });
+        thread.start();
+
+        // Keep registering and unregistering our VirtualSpout out from under the acks and fails.
+        latch.await();
+        while (thread.isAlive()) {
+            messageBus.registerVirtualSpout(vspoutId);
+            messageBus.unregisterVirtualSpout(vspoutId);
+        }
+        thread.join();
+
+        // Nothing is registered, so nothing should be counted.
+        assertEquals(0, messageBus.ackSize(), "Should have no acks");
+        assertEquals(0, messageBus.failSize(), "Should have no fails");
+    }
 }
\ No newline at end of file
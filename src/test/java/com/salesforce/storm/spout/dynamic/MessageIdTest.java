@@ -89,6 +89,29 @@ public class MessageIdTest {
         assertTrue(messageId2.equals(messageId1), "Should be equal");
     }
 
+    /**
+     * Tests that MessageIds built from equal, but different, instances are equal and hash the same.
+     */
+    @Test
+    public void testEqualsEquivalentComponents() {
+        final MessageId messageId1 = new MessageId(
+            new String("MyTopic"),
+            2,
+            31337L,
+            new DefaultVirtualSpoutIdentifier("MyVirtualSpoutId")
+        );
+        final MessageId messageId2 = new MessageId(
+            new String("MyTopic"),
+            2,
+            31337L,
+            new DefaultVirtualSpoutIdentifier("MyVirtualSpoutId")
+        );
+
+        // Validate equal
+        assertTrue(messageId1.equals(messageId2), "Should be equal");
+        assertEquals(messageId1.hashCode(), messageId2.hashCode(), "Should have same hash code");
+    }
+
     /**
      * Verifies not equal.
      */
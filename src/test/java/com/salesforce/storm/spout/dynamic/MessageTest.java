@@ -112,6 +112,26 @@ public class MessageTest {
         assertEquals(expectedValue3, failedMessage.getValues().get(2), "Got expected Value3");
     }
 
+    /**
+     * Tests that when a message is emitted is recorded on it, without affecting equality.
+     */
+    @Test
+    public void testEmittedAtNanos() {
+        final MessageId messageId = new MessageId("MyTopic", 2, 31337L, new DefaultVirtualSpoutIdentifier("MyConsumerId"));
+        final Message message = new Message(messageId, new Values("Value"));
+        final Message otherMessage = new Message(messageId, new Values("Value"));
+        assertEquals(Message.NOT_EMITTED, message.getEmittedAtNanos(), "Should not be emitted yet");
+
+        message.setEmittedAtNanos(12345L);
+        assertEquals(12345L, message.getEmittedAtNanos(), "Should record when it was emitted");
+        assertEquals(otherMessage, message, "Emit time should not be part of equality");
+        assertEquals(
+            Message.NOT_EMITTED,
+            Message.createPermanentlyFailedMessage(message).getEmittedAtNanos(),
+            "Permanently failed copy has not been emitted"
+        );
+    }
+
     /**
      * Ensures that the same instance is equal to itself.
      */
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import org.apache.storm.tuple.Values;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that {@link TrackedMessages} tracks messages.
+ */
+public class TrackedMessagesTest {
+
+    private static final DefaultVirtualSpoutIdentifier VIRTUAL_SPOUT_ID = new DefaultVirtualSpoutIdentifier("MyVirtualSpout");
+
+    /**
+     * Tests put, get and remove.
+     */
+    @Test
+    public void testPutGetRemove() {
+        final TrackedMessages trackedMessages = new TrackedMessages();
+        assertTrue(trackedMessages.isEmpty(), "Should start empty");
+
+        final Message message1 = createMessage("MyTopic", 0, 100L);
+        final Message message2 = createMessage("MyTopic", 1, 100L);
+        final Message message3 = createMessage("MyOtherTopic", 0, 100L);
+        trackedMessages.put(message1.getMessageId(), message1);
+        trackedMessages.put(message2.getMessageId(), message2);
+        trackedMessages.put(message3.getMessageId(), message3);
+        assertEquals(3, trackedMessages.size());
+
+        // Same offset in different partitions shouldn't collide
+        assertSame(message1, trackedMessages.get(new MessageId("MyTopic", 0, 100L, VIRTUAL_SPOUT_ID)));
+        assertSame(message2, trackedMessages.get(new MessageId("MyTopic", 1, 100L, VIRTUAL_SPOUT_ID)));
+        assertSame(message3, trackedMessages.get(new MessageId("MyOtherTopic", 0, 100L, VIRTUAL_SPOUT_ID)));
+        assertNull(trackedMessages.get(new MessageId("MyTopic", 0, 101L, VIRTUAL_SPOUT_ID)), "Should not be tracked");
+        assertNull(trackedMessages.get(new MessageId("MyTopic", 2, 100L, VIRTUAL_SPOUT_ID)), "Should not be tracked");
+        assertNull(
+            trackedMessages.get(new MessageId("MyTopic", 0, 100L, new DefaultVirtualSpoutIdentifier("OtherVirtualSpout"))),
+            "Should not match another VirtualSpout's message"
+        );
+
+        // Putting the same id again should replace
+        final Message replacement = createMessage("MyTopic", 0, 100L);
+        trackedMessages.put(replacement.getMessageId(), replacement);
+        assertEquals(3, trackedMessages.size());
+        assertSame(replacement, trackedMessages.get(message1.getMessageId()));
+
+        assertSame(replacement, trackedMessages.remove(message1.getMessageId()));
+        assertNull(trackedMessages.remove(message1.getMessageId()), "Should already be removed");
+        assertFalse(trackedMessages.contains(message1.getMessageId()));
+        assertTrue(trackedMessages.contains(message2.getMessageId()));
+        assertEquals(2, trackedMessages.size());
+
+        trackedMessages.remove(message2.getMessageId());
+        trackedMessages.remove(message3.getMessageId());
+        assertTrue(trackedMessages.isEmpty(), "Should be empty");
+    }
+
+    /**
+     * Tests getting every message tracked for a partition.
+     */
+    @Test
+    public void testGetForPartition() {
+        final TrackedMessages trackedMessages = new TrackedMessages();
+        final Set<Message> expected = new HashSet<>();
+        for (long offset = 0L; offset < 100L; offset++) {
+            final Message message = createMessage("MyTopic", 0, offset);
+            trackedMessages.put(message.getMessageId(), message);
+            expected.add(message);
+
+            final Message otherMessage = createMessage("MyTopic", 1, offset);
+            trackedMessages.put(otherMessage.getMessageId(), otherMessage);
+        }
+
+        final List<Message> messages = trackedMessages.getForPartition("MyTopic", 0);
+        assertEquals(100, messages.size());
+        assertEquals(expected, new HashSet<>(messages));
+        assertTrue(trackedMessages.getForPartition("MyTopic", 2).isEmpty(), "Should have nothing for untracked partition");
+        assertTrue(trackedMessages.getForPartition("UnknownTopic", 0).isEmpty(), "Should have nothing for unknown namespace");
+    }
+
+    /**
+     * Tests a random mix of puts and removes against a HashMap, to shake out probing and growth.
+     */
+    @Test
+    public void testRandomPutsAndRemoves() {
+        final TrackedMessages trackedMessages = new TrackedMessages();
+        final Map<MessageId, Message> expected = new HashMap<>();
+        final Random random = new Random(31337L);
+
+        for (int iteration = 0; iteration < 100000; iteration++) {
+            final Message message = createMessage("MyTopic", random.nextInt(4), random.nextInt(5000));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(message.getMessageId()), trackedMessages.remove(message.getMessageId()));
+            } else {
+                expected.put(message.getMessageId(), message);
+                trackedMessages.put(message.getMessageId(), message);
+            }
+        }
+
+        assertEquals(expected.size(), trackedMessages.size());
+        for (final Map.Entry<MessageId, Message> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), trackedMessages.get(entry.getKey()));
+        }
+        for (int partition = 0; partition < 4; partition++) {
+            for (final Message message : trackedMessages.getForPartition("MyTopic", partition)) {
+                assertSame(expected.get(message.getMessageId()), message);
+            }
+        }
+    }
+
+    private Message createMessage(final String namespace, final int partition, final long offset) {
+        return new Message(new MessageId(namespace, partition, offset, VIRTUAL_SPOUT_ID), new Values("Value" + offset));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic;
+
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerPeerContext;
+import com.salesforce.storm.spout.dynamic.consumer.Record;
+import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
+import com.salesforce.storm.spout.dynamic.mocks.MockConsumer;
+import com.salesforce.storm.spout.dynamic.persistence.InMemoryPersistenceAdapter;
+import org.apache.storm.tuple.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks pulling messages out of a {@link VirtualSpout} and acking them, as its SpoutRunner does, over a
+ * {@link MockConsumer} so that only the VirtualSpout itself is measured.
+ *
+ * Records are injected into the MockConsumer a thousand at a time, whenever it is about to run out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class VirtualSpoutBenchmark {
+
+    /**
+     * Number of records injected into the MockConsumer at a time.
+     */
+    private static final int INJECT_SIZE = 1000;
+
+    /**
+     * How many messages are pulled out of the VirtualSpout at a time by the batched benchmark.
+     */
+    @Param({"100"})
+    public int batchSize;
+
+    private final VirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("Benchmark");
+    private final List<Record> records = new ArrayList<>();
+    private final List<Message> messages = new ArrayList<>();
+    private VirtualSpout virtualSpout;
+    private int remainingRecords;
+
+    /**
+     * Create the records we'll inject, the same ones every time since each is acked before it's injected again.
+     */
+    @Setup(Level.Trial)
+    public void setupRecords() {
+        for (int offset = 0; offset < INJECT_SIZE; offset++) {
+            records.add(new Record(MockConsumer.topic, 1, offset, new Values("key" + offset, "value" + offset)));
+        }
+    }
+
+    /**
+     * Open a fresh VirtualSpout every iteration, the MockConsumer remembers every commit until it is closed.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        final Map<String, Object> spoutConfig = SpoutConfig.setDefaults(new HashMap<>());
+        spoutConfig.put(SpoutConfig.CONSUMER_CLASS, MockConsumer.class.getName());
+        spoutConfig.put(SpoutConfig.PERSISTENCE_ADAPTER_CLASS, InMemoryPersistenceAdapter.class.getName());
+        spoutConfig.put(SpoutConfig.METRICS_RECORDER_CLASS, LogRecorder.class.getName());
+
+        virtualSpout = new VirtualSpout(
+            virtualSpoutId,
+            spoutConfig,
+            new ConsumerPeerContext(1, 0),
+            new FactoryManager(spoutConfig),
+            new LogRecorder(),
+            null,
+            null
+        );
+        virtualSpout.open();
+        remainingRecords = 0;
+    }
+
+    /**
+     * Close our VirtualSpout, and forget everything the MockConsumer was holding on to.
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        virtualSpout.close();
+        MockConsumer.reset();
+    }
+
+    /**
+     * Pull a single message out of the VirtualSpout and ack it.
+     * @return message pulled.
+     */
+    @Benchmark
+    public Message nextTupleAndAck() {
+        injectRecords(1);
+
+        final Message message = virtualSpout.nextTuple();
+        virtualSpout.ack(message.getMessageId());
+        remainingRecords--;
+        return message;
+    }
+
+    /**
+     * Pull a batch of messages out of the VirtualSpout and ack each of them.
+     * @return number of messages pulled.
+     */
+    @Benchmark
+    public int nextTuplesAndAck() {
+        injectRecords(batchSize);
+
+        final int workCount = virtualSpout.nextTuples(messages, batchSize);
+        for (final Message message : messages) {
+            virtualSpout.ack(message.getMessageId());
+        }
+        messages.clear();
+        remainingRecords -= workCount;
+        return workCount;
+    }
+
+    /**
+     * Make sure the MockConsumer has at least the given number of records to hand out.
+     */
+    private void injectRecords(final int needed) {
+        if (remainingRecords >= needed) {
+            return;
+        }
+        MockConsumer.injectRecords(virtualSpoutId, records);
+        remainingRecords += INJECT_SIZE;
+    }
+}
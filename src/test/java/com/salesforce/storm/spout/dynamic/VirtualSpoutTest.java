@@ -52,8 +52,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -485,6 +487,125 @@ public class VirtualSpoutTest {
         virtualSpout.close();
     }
 
+    /**
+     * Validates that records which get filtered out still count as work when pulled in a batch via nextTuples(),
+     * so the SpoutRunner does not mistake a spout that is filtering everything for an idle one.
+     */
+    @Test
+    public void testNextTuplesCountsFilteredRecordsAsWork() {
+        // Define some inputs
+        final String expectedTopic = "MyTopic";
+        final int expectedPartition = 3;
+        final long expectedOffset = 434323L;
+        final DefaultVirtualSpoutIdentifier expectedConsumerId = new DefaultVirtualSpoutIdentifier("myConsumerId");
+        final Record expectedConsumerRecord = new Record(
+            expectedTopic,
+            expectedPartition,
+            expectedOffset,
+            new Values("MyKey", "MyValue")
+        );
+
+        // Create test config
+        final Map<String, Object> topologyConfig = getDefaultConfig();
+
+        // Create a mock Consumer
+        final Consumer mockConsumer = mock(Consumer.class);
+        when(mockConsumer.getCurrentState()).thenReturn(ConsumerState.builder().build());
+
+        // Create factory manager
+        final FactoryManager factoryManager = spy(new FactoryManager(topologyConfig));
+        when(factoryManager.createNewConsumerInstance()).thenReturn(mockConsumer);
+
+        // When nextRecord() is called on the mockConsumer, we need to return a value
+        when(mockConsumer.nextRecord()).thenReturn(expectedConsumerRecord);
+
+        // Create spout & open
+        final VirtualSpout virtualSpout = new VirtualSpout(
+            expectedConsumerId,
+            topologyConfig,
+            new ConsumerPeerContext(1, 0),
+            factoryManager,
+            new LogRecorder(),
+            null,
+            null
+        );
+        virtualSpout.getFilterChain().addStep(new DefaultFilterChainStepIdentifier("Foobar"), new StaticMessageFilter());
+        virtualSpout.open();
+
+        // Call nextTuples()
+        final List<Message> messages = new ArrayList<>();
+        final int workCount = virtualSpout.nextTuples(messages, 5);
+
+        // Every record was filtered, but each one still counts as work
+        assertEquals(5, workCount, "Should have done 5 units of work");
+        assertTrue(messages.isEmpty(), "Should have no messages");
+
+        // Verify ack was called on each filtered tuple
+        verify(mockConsumer, times(5)).commitOffset(eq(expectedTopic), eq(expectedPartition), eq(expectedOffset));
+
+        // Call close
+        virtualSpout.close();
+    }
+
+    /**
+     * Validates that nextTuples() pulls records until the consumer runs dry.
+     */
+    @Test
+    public void testNextTuples() {
+        // Define some inputs
+        final String expectedTopic = "MyTopic";
+        final int expectedPartition = 3;
+        final DefaultVirtualSpoutIdentifier expectedConsumerId = new DefaultVirtualSpoutIdentifier("myConsumerId");
+        final Record record1 = new Record(expectedTopic, expectedPartition, 1L, new Values("MyKey1", "MyValue1"));
+        final Record record2 = new Record(expectedTopic, expectedPartition, 2L, new Values("MyKey2", "MyValue2"));
+
+        // Create test config
+        final Map<String, Object> topologyConfig = getDefaultConfig();
+
+        // Create a mock Consumer
+        final Consumer mockConsumer = mock(Consumer.class);
+
+        // Create factory manager
+        final FactoryManager factoryManager = spy(new FactoryManager(topologyConfig));
+        when(factoryManager.createNewConsumerInstance()).thenReturn(mockConsumer);
+
+        // Return two records, and then nothing
+        when(mockConsumer.nextRecord()).thenReturn(record1, record2, null);
+
+        // Create spout & open
+        final VirtualSpout virtualSpout = new VirtualSpout(
+            expectedConsumerId,
+            topologyConfig,
+            new ConsumerPeerContext(1, 0),
+            factoryManager,
+            new LogRecorder(),
+            null,
+            null
+        );
+        virtualSpout.open();
+
+        // Call nextTuples()
+        final List<Message> messages = new ArrayList<>();
+        final int workCount = virtualSpout.nextTuples(messages, 10);
+
+        // Check result
+        assertEquals(2, workCount, "Should have done 2 units of work");
+        assertEquals(2, messages.size(), "Should have 2 messages");
+        assertEquals(
+            new MessageId(expectedTopic, expectedPartition, 1L, expectedConsumerId),
+            messages.get(0).getMessageId(),
+            "Found expected first message"
+        );
+        assertEquals(
+            new MessageId(expectedTopic, expectedPartition, 2L, expectedConsumerId),
+            messages.get(1).getMessageId(),
+            "Found expected second message"
+        );
+
+        // Call close
+        virtualSpout.close();
+    }
+
     /**
      * Validate what happens if everything works as expected, its deserialized properly, its not filtered.
      */
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.buffer;
+
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.apache.storm.tuple.Values;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks every {@link MessageBuffer} implementation with several producers contending to put messages, one per
+ * VirtualSpout just like the SpoutRunners, and a single consumer polling them just like the DynamicSpout.
+ *
+ * Producers stop putting while the buffer is more than half full, so none of them ever block on a buffer the consumer
+ * has stopped polling at the end of an iteration.  The puts and polls counters report how many messages actually
+ * made it through, rather than how many times each method was invoked.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Group)
+public class MessageBufferBenchmark {
+
+    /**
+     * Which buffer implementation to benchmark.
+     */
+    @Param({"FifoBuffer", "RoundRobinBuffer", "RatioMessageBuffer", "ThrottledMessageBuffer", "MpscRingBuffer"})
+    public String buffer;
+
+    /**
+     * Maximum size of the buffer.
+     */
+    @Param({"10000"})
+    public int maxSize;
+
+    /**
+     * How many messages are put and drained at a time by the batched group.
+     */
+    @Param({"100"})
+    public int batchSize;
+
+    private MessageBuffer messageBuffer;
+
+    /**
+     * Start with a fresh, empty buffer every iteration.
+     * @throws Exception if the buffer cannot be created.
+     */
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        final Map<String, Object> spoutConfig = new HashMap<>();
+        spoutConfig.put(SpoutConfig.TUPLE_BUFFER_MAX_SIZE, maxSize);
+
+        // Shared by the ratio and throttled buffers, none of our producers are throttled
+        spoutConfig.put(ThrottledMessageBuffer.CONFIG_THROTTLE_REGEX_PATTERN, "^Sideline");
+
+        messageBuffer = (MessageBuffer) Class.forName(MessageBuffer.class.getPackage().getName() + "." + buffer).newInstance();
+        messageBuffer.open(spoutConfig);
+    }
+
+    /**
+     * Put a single message onto the buffer.
+     * @param producer state of the producing thread.
+     * @throws InterruptedException if interrupted while blocked putting.
+     */
+    @Benchmark
+    @Group("single")
+    @GroupThreads(4)
+    public void put(final Producer producer) throws InterruptedException {
+        if (isMoreThanHalfFull()) {
+            return;
+        }
+        messageBuffer.put(producer.nextMessage());
+        producer.puts++;
+    }
+
+    /**
+     * Poll a single message off of the buffer.
+     * @param consumer state of the consuming thread.
+     * @return message polled, or null.
+     */
+    @Benchmark
+    @Group("single")
+    @GroupThreads(1)
+    public Message poll(final Consumer consumer) {
+        final Message message = messageBuffer.poll();
+        if (message != null) {
+            consumer.polls++;
+        }
+        return message;
+    }
+
+    /**
+     * Put a batch of messages onto the buffer.
+     * @param producer state of the producing thread.
+     * @throws InterruptedException if interrupted while blocked putting.
+     */
+    @Benchmark
+    @Group("batched")
+    @GroupThreads(4)
+    public void putAll(final Producer producer) throws InterruptedException {
+        if (isMoreThanHalfFull()) {
+            return;
+        }
+        final List<Message> batch = producer.nextBatch(batchSize);
+        messageBuffer.putAll(batch);
+        producer.puts += batch.size();
+    }
+
+    /**
+     * Drain a batch of messages off of the buffer.
+     * @param consumer state of the consuming thread.
+     * @return number of messages drained.
+     */
+    @Benchmark
+    @Group("batched")
+    @GroupThreads(1)
+    public int drainTo(final Consumer consumer) {
+        final int drained = messageBuffer.drainTo(consumer.drained, batchSize);
+        consumer.drained.clear();
+        consumer.polls += drained;
+        return drained;
+    }
+
+    /**
+     * Leaves enough headroom that every producer can put a batch without blocking.
+     */
+    private boolean isMoreThanHalfFull() {
+        return messageBuffer.size() > maxSize / 2;
+    }
+
+    /**
+     * State of a producing thread, each acting as its own VirtualSpout.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Producer {
+        private static final AtomicInteger producerCount = new AtomicInteger();
+
+        /**
+         * Number of messages put this iteration.
+         */
+        public long puts;
+
+        private final VirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier(
+            "VirtualSpout" + producerCount.getAndIncrement()
+        );
+        private final Values values = new Values("key", "value");
+        private final List<Message> batch = new ArrayList<>();
+        private long offset = 0;
+
+        /**
+         * Reset our counter every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            puts = 0;
+        }
+
+        private Message nextMessage() {
+            return new Message(new MessageId("Benchmark", 0, offset++, virtualSpoutId), values);
+        }
+
+        private List<Message> nextBatch(final int batchSize) {
+            batch.clear();
+            for (int count = 0; count < batchSize; count++) {
+                batch.add(nextMessage());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * State of the consuming thread.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Consumer {
+
+        /**
+         * Number of messages polled this iteration.
+         */
+        public long polls;
+
+        private final List<Message> drained = new ArrayList<>();
+
+        /**
+         * Reset our counter every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            polls = 0;
+        }
+    }
+}
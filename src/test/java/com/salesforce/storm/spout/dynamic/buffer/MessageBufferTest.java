@@ -37,9 +37,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -49,7 +51,10 @@ import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Generally test the {@link MessageBuffer} interface's surface area.
@@ -65,6 +70,29 @@ public class MessageBufferTest {
         return new Object[][]{
                 { createInstance(FifoBuffer.class, 10000) },
                 { createInstance(RoundRobinBuffer.class, 1000 ) },
+                { createInstance(MpscRingBuffer.class, 10000) },
+        };
+    }
+
+    /**
+     * Provides the tuple buffer implementations which keep a queue per VirtualSpout.
+     */
+    public static Object[][] providePerVirtualSpoutMessageBuffers() throws InstantiationException, IllegalAccessException {
+        return new Object[][]{
+                { createInstance(RoundRobinBuffer.class, 1000) },
+                { createInstance(RatioMessageBuffer.class, 1000) },
+                { createInstance(ThrottledMessageBuffer.class, 1000) },
+        };
+    }
+
+    /**
+     * Provides tuple buffer implementations small enough to fill up.
+     */
+    public static Object[][] provideFullMessageBuffers() throws InstantiationException, IllegalAccessException {
+        return new Object[][]{
+                { createInstance(FifoBuffer.class, 4) },
+                { createInstance(RoundRobinBuffer.class, 4) },
+                { createInstance(MpscRingBuffer.class, 4) },
         };
     }
 
@@ -191,4 +219,139 @@ public class MessageBufferTest {
             executorService.shutdownNow();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that messages handed off in batches via putAll() can all be drained back out via drainTo().
+     */
+    @ParameterizedTest
+    @MethodSource("provideMessageBuffers")
+    public void testPutAllAndDrainTo(final MessageBuffer messageBuffer) throws InterruptedException {
+        final int numberOfVSpoutIds = 5;
+        final int numberOfMessagesPer = 50;
+        final int maxDrain = 17;
+
+        // Publish a batch of messages for each VirtualSpout
+        final Set<MessageId> expectedIds = new HashSet<>();
+        for (int vspoutNumber = 0; vspoutNumber < numberOfVSpoutIds; vspoutNumber++) {
+            final DefaultVirtualSpoutIdentifier sourceSpoutId = new DefaultVirtualSpoutIdentifier("srcSpoutId" + vspoutNumber);
+            final List<Message> batch = new ArrayList<>();
+            for (int x = 0; x < numberOfMessagesPer; x++) {
+                final Message message = new Message(
+                    new MessageId("my namespace", 0, x, sourceSpoutId),
+                    new Values("myValue" + x)
+                );
+                batch.add(message);
+                expectedIds.add(message.getMessageId());
+            }
+            messageBuffer.putAll(batch);
+        }
+        assertEquals(expectedIds.size(), messageBuffer.size(), "Should have all messages buffered");
+
+        // Drain them back out, never getting more than we asked for
+        final Set<MessageId> foundIds = new HashSet<>();
+        final List<Message> drained = new ArrayList<>();
+        while (foundIds.size() < expectedIds.size()) {
+            final int found = messageBuffer.drainTo(drained, maxDrain);
+            assertTrue(found > 0, "Should have drained some messages");
+            assertTrue(found <= maxDrain, "Should never drain more than requested");
+            assertEquals(found, drained.size(), "Should report the number of messages drained");
+            for (final Message message : drained) {
+                assertTrue(foundIds.add(message.getMessageId()), "Should not see the same message twice");
+            }
+            drained.clear();
+        }
+        assertEquals(expectedIds, foundIds, "Should have found all messages");
+
+        // Nothing else should be left
+        assertEquals(0, messageBuffer.drainTo(drained, maxDrain), "Should have nothing left to drain");
+        assertNull(messageBuffer.poll(), "Should be null");
+    }
+
+    /**
+     * Tests that size() tracks messages as they are put, polled, drained, and discarded when a VirtualSpout is removed.
+     */
+    @ParameterizedTest
+    @MethodSource("provideMessageBuffers")
+    public void testSize(final MessageBuffer messageBuffer) throws InterruptedException {
+        final DefaultVirtualSpoutIdentifier virtualSpoutId1 = new DefaultVirtualSpoutIdentifier("srcSpoutId1");
+        final DefaultVirtualSpoutIdentifier virtualSpoutId2 = new DefaultVirtualSpoutIdentifier("srcSpoutId2");
+        messageBuffer.addVirtualSpoutId(virtualSpoutId1);
+        messageBuffer.addVirtualSpoutId(virtualSpoutId2);
+        assertEquals(0, messageBuffer.size(), "Should be empty");
+
+        // Put 10 messages for each VirtualSpout
+        for (int x = 0; x < 10; x++) {
+            messageBuffer.put(new Message(new MessageId("my namespace", 0, x, virtualSpoutId1), new Values("value" + x)));
+            messageBuffer.put(new Message(new MessageId("my namespace", 0, x, virtualSpoutId2), new Values("value" + x)));
+        }
+        assertEquals(20, messageBuffer.size(), "Should have 20 messages");
+
+        // Poll a message and drain a few more
+        assertNotNull(messageBuffer.poll(), "Should not be null");
+        assertEquals(19, messageBuffer.size(), "Should have 19 messages");
+        assertEquals(4, messageBuffer.drainTo(new ArrayList<>(), 4), "Should drain 4 messages");
+        assertEquals(15, messageBuffer.size(), "Should have 15 messages");
+
+        // Drain the rest
+        final List<Message> drained = new ArrayList<>();
+        while (messageBuffer.drainTo(drained, 100) > 0) {
+            assertEquals(15 - drained.size(), messageBuffer.size(), "Size should shrink as we drain");
+        }
+        assertEquals(15, drained.size(), "Should have drained the rest");
+        assertEquals(0, messageBuffer.size(), "Should be empty");
+    }
+
+    /**
+     * Tests that size() no longer counts the messages of a VirtualSpout once it has been removed.
+     */
+    @ParameterizedTest
+    @MethodSource("providePerVirtualSpoutMessageBuffers")
+    public void testSizeAfterRemovingVirtualSpout(final MessageBuffer messageBuffer) throws InterruptedException {
+        final DefaultVirtualSpoutIdentifier virtualSpoutId1 = new DefaultVirtualSpoutIdentifier("srcSpoutId1");
+        final DefaultVirtualSpoutIdentifier virtualSpoutId2 = new DefaultVirtualSpoutIdentifier("srcSpoutId2");
+        messageBuffer.addVirtualSpoutId(virtualSpoutId1);
+        messageBuffer.addVirtualSpoutId(virtualSpoutId2);
+
+        // Put 10 messages for each VirtualSpout
+        for (int x = 0; x < 10; x++) {
+            messageBuffer.put(new Message(new MessageId("my namespace", 0, x, virtualSpoutId1), new Values("value" + x)));
+            messageBuffer.put(new Message(new MessageId("my namespace", 0, x, virtualSpoutId2), new Values("value" + x)));
+        }
+        assertEquals(20, messageBuffer.size(), "Should have 20 messages");
+
+        // Removing a VirtualSpout discards its messages
+        messageBuffer.removeVirtualSpoutId(virtualSpoutId1);
+        assertEquals(10, messageBuffer.size(), "Should have 10 messages");
+
+        // Removing it again should have no effect
+        messageBuffer.removeVirtualSpoutId(virtualSpoutId1);
+        assertEquals(10, messageBuffer.size(), "Should have 10 messages");
+
+        messageBuffer.removeVirtualSpoutId(virtualSpoutId2);
+        assertEquals(0, messageBuffer.size(), "Should be empty");
+    }
+
+    /**
+     * Tests that offer() fails fast once the buffer is full, rather than blocking, and succeeds once there is room again.
+     */
+    @ParameterizedTest
+    @MethodSource("provideFullMessageBuffers")
+    public void testOfferWhenFull(final MessageBuffer messageBuffer) throws InterruptedException {
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("srcSpoutId");
+        messageBuffer.addVirtualSpoutId(virtualSpoutId);
+
+        // Offer until we're turned away
+        int offered = 0;
+        while (messageBuffer.offer(new Message(new MessageId("my namespace", 0, offered, virtualSpoutId), new Values("value")))) {
+            offered++;
+            assertTrue(offered <= 8, "Should have filled up");
+        }
+        assertTrue(offered > 0, "Should have accepted some messages");
+        assertEquals(offered, messageBuffer.size(), "Should only count accepted messages");
+
+        // Make room, and we should be accepted again
+        assertNotNull(messageBuffer.poll(), "Should not be null");
+        assertTrue(messageBuffer.offer(new Message(new MessageId("my namespace", 0, offered, virtualSpoutId), new Values("value"))));
+        assertEquals(offered, messageBuffer.size(), "Should be full again");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.buffer;
+
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.apache.storm.tuple.Values;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that {@link MpscRingBuffer} behaves like a bounded FIFO buffer.
+ */
+public class MpscRingBufferTest {
+
+    /**
+     * Tests that messages come back out in the order they went in, across several laps of the ring.
+     */
+    @Test
+    public void testFifoOrderAcrossLaps() throws InterruptedException {
+        final MpscRingBuffer messageBuffer = createBuffer(8);
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("MyVirtualSpout");
+
+        long offset = 0;
+        for (int lap = 0; lap < 10; lap++) {
+            final List<Message> submittedOrder = new ArrayList<>();
+            for (int x = 0; x < 6; x++) {
+                final Message message = createMessage(virtualSpoutId, offset++);
+                submittedOrder.add(message);
+                messageBuffer.put(message);
+            }
+            assertEquals(6, messageBuffer.size(), "Size should be known");
+
+            // Alternate between polling and draining
+            final List<Message> found = new ArrayList<>();
+            if (lap % 2 == 0) {
+                Message message;
+                while ((message = messageBuffer.poll()) != null) {
+                    found.add(message);
+                }
+            } else {
+                assertEquals(6, messageBuffer.drainTo(found, 100), "Should drain all messages");
+            }
+            assertEquals(submittedOrder, found, "Order should be maintained");
+            assertEquals(0, messageBuffer.size(), "Should be empty");
+            assertNull(messageBuffer.poll(), "Should be null");
+        }
+    }
+
+    /**
+     * Tests that producers are blocked once the buffer is full, and are released once the consumer frees up space.
+     */
+    @Test
+    public void testPutBlocksWhenFull() throws InterruptedException {
+        final MpscRingBuffer messageBuffer = createBuffer(4);
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("MyVirtualSpout");
+
+        // Fill the buffer
+        for (int x = 0; x < 4; x++) {
+            messageBuffer.put(createMessage(virtualSpoutId, x));
+        }
+        assertFalse(messageBuffer.offer(createMessage(virtualSpoutId, 4)), "Should be full");
+
+        // Attempt to put another message, which should block
+        final Message blockedMessage = createMessage(virtualSpoutId, 5);
+        final CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                messageBuffer.put(blockedMessage);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(future.isDone(), "Producer should be blocked");
+
+        // Free up a slot
+        assertEquals(0L, messageBuffer.poll().getOffset(), "Should get first message");
+
+        // Producer should now finish
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(future::isDone, equalTo(true));
+        assertFalse(future.isCompletedExceptionally(), "Should not have failed");
+
+        // The blocked message should be last in line
+        final List<Message> found = new ArrayList<>();
+        assertEquals(4, messageBuffer.drainTo(found, 100), "Should drain remaining messages");
+        assertEquals(blockedMessage, found.get(3), "Blocked message should be last");
+    }
+
+    /**
+     * Tests that a producer blocked on a full buffer can be interrupted.
+     */
+    @Test
+    public void testBlockedPutCanBeInterrupted() throws InterruptedException {
+        final MpscRingBuffer messageBuffer = createBuffer(1);
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("MyVirtualSpout");
+        messageBuffer.put(createMessage(virtualSpoutId, 0));
+
+        final CompletableFuture<Boolean> wasInterrupted = new CompletableFuture<>();
+        final Thread producer = new Thread(() -> {
+            try {
+                messageBuffer.put(createMessage(virtualSpoutId, 1));
+                wasInterrupted.complete(false);
+            } catch (InterruptedException e) {
+                wasInterrupted.complete(true);
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        producer.interrupt();
+
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(wasInterrupted::isDone, equalTo(true));
+        assertTrue(wasInterrupted.getNow(false), "Producer should have been interrupted");
+        assertEquals(1, messageBuffer.size(), "Should only have the original message");
+    }
+
+    /**
+     * Tests that the configured max size is rounded up to a power of two.
+     */
+    @ParameterizedTest
+    @MethodSource("provideConfigObjects")
+    public void testCapacityRoundedUpToPowerOfTwo(final Number inputValue, final int expectedCapacity) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.TUPLE_BUFFER_MAX_SIZE, inputValue);
+
+        final MpscRingBuffer messageBuffer = new MpscRingBuffer();
+        messageBuffer.open(config);
+
+        assertEquals(expectedCapacity, messageBuffer.getCapacity(), "Set correct");
+    }
+
+    /**
+     * Provides config values and the capacity they should result in.
+     */
+    public static Object[][] provideConfigObjects() {
+        return new Object[][]{
+                // Integer
+                { 200, 256 },
+
+                // Long
+                { 2000L, 2048 },
+
+                // Already a power of two
+                { 1024, 1024 },
+
+                // Too small
+                { 0, 1 },
+        };
+    }
+
+    private MpscRingBuffer createBuffer(final int maxSize) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.TUPLE_BUFFER_MAX_SIZE, maxSize);
+
+        final MpscRingBuffer messageBuffer = new MpscRingBuffer();
+        messageBuffer.open(config);
+        return messageBuffer;
+    }
+
+    private Message createMessage(final DefaultVirtualSpoutIdentifier virtualSpoutId, final long offset) {
+        return new Message(new MessageId("my namespace", 0, offset, virtualSpoutId), new Values("value" + offset));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests behavior specific to {@link BitmapPartitionOffsetManager}, shared semantics are covered by
+ * {@link PartitionOffsetManagerTest}.
+ */
+public class BitmapPartitionOffsetManagerTest {
+
+    /**
+     * Tracking more outstanding offsets than the initial capacity should grow the ring without losing track of anything.
+     */
+    @Test
+    public void testGrowsWhenOutstandingOffsetsExceedCapacity() {
+        final BitmapPartitionOffsetManager offsetManager = new BitmapPartitionOffsetManager("Test Topic", 1, 99L);
+        final int initialCapacity = offsetManager.getCapacity();
+        final int numberOfOffsets = initialCapacity * 4;
+
+        // Start more offsets than we can initially hold
+        for (long offset = 100; offset < 100 + numberOfOffsets; offset++) {
+            offsetManager.startOffset(offset);
+        }
+        assertTrue(offsetManager.getCapacity() >= numberOfOffsets, "Should have grown");
+
+        // Finish everything but the first offset, in reverse
+        for (long offset = 100 + numberOfOffsets - 1; offset > 100; offset--) {
+            offsetManager.finishOffset(offset);
+            assertEquals(99L, offsetManager.lastFinishedOffset(), "Should not advance past unfinished offset 100");
+        }
+
+        // Finishing the first should advance all the way
+        offsetManager.finishOffset(100L);
+        assertEquals(100L + numberOfOffsets - 1, offsetManager.lastFinishedOffset(), "Should have advanced to the end");
+    }
+
+    /**
+     * Offsets are reused as the ring wraps around.
+     */
+    @Test
+    public void testWrapsAroundRing() {
+        final BitmapPartitionOffsetManager offsetManager = new BitmapPartitionOffsetManager("Test Topic", 1, -1L);
+        final int initialCapacity = offsetManager.getCapacity();
+
+        // Keep a few offsets outstanding while moving through many multiples of the capacity
+        for (long offset = 0; offset < initialCapacity * 10L; offset++) {
+            offsetManager.startOffset(offset);
+            if (offset >= 2) {
+                offsetManager.finishOffset(offset - 2);
+                assertEquals(offset - 2, offsetManager.lastFinishedOffset());
+            }
+        }
+        assertEquals(initialCapacity, offsetManager.getCapacity(), "Should not have grown");
+    }
+
+    /**
+     * Offsets that were never started, like those removed by compaction, should not hold back the last finished offset.
+     */
+    @Test
+    public void testSkipsOffsetsNeverStarted() {
+        final BitmapPartitionOffsetManager offsetManager = new BitmapPartitionOffsetManager("Test Topic", 1, 0L);
+
+        offsetManager.startOffset(1L);
+        offsetManager.startOffset(4L);
+        offsetManager.startOffset(5L);
+
+        offsetManager.finishOffset(4L);
+        assertEquals(0L, offsetManager.lastFinishedOffset(), "Offset 1 is unfinished");
+
+        offsetManager.finishOffset(1L);
+        assertEquals(4L, offsetManager.lastFinishedOffset(), "Should skip over 2 and 3");
+
+        // Finishing a skipped offset is unknown and should not change anything
+        offsetManager.finishOffset(2L);
+        assertEquals(4L, offsetManager.lastFinishedOffset());
+
+        offsetManager.finishOffset(5L);
+        assertEquals(5L, offsetManager.lastFinishedOffset());
+        assertEquals(5L, offsetManager.lastStartedOffset());
+    }
+
+    /**
+     * Offsets jumping far further ahead than the ring holds should be tracked without growing the ring to span the jump.
+     */
+    @Test
+    public void testSparseOffsets() {
+        final BitmapPartitionOffsetManager offsetManager = new BitmapPartitionOffsetManager("Test Topic", 1, -1L);
+        final int initialCapacity = offsetManager.getCapacity();
+        final long jump = 1_000_000_000L;
+
+        // Start offsets a billion apart, with a couple of dense ones at each
+        for (long offset = 0; offset <= 3 * jump; offset += jump) {
+            offsetManager.startOffset(offset);
+            offsetManager.startOffset(offset + 1);
+        }
+        assertEquals(initialCapacity, offsetManager.getCapacity(), "Should not have grown");
+        assertEquals(4, offsetManager.getNumberOfRings(), "Should have a ring per jump");
+        assertEquals(3 * jump + 1, offsetManager.lastStartedOffset());
+
+        // Finish everything but the first offset, in reverse
+        for (long offset = 3 * jump; offset >= 0; offset -= jump) {
+            offsetManager.finishOffset(offset + 1);
+            if (offset > 0) {
+                offsetManager.finishOffset(offset);
+            }
+            assertEquals(-1L, offsetManager.lastFinishedOffset(), "Should not advance past unfinished offset 0");
+        }
+
+        // Finishing the first should skip over every jump
+        offsetManager.finishOffset(0L);
+        assertEquals(3 * jump + 1, offsetManager.lastFinishedOffset(), "Should have advanced to the end");
+        assertEquals(1, offsetManager.getNumberOfRings(), "Should be back down to a single ring");
+
+        // A range finished far ahead, with an offset still outstanding, should not grow the ring either
+        offsetManager.startOffset(4 * jump);
+        offsetManager.finishOffsets(4 * jump + 1, 5 * jump);
+        assertEquals(3 * jump + 1, offsetManager.lastFinishedOffset(), "Offset 4 billion is unfinished");
+        assertEquals(initialCapacity, offsetManager.getCapacity(), "Should not have grown");
+
+        offsetManager.finishOffset(4 * jump);
+        assertEquals(5 * jump, offsetManager.lastFinishedOffset(), "Should have advanced to the end of the range");
+    }
+}
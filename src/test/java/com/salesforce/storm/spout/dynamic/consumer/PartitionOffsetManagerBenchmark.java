@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks starting and finishing offsets, as the consumer does for every record emitted and acked.
+ *
+ * A fixed window of offsets is kept outstanding, every invocation finishes one of them and starts the next offset.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class PartitionOffsetManagerBenchmark {
+
+    /**
+     * Which tracker implementation to benchmark.
+     */
+    @Param({"default", "bitmap"})
+    public String tracker;
+
+    /**
+     * How many offsets are started but not yet finished at any one time.
+     */
+    @Param({"1", "100", "10000"})
+    public int outstanding;
+
+    /**
+     * Seed for picking which outstanding offset gets finished, fixed so every run finishes offsets in the same order.
+     */
+    @Param({"1234"})
+    public long seed;
+
+    private PartitionOffsetTracker partitionOffsetTracker;
+    private long[] window;
+    private int windowIndex;
+    private long nextOffset;
+    private Random random;
+
+    /**
+     * Start with a fresh tracker every iteration, with our window of offsets outstanding.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        if ("bitmap".equals(tracker)) {
+            partitionOffsetTracker = new BitmapPartitionOffsetManager("Benchmark", 0, -1L);
+        } else {
+            partitionOffsetTracker = new PartitionOffsetManager("Benchmark", 0, -1L);
+        }
+
+        window = new long[outstanding];
+        for (nextOffset = 0; nextOffset < outstanding; nextOffset++) {
+            partitionOffsetTracker.startOffset(nextOffset);
+            window[(int) nextOffset] = nextOffset;
+        }
+        windowIndex = 0;
+        random = new Random(seed);
+    }
+
+    /**
+     * Offsets get acked in the order they were emitted, always finishing the oldest outstanding offset.
+     * @return last finished offset.
+     */
+    @Benchmark
+    public long finishInOrder() {
+        final int index = windowIndex;
+        windowIndex = (windowIndex + 1) % outstanding;
+        return finishAndStart(index);
+    }
+
+    /**
+     * Offsets get acked in any order, finishing a random outstanding offset.
+     * @return last finished offset.
+     */
+    @Benchmark
+    public long finishOutOfOrder() {
+        return finishAndStart(random.nextInt(outstanding));
+    }
+
+    /**
+     * Finish the outstanding offset at the given index of our window, and start the next offset in its place.
+     */
+    private long finishAndStart(final int index) {
+        partitionOffsetTracker.finishOffset(window[index]);
+        partitionOffsetTracker.startOffset(nextOffset);
+        window[index] = nextOffset++;
+        return partitionOffsetTracker.lastFinishedOffset();
+    }
+}
@@ -25,7 +25,7 @@
 
 package com.salesforce.storm.spout.dynamic.consumer;
 
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +36,7 @@ import java.util.Random;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
- * Test that {@link PartitionOffsetManager} accurately tracks messages by partition.
+ * Test that {@link PartitionOffsetTracker} implementations accurately track messages by partition.
  */
 public class PartitionOffsetManagerTest {
 
@@ -45,12 +45,13 @@ public class PartitionOffsetManagerTest {
     /**
      * This test tracks offsets and will ack them in order, then verifies that the last finished offset is correct.
      */
-    @Test
-    public void inOrderTrackAndAck() {
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void inOrderTrackAndAck(final Class<? extends PartitionOffsetTracker> trackerClass) {
         final long maxOffset = 5;
 
         // Create our manager we want to test
-        final PartitionOffsetManager offsetManager = new PartitionOffsetManager("Test Topic", 1, 0L);
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
 
         // Loop through some offsets
         for (int currentOffset = 0; currentOffset < maxOffset; currentOffset++) {
@@ -68,10 +69,11 @@ public class PartitionOffsetManagerTest {
     /**
      * This test tracks offsets and will ack them in order, then verifies that the last finished offset is correct.
      */
-    @Test
-    public void outOfOrderAck() {
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void outOfOrderAck(final Class<? extends PartitionOffsetTracker> trackerClass) {
         // Create our manager we want to test
-        final PartitionOffsetManager offsetManager = new PartitionOffsetManager("Test Topic", 1, 0L);
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
 
         // Finish offset 0,  last finished offset should be 0
         offsetManager.startOffset(0L);
@@ -154,20 +156,78 @@ public class PartitionOffsetManagerTest {
         assertEquals(8L, offsetManager.lastFinishedOffset(), "[S]  last finished offset should be 8");
     }
 
+    /**
+     * Finishing the earliest outstanding offset should advance through the finished offsets that continue on from it,
+     * and stop at the first gap rather than falling back to the offset being finished.
+     */
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testFinishEarliestOffsetStopsAtGap(final Class<? extends PartitionOffsetTracker> trackerClass) {
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
+
+        for (long offset = 1; offset <= 5; offset++) {
+            offsetManager.startOffset(offset);
+        }
+
+        offsetManager.finishOffset(2L);
+        offsetManager.finishOffset(3L);
+        offsetManager.finishOffset(5L);
+        assertEquals(0L, offsetManager.lastFinishedOffset(), "Offset 1 is still outstanding");
+
+        // 1 through 3 are now finished, 4 is still outstanding
+        offsetManager.finishOffset(1L);
+        assertEquals(3L, offsetManager.lastFinishedOffset(), "Should advance to 3, not fall back to 1");
+
+        offsetManager.finishOffset(4L);
+        assertEquals(5L, offsetManager.lastFinishedOffset(), "Should advance through 5");
+    }
+
+    /**
+     * Starting an offset below those already finished while others are still outstanding should hold back the
+     * last finished offset until it has been finished, without moving it backwards.
+     */
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testStartOffsetBelowFinishedWhileOthersOutstanding(final Class<? extends PartitionOffsetTracker> trackerClass) {
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
+
+        offsetManager.startOffset(1L);
+        offsetManager.startOffset(2L);
+        offsetManager.startOffset(3L);
+        offsetManager.finishOffset(1L);
+        assertEquals(1L, offsetManager.lastFinishedOffset());
+
+        // Start an offset out of order, below what has already been finished
+        offsetManager.startOffset(0L);
+
+        offsetManager.finishOffset(2L);
+        offsetManager.finishOffset(3L);
+        assertEquals(1L, offsetManager.lastFinishedOffset(), "Offset 0 is still outstanding");
+
+        offsetManager.finishOffset(0L);
+        assertEquals(3L, offsetManager.lastFinishedOffset(), "Should advance through 3 once 0 is finished");
+
+        // Normal tracking should carry on from there
+        offsetManager.startOffset(4L);
+        offsetManager.finishOffset(4L);
+        assertEquals(4L, offsetManager.lastFinishedOffset());
+    }
+
     /**
      * This test verifies what happens if you call lastTrackedOffset() when we have nothing being tracked.
      * It should return the last finished offset + 1.
      */
-    @Test
-    public void testLastStartedOffsetWhenHasNone() {
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testLastStartedOffsetWhenHasNone(final Class<? extends PartitionOffsetTracker> trackerClass) {
         // Create our manager we want to test with starting offset set to 0
         long startingOffset = 0L;
-        PartitionOffsetManager offsetManager = new PartitionOffsetManager("Test Topic", 1, startingOffset);
+        PartitionOffsetTracker offsetManager = createTracker(trackerClass, startingOffset);
         assertEquals(startingOffset, offsetManager.lastStartedOffset(), "Should be startingOffset");
 
         // Create our manager we want to test with starting offset set to 100
         startingOffset = 100L;
-        offsetManager = new PartitionOffsetManager("Test Topic", 1, startingOffset);
+        offsetManager = createTracker(trackerClass, startingOffset);
         assertEquals(startingOffset, offsetManager.lastStartedOffset(), "Should be startingOffset + 1");
     }
 
@@ -175,11 +235,12 @@ public class PartitionOffsetManagerTest {
      * This test verifies what happens if you call lastTrackedOffset() when we have been tracking some offsets.
      * It should return the largest value tracked.
      */
-    @Test
-    public void testLastStartedOffset() {
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testLastStartedOffset(final Class<? extends PartitionOffsetTracker> trackerClass) {
         // Create our manager we want to test with starting offset set to 0
         long startingOffset = 0L;
-        PartitionOffsetManager offsetManager = new PartitionOffsetManager("Test Topic", 1, startingOffset);
+        PartitionOffsetTracker offsetManager = createTracker(trackerClass, startingOffset);
 
         // Start some offsets
         offsetManager.startOffset(1L);
@@ -208,6 +269,62 @@ public class PartitionOffsetManagerTest {
         assertEquals(4L, result, "Should be 4L => 4L");
     }
 
+    /**
+     * Finishing a range of offsets with nothing outstanding should move the last finished offset to the end of the range.
+     */
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testFinishOffsetsWithNothingOutstanding(final Class<? extends PartitionOffsetTracker> trackerClass) {
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
+
+        offsetManager.finishOffsets(1L, 10L);
+        assertEquals(10L, offsetManager.lastFinishedOffset(), "Should be end of range");
+        assertEquals(10L, offsetManager.lastStartedOffset(), "Should be end of range");
+
+        // Normal tracking should carry on from there
+        offsetManager.startOffset(11L);
+        offsetManager.finishOffset(11L);
+        assertEquals(11L, offsetManager.lastFinishedOffset());
+    }
+
+    /**
+     * Finishing a range of offsets should not move the last finished offset past an offset still outstanding.
+     */
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testFinishOffsetsWithOutstandingOffset(final Class<? extends PartitionOffsetTracker> trackerClass) {
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
+
+        offsetManager.startOffset(1L);
+        offsetManager.finishOffsets(2L, 10L);
+        assertEquals(0L, offsetManager.lastFinishedOffset(), "Offset 1 is still outstanding");
+        assertEquals(10L, offsetManager.lastStartedOffset(), "Should be end of range");
+
+        offsetManager.finishOffset(1L);
+        assertEquals(10L, offsetManager.lastFinishedOffset(), "Should be end of range");
+    }
+
+    /**
+     * Finishing a range of offsets amongst offsets finished out of order should carry the last finished offset
+     * through the whole range once the earliest outstanding offset finishes.
+     */
+    @ParameterizedTest
+    @MethodSource("provideTrackers")
+    public void testFinishOffsetsWithOffsetsFinishedOutOfOrder(final Class<? extends PartitionOffsetTracker> trackerClass) {
+        final PartitionOffsetTracker offsetManager = createTracker(trackerClass, 0L);
+
+        offsetManager.startOffset(1L);
+        offsetManager.startOffset(2L);
+        offsetManager.finishOffset(2L);
+        offsetManager.finishOffsets(3L, 100_000L);
+        offsetManager.startOffset(100_001L);
+        offsetManager.finishOffset(100_001L);
+        assertEquals(0L, offsetManager.lastFinishedOffset(), "Offset 1 is still outstanding");
+
+        offsetManager.finishOffset(1L);
+        assertEquals(100_001L, offsetManager.lastFinishedOffset(), "Should be past the end of range");
+    }
+
     /**
      * Disabled Test.
      * Rudimentary benchmark test against PartitionOffsetManager.
@@ -248,6 +365,26 @@ public class PartitionOffsetManagerTest {
         logger.info("Finished acking {} in {} ms ", totalNumbers, (System.currentTimeMillis() - start));
     }
 
+    /**
+     * Provides the various tracker implementations.
+     */
+    public static Object[][] provideTrackers() {
+        return new Object[][]{
+                { PartitionOffsetManager.class },
+                { BitmapPartitionOffsetManager.class },
+        };
+    }
+
+    /**
+     * Utility to create the given tracker implementation.
+     */
+    private PartitionOffsetTracker createTracker(final Class<? extends PartitionOffsetTracker> trackerClass, final long lastFinishedOffset) {
+        if (BitmapPartitionOffsetManager.class.equals(trackerClass)) {
+            return new BitmapPartitionOffsetManager("Test Topic", 1, lastFinishedOffset);
+        }
+        return new PartitionOffsetManager("Test Topic", 1, lastFinishedOffset);
+    }
+
     /**
      * Provides various tuple buffer implementation.
      */
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link BackoffIdleStrategy} backs off and can be woken up.
+ */
+public class BackoffIdleStrategyTest {
+
+    /**
+     * Validates the max park time is read from the config.
+     */
+    @Test
+    public void testOpen() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.IDLE_STRATEGY_MAX_PARK_MS, 25L);
+
+        final BackoffIdleStrategy idleStrategy = new BackoffIdleStrategy();
+        idleStrategy.open(config);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(25), idleStrategy.getMaxParkNs(), "Max park time should be set from config");
+    }
+
+    /**
+     * Validates that once an idle strategy is parking, it is bounded by the configured max park time.
+     */
+    @Test
+    public void testIdleIsBoundedByMaxPark() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.IDLE_STRATEGY_MAX_PARK_MS, 10L);
+
+        final BackoffIdleStrategy idleStrategy = new BackoffIdleStrategy();
+        idleStrategy.open(config);
+
+        // Go through the spin and yield phases, and back off all the way to the max park period.
+        for (int counter = 0; counter < 200; counter++) {
+            idleStrategy.idle(0);
+        }
+
+        // Now we should be parking for the max period, which should not exceed our configured value by much.
+        final long startNs = System.nanoTime();
+        idleStrategy.idle(0);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+        assertTrue(elapsedMs < 1000, "Parking should be bounded by the max park time");
+    }
+
+    /**
+     * Validates that calling wake() unparks a thread that is idling.
+     */
+    @Test
+    public void testWakeUnparksIdleThread() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.IDLE_STRATEGY_MAX_PARK_MS, TimeUnit.MINUTES.toMillis(10));
+
+        final BackoffIdleStrategy idleStrategy = new BackoffIdleStrategy();
+        idleStrategy.open(config);
+
+        // Spin and yield, then park until woken up.  The max park is long enough that only a wake() should get us out of here.
+        final CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            for (int counter = 0; counter < 120; counter++) {
+                idleStrategy.idle(0);
+            }
+        });
+
+        // Keep waking until the idling thread completes.
+        await()
+            .atMost(10, TimeUnit.SECONDS)
+            .until(() -> {
+                idleStrategy.wake();
+                return future.isDone();
+            });
+
+        assertTrue(future.isDone(), "Idling thread should have been woken up");
+        assertFalse(future.isCompletedExceptionally(), "Idling thread should not have errored");
+    }
+}
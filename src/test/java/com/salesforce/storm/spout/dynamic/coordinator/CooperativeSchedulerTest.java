@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.MessageBus;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.buffer.FifoBuffer;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.mocks.MockDelegateSpout;
+import org.apache.storm.tuple.Values;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that {@link CooperativeScheduler} time slices many VirtualSpouts across few worker threads.
+ */
+public class CooperativeSchedulerTest {
+
+    /**
+     * Runs many more VirtualSpouts than there are workers, validating they all make progress and shut down cleanly.
+     */
+    @Test
+    public void testRunsMoreSpoutsThanWorkers() {
+        final int numberOfSpouts = 50;
+        final int messagesPerSpout = 20;
+
+        final Map<String, Object> topologyConfig = getDefaultConfig(2, 5);
+        final MessageBus messageBus = new MessageBus(FifoBuffer.createDefaultInstance());
+        final CooperativeScheduler scheduler = new CooperativeScheduler(topologyConfig, Executors.defaultThreadFactory());
+        assertEquals(2, scheduler.getNumberOfWorkers(), "Should have 2 workers");
+        assertEquals(5, scheduler.getQuantum(), "Should have quantum of 5");
+
+        // Submit our spouts, each with some messages to emit
+        final List<MockDelegateSpout> spouts = new ArrayList<>();
+        final List<SpoutRunner> spoutRunners = new ArrayList<>();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int spoutNumber = 0; spoutNumber < numberOfSpouts; spoutNumber++) {
+            final MockDelegateSpout spout = new MockDelegateSpout();
+            for (int offset = 0; offset < messagesPerSpout; offset++) {
+                spout.emitQueue.add(new Message(new MessageId("MyTopic", 0, offset, spout.getVirtualSpoutId()), new Values(offset)));
+            }
+            final SpoutRunner spoutRunner = new SpoutRunner(spout, messageBus, Clock.systemUTC(), topologyConfig);
+            spouts.add(spout);
+            spoutRunners.add(spoutRunner);
+            futures.add(scheduler.submit(spoutRunner));
+        }
+        assertEquals(numberOfSpouts, scheduler.getTaskCount(), "Should have all spouts scheduled");
+
+        // Start our workers
+        scheduler.open();
+
+        // Every spout should get opened and emit all of its messages
+        await()
+            .atMost(10, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(numberOfSpouts * messagesPerSpout));
+        for (final MockDelegateSpout spout : spouts) {
+            assertTrue(spout.wasOpenCalled, "Should have been opened");
+            assertTrue(spout.emitQueue.isEmpty(), "Should have emitted everything");
+        }
+
+        // Ack a message for the last spout and make sure it gets passed along
+        final MockDelegateSpout lastSpout = spouts.get(numberOfSpouts - 1);
+        final MessageId messageId = new MessageId("MyTopic", 0, 0L, lastSpout.getVirtualSpoutId());
+        messageBus.ack(messageId);
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> lastSpout.ackedTupleIds.contains(messageId), equalTo(true));
+
+        // Stop everything
+        for (final SpoutRunner spoutRunner : spoutRunners) {
+            spoutRunner.requestStop();
+        }
+        await()
+            .atMost(10, TimeUnit.SECONDS)
+            .until(() -> futures.stream().allMatch(CompletableFuture::isDone), equalTo(true));
+        for (int index = 0; index < numberOfSpouts; index++) {
+            assertFalse(futures.get(index).isCompletedExceptionally(), "Should have completed cleanly");
+            assertTrue(spouts.get(index).wasCloseCalled, "Should have been closed");
+        }
+        assertEquals(0, scheduler.getTaskCount(), "Should have no spouts scheduled");
+        assertEquals(numberOfSpouts, scheduler.getCompletedTaskCount(), "Should have completed all spouts");
+
+        scheduler.close(1000L);
+    }
+
+    /**
+     * Validates that a VirtualSpout which throws an exception completes exceptionally, without hurting the others.
+     */
+    @Test
+    public void testSpoutThatThrowsCompletesExceptionally() {
+        final Map<String, Object> topologyConfig = getDefaultConfig(1, 5);
+        final MessageBus messageBus = new MessageBus(FifoBuffer.createDefaultInstance());
+        final CooperativeScheduler scheduler = new CooperativeScheduler(topologyConfig, Executors.defaultThreadFactory());
+        scheduler.open();
+
+        final MockDelegateSpout badSpout = new MockDelegateSpout();
+        badSpout.exceptionToThrow = new RuntimeException("Oh no!");
+        final CompletableFuture<Void> badFuture = scheduler.submit(
+            new SpoutRunner(badSpout, messageBus, Clock.systemUTC(), topologyConfig)
+        );
+
+        final MockDelegateSpout goodSpout = new MockDelegateSpout();
+        final SpoutRunner goodRunner = new SpoutRunner(goodSpout, messageBus, Clock.systemUTC(), topologyConfig);
+        final CompletableFuture<Void> goodFuture = scheduler.submit(goodRunner);
+
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(badFuture::isCompletedExceptionally, equalTo(true));
+
+        // Our good spout should keep on running
+        goodSpout.emitQueue.add(new Message(new MessageId("MyTopic", 0, 0L, goodSpout.getVirtualSpoutId()), new Values(0)));
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(1));
+        assertFalse(goodFuture.isDone(), "Should still be running");
+
+        goodRunner.requestStop();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(goodFuture::isDone, equalTo(true));
+        assertTrue(goodSpout.wasCloseCalled, "Should have been closed");
+
+        scheduler.close(1000L);
+    }
+
+    /**
+     * Validates that a VirtualSpout stuck opening or flushing its state, as it would be behind a slow persistence adapter,
+     * doesn't hold up the other VirtualSpouts sharing its worker.
+     */
+    @Test
+    public void testSlowSpoutDoesNotBlockOthers() throws InterruptedException {
+        final Map<String, Object> topologyConfig = getDefaultConfig(1, 5);
+        // Flush on every turn
+        topologyConfig.put(SpoutConfig.CONSUMER_STATE_FLUSH_INTERVAL_MS, 0L);
+        final MessageBus messageBus = new MessageBus(FifoBuffer.createDefaultInstance());
+        final CooperativeScheduler scheduler = new CooperativeScheduler(topologyConfig, Executors.defaultThreadFactory());
+        scheduler.open();
+
+        final SlowSpout slowSpout = new SlowSpout();
+        final SpoutRunner slowRunner = new SpoutRunner(slowSpout, messageBus, Clock.systemUTC(), topologyConfig);
+        final CompletableFuture<Void> slowFuture = scheduler.submit(slowRunner);
+
+        final MockDelegateSpout goodSpout = new MockDelegateSpout();
+        final SpoutRunner goodRunner = new SpoutRunner(goodSpout, messageBus, Clock.systemUTC(), topologyConfig);
+        final CompletableFuture<Void> goodFuture = scheduler.submit(goodRunner);
+
+        // While our slow spout is stuck opening, our good spout should keep on running
+        assertTrue(slowSpout.openStarted.await(5, TimeUnit.SECONDS), "Should have started opening");
+        goodSpout.emitQueue.add(new Message(new MessageId("MyTopic", 0, 0L, goodSpout.getVirtualSpoutId()), new Values(0)));
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(1));
+
+        // And the same while it's stuck flushing its state
+        slowSpout.openLatch.countDown();
+        assertTrue(slowSpout.flushStarted.await(5, TimeUnit.SECONDS), "Should have started flushing");
+        goodSpout.emitQueue.add(new Message(new MessageId("MyTopic", 0, 1L, goodSpout.getVirtualSpoutId()), new Values(1)));
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(2));
+
+        // Once it's done flushing it carries on as normal
+        slowSpout.flushLatch.countDown();
+        slowRunner.requestStop();
+        goodRunner.requestStop();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> slowFuture.isDone() && goodFuture.isDone(), equalTo(true));
+        assertFalse(slowFuture.isCompletedExceptionally(), "Should have completed cleanly");
+        assertFalse(goodFuture.isCompletedExceptionally(), "Should have completed cleanly");
+        assertTrue(slowSpout.wasCloseCalled, "Should have been closed");
+        assertTrue(goodSpout.wasCloseCalled, "Should have been closed");
+
+        scheduler.close(1000L);
+    }
+
+    /**
+     * Validates that a single pass over a spout never does more work than it is allowed.
+     */
+    @Test
+    public void testRunOnceIsBoundedByQuantum() throws InterruptedException {
+        final Map<String, Object> topologyConfig = getDefaultConfig(1, 10);
+        final MessageBus messageBus = new MessageBus(FifoBuffer.createDefaultInstance());
+
+        final MockDelegateSpout spout = new MockDelegateSpout();
+        for (int offset = 0; offset < 25; offset++) {
+            spout.emitQueue.add(new Message(new MessageId("MyTopic", 0, offset, spout.getVirtualSpoutId()), new Values(offset)));
+        }
+        final SpoutRunner spoutRunner = new SpoutRunner(spout, messageBus, Clock.systemUTC(), topologyConfig);
+        spoutRunner.openSpout();
+
+        assertEquals(10, spoutRunner.runOnce(10), "Should do 10 units of work");
+        assertEquals(10, messageBus.messageSize(), "Should have emitted 10 messages");
+        assertEquals(10, spoutRunner.runOnce(10), "Should do 10 units of work");
+        assertEquals(5, spoutRunner.runOnce(10), "Should do 5 units of work");
+        assertEquals(0, spoutRunner.runOnce(10), "Should have nothing left to do");
+        assertEquals(25, messageBus.messageSize(), "Should have emitted all messages");
+
+        spoutRunner.closeSpout();
+        assertTrue(spout.wasCloseCalled, "Should have been closed");
+    }
+
+    /**
+     * Waits on its persistence adapter when opening and flushing state, until released.
+     */
+    private static class SlowSpout extends MockDelegateSpout {
+        private final CountDownLatch openStarted = new CountDownLatch(1);
+        private final CountDownLatch openLatch = new CountDownLatch(1);
+        private final CountDownLatch flushStarted = new CountDownLatch(1);
+        private final CountDownLatch flushLatch = new CountDownLatch(1);
+
+        @Override
+        public void open() {
+            openStarted.countDown();
+            waitOn(openLatch);
+            super.open();
+        }
+
+        @Override
+        public void flushState() {
+            flushStarted.countDown();
+            waitOn(flushLatch);
+            super.flushState();
+        }
+
+        private void waitOn(final CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Map<String, Object> getDefaultConfig(final int workerThreads, final int quantum) {
+        final Map<String, Object> topologyConfig = SpoutConfig.setDefaults(new HashMap<>());
+        topologyConfig.put(SpoutConfig.SCHEDULER, SpoutConfig.SCHEDULER_COOPERATIVE);
+        topologyConfig.put(SpoutConfig.COOPERATIVE_SCHEDULER_WORKER_THREADS, workerThreads);
+        topologyConfig.put(SpoutConfig.COOPERATIVE_SCHEDULER_QUANTUM, quantum);
+        return topologyConfig;
+    }
+}
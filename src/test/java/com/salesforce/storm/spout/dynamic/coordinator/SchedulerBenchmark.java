@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.MessageBus;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.buffer.FifoBuffer;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
+import com.salesforce.storm.spout.dynamic.metrics.MetricsRecorder;
+import com.salesforce.storm.spout.dynamic.mocks.MockDelegateSpout;
+import com.salesforce.storm.spout.dynamic.mocks.MockTopologyContext;
+import org.apache.storm.tuple.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks moving messages out of a few busy VirtualSpouts through each scheduler, while many more VirtualSpouts
+ * sit idle alongside them competing for the same threads.
+ *
+ * The benchmark thread plays the part of the DynamicSpout, consuming messages off of the {@link MessageBus}, so the
+ * score is how many messages per microsecond make it out of the busy VirtualSpouts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class SchedulerBenchmark {
+
+    /**
+     * How many messages are consumed per invocation.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Which scheduler runs the VirtualSpouts.
+     */
+    @Param({SpoutConfig.SCHEDULER_THREAD_POOL, SpoutConfig.SCHEDULER_COOPERATIVE, SpoutConfig.SCHEDULER_VIRTUAL_THREADS})
+    public String scheduler;
+
+    /**
+     * How many VirtualSpouts are running in total.
+     */
+    @Param({"1000"})
+    public int spouts;
+
+    /**
+     * How many of those VirtualSpouts always have messages to emit, the rest never do.
+     */
+    @Param({"10"})
+    public int busySpouts;
+
+    private final List<Message> drained = new ArrayList<>(BATCH_SIZE);
+    private MessageBus messageBus;
+    private SpoutCoordinator spoutCoordinator;
+
+    /**
+     * Start every VirtualSpout up once per trial, spreading the busy ones out amongst the idle ones.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        // Give the thread pool enough threads to run every VirtualSpout, the others ignore it.
+        final Map<String, Object> config = SpoutConfig.setDefaults(new HashMap<>());
+        config.put(SpoutConfig.SCHEDULER, scheduler);
+        config.put(SpoutConfig.MAX_CONCURRENT_VIRTUAL_SPOUTS, spouts);
+        config.put(SpoutConfig.MAX_SPOUT_SHUTDOWN_TIME_MS, 30000L);
+
+        final MetricsRecorder metricsRecorder = new LogRecorder();
+        metricsRecorder.open(config, new MockTopologyContext());
+
+        messageBus = new MessageBus(FifoBuffer.createDefaultInstance());
+        spoutCoordinator = new SpoutCoordinator(config, new ThreadContext("Benchmark", 1), messageBus, metricsRecorder);
+        spoutCoordinator.open();
+
+        final int busyEvery = Math.max(1, spouts / Math.max(1, busySpouts));
+        for (int spoutNumber = 0; spoutNumber < spouts; spoutNumber++) {
+            final boolean busy = busySpouts > 0 && spoutNumber % busyEvery == 0;
+            spoutCoordinator.addVirtualSpout(busy ? new BusySpout() : new MockDelegateSpout());
+        }
+    }
+
+    /**
+     * Stop every VirtualSpout.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        spoutCoordinator.close();
+    }
+
+    /**
+     * Consume a batch of messages off of the bus, waiting on the busy VirtualSpouts as needed.
+     * @return number of messages consumed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int nextMessages() {
+        int consumed = 0;
+        while (consumed < BATCH_SIZE) {
+            consumed += messageBus.nextMessages(drained, BATCH_SIZE - consumed);
+            drained.clear();
+        }
+        return consumed;
+    }
+
+    /**
+     * A VirtualSpout that always has another message to emit.
+     */
+    private static class BusySpout extends MockDelegateSpout {
+        private final Values values = new Values("key", "value");
+        private long offset = 0;
+
+        @Override
+        public Message nextTuple() {
+            return new Message(new MessageId("Benchmark", 0, offset++, getVirtualSpoutId()), values);
+        }
+    }
+}
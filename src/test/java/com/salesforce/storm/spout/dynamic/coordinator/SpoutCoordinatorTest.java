@@ -61,6 +61,8 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -156,6 +158,124 @@ public class SpoutCoordinatorTest {
         assertFalse(spoutCoordinator.keepRunning(), "Keep running should return false");
     }
 
+    /**
+     * Validates that with cooperative scheduling more VirtualSpouts can run than there are worker threads.
+     */
+    @Test
+    public void testCooperativeScheduling() {
+        final MessageBus messageBus = new MessageBus(new FifoBuffer());
+
+        // Create config, with a single thread pool thread that cooperative scheduling should ignore.
+        final Map<String, Object> topologyConfig = getDefaultConfig(1, 2000L, 100L);
+        topologyConfig.put(SpoutConfig.SCHEDULER, SpoutConfig.SCHEDULER_COOPERATIVE);
+        topologyConfig.put(SpoutConfig.COOPERATIVE_SCHEDULER_WORKER_THREADS, 2);
+
+        final MetricsRecorder metricsRecorder = new LogRecorder();
+        metricsRecorder.open(topologyConfig, new MockTopologyContext());
+
+        final SpoutCoordinator spoutCoordinator = new SpoutCoordinator(
+            topologyConfig,
+            new ThreadContext("Test", 1),
+            messageBus,
+            metricsRecorder
+        );
+        assertTrue(spoutCoordinator.isCooperativelyScheduled(), "Should be cooperatively scheduled");
+        assertNull(spoutCoordinator.getExecutor(), "Should have no thread pool");
+        assertNotNull(spoutCoordinator.getCooperativeScheduler(), "Should have a cooperative scheduler");
+        spoutCoordinator.open();
+
+        // Add more spouts than we have workers, each with a message to emit
+        final List<MockDelegateSpout> spouts = new ArrayList<>();
+        for (int spoutNumber = 0; spoutNumber < 10; spoutNumber++) {
+            final MockDelegateSpout spout = new MockDelegateSpout();
+            spout.emitQueue.add(new Message(new MessageId("MyTopic", 0, 0L, spout.getVirtualSpoutId()), new Values("Value")));
+            spouts.add(spout);
+            spoutCoordinator.addVirtualSpout(spout);
+        }
+
+        // All of them should get to run
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(spouts.size()));
+        assertEquals(spouts.size(), spoutCoordinator.getTotalSpouts(), "Should have all spouts");
+
+        // Remove one of them
+        spoutCoordinator.removeVirtualSpout(spouts.get(0).getVirtualSpoutId());
+        assertTrue(spouts.get(0).wasCloseCalled, "Should have been closed");
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(spoutCoordinator::getTotalSpouts, equalTo(spouts.size() - 1));
+
+        // Close should close the rest
+        spoutCoordinator.close();
+        for (final MockDelegateSpout spout : spouts) {
+            assertTrue(spout.wasCloseCalled, "Should have been closed");
+        }
+        assertEquals(0, spoutCoordinator.getTotalSpouts(), "Should have no spouts");
+    }
+
+    /**
+     * Validates that the virtual thread scheduler runs VirtualSpouts up to its own concurrency cap, independent of the
+     * thread pool size, and falls back to the thread pool on JVMs without virtual threads.
+     */
+    @Test
+    public void testVirtualThreadScheduling() {
+        final MessageBus messageBus = new MessageBus(new FifoBuffer());
+
+        // Create config, with a single thread pool thread that virtual threads should ignore.
+        final Map<String, Object> topologyConfig = getDefaultConfig(1, 2000L, 100L);
+        topologyConfig.put(SpoutConfig.SCHEDULER, SpoutConfig.SCHEDULER_VIRTUAL_THREADS);
+        topologyConfig.put(SpoutConfig.VIRTUAL_THREADS_MAX_CONCURRENT_VIRTUAL_SPOUTS, 5);
+
+        final MetricsRecorder metricsRecorder = new LogRecorder();
+        metricsRecorder.open(topologyConfig, new MockTopologyContext());
+
+        final SpoutCoordinator spoutCoordinator = new SpoutCoordinator(
+            topologyConfig,
+            new ThreadContext("Test", 1),
+            messageBus,
+            metricsRecorder
+        );
+        assertEquals(
+            VirtualThreads.isSupported(),
+            spoutCoordinator.isVirtualThreadScheduled(),
+            "Should only use virtual threads if supported"
+        );
+        assertFalse(spoutCoordinator.isCooperativelyScheduled(), "Should not be cooperatively scheduled");
+        assertNull(spoutCoordinator.getCooperativeScheduler(), "Should have no cooperative scheduler");
+        assertNotNull(spoutCoordinator.getExecutor(), "Should have an executor");
+
+        // Virtual threads are capped separately, while the fall back uses the thread pool size.
+        final int expectedRunning = VirtualThreads.isSupported() ? 5 : 1;
+        assertEquals(expectedRunning, spoutCoordinator.getExecutor().getMaximumPoolSize(), "Should have expected concurrency");
+        spoutCoordinator.open();
+
+        // Add more spouts than we're allowed to run at once, each with a message to emit
+        final List<MockDelegateSpout> spouts = new ArrayList<>();
+        for (int spoutNumber = 0; spoutNumber < 10; spoutNumber++) {
+            final MockDelegateSpout spout = new MockDelegateSpout();
+            spout.emitQueue.add(new Message(new MessageId("MyTopic", 0, 0L, spout.getVirtualSpoutId()), new Values("Value")));
+            spouts.add(spout);
+            spoutCoordinator.addVirtualSpout(spout);
+        }
+
+        // Only the ones under the cap should get to run, the rest stay queued
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(messageBus::messageSize, equalTo(expectedRunning));
+        assertEquals(expectedRunning, spoutCoordinator.getExecutor().getActiveCount(), "Should have expected running spouts");
+        assertEquals(spouts.size() - expectedRunning, spoutCoordinator.getExecutor().getQueue().size(), "Should have queued the rest");
+
+        // Close should close the running spouts, queued spouts were never opened so are dropped
+        spoutCoordinator.close();
+        assertEquals(
+            expectedRunning,
+            spouts.stream().filter((spout) -> spout.wasCloseCalled).count(),
+            "Should have closed the running spouts"
+        );
+        assertEquals(0, spoutCoordinator.getTotalSpouts(), "Should have no spouts");
+    }
+
     /**
      * Simple smoke test starting the monitor in a thread, and then asking it to close.
      */
@@ -219,8 +339,8 @@ public class SpoutCoordinatorTest {
         // But never closed... yet
         verify(mockSpout, never()).close();
 
-        // Verify nextTuple is called at least once
-        verify(mockSpout, atLeastOnce()).nextTuple();
+        // Verify nextTuples is called at least once
+        verify(mockSpout, atLeastOnce()).nextTuples(any(), anyInt());
 
         // Close the monitor
         spoutCoordinator.close();
@@ -275,6 +395,13 @@ public class SpoutCoordinatorTest {
         // validate the executor should no longer have any running tasks?
         assertEquals(0, spoutCoordinator.getExecutor().getActiveCount(), "Should have no running tasks");
 
+        // Should hand out that the spout finished, exactly once.
+        await()
+            .atMost(maxWaitTime, TimeUnit.SECONDS)
+            .until(spoutCoordinator::nextFinishedVirtualSpout, equalTo(mockSpout.getVirtualSpoutId()));
+        assertNull(spoutCoordinator.nextFinishedVirtualSpout(), "Should only hand out a finished spout once");
+        assertFalse(spoutCoordinator.getPipelineStats(mockSpout.getVirtualSpoutId()).isEnabled(), "Should not track a finished spout");
+
         // Call close on spout monitor
         spoutCoordinator.close();
 
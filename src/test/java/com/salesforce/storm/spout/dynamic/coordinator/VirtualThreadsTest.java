@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.coordinator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test that {@link VirtualThreads} only hands out virtual threads on JVMs that support them.
+ */
+public class VirtualThreadsTest {
+
+    /**
+     * On JVMs with virtual threads, validate the factory creates runnable virtual threads.
+     */
+    @Test
+    public void testNewThreadFactory() throws Exception {
+        assumeTrue(VirtualThreads.isSupported(), "Requires a JVM with virtual threads");
+
+        final ThreadFactory threadFactory = VirtualThreads.newThreadFactory();
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final Thread thread = threadFactory.newThread(() -> result.complete("Ran"));
+
+        assertFalse(thread.isAlive(), "Should not have been started");
+        assertTrue(thread.isDaemon(), "Virtual threads are always daemon threads");
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread), "Should be a virtual thread");
+
+        thread.start();
+        assertEquals("Ran", result.get(5, TimeUnit.SECONDS), "Should have run");
+    }
+
+    /**
+     * On JVMs without virtual threads, validate we refuse to create a factory.
+     */
+    @Test
+    public void testNewThreadFactoryWhenUnsupported() {
+        assumeFalse(VirtualThreads.isSupported(), "Requires a JVM without virtual threads");
+
+        assertThrows(UnsupportedOperationException.class, VirtualThreads::newThreadFactory);
+    }
+}
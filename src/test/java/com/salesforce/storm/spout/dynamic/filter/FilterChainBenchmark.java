@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.filter;
+
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.Message;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import org.apache.storm.tuple.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks filtering messages through a {@link FilterChain} of N steps, like one with N active sideline requests.
+ *
+ * Messages carry a random number from a range twice the number of steps, so roughly half of them get filtered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class FilterChainBenchmark {
+
+    /**
+     * Number of distinct messages we cycle through, a power of two.
+     */
+    private static final int MESSAGE_COUNT = 1024;
+
+    /**
+     * Number of steps in the chain.
+     */
+    @Param({"1", "10", "100"})
+    public int steps;
+
+    /**
+     * Whether steps can be looked up by the value they filter on, or must each be evaluated in turn.
+     */
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    /**
+     * Seed for the numbers carried by our messages, fixed so every run filters the same messages.
+     */
+    @Param({"1234"})
+    public long seed;
+
+    private FilterChain filterChain;
+    private Message[] messages;
+    private int messageIndex;
+
+    /**
+     * Build our chain, and the messages we'll filter through it.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        filterChain = new FilterChain();
+        for (int step = 0; step < steps; step++) {
+            filterChain.addStep(
+                new DefaultFilterChainStepIdentifier("Step" + step),
+                indexed ? new FieldEqualsFilterChainStep(0, step) : new NumberFilter(step)
+            );
+        }
+
+        final Random random = new Random(seed);
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("Benchmark");
+        messages = new Message[MESSAGE_COUNT];
+        for (int index = 0; index < MESSAGE_COUNT; index++) {
+            messages[index] = new Message(
+                new MessageId("Benchmark", 0, index, virtualSpoutId),
+                new Values(random.nextInt(steps * 2), "value")
+            );
+        }
+        messageIndex = 0;
+    }
+
+    /**
+     * Filter the next message through the chain.
+     * @return true if the message was filtered.
+     */
+    @Benchmark
+    public boolean filter() {
+        final Message message = messages[messageIndex];
+        messageIndex = (messageIndex + 1) & (MESSAGE_COUNT - 1);
+        return filterChain.filter(message);
+    }
+}
@@ -38,6 +38,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Test that a {@link FilterChain} processes a set of filters correctly.
@@ -136,6 +138,115 @@ public class FilterChainTest {
         assertFalse(filterChain.filter(message2), "Message 2 shouldn't be filtered");
     }
 
+    /**
+     * Test that indexed steps filter the messages with their key, alongside steps that are not indexed.
+     */
+    @Test
+    public void testIndexedSteps() {
+        final VirtualSpoutIdentifier consumerId = new DefaultVirtualSpoutIdentifier("FakeConsumer");
+
+        final FilterChain filterChain = new FilterChain();
+        for (int tenant = 0; tenant < 100; tenant++) {
+            filterChain.addStep(
+                new DefaultFilterChainStepIdentifier("tenant" + tenant),
+                new FieldEqualsFilterChainStep(1, "tenant" + tenant)
+            );
+        }
+        filterChain.addStep(new DefaultFilterChainStepIdentifier("number"), new NumberFilter(2));
+
+        final Message message1 = new Message(new MessageId("foobar", 1, 0L, consumerId), new Values(1, "tenant42"));
+        final Message message2 = new Message(new MessageId("foobar", 1, 1L, consumerId), new Values(1, "tenant100"));
+        final Message message3 = new Message(new MessageId("foobar", 1, 2L, consumerId), new Values(2, "tenant100"));
+
+        assertTrue(filterChain.filter(message1), "Message 1 should be filtered by its tenant");
+        assertFalse(filterChain.filter(message2), "Message 2 shouldn't be filtered");
+        assertTrue(filterChain.filter(message3), "Message 3 should be filtered by its number");
+
+        // Removing the step should remove it from the index
+        filterChain.removeStep(new DefaultFilterChainStepIdentifier("tenant42"));
+        assertFalse(filterChain.filter(message1), "Message 1 shouldn't be filtered");
+    }
+
+    /**
+     * Test that we keep statistics on each step, and that indexed steps are only evaluated against messages with their key.
+     */
+    @Test
+    public void testStepStats() {
+        final VirtualSpoutIdentifier consumerId = new DefaultVirtualSpoutIdentifier("FakeConsumer");
+
+        final FilterChainStepIdentifier tenant1Id = new DefaultFilterChainStepIdentifier("tenant1");
+        final FilterChainStepIdentifier tenant2Id = new DefaultFilterChainStepIdentifier("tenant2");
+        final FilterChainStepIdentifier numberId = new DefaultFilterChainStepIdentifier("number");
+
+        final FilterChain filterChain = new FilterChain()
+            .addStep(tenant1Id, new FieldEqualsFilterChainStep(1, "tenant1"))
+            .addStep(tenant2Id, new FieldEqualsFilterChainStep(1, "tenant2"))
+            .addStep(numberId, new NumberFilter(2))
+        ;
+
+        for (int x = 0; x < 10; x++) {
+            filterChain.filter(new Message(new MessageId("foobar", 1, x, consumerId), new Values(x, "tenant1")));
+        }
+
+        final Map<FilterChainStepIdentifier, FilterChainStepStats> stepStats = filterChain.getStepStats();
+        assertEquals(3, stepStats.size());
+
+        assertEquals(10L, stepStats.get(tenant1Id).getEvaluations(), "Tenant 1 should have seen every message");
+        assertEquals(10L, stepStats.get(tenant1Id).getHits(), "Tenant 1 should have filtered every message");
+
+        assertEquals(0L, stepStats.get(tenant2Id).getEvaluations(), "Tenant 2 should never be evaluated");
+        assertEquals(0L, stepStats.get(tenant2Id).getHits());
+
+        // Every message was filtered by its tenant before reaching the number filter
+        assertEquals(0L, stepStats.get(numberId).getEvaluations());
+
+        filterChain.removeStep(tenant1Id);
+        assertFalse(filterChain.getStepStats().containsKey(tenant1Id), "Removed step should have no stats");
+    }
+
+    /**
+     * Test that only the steps able to filter raw records are used to filter raw records.
+     */
+    @Test
+    public void testFilterRaw() {
+        final RawMessage rawMessage1 = mockRawMessage(1);
+        final RawMessage rawMessage2 = mockRawMessage(2);
+
+        final FilterChain filterChain = new FilterChain()
+            .addStep(new DefaultFilterChainStepIdentifier("1"), new NumberFilter(2))
+            .addStep(new DefaultFilterChainStepIdentifier("2"), new PartitionFilter(1))
+        ;
+
+        assertTrue(filterChain.hasRawFilterChainSteps(), "Chain has a raw step");
+        assertTrue(filterChain.filterRaw(rawMessage1), "Raw message 1 should be filtered");
+        assertFalse(filterChain.filterRaw(rawMessage2), "Raw message 2 shouldn't be filtered");
+    }
+
+    /**
+     * Test that a negated step can filter raw records only when the step it wraps can.
+     */
+    @Test
+    public void testNegatingChainFilterRaw() {
+        final RawMessage rawMessage1 = mockRawMessage(1);
+        final RawMessage rawMessage2 = mockRawMessage(2);
+
+        final FilterChain rawFilterChain = new FilterChain()
+            .addStep(new DefaultFilterChainStepIdentifier("1"), new NegatingFilterChainStep(new PartitionFilter(1)))
+        ;
+
+        assertTrue(rawFilterChain.hasRawFilterChainSteps(), "Chain has a raw step");
+        assertFalse(rawFilterChain.filterRaw(rawMessage1), "Raw message 1 shouldn't be filtered");
+        assertTrue(rawFilterChain.filterRaw(rawMessage2), "Raw message 2 should be filtered");
+
+        final FilterChain filterChain = new FilterChain()
+            .addStep(new DefaultFilterChainStepIdentifier("1"), new NegatingFilterChainStep(new NumberFilter(2)))
+        ;
+
+        assertFalse(filterChain.hasRawFilterChainSteps(), "Chain has no raw steps");
+        assertFalse(filterChain.filterRaw(rawMessage1), "Raw message 1 shouldn't be filtered");
+        assertFalse(filterChain.filterRaw(rawMessage2), "Raw message 2 shouldn't be filtered");
+    }
+
     /**
      * Test that we can find a step's identifier using the step.
      */
@@ -235,4 +346,14 @@ public class FilterChainTest {
             "Identifier 2 should yield step 2"
         );
     }
+
+    /**
+     * Utility to mock a raw record from the given partition.
+     */
+    private RawMessage mockRawMessage(final int partition) {
+        final RawMessage rawMessage = mock(RawMessage.class);
+        when(rawMessage.getNamespace()).thenReturn("foobar");
+        when(rawMessage.getPartition()).thenReturn(partition);
+        return rawMessage;
+    }
 }
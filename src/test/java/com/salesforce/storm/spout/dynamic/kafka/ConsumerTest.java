@@ -30,11 +30,16 @@ import com.salesforce.kafka.test.ProducedKafkaRecord;
 import com.salesforce.kafka.test.junit5.SharedKafkaTestResource;
 import com.salesforce.storm.spout.dynamic.ConsumerPartition;
 import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.Message;
 import com.salesforce.storm.spout.dynamic.VirtualSpoutIdentifier;
 import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerPeerContext;
 import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
 import com.salesforce.storm.spout.dynamic.consumer.Record;
+import com.salesforce.storm.spout.dynamic.filter.DefaultFilterChainStepIdentifier;
+import com.salesforce.storm.spout.dynamic.filter.FilterChain;
+import com.salesforce.storm.spout.dynamic.filter.RawFilterChainStep;
+import com.salesforce.storm.spout.dynamic.filter.RawMessage;
 import com.salesforce.storm.spout.dynamic.kafka.deserializer.NullDeserializer;
 import com.salesforce.storm.spout.dynamic.kafka.deserializer.Utf8StringDeserializer;
 import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
@@ -1235,6 +1240,145 @@ public class ConsumerTest {
         consumer.close();
     }
 
+    /**
+     * Produce 10 messages into a kafka topic: offsets [0-9]
+     * Setup our Consumer with a FilterChain that filters the first 5 records in their raw form.
+     * Consume using the Consumer, verify we only get the last 5 messages back and the filtered records were completed.
+     */
+    @Test
+    public void testConsumerWithRawFilterChain() {
+        // Define how many records to produce
+        final int numberOfRecordsToProduce = 10;
+
+        final ConsumerPartition partition0 = new ConsumerPartition(topicName, 0);
+
+        // Produce entries to the namespace.
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecords = produceRecords(numberOfRecordsToProduce, 0);
+
+        // Create a list of the records we expect to get back from the consumer, this should be the last 5 entries.
+        final List<ProducedKafkaRecord<byte[], byte[]>> expectedProducedRecords = producedRecords.subList(5,10);
+
+        // Filter the first 5 records, both raw and deserialized.
+        final FilterChain filterChain = new FilterChain()
+            .addStep(new DefaultFilterChainStepIdentifier("1"), new RawFilterChainStep() {
+                @Override
+                public boolean filterRaw(final RawMessage rawMessage) {
+                    return rawMessage.getOffset() < 5;
+                }
+
+                @Override
+                public boolean filter(final Message message) {
+                    return message.getOffset() < 5;
+                }
+            });
+
+        // Create our Persistence Manager
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        // Create our consumer
+        final Consumer consumer = new Consumer();
+        consumer.setFilterChain(filterChain);
+        consumer.open(
+            getDefaultConfig(),
+            getDefaultVSpoutId(),
+            getDefaultConsumerCohortDefinition(),
+            persistenceAdapter,
+            new LogRecorder(),
+            null
+        );
+
+        // Read from namespace, verify we get what we expect, we should only get the last 5 records.
+        final List<Record> consumedRecords = asyncConsumeMessages(consumer, 5);
+        final Iterator<ProducedKafkaRecord<byte[], byte[]>> expectedProducedRecordsIterator = expectedProducedRecords.iterator();
+        for (final Record foundRecord : consumedRecords) {
+            // Get the produced record we expected to get back.
+            final ProducedKafkaRecord<byte[], byte[]> expectedRecord = expectedProducedRecordsIterator.next();
+
+            // Validate we got what we expected
+            validateRecordMatchesInput(expectedRecord, foundRecord);
+        }
+
+        // The filtered records should have been completed, the emitted ones are still outstanding.
+        validateConsumerState(consumer.flushConsumerState(), partition0, 4L);
+
+        // Complete the emitted records
+        for (final Record foundRecord : consumedRecords) {
+            consumer.commitOffset(foundRecord.getNamespace(), foundRecord.getPartition(), foundRecord.getOffset());
+        }
+        validateConsumerState(consumer.flushConsumerState(), partition0, 9L);
+
+        // Close out consumer
+        consumer.close();
+    }
+
+    /**
+     * Produce 10 messages into a kafka topic: offsets [0-9]
+     * Setup our Consumer with parallel deserialization and a FilterChain that filters every odd offset in its raw form.
+     * Consume using the Consumer, verify we only get the even offsets back and the filtered records were completed around them.
+     */
+    @Test
+    public void testConsumerWithRawFilterChainAndParallelDeserialization() {
+        // Define how many records to produce
+        final int numberOfRecordsToProduce = 10;
+
+        final ConsumerPartition partition0 = new ConsumerPartition(topicName, 0);
+
+        // Produce entries to the namespace.
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecords = produceRecords(numberOfRecordsToProduce, 0);
+
+        // Filter every odd offset in its raw form.
+        final FilterChain filterChain = new FilterChain()
+            .addStep(new DefaultFilterChainStepIdentifier("1"), new RawFilterChainStep() {
+                @Override
+                public boolean filterRaw(final RawMessage rawMessage) {
+                    return rawMessage.getOffset() % 2 == 1;
+                }
+
+                @Override
+                public boolean filter(final Message message) {
+                    return message.getOffset() % 2 == 1;
+                }
+            });
+
+        // Create our Persistence Manager
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        // Create our consumer
+        final Map<String, Object> config = getDefaultConfig();
+        config.put(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED, true);
+
+        final Consumer consumer = new Consumer();
+        consumer.setFilterChain(filterChain);
+        consumer.open(
+            config,
+            getDefaultVSpoutId(),
+            getDefaultConsumerCohortDefinition(),
+            persistenceAdapter,
+            new LogRecorder(),
+            null
+        );
+
+        // Read from namespace, verify we get what we expect, we should only get the even offsets.
+        final List<Record> consumedRecords = asyncConsumeMessages(consumer, 5);
+        for (int index = 0; index < consumedRecords.size(); index++) {
+            validateRecordMatchesInput(producedRecords.get(index * 2), consumedRecords.get(index));
+        }
+
+        // Nothing can be completed until offset 0 is.
+        validateConsumerState(consumer.flushConsumerState(), partition0, -1L);
+
+        // Complete the emitted records, which should complete the filtered records around them.
+        for (final Record foundRecord : consumedRecords) {
+            consumer.commitOffset(foundRecord.getNamespace(), foundRecord.getPartition(), foundRecord.getOffset());
+        }
+        validateConsumerState(consumer.flushConsumerState(), partition0, 9L);
+
+        // Close out consumer
+        consumer.close();
+    }
+
     /**
      * 1. Setup a consumer to consume from a topic with 2 partitions.
      * 2. Produce several messages into both partitions
@@ -1353,6 +1497,133 @@ public class ConsumerTest {
         consumer.close();
     }
 
+    /**
+     * Produce enough messages into two partitions to span several slices of each, then consume them with parallel
+     * deserialization enabled, verifying every message comes back in order within its partition.
+     */
+    @Test
+    public void testConsumeWithParallelDeserialization() {
+        this.topicName = "testConsumeWithParallelDeserialization" + System.currentTimeMillis();
+        final int expectedNumberOfPartitions = 2;
+        final int expectedNumberOfMsgsPerPartition = ParallelDeserializer.SLICE_SIZE * 2 + 10;
+
+        // Create our multi-partition namespace.
+        getKafkaTestUtils().createTopic(topicName, expectedNumberOfPartitions, (short) 1);
+
+        // Produce to each partition
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecordsPartition0 = produceRecords(expectedNumberOfMsgsPerPartition, 0);
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecordsPartition1 = produceRecords(expectedNumberOfMsgsPerPartition, 1);
+
+        // Create config, enabling parallel deserialization
+        final Map<String, Object> config = getDefaultConfig(topicName);
+        config.put(KafkaConsumerConfig.PARALLEL_DESERIALIZATION_ENABLED, true);
+
+        // Create our Persistence Manager
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        // Create our consumer
+        final Consumer consumer = new Consumer();
+        consumer.open(config, getDefaultVSpoutId(), getDefaultConsumerCohortDefinition(), persistenceAdapter, new LogRecorder(), null);
+
+        // The next batch should be fetched while this one is deserialized
+        assertNotNull(consumer.getPrefetcher(), "Should be prefetching");
+
+        // Consume everything, validating the order within each partition
+        final List<Record> consumedRecords = asyncConsumeMessages(consumer, expectedNumberOfMsgsPerPartition * 2);
+        int partition0Index = 0;
+        int partition1Index = 0;
+        for (final Record foundRecord : consumedRecords) {
+            if (foundRecord.getPartition() == 0) {
+                validateRecordMatchesInput(producedRecordsPartition0.get(partition0Index++), foundRecord);
+            } else {
+                validateRecordMatchesInput(producedRecordsPartition1.get(partition1Index++), foundRecord);
+            }
+        }
+        assertEquals(expectedNumberOfMsgsPerPartition, partition0Index, "Should have consumed every message from partition 0");
+        assertEquals(expectedNumberOfMsgsPerPartition, partition1Index, "Should have consumed every message from partition 1");
+
+        // Close out consumer
+        consumer.close();
+    }
+
+    /**
+     * Produce messages into two partitions and consume them with prefetching enabled, verifying every message
+     * comes back in order within its partition.
+     */
+    @Test
+    public void testConsumeWithPrefetching() {
+        this.topicName = "testConsumeWithPrefetching" + System.currentTimeMillis();
+        final int expectedNumberOfMsgsPerPartition = 10;
+
+        // Create our multi-partition namespace.
+        getKafkaTestUtils().createTopic(topicName, 2, (short) 1);
+
+        // Produce to each partition
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecordsPartition0 = produceRecords(expectedNumberOfMsgsPerPartition, 0);
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecordsPartition1 = produceRecords(expectedNumberOfMsgsPerPartition, 1);
+
+        // Create our consumer, with prefetching enabled
+        final Consumer consumer = getPrefetchingConsumerInstanceAndOpen();
+        assertNotNull(consumer.getPrefetcher(), "Should be prefetching");
+
+        // Consume everything, validating the order within each partition
+        final List<Record> consumedRecords = asyncConsumeMessages(consumer, expectedNumberOfMsgsPerPartition * 2);
+        int partition0Index = 0;
+        int partition1Index = 0;
+        for (final Record foundRecord : consumedRecords) {
+            if (foundRecord.getPartition() == 0) {
+                validateRecordMatchesInput(producedRecordsPartition0.get(partition0Index++), foundRecord);
+            } else {
+                validateRecordMatchesInput(producedRecordsPartition1.get(partition1Index++), foundRecord);
+            }
+        }
+
+        // Commands are run on the prefetching thread
+        assertEquals(2, consumer.getAssignedPartitions().size());
+
+        // Close out consumer
+        consumer.close();
+        assertNull(consumer.getPrefetcher(), "Should have stopped prefetching");
+    }
+
+    /**
+     * Produce messages into two partitions, wait for them to be fetched ahead, then unsubscribe from one partition.
+     * The batch fetched ahead is dropped, so verify every message from the other partition still comes back.
+     */
+    @Test
+    public void testUnsubscribeWhilePrefetching() {
+        this.topicName = "testUnsubscribeWhilePrefetching" + System.currentTimeMillis();
+        final int expectedNumberOfMsgsPerPartition = 10;
+
+        // Create our multi-partition namespace.
+        getKafkaTestUtils().createTopic(topicName, 2, (short) 1);
+
+        // Produce to each partition
+        produceRecords(expectedNumberOfMsgsPerPartition, 0);
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecordsPartition1 = produceRecords(expectedNumberOfMsgsPerPartition, 1);
+
+        // Create our consumer, with prefetching enabled, and wait for it to fetch ahead
+        final Consumer consumer = getPrefetchingConsumerInstanceAndOpen();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> consumer.getPrefetcher().getBufferedBatches(), equalTo(1));
+
+        // Unsubscribe from partition 0
+        assertTrue(consumer.unsubscribeConsumerPartition(new ConsumerPartition(topicName, 0)));
+
+        // We should get every message from partition 1, and none from partition 0
+        final List<Record> consumedRecords = asyncConsumeMessages(consumer, expectedNumberOfMsgsPerPartition);
+        int partition1Index = 0;
+        for (final Record foundRecord : consumedRecords) {
+            assertEquals(1, foundRecord.getPartition(), "Should only get messages from partition 1");
+            validateRecordMatchesInput(producedRecordsPartition1.get(partition1Index++), foundRecord);
+        }
+
+        // Close out consumer
+        consumer.close();
+    }
+
     /**
      * This is an integration test of multiple Consumers.
      * We stand up a topic with 4 partitions.
@@ -2577,6 +2848,23 @@ public class ConsumerTest {
         return getDefaultConsumerInstanceAndOpen(topicName);
     }
 
+    /**
+     * Utility method to generate an opened Consumer instance with prefetching enabled.
+     */
+    private Consumer getPrefetchingConsumerInstanceAndOpen() {
+        final Map<String, Object> config = getDefaultConfig(topicName);
+        config.put(KafkaConsumerConfig.PREFETCH_ENABLED, true);
+
+        // Create our Persistence Manager
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        // Create our consumer
+        final Consumer consumer = new Consumer();
+        consumer.open(config, getDefaultVSpoutId(), getDefaultConsumerCohortDefinition(), persistenceAdapter, new LogRecorder(), null);
+        return consumer;
+    }
+
     private List<Record> asyncConsumeMessages(final Consumer consumer, final int numberOfMessagesToConsume) {
         final List<Record> consumedMessages = new ArrayList<>();
 
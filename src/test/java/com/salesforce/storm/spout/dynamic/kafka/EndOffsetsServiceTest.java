@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.salesforce.kafka.test.KafkaTestUtils;
+import com.salesforce.kafka.test.junit5.SharedKafkaTestResource;
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerPeerContext;
+import com.salesforce.storm.spout.dynamic.kafka.deserializer.Utf8StringDeserializer;
+import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
+import com.salesforce.storm.spout.dynamic.persistence.InMemoryPersistenceAdapter;
+import com.salesforce.storm.spout.dynamic.persistence.PersistenceAdapter;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Validates that end offsets are looked up in the background, and shared between consumers.
+ */
+public class EndOffsetsServiceTest {
+
+    /**
+     * We generate a unique topic name for every test case.
+     */
+    private String topicName;
+
+    /**
+     * Create shared kafka test server.
+     */
+    @RegisterExtension
+    public static final SharedKafkaTestResource sharedKafkaTestResource = new SharedKafkaTestResource();
+
+    /**
+     * This happens once before every test method.
+     * Create a new empty namespace with randomly generated name.
+     */
+    @BeforeEach
+    public void beforeTest() {
+        // Generate unique namespace name
+        topicName = EndOffsetsServiceTest.class.getSimpleName() + Clock.systemUTC().millis();
+
+        // Create namespace
+        getKafkaTestUtils().createTopic(topicName, 2, (short) 1);
+    }
+
+    /**
+     * Registered partitions should have their end offsets looked up, and forgotten once no longer registered.
+     */
+    @Test
+    public void testRegisterAndUnregister() {
+        final TopicPartition partition0 = new TopicPartition(topicName, 0);
+        final TopicPartition partition1 = new TopicPartition(topicName, 1);
+
+        getKafkaTestUtils().produceRecords(5, topicName, 0);
+        getKafkaTestUtils().produceRecords(3, topicName, 1);
+
+        final Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, sharedKafkaTestResource.getKafkaConnectString());
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        final KafkaConsumer<byte[], byte[]> kafkaConsumer = new KafkaConsumer<>(properties);
+        final EndOffsetsService endOffsetsService = new EndOffsetsService("test", kafkaConsumer);
+
+        // Registering looks up end offsets right away, not at the next interval
+        endOffsetsService.register(Arrays.asList(partition0, partition1));
+        await()
+            .atMost(10, TimeUnit.SECONDS)
+            .until(() -> endOffsetsService.getEndOffset(partition1), equalTo(3L));
+        assertEquals(5L, (long) endOffsetsService.getEndOffset(partition0), "Should have end offset of partition 0");
+
+        // Registered twice, so a single unregister keeps it around
+        endOffsetsService.register(Collections.singletonList(partition0));
+        endOffsetsService.unregister(Arrays.asList(partition0, partition1));
+        assertNotNull(endOffsetsService.getEndOffset(partition0), "Partition 0 is still registered");
+        assertNull(endOffsetsService.getEndOffset(partition1), "Partition 1 is no longer registered");
+
+        // Refreshing picks up newly produced records
+        getKafkaTestUtils().produceRecords(2, topicName, 0);
+        endOffsetsService.refresh();
+        assertEquals(7L, (long) endOffsetsService.getEndOffset(partition0), "Should have new end offset of partition 0");
+        assertNull(endOffsetsService.getEndOffset(partition1), "Partition 1 should not be looked up");
+
+        endOffsetsService.close();
+    }
+
+    /**
+     * Consumers of the same brokers should share a single service.
+     */
+    @Test
+    public void testConsumersShareService() {
+        getKafkaTestUtils().produceRecords(5, topicName, 0);
+
+        final Consumer firehoseConsumer = openConsumer("Firehose");
+        final Consumer sidelineConsumer = openConsumer("Sideline");
+
+        final EndOffsetsService endOffsetsService = firehoseConsumer.getEndOffsetsService();
+        assertNotNull(endOffsetsService, "End offsets service should be set");
+        assertSame(endOffsetsService, sidelineConsumer.getEndOffsetsService(), "End offsets service should be shared");
+
+        await()
+            .atMost(10, TimeUnit.SECONDS)
+            .until(() -> endOffsetsService.getEndOffset(new TopicPartition(topicName, 0)), equalTo(5L));
+
+        firehoseConsumer.close();
+        sidelineConsumer.close();
+    }
+
+    /**
+     * Utility to open a consumer over every partition of our topic.
+     */
+    private Consumer openConsumer(final String virtualSpoutId) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(KafkaConsumerConfig.KAFKA_BROKERS, Collections.singletonList(sharedKafkaTestResource.getKafkaConnectString()));
+        config.put(KafkaConsumerConfig.KAFKA_TOPIC, topicName);
+        config.put(KafkaConsumerConfig.CONSUMER_ID_PREFIX, "TestPrefix");
+        config.put(KafkaConsumerConfig.DESERIALIZER_CLASS, Utf8StringDeserializer.class.getName());
+
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        final Consumer consumer = new Consumer();
+        consumer.open(
+            SpoutConfig.setDefaults(config),
+            new DefaultVirtualSpoutIdentifier(virtualSpoutId),
+            new ConsumerPeerContext(1, 0),
+            persistenceAdapter,
+            new LogRecorder(),
+            null
+        );
+        return consumer;
+    }
+
+    /**
+     * Simple accessor.
+     */
+    private KafkaTestUtils getKafkaTestUtils() {
+        return sharedKafkaTestResource.getKafkaTestUtils();
+    }
+}
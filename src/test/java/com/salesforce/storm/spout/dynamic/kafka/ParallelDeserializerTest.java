@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.salesforce.storm.spout.dynamic.kafka.deserializer.Deserializer;
+import com.salesforce.storm.spout.dynamic.kafka.deserializer.Utf8StringDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.storm.tuple.Values;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validates that {@link ParallelDeserializer} hands back records in order along with their deserialized values.
+ */
+public class ParallelDeserializerTest {
+
+    private ForkJoinPool pool;
+
+    /**
+     * Create a pool of our own for each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    /**
+     * Shut down the pool.
+     */
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Records from several partitions, spanning several slices, should come back in the order they were fetched in.
+     */
+    @Test
+    public void testPreservesOrder() {
+        final int recordsPerPartition = ParallelDeserializer.SLICE_SIZE * 3 + 7;
+        final ConsumerRecords<byte[], byte[]> records = createRecords(3, recordsPerPartition);
+
+        final ParallelDeserializer parallelDeserializer = new ParallelDeserializer(new Utf8StringDeserializer(), pool);
+        final ParallelDeserializer.Batch batch = parallelDeserializer.submit(records);
+
+        int count = 0;
+        for (final ConsumerRecord<byte[], byte[]> expectedRecord : records) {
+            assertTrue(batch.hasNext(), "Should have more records");
+            final ConsumerRecord<byte[], byte[]> record = batch.next();
+            assertEquals(expectedRecord, record, "Should be the same record");
+
+            final Values values = batch.getValues();
+            assertEquals("key" + record.offset(), values.get(0));
+            assertEquals("value" + record.partition() + "-" + record.offset(), values.get(1));
+            count++;
+        }
+        assertEquals(3 * recordsPerPartition, count);
+        assertFalse(batch.hasNext(), "Should have no more records");
+    }
+
+    /**
+     * Records the deserializer returns null for, or throws for, should only affect those records.
+     */
+    @Test
+    public void testNullAndExceptions() {
+        final ConsumerRecords<byte[], byte[]> records = createRecords(1, 10);
+
+        // Return null for offset 3, and throw for offset 5
+        final Deserializer deserializer = (topic, partition, offset, key, value) -> {
+            if (offset == 3) {
+                return null;
+            }
+            if (offset == 5) {
+                throw new IllegalArgumentException("Bad record");
+            }
+            return new Values(offset);
+        };
+
+        final ParallelDeserializer.Batch batch = new ParallelDeserializer(deserializer, pool).submit(records);
+
+        for (long offset = 0; offset < 10; offset++) {
+            assertEquals(offset, batch.next().offset());
+            if (offset == 3) {
+                assertNull(batch.getValues(), "Should be null");
+            } else if (offset == 5) {
+                assertThrows(IllegalArgumentException.class, batch::getValues);
+            } else {
+                assertEquals(new Values(offset), batch.getValues());
+            }
+        }
+        assertFalse(batch.hasNext(), "Should have no more records");
+    }
+
+    /**
+     * An empty batch should have nothing in it.
+     */
+    @Test
+    public void testEmptyBatch() {
+        final ParallelDeserializer.Batch batch = new ParallelDeserializer(new Utf8StringDeserializer(), pool)
+            .submit(ConsumerRecords.empty());
+
+        assertFalse(batch.hasNext(), "Should have no records");
+        assertThrows(IllegalStateException.class, batch::getValues);
+    }
+
+    /**
+     * Utility to create a batch of records.
+     */
+    private ConsumerRecords<byte[], byte[]> createRecords(final int partitions, final int recordsPerPartition) {
+        final Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new LinkedHashMap<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            final List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+            for (long offset = 0; offset < recordsPerPartition; offset++) {
+                partitionRecords.add(new ConsumerRecord<>(
+                    "MyTopic",
+                    partition,
+                    offset,
+                    ("key" + offset).getBytes(StandardCharsets.UTF_8),
+                    ("value" + partition + "-" + offset).getBytes(StandardCharsets.UTF_8)
+                ));
+            }
+            records.put(new TopicPartition("MyTopic", partition), partitionRecords);
+        }
+        return new ConsumerRecords<>(records);
+    }
+}
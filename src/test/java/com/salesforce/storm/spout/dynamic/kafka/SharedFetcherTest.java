@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka;
+
+import com.salesforce.kafka.test.KafkaTestUtils;
+import com.salesforce.kafka.test.ProducedKafkaRecord;
+import com.salesforce.kafka.test.junit5.SharedKafkaTestResource;
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerPeerContext;
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
+import com.salesforce.storm.spout.dynamic.consumer.Record;
+import com.salesforce.storm.spout.dynamic.kafka.deserializer.Utf8StringDeserializer;
+import com.salesforce.storm.spout.dynamic.metrics.LogRecorder;
+import com.salesforce.storm.spout.dynamic.persistence.InMemoryPersistenceAdapter;
+import com.salesforce.storm.spout.dynamic.persistence.PersistenceAdapter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Validates that consumers with shared fetching enabled share a single fetcher while each tracking their own position.
+ */
+public class SharedFetcherTest {
+
+    /**
+     * We generate a unique topic name for every test case.
+     */
+    private String topicName;
+
+    /**
+     * Create shared kafka test server.
+     */
+    @RegisterExtension
+    public static final SharedKafkaTestResource sharedKafkaTestResource = new SharedKafkaTestResource();
+
+    /**
+     * This happens once before every test method.
+     * Create a new empty namespace with randomly generated name.
+     */
+    @BeforeEach
+    public void beforeTest() {
+        // Generate unique namespace name
+        topicName = SharedFetcherTest.class.getSimpleName() + Clock.systemUTC().millis();
+
+        // Create namespace
+        getKafkaTestUtils().createTopic(topicName, 1, (short) 1);
+    }
+
+    /**
+     * Two consumers over the same partitions should share a fetcher, and both see every record.
+     */
+    @Test
+    public void testConsumersShareFetcherAndReadAllRecords() {
+        final int numberOfRecordsToProduce = 10;
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecords = getKafkaTestUtils()
+            .produceRecords(numberOfRecordsToProduce, topicName, 0);
+
+        final Consumer firehoseConsumer = openConsumer("Firehose", null);
+        final Consumer sidelineConsumer = openConsumer("Sideline", null);
+
+        // Both consumers should be using the same fetcher
+        assertNotNull(firehoseConsumer.getSharedFetcher(), "Shared fetcher should be set");
+        assertSame(firehoseConsumer.getSharedFetcher(), sidelineConsumer.getSharedFetcher(), "Fetcher should be shared");
+        assertEquals(1, SharedFetcherRegistry.size(), "Should only have a single fetcher");
+
+        // Each consumer gets every record
+        validateRecords(producedRecords, consumeRecords(firehoseConsumer, numberOfRecordsToProduce));
+        validateRecords(producedRecords, consumeRecords(sidelineConsumer, numberOfRecordsToProduce));
+
+        // Closing one should leave the fetcher for the other
+        firehoseConsumer.close();
+        assertEquals(1, SharedFetcherRegistry.size(), "Fetcher should still be in use");
+
+        // Closing the last one should close the fetcher
+        sidelineConsumer.close();
+        assertEquals(0, SharedFetcherRegistry.size(), "Fetcher should have been closed");
+    }
+
+    /**
+     * A consumer starting further along in the partition should only get records after its starting position,
+     * even when another consumer has already caused earlier records to be fetched.
+     */
+    @Test
+    public void testConsumersWithDifferentPositions() {
+        final int numberOfRecordsToProduce = 10;
+        final int numberOfRecordsToSkip = 4;
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecords = getKafkaTestUtils()
+            .produceRecords(numberOfRecordsToProduce, topicName, 0);
+
+        final Consumer firehoseConsumer = openConsumer("Firehose", null);
+
+        // Starting state marks the first few offsets as completed
+        final ConsumerState startingState = ConsumerState.builder()
+            .withPartition(topicName, 0, producedRecords.get(numberOfRecordsToSkip - 1).getOffset())
+            .build();
+        final Consumer sidelineConsumer = openConsumer("Sideline", startingState);
+
+        validateRecords(producedRecords, consumeRecords(firehoseConsumer, numberOfRecordsToProduce));
+        validateRecords(
+            producedRecords.subList(numberOfRecordsToSkip, numberOfRecordsToProduce),
+            consumeRecords(sidelineConsumer, numberOfRecordsToProduce - numberOfRecordsToSkip)
+        );
+
+        // Produce more, both should pick them up
+        final List<ProducedKafkaRecord<byte[], byte[]>> moreProducedRecords = getKafkaTestUtils()
+            .produceRecords(numberOfRecordsToProduce, topicName, 0);
+        validateRecords(moreProducedRecords, consumeRecords(sidelineConsumer, numberOfRecordsToProduce));
+        validateRecords(moreProducedRecords, consumeRecords(firehoseConsumer, numberOfRecordsToProduce));
+
+        firehoseConsumer.close();
+        sidelineConsumer.close();
+    }
+
+    /**
+     * Consumers buffering a different number of records should not share a fetcher, but each still read every record.
+     */
+    @Test
+    public void testFetchersKeyedOnMaxBufferedRecords() {
+        final int numberOfRecordsToProduce = 10;
+        final List<ProducedKafkaRecord<byte[], byte[]>> producedRecords = getKafkaTestUtils()
+            .produceRecords(numberOfRecordsToProduce, topicName, 0);
+
+        final Consumer firehoseConsumer = openConsumer("Firehose", null, 100);
+        final Consumer sidelineConsumer = openConsumer("Sideline", null, 5);
+
+        assertNotSame(firehoseConsumer.getSharedFetcher(), sidelineConsumer.getSharedFetcher(), "Fetcher should not be shared");
+        assertEquals(2, SharedFetcherRegistry.size(), "Should have a fetcher each");
+
+        validateRecords(producedRecords, consumeRecords(firehoseConsumer, numberOfRecordsToProduce));
+        validateRecords(producedRecords, consumeRecords(sidelineConsumer, numberOfRecordsToProduce));
+
+        firehoseConsumer.close();
+        sidelineConsumer.close();
+        assertEquals(0, SharedFetcherRegistry.size(), "Fetchers should have been closed");
+    }
+
+    /**
+     * Utility to open a consumer with shared fetching enabled.
+     */
+    private Consumer openConsumer(final String virtualSpoutId, final ConsumerState startingState) {
+        return openConsumer(virtualSpoutId, startingState, KafkaConsumerConfig.DEFAULT_SHARED_FETCH_MAX_BUFFERED_RECORDS);
+    }
+
+    /**
+     * Utility to open a consumer with shared fetching enabled, buffering up to the given number of records.
+     */
+    private Consumer openConsumer(final String virtualSpoutId, final ConsumerState startingState, final int maxBufferedRecords) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(KafkaConsumerConfig.KAFKA_BROKERS, Collections.singletonList(sharedKafkaTestResource.getKafkaConnectString()));
+        config.put(KafkaConsumerConfig.KAFKA_TOPIC, topicName);
+        config.put(KafkaConsumerConfig.CONSUMER_ID_PREFIX, "TestPrefix");
+        config.put(KafkaConsumerConfig.DESERIALIZER_CLASS, Utf8StringDeserializer.class.getName());
+        config.put(KafkaConsumerConfig.SHARED_FETCH_ENABLED, true);
+        config.put(KafkaConsumerConfig.SHARED_FETCH_MAX_BUFFERED_RECORDS, maxBufferedRecords);
+
+        final PersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+
+        final Consumer consumer = new Consumer();
+        consumer.open(
+            SpoutConfig.setDefaults(config),
+            new DefaultVirtualSpoutIdentifier(virtualSpoutId),
+            new ConsumerPeerContext(1, 0),
+            persistenceAdapter,
+            new LogRecorder(),
+            startingState
+        );
+        return consumer;
+    }
+
+    /**
+     * Utility to consume the given number of records, and validate nothing else is available.
+     */
+    private List<Record> consumeRecords(final Consumer consumer, final int numberOfRecordsToConsume) {
+        final List<Record> consumedRecords = new ArrayList<>();
+
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .pollInterval(100, TimeUnit.MILLISECONDS)
+            .until(() -> {
+                final Record nextRecord = consumer.nextRecord();
+                if (nextRecord != null) {
+                    consumedRecords.add(nextRecord);
+                }
+                return consumedRecords.size();
+            }, equalTo(numberOfRecordsToConsume));
+
+        assertNull(consumer.nextRecord(), "Should have no more records");
+
+        return consumedRecords;
+    }
+
+    /**
+     * Utility to validate the records consumed from kafka match what was produced into kafka.
+     */
+    private void validateRecords(final List<ProducedKafkaRecord<byte[], byte[]>> expectedRecords, final List<Record> foundRecords) {
+        assertEquals(expectedRecords.size(), foundRecords.size(), "Found expected number of records");
+
+        for (int x = 0; x < expectedRecords.size(); x++) {
+            final ProducedKafkaRecord<byte[], byte[]> expectedRecord = expectedRecords.get(x);
+            final Record foundRecord = foundRecords.get(x);
+
+            assertEquals(expectedRecord.getOffset(), foundRecord.getOffset(), "Found expected offset");
+            assertEquals(new String(expectedRecord.getKey(), StandardCharsets.UTF_8), foundRecord.getValues().get(0));
+            assertEquals(new String(expectedRecord.getValue(), StandardCharsets.UTF_8), foundRecord.getValues().get(1));
+        }
+    }
+
+    /**
+     * Simple accessor.
+     */
+    private KafkaTestUtils getKafkaTestUtils() {
+        return sharedKafkaTestResource.getKafkaTestUtils();
+    }
+}
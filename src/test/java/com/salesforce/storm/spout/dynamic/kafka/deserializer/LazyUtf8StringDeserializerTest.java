@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.kafka.deserializer;
+
+import com.salesforce.storm.spout.dynamic.consumer.LazyValues;
+import org.apache.storm.tuple.Values;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test over LazyUtf8StringDeserializer.
+ */
+public class LazyUtf8StringDeserializerTest {
+
+    /**
+     * Validates that fields are only decoded when read.
+     */
+    @Test
+    public void testDeserializeDecodesLazily() {
+        final String expectedKey = "This is My Key";
+        @SuppressWarnings("checkstyle:AvoidEscapedUnicodeCharacters")
+        final String expectedValue = "This is my message \uD83D\uDCA9";
+
+        // Attempt to deserialize.
+        final Deserializer deserializer = new LazyUtf8StringDeserializer();
+        final Values deserializedValues = deserializer.deserialize(
+            "MyTopic",
+            34,
+            31337L,
+            expectedKey.getBytes(StandardCharsets.US_ASCII),
+            expectedValue.getBytes(StandardCharsets.UTF_8)
+        );
+
+        final LazyValues lazyValues = (LazyValues) deserializedValues;
+        assertEquals(2, lazyValues.size(), "Values has 2 entries");
+        assertFalse(lazyValues.isDecoded(0), "Key should not be decoded yet");
+        assertFalse(lazyValues.isDecoded(1), "Value should not be decoded yet");
+
+        // Reading the key only decodes the key
+        assertEquals(expectedKey, lazyValues.get(0), "Got expected key");
+        assertTrue(lazyValues.isDecoded(0), "Key should be decoded");
+        assertFalse(lazyValues.isDecoded(1), "Value should not be decoded yet");
+
+        assertEquals(expectedValue, lazyValues.get(1), "Got expected value");
+        assertTrue(lazyValues.isDecoded(1), "Value should be decoded");
+    }
+
+    /**
+     * Validates that looking at the values as a whole decodes every field.
+     */
+    @Test
+    public void testDeserializeDecodesWhenComparedAndIterated() {
+        final Deserializer deserializer = new LazyUtf8StringDeserializer();
+        final Values deserializedValues = deserializer.deserialize(
+            "MyTopic",
+            34,
+            31337L,
+            "Key".getBytes(StandardCharsets.UTF_8),
+            "Value".getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertEquals(new Values("Key", "Value"), deserializedValues, "Should equal plain values");
+        assertTrue(((LazyValues) deserializedValues).isDecoded(1), "Value should be decoded");
+
+        final Values otherValues = deserializer.deserialize(
+            "MyTopic",
+            34,
+            31338L,
+            "Key".getBytes(StandardCharsets.UTF_8),
+            "Value".getBytes(StandardCharsets.UTF_8)
+        );
+        int count = 0;
+        for (final Object field : otherValues) {
+            assertTrue(field instanceof String, "Should have been decoded");
+            count++;
+        }
+        assertEquals(2, count, "Should have iterated 2 fields");
+    }
+
+    /**
+     * Validates that we decode slices of a larger buffer, and that we serialize as plain decoded values.
+     */
+    @Test
+    public void testDeserializeSliceAndSerialize() throws IOException, ClassNotFoundException {
+        final ByteBuffer buffer = ByteBuffer.wrap("HeaderKeyValueTrailer".getBytes(StandardCharsets.UTF_8));
+        buffer.position(6);
+        final ByteBuffer key = buffer.slice();
+        key.limit(3);
+        buffer.position(9);
+        final ByteBuffer value = buffer.slice();
+        value.limit(5);
+
+        final LazyUtf8StringDeserializer deserializer = new LazyUtf8StringDeserializer();
+        final Values deserializedValues = deserializer.deserialize("MyTopic", 34, 31337L, key, value);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(deserializedValues);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final Object result = input.readObject();
+            assertEquals(Values.class, result.getClass(), "Should have serialized as plain values");
+            assertEquals(new Values("Key", "Value"), result, "Got expected values");
+        }
+    }
+
+    /**
+     * Validate that when a message has a null key it doesn't end violently with a NPE.
+     */
+    @Test
+    public void testDeserializeWithNullKey() {
+        final Deserializer deserializer = new LazyUtf8StringDeserializer();
+        final Values deserializedValues = deserializer.deserialize(
+            "MyTopic",
+            34,
+            31337L,
+            null,
+            "Value".getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertEquals(2, deserializedValues.size(), "Values has 2 entries");
+        assertNull(deserializedValues.get(0), "Got expected key");
+        assertEquals("Value", deserializedValues.get(1), "Got expected value");
+    }
+
+    /**
+     * Validate that when a message has a null value the whole thing returns null.
+     */
+    @Test
+    public void testDeserializeWithNullValue() {
+        final Deserializer deserializer = new LazyUtf8StringDeserializer();
+        final Values deserializedValues = deserializer.deserialize("MyTopic", 34, 31337L, null, (byte[]) null);
+
+        assertNull(deserializedValues, "Should have gotten null");
+    }
+}
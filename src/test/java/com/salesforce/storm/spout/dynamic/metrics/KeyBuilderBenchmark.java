@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building metric keys, which happens for every metric recorded, ie on every emit and ack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class KeyBuilderBenchmark {
+
+    /**
+     * Prefix keys are built with, empty for none.
+     */
+    @Param({"", "MyTopology"})
+    public String keyPrefix;
+
+    private KeyBuilder keyBuilder;
+    private Object[] noParameters;
+    private Object[] virtualSpoutParameters;
+    private Object[] partitionParameters;
+
+    /**
+     * Create our builder, and the parameters we'll build keys with.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        keyBuilder = new KeyBuilder(keyPrefix.isEmpty() ? null : keyPrefix);
+        noParameters = new Object[0];
+        virtualSpoutParameters = new Object[] { "MyVirtualSpout" };
+        partitionParameters = new Object[] { "MyVirtualSpout", 3 };
+    }
+
+    /**
+     * Build a key without any parameters, ie for the spout's own metrics.
+     * @return key built.
+     */
+    @Benchmark
+    public String buildWithoutParameters() {
+        return keyBuilder.build(SpoutMetrics.SPOUT_COORDINATOR_RUNNING, noParameters);
+    }
+
+    /**
+     * Build a key for a VirtualSpout, ie for each emit and ack.
+     * @return key built.
+     */
+    @Benchmark
+    public String buildWithVirtualSpout() {
+        return keyBuilder.build(SpoutMetrics.VIRTUAL_SPOUT_ACK, virtualSpoutParameters);
+    }
+
+    /**
+     * Build a key for a partition of a VirtualSpout, ie for each partition's offsets.
+     * @return key built.
+     */
+    @Benchmark
+    public String buildWithPartition() {
+        return keyBuilder.build(SpoutMetrics.VIRTUAL_SPOUT_PARTITION_CURRENT_OFFSET, partitionParameters);
+    }
+}
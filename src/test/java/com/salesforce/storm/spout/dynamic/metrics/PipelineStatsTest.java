@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that {@link PipelineStats} records items processed and time spent per stage.
+ */
+class PipelineStatsTest {
+
+    /**
+     * Test that items are counted per stage, including calls that processed nothing.
+     */
+    @Test
+    void testRecordsItemsPerStage() {
+        final PipelineStats pipelineStats = new PipelineStats(true);
+        assertTrue(pipelineStats.isEnabled());
+
+        for (int call = 0; call < 1000; call++) {
+            pipelineStats.stop(PipelineStage.POLL, pipelineStats.start(PipelineStage.POLL), 10);
+            pipelineStats.stop(PipelineStage.ACK, pipelineStats.start(PipelineStage.ACK), 0);
+        }
+        pipelineStats.stop(PipelineStage.FILTER, PipelineStats.NOT_SAMPLED, 1);
+
+        assertEquals(10_000L, pipelineStats.getItems(PipelineStage.POLL));
+        assertEquals(1L, pipelineStats.getItems(PipelineStage.FILTER));
+        assertEquals(0L, pipelineStats.getItems(PipelineStage.ACK), "Calls without items should add no items");
+        assertEquals(0L, pipelineStats.getEstimatedTimeMs(PipelineStage.FILTER), "Should have no time without sampled calls");
+        assertTrue(pipelineStats.getEstimatedTimeMs(PipelineStage.POLL) >= 0);
+        assertTrue(
+            pipelineStats.toString().startsWith("poll=10000/"),
+            "Should describe each stage compactly: " + pipelineStats
+        );
+    }
+
+    /**
+     * Test that sampled calls are timed.
+     */
+    @Test
+    void testEstimatesTime() {
+        final PipelineStats pipelineStats = new PipelineStats(true);
+
+        // A single call that started 5ms ago, sampled or not, and one that was certainly sampled 5ms ago.
+        pipelineStats.stop(PipelineStage.EMIT, System.nanoTime() - 5_000_000L, 1);
+        pipelineStats.stop(PipelineStage.EMIT, System.nanoTime() - 5_000_000L, 1);
+
+        assertEquals(2L, pipelineStats.getItems(PipelineStage.EMIT));
+        assertTrue(pipelineStats.getEstimatedTimeMs(PipelineStage.EMIT) >= 10L, "Should estimate time across every call");
+
+        // An empty poll that started 5ms ago is still time spent polling.
+        pipelineStats.stop(PipelineStage.POLL, System.nanoTime() - 5_000_000L, 0);
+        assertEquals(0L, pipelineStats.getItems(PipelineStage.POLL));
+        assertTrue(pipelineStats.getEstimatedTimeMs(PipelineStage.POLL) >= 5L, "Should time calls that processed nothing");
+    }
+
+    /**
+     * Test that the disabled instance records nothing.
+     */
+    @Test
+    void testDisabled() {
+        final PipelineStats pipelineStats = PipelineStats.DISABLED;
+        assertFalse(pipelineStats.isEnabled());
+        assertEquals(PipelineStats.NOT_SAMPLED, pipelineStats.start(PipelineStage.POLL));
+
+        pipelineStats.stop(PipelineStage.POLL, System.nanoTime(), 10);
+        assertEquals(0L, pipelineStats.getItems(PipelineStage.POLL));
+        assertEquals(0L, pipelineStats.getEstimatedTimeMs(PipelineStage.POLL));
+    }
+}
@@ -27,6 +27,7 @@ package com.salesforce.storm.spout.dynamic.metrics;
 
 import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
 import com.salesforce.storm.spout.dynamic.mocks.MockTopologyContext;
+import org.HdrHistogram.Histogram;
 import org.apache.storm.metric.api.MultiCountMetric;
 import org.apache.storm.metric.api.MultiReducedMetric;
 import org.apache.storm.task.TopologyContext;
@@ -34,6 +35,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -286,4 +288,123 @@ public class StormRecorderTest {
         assertEquals(1, counterValues.size(), "Should have 1 value");
         assertTrue(counterValues.containsKey(expectedTotalTimeMetricName), "Should contain our key");
     }
-}
\ No newline at end of file
+
+    /**
+     * Validate that bound counters and gauges update the same metrics as counting and assigning by definition.
+     */
+    @Test
+    public void testBindCounterAndGauge() {
+        final MetricDefinition counterDefinition = new CustomMetric("MyContext.{}.MyCounter");
+        final MetricDefinition gaugeDefinition = new CustomMetric("MyContext.{}.MyGauge");
+
+        // Create mock TopologyContext
+        final MockTopologyContext mockTopologyContext = new MockTopologyContext();
+
+        // Create recorder and call open.
+        final StormRecorder recorder = new StormRecorder();
+        recorder.open(new HashMap<>(), mockTopologyContext);
+
+        // Lets capture the metrics
+        final MultiCountMetric counterMetrics = (MultiCountMetric) mockTopologyContext.getRegisteredMetricByName("COUNTERS");
+        final MultiAssignableMetric gaugeMetrics = (MultiAssignableMetric) mockTopologyContext.getRegisteredMetricByName("GAUGES");
+
+        // Bind and update, mixing in updates by definition
+        final BoundCounter boundCounter = recorder.bindCounter(counterDefinition, "Foo");
+        boundCounter.increment();
+        boundCounter.incrementBy(2L);
+        recorder.count(counterDefinition, "Foo");
+
+        final BoundGauge boundGauge = recorder.bindGauge(gaugeDefinition, "Bar");
+        boundGauge.assign(10L);
+
+        // Validate
+        @SuppressWarnings("unchecked")
+        final Map<String, Long> counterValues = (Map<String, Long>) counterMetrics.getValueAndReset();
+        assertEquals(1, counterValues.size(), "Should have 1 value");
+        assertEquals(4L, (long) counterValues.get("MyContext.Foo.MyCounter"), "Should have counted both ways");
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> gaugeValues = (Map<String, Object>) gaugeMetrics.getValueAndReset();
+        assertEquals(10L, gaugeValues.get("MyContext.Bar.MyGauge"), "Should have assigned value");
+
+        // Bound counters survive Storm resetting the metric
+        boundCounter.increment();
+        @SuppressWarnings("unchecked")
+        final Map<String, Long> nextCounterValues = (Map<String, Long>) counterMetrics.getValueAndReset();
+        assertEquals(1L, (long) nextCounterValues.get("MyContext.Foo.MyCounter"), "Should have counted after reset");
+    }
+
+    /**
+     * Validate that bound timers record in microseconds, under keys of their own apart from timing by definition.
+     */
+    @Test
+    public void testBindTimer() {
+        final MetricDefinition timerDefinition = new CustomMetric("MyContext.{}.MyTimer");
+
+        // Create mock TopologyContext
+        final MockTopologyContext mockTopologyContext = new MockTopologyContext();
+
+        // Create recorder and call open.
+        final StormRecorder recorder = new StormRecorder();
+        recorder.open(new HashMap<>(), mockTopologyContext);
+
+        // Lets capture the metrics
+        final MultiReducedMetric timerMetrics = (MultiReducedMetric) mockTopologyContext.getRegisteredMetricByName("TIMERS");
+        final MultiCountMetric counterMetrics = (MultiCountMetric) mockTopologyContext.getRegisteredMetricByName("COUNTERS");
+
+        // Bind and time, mixing in timings by definition
+        final BoundTimer boundTimer = recorder.bindTimer(timerDefinition, "Foo");
+        boundTimer.recordNanos(TimeUnit.MICROSECONDS.toNanos(250));
+        recorder.recordTimer(timerDefinition, 15L, "Foo");
+
+        // It's ok if this ends up being 0.
+        final long startNanos = boundTimer.start();
+        assertTrue(boundTimer.stop(startNanos) >= 0, "Should have elapsed time");
+
+        // Validate
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> timerValues = (Map<String, Object>) timerMetrics.getValueAndReset();
+        assertEquals(2, timerValues.size(), "Should have 2 values");
+        assertTrue(timerValues.containsKey("MyContext.Foo.MyTimer"), "Should contain our key");
+        assertTrue(timerValues.containsKey("MyContext.Foo.MyTimer_us"), "Should contain our microsecond key");
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Long> counterValues = (Map<String, Long>) counterMetrics.getValueAndReset();
+        assertEquals(15L, (long) counterValues.get("MyContext.Foo.MyTimer_totalTimeMs"), "Should have totaled milliseconds");
+        assertTrue(counterValues.get("MyContext.Foo.MyTimer_totalTimeUs") >= 250L, "Should have totaled sub-millisecond timings");
+    }
+
+    /**
+     * Validate that latencies are published as one gauge per percentile.
+     */
+    @Test
+    public void testRecordLatencies() {
+        final MetricDefinition latencyDefinition = new CustomMetric("MyContext.{}.MyLatency");
+
+        // Create mock TopologyContext
+        final MockTopologyContext mockTopologyContext = new MockTopologyContext();
+
+        // Create recorder and call open.
+        final StormRecorder recorder = new StormRecorder();
+        recorder.open(new HashMap<>(), mockTopologyContext);
+
+        // Lets capture the metrics
+        final MultiAssignableMetric gaugeMetrics = (MultiAssignableMetric) mockTopologyContext.getRegisteredMetricByName("GAUGES");
+
+        // Record 1 through 1000
+        final Histogram histogram = new Histogram(3);
+        for (long value = 1; value <= 1000; value++) {
+            histogram.recordValue(value);
+        }
+        recorder.recordLatencies(latencyDefinition, histogram, "Foo");
+
+        // Validate
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> gaugeValues = (Map<String, Object>) gaugeMetrics.getValueAndReset();
+        assertEquals(4, gaugeValues.size(), "Should have a value per percentile");
+        assertEquals(500L, gaugeValues.get("MyContext.Foo.MyLatency.p50"));
+        assertEquals(990L, gaugeValues.get("MyContext.Foo.MyLatency.p99"));
+        assertEquals(999L, gaugeValues.get("MyContext.Foo.MyLatency.p999"));
+        assertEquals(1000L, gaugeValues.get("MyContext.Foo.MyLatency.max"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import com.salesforce.storm.spout.dynamic.consumer.ConsumerState;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test that {@link ConsumerStateFlusher} persists consumer state in the background.
+ */
+public class ConsumerStateFlusherTest {
+
+    private static final String CONSUMER_ID = "MyConsumerId";
+
+    /**
+     * Validates submitted state gets persisted in the background, and that unchanged offsets are not written again.
+     */
+    @Test
+    public void testSubmit() {
+        final PersistenceAdapter persistenceAdapter = createPersistenceAdapter();
+        final ConsumerStateFlusher flusher = new ConsumerStateFlusher(persistenceAdapter);
+
+        flusher.submit(CONSUMER_ID, ConsumerState.builder()
+            .withPartition("MyTopic", 0, 10L)
+            .withPartition("MyTopic", 1, 20L)
+            .build());
+
+        // Should get written in the background
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> Long.valueOf(10L).equals(persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0))
+                && Long.valueOf(20L).equals(persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1)));
+
+        // Move only partition 1 along
+        flusher.submit(CONSUMER_ID, ConsumerState.builder()
+            .withPartition("MyTopic", 0, 10L)
+            .withPartition("MyTopic", 1, 21L)
+            .build());
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1), equalTo(21L));
+        flusher.flush();
+
+        // Partition 0 didn't move, so should have only been written once
+        verify(persistenceAdapter, times(1)).persistConsumerStateAsync(CONSUMER_ID, 0, 10L);
+        verify(persistenceAdapter, times(1)).persistConsumerStateAsync(CONSUMER_ID, 1, 20L);
+        verify(persistenceAdapter, times(1)).persistConsumerStateAsync(CONSUMER_ID, 1, 21L);
+    }
+
+    /**
+     * Validates that submits made while a write is in flight coalesce into a single write of the latest offset,
+     * and that flush() waits for everything to be written.
+     */
+    @Test
+    public void testSubmitCoalescesWhileInFlight() {
+        final PersistenceAdapter persistenceAdapter = createPersistenceAdapter();
+
+        // Hold up the first write
+        final CompletableFuture<Void> firstWrite = new CompletableFuture<>();
+        doReturn(firstWrite).when(persistenceAdapter).persistConsumerStateAsync(CONSUMER_ID, 0, 1L);
+
+        final ConsumerStateFlusher flusher = new ConsumerStateFlusher(persistenceAdapter);
+        flusher.submit(CONSUMER_ID, ConsumerState.builder().withPartition("MyTopic", 0, 1L).build());
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(flusher::getPendingCount, equalTo(0));
+
+        // Submit a bunch more while the first write is in flight
+        for (long offset = 2L; offset <= 100L; offset++) {
+            flusher.submit(CONSUMER_ID, ConsumerState.builder().withPartition("MyTopic", 0, offset).build());
+        }
+        assertEquals(1, flusher.getPendingCount(), "Should have coalesced into a single pending offset");
+
+        // Let the first write land, flush should then write only the latest offset.
+        firstWrite.complete(null);
+        flusher.flush();
+
+        assertEquals(100L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should have persisted latest offset");
+        verify(persistenceAdapter, times(2)).persistConsumerStateAsync(eq(CONSUMER_ID), eq(0), anyLong());
+    }
+
+    /**
+     * Validates failed writes are retried on the next flush.
+     */
+    @Test
+    public void testFlushRetriesFailedWrites() {
+        final PersistenceAdapter persistenceAdapter = createPersistenceAdapter();
+
+        // Fail the first write
+        final CompletableFuture<Void> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new RuntimeException("Zookeeper is down"));
+        doReturn(failedWrite)
+            .doCallRealMethod()
+            .when(persistenceAdapter).persistConsumerStateAsync(CONSUMER_ID, 0, 1L);
+
+        final ConsumerStateFlusher flusher = new ConsumerStateFlusher(persistenceAdapter);
+        flusher.submit(CONSUMER_ID, ConsumerState.builder().withPartition("MyTopic", 0, 1L).build());
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(flusher::getPendingCount, equalTo(1));
+        assertNull(persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should not have persisted anything");
+
+        flusher.flush();
+        assertEquals(1L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should have persisted on retry");
+    }
+
+    /**
+     * Validates clear() drops state that has not been written yet.
+     */
+    @Test
+    public void testClear() {
+        final PersistenceAdapter persistenceAdapter = createPersistenceAdapter();
+
+        // Hold up the first write so the next submit stays pending
+        final CompletableFuture<Void> firstWrite = new CompletableFuture<>();
+        doReturn(firstWrite).when(persistenceAdapter).persistConsumerStateAsync(CONSUMER_ID, 0, 1L);
+
+        final ConsumerStateFlusher flusher = new ConsumerStateFlusher(persistenceAdapter);
+        flusher.submit(CONSUMER_ID, ConsumerState.builder().withPartition("MyTopic", 0, 1L).build());
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(flusher::getPendingCount, equalTo(0));
+        flusher.submit(CONSUMER_ID, ConsumerState.builder().withPartition("MyTopic", 0, 2L).build());
+        assertEquals(1, flusher.getPendingCount(), "Should have pending state");
+
+        // Clear waits on the write in flight, so clear from another thread.
+        final CompletableFuture<Void> clear = CompletableFuture.runAsync(() -> flusher.clear(CONSUMER_ID));
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(flusher::getPendingCount, equalTo(0));
+
+        // Let the first write land, nothing should be left to write after it.
+        firstWrite.complete(null);
+        clear.join();
+        flusher.flush();
+        verify(persistenceAdapter, never()).persistConsumerStateAsync(anyString(), anyInt(), eq(2L));
+    }
+
+    private PersistenceAdapter createPersistenceAdapter() {
+        final InMemoryPersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter();
+        persistenceAdapter.open(new HashMap<>());
+        return spy(persistenceAdapter);
+    }
+}
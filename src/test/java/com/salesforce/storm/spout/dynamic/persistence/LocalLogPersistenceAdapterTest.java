@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that {@link LocalLogPersistenceAdapter} persists consumer state to local disk.
+ */
+public class LocalLogPersistenceAdapterTest {
+
+    private static final String CONSUMER_ID = "MyConsumerId";
+
+    private Path directory;
+
+    /**
+     * Create a directory to store logs in.
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("local-log-persistence");
+    }
+
+    /**
+     * Clean up the logs.
+     */
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Validates persisted state is retrieved, including after reopening on the same host.
+     */
+    @Test
+    public void testPersistAndRetrieveConsumerState() {
+        LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(null));
+
+        assertNull(persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should have no state yet");
+
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L);
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 1, 200L);
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 101L);
+        assertEquals(101L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0));
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1));
+        persistenceAdapter.close();
+
+        // Reopen, should recover our state from disk
+        persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(null));
+        assertEquals(101L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0));
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1));
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Validates clearing state removes the log.
+     */
+    @Test
+    public void testClearConsumerState() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(null));
+
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L);
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 1, 200L);
+        assertTrue(Files.exists(persistenceAdapter.getOffsetLogPath(CONSUMER_ID, 0)), "Log should exist");
+
+        persistenceAdapter.clearConsumerState(CONSUMER_ID, 0);
+        assertFalse(Files.exists(persistenceAdapter.getOffsetLogPath(CONSUMER_ID, 0)), "Log should have been removed");
+        assertNull(persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should have cleared state");
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1), "Should have left other partition");
+
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Validates state is replicated in the background, and that we fall back to our replica when we have no local log.
+     */
+    @Test
+    public void testReplication() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(InMemoryPersistenceAdapter.class.getName()));
+        final PersistenceAdapter replicaAdapter = persistenceAdapter.getReplicaAdapter();
+
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L);
+        assertNull(replicaAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should not have replicated yet");
+
+        persistenceAdapter.replicate();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> replicaAdapter.retrieveConsumerState(CONSUMER_ID, 0), equalTo(100L));
+
+        // State that only exists on our replica, as if it was written on another host
+        replicaAdapter.persistConsumerState(CONSUMER_ID, 1, 200L);
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 1), "Should fall back to replica");
+
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Validates a local log left behind on this host doesn't win over a replica that another host has moved ahead since.
+     */
+    @Test
+    public void testPrefersReplicaWhenLocalLogIsStale() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(InMemoryPersistenceAdapter.class.getName()));
+        final PersistenceAdapter replicaAdapter = persistenceAdapter.getReplicaAdapter();
+
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L);
+        persistenceAdapter.replicate();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> replicaAdapter.retrieveConsumerState(CONSUMER_ID, 0), equalTo(100L));
+
+        // Another host picks the partition up and moves on, leaving our local log behind.
+        replicaAdapter.persistConsumerState(CONSUMER_ID, 0, 300L);
+        assertEquals(300L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should use replica that is ahead");
+
+        // Once we move on from there our local log is ahead again.
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 400L);
+        assertEquals(400L, (long) persistenceAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should use local log that is ahead");
+
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Validates forcing our logs out to disk leaves them readable.
+     */
+    @Test
+    public void testForce() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(null));
+
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L);
+        persistenceAdapter.force();
+        persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 200L);
+        persistenceAdapter.force();
+        persistenceAdapter.close();
+
+        final LocalLogPersistenceAdapter reopenedAdapter = new LocalLogPersistenceAdapter();
+        reopenedAdapter.open(createConfig(null));
+        assertEquals(200L, (long) reopenedAdapter.retrieveConsumerState(CONSUMER_ID, 0), "Should recover forced state");
+        reopenedAdapter.close();
+    }
+
+    /**
+     * Validates consumer ids that only differ by characters that aren't safe in file names get logs of their own.
+     */
+    @Test
+    public void testDistinctConsumerIdsGetDistinctLogs() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        persistenceAdapter.open(createConfig(null));
+
+        final String[] consumerIds = { "My:Consumer", "My/Consumer", "My_Consumer", "My%3AConsumer", ".", ".." };
+        for (int index = 0; index < consumerIds.length; index++) {
+            persistenceAdapter.persistConsumerState(consumerIds[index], 0, index);
+        }
+        for (int index = 0; index < consumerIds.length; index++) {
+            final Path path = persistenceAdapter.getOffsetLogPath(consumerIds[index], 0);
+            assertEquals(directory.resolve("MyPrefix"), path.getParent().getParent(), "Should stay within our directory");
+            assertEquals((long) index, (long) persistenceAdapter.retrieveConsumerState(consumerIds[index], 0), "Wrong state");
+        }
+
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Validates a directory to store logs under is required.
+     */
+    @Test
+    public void testRequiresDirectory() {
+        final Map<String, Object> config = createConfig(null);
+        config.remove(SpoutConfig.PERSISTENCE_LOCAL_LOG_DIRECTORY);
+
+        assertThrows(IllegalArgumentException.class, () -> new LocalLogPersistenceAdapter().open(config));
+    }
+
+    /**
+     * Validates we can't use the adapter before opening it.
+     */
+    @Test
+    public void testNotOpened() {
+        final LocalLogPersistenceAdapter persistenceAdapter = new LocalLogPersistenceAdapter();
+        assertThrows(IllegalStateException.class, () -> persistenceAdapter.persistConsumerState(CONSUMER_ID, 0, 100L));
+        assertThrows(IllegalStateException.class, () -> persistenceAdapter.clearConsumerState(CONSUMER_ID, 0));
+    }
+
+    private Map<String, Object> createConfig(final String replicaAdapterClass) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.VIRTUAL_SPOUT_ID_PREFIX, "MyPrefix");
+        config.put(SpoutConfig.PERSISTENCE_LOCAL_LOG_DIRECTORY, directory.toString());
+        config.put(SpoutConfig.PERSISTENCE_LOCAL_LOG_FILE_SIZE_BYTES, 1024);
+        if (replicaAdapterClass != null) {
+            config.put(SpoutConfig.PERSISTENCE_LOCAL_LOG_REPLICA_ADAPTER_CLASS, replicaAdapterClass);
+        }
+        return config;
+    }
+}
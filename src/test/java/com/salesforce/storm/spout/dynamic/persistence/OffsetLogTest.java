@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test that {@link OffsetLog} appends and recovers offsets.
+ */
+public class OffsetLogTest {
+
+    private Path path;
+
+    /**
+     * Create a file to store the log in.
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        path = Files.createTempFile("offset-log", ".log");
+        Files.delete(path);
+    }
+
+    /**
+     * Clean up the log.
+     */
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Validates appended offsets are recovered after reopening the log.
+     */
+    @Test
+    public void testAppendAndRecover() throws IOException {
+        try (OffsetLog offsetLog = OffsetLog.open(path, 1024)) {
+            assertNull(offsetLog.getOffset(), "Should start out empty");
+
+            offsetLog.append(10L);
+            offsetLog.append(11L);
+            offsetLog.append(12L);
+            assertEquals(12L, (long) offsetLog.getOffset(), "Should have latest offset");
+        }
+
+        try (OffsetLog offsetLog = OffsetLog.open(path, 1024)) {
+            assertEquals(12L, (long) offsetLog.getOffset(), "Should have recovered latest offset");
+
+            // Keep appending after recovering
+            offsetLog.append(13L);
+        }
+
+        try (OffsetLog offsetLog = OffsetLog.open(path, 1024)) {
+            assertEquals(13L, (long) offsetLog.getOffset(), "Should have recovered latest offset");
+        }
+    }
+
+    /**
+     * Validates the log wraps back around once full, and still recovers the latest offset.
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        final int capacity;
+        try (OffsetLog offsetLog = OffsetLog.open(path, OffsetLog.RECORD_SIZE * 4)) {
+            capacity = offsetLog.getCapacity();
+            assertEquals(4, capacity, "Should hold 4 records");
+
+            // Wrap around a few times, ending part way through the log
+            for (long offset = 0L; offset < (capacity * 3) + 2; offset++) {
+                offsetLog.append(offset);
+            }
+        }
+        assertEquals(OffsetLog.RECORD_SIZE * 4, Files.size(path), "Log should not have grown");
+
+        try (OffsetLog offsetLog = OffsetLog.open(path, OffsetLog.RECORD_SIZE * 4)) {
+            assertEquals((capacity * 3) + 1, (long) offsetLog.getOffset(), "Should have recovered latest offset");
+        }
+    }
+
+    /**
+     * Validates an existing log keeps its size when the configured size changes.
+     */
+    @Test
+    public void testExistingLogKeepsSize() throws IOException {
+        try (OffsetLog offsetLog = OffsetLog.open(path, OffsetLog.RECORD_SIZE * 4)) {
+            offsetLog.append(1L);
+        }
+
+        try (OffsetLog offsetLog = OffsetLog.open(path, OffsetLog.RECORD_SIZE * 8)) {
+            assertEquals(4, offsetLog.getCapacity(), "Should have kept existing size");
+            assertEquals(1L, (long) offsetLog.getOffset(), "Should have recovered latest offset");
+        }
+    }
+
+    /**
+     * Validates a torn record only loses the record being written.
+     */
+    @Test
+    public void testTornRecord() throws IOException {
+        try (OffsetLog offsetLog = OffsetLog.open(path, 1024)) {
+            offsetLog.append(1L);
+            offsetLog.append(2L);
+        }
+
+        // Corrupt the offset of the second record, leaving its checksum as is.
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(OffsetLog.RECORD_SIZE);
+            file.writeLong(3L);
+        }
+
+        try (OffsetLog offsetLog = OffsetLog.open(path, 1024)) {
+            assertEquals(1L, (long) offsetLog.getOffset(), "Should have recovered the last valid offset");
+        }
+    }
+}
@@ -50,6 +50,7 @@ import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -206,6 +207,155 @@ public class ZookeeperPersistenceAdapterTest {
         persistenceAdapter.close();
     }
 
+    /**
+     * Tests persisting consumer state asynchronously, both creating the node and then updating it.
+     */
+    @Test
+    public void testPersistConsumerStateAsync() throws Exception {
+        final String configuredConsumerPrefix = "consumerIdPrefix";
+        final String configuredZkRoot = getRandomZkRootNode();
+
+        final String consumerId = "myConsumer" + Clock.systemUTC().millis();
+        final int partitionId = 1;
+
+        // Create our config
+        final Map<String, Object> topologyConfig = createDefaultConfig(
+            getZookeeperConnectionString(), configuredZkRoot, configuredConsumerPrefix
+        );
+
+        // Create instance and open it.
+        final ZookeeperPersistenceAdapter persistenceAdapter = new ZookeeperPersistenceAdapter();
+        persistenceAdapter.open(topologyConfig);
+
+        // Node doesn't exist yet, so this should create it.
+        persistenceAdapter.persistConsumerStateAsync(consumerId, partitionId, 100L).get(5, TimeUnit.SECONDS);
+        assertEquals(100L, (long) persistenceAdapter.retrieveConsumerState(consumerId, partitionId));
+
+        // Node exists now, so this should update it.
+        persistenceAdapter.persistConsumerStateAsync(consumerId, partitionId, 101L).get(5, TimeUnit.SECONDS);
+        assertEquals(101L, (long) persistenceAdapter.retrieveConsumerState(consumerId, partitionId));
+
+        // Close outs
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Tests persisting the state of many partitions at once, both creating the nodes and then updating them.
+     */
+    @Test
+    public void testPersistConsumerStates() {
+        final String consumerId = "myConsumer" + Clock.systemUTC().millis();
+
+        // Create instance and open it.
+        final ZookeeperPersistenceAdapter persistenceAdapter = new ZookeeperPersistenceAdapter();
+        persistenceAdapter.open(createDefaultConfig(getZookeeperConnectionString(), getRandomZkRootNode(), "consumerIdPrefix"));
+        assertFalse(persistenceAdapter.isCompactConsumerState(), "Should default to a node per partition");
+
+        // Nodes don't exist yet, so this should create them.
+        final Map<Integer, Long> offsets = new HashMap<>();
+        offsets.put(0, 100L);
+        offsets.put(1, 200L);
+        persistenceAdapter.persistConsumerStates(consumerId, offsets);
+        assertEquals(100L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 0));
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 1));
+
+        // Now mix updating an existing node with creating a new one.
+        offsets.clear();
+        offsets.put(1, 201L);
+        offsets.put(2, 300L);
+        persistenceAdapter.persistConsumerStates(consumerId, offsets);
+        assertEquals(100L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 0));
+        assertEquals(201L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 1));
+        assertEquals(300L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 2));
+
+        // Close outs
+        persistenceAdapter.close();
+    }
+
+    /**
+     * Tests storing the state of all partitions of a consumer within a single compact node.
+     */
+    @Test
+    public void testCompactConsumerState() throws Exception {
+        final String configuredConsumerPrefix = "consumerIdPrefix";
+        final String configuredZkRoot = getRandomZkRootNode();
+        final String consumerId = "myConsumer" + Clock.systemUTC().millis();
+
+        // Create our config, first storing a node per partition
+        final Map<String, Object> topologyConfig = new HashMap<>(
+            createDefaultConfig(getZookeeperConnectionString(), configuredZkRoot, configuredConsumerPrefix)
+        );
+        ZookeeperPersistenceAdapter persistenceAdapter = new ZookeeperPersistenceAdapter();
+        persistenceAdapter.open(topologyConfig);
+        persistenceAdapter.persistConsumerState(consumerId, 0, 100L);
+        persistenceAdapter.close();
+
+        // Now switch over to storing compactly
+        topologyConfig.put(SpoutConfig.PERSISTENCE_ZK_COMPACT_CONSUMER_STATE, true);
+        persistenceAdapter = new ZookeeperPersistenceAdapter();
+        persistenceAdapter.open(topologyConfig);
+        assertTrue(persistenceAdapter.isCompactConsumerState(), "Should store compactly");
+
+        // Should still read the state stored a node per partition
+        assertEquals(100L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 0));
+
+        final Map<Integer, Long> offsets = new HashMap<>();
+        offsets.put(0, 101L);
+        offsets.put(1, 200L);
+        persistenceAdapter.persistConsumerStates(consumerId, offsets);
+        persistenceAdapter.persistConsumerStateAsync(consumerId, 2, 300L).get(5, TimeUnit.SECONDS);
+        persistenceAdapter.close();
+
+        // Validate everything lives in one node
+        final ZooKeeper zookeeperClient = new ZooKeeper(
+            getZookeeperConnectionString(), 6000, event -> logger.info("Got event {}", event)
+        );
+        final String compactPath = configuredZkRoot + "/" + configuredConsumerPrefix + "/consumer_states/" + consumerId;
+        final Map<Integer, Long> storedOffsets = ZookeeperPersistenceAdapter.decodeCompactConsumerState(
+            zookeeperClient.getData(compactPath, false, null)
+        );
+        assertEquals(3, storedOffsets.size(), "Should have all partitions");
+        assertEquals(101L, (long) storedOffsets.get(0));
+        assertEquals(200L, (long) storedOffsets.get(1));
+        assertEquals(300L, (long) storedOffsets.get(2));
+
+        // Re-open, should read them back
+        persistenceAdapter = new ZookeeperPersistenceAdapter();
+        persistenceAdapter.open(topologyConfig);
+        assertEquals(101L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 0));
+        assertEquals(200L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 1));
+        assertEquals(300L, (long) persistenceAdapter.retrieveConsumerState(consumerId, 2));
+
+        // Clearing every partition should remove the compact node, and the node per partition left from before.
+        persistenceAdapter.clearConsumerState(consumerId, 0);
+        persistenceAdapter.clearConsumerState(consumerId, 1);
+        assertNotNull(zookeeperClient.exists(compactPath, false), "Compact node should remain until all partitions are cleared");
+        persistenceAdapter.clearConsumerState(consumerId, 2);
+        assertNull(zookeeperClient.exists(compactPath, false), "Compact node should be removed");
+        assertNull(persistenceAdapter.retrieveConsumerState(consumerId, 0), "Should have no state left");
+        persistenceAdapter.close();
+        zookeeperClient.close();
+    }
+
+    /**
+     * Tests encoding and decoding the compact binary format.
+     */
+    @Test
+    public void testEncodeAndDecodeCompactConsumerState() {
+        final Map<Integer, Long> offsets = new HashMap<>();
+        offsets.put(0, 0L);
+        offsets.put(7, Long.MAX_VALUE);
+        offsets.put(63, 123456789L);
+
+        final byte[] bytes = ZookeeperPersistenceAdapter.encodeCompactConsumerState(offsets);
+        assertEquals(1 + 4 + (3 * 12), bytes.length, "Should be compact");
+        assertEquals(offsets, ZookeeperPersistenceAdapter.decodeCompactConsumerState(bytes));
+        assertEquals(
+            new HashMap<>(),
+            ZookeeperPersistenceAdapter.decodeCompactConsumerState(ZookeeperPersistenceAdapter.encodeCompactConsumerState(new HashMap<>()))
+        );
+    }
+
     /**
      * Tests end to end persistence of Consumer state, using an independent ZK client to verify things are written
      * into zookeeper as we expect.
@@ -84,6 +84,33 @@ public class CuratorHelperTest {
         }
     }
 
+    /**
+     * Test writing bytes into many nodes at once, some of which already exist and some of which don't.
+     */
+    @Test
+    public void testWriteBytesToManyNodes() throws Exception {
+        final String basePath = "/testWriteBytesToManyNodes";
+        final String existingPath = basePath + "/existing";
+        final String newPath = basePath + "/new";
+
+        try (final CuratorFramework curator = createCurator()) {
+            curator
+                .create()
+                .creatingParentsIfNeeded()
+                .forPath(existingPath, "old".getBytes(StandardCharsets.UTF_8));
+
+            // Write both, the existing node should be overwritten and the new one created
+            final CuratorHelper curatorHelper = new CuratorHelper(curator);
+            final Map<String, byte[]> pathsToBytes = new HashMap<>();
+            pathsToBytes.put(existingPath, "value1".getBytes(StandardCharsets.UTF_8));
+            pathsToBytes.put(newPath, "value2".getBytes(StandardCharsets.UTF_8));
+            curatorHelper.writeBytes(pathsToBytes);
+
+            assertEquals("value1", new String(curatorHelper.readBytes(existingPath), StandardCharsets.UTF_8), "Has overwritten value");
+            assertEquals("value2", new String(curatorHelper.readBytes(newPath), StandardCharsets.UTF_8), "Has created value");
+        }
+    }
+
     /**
      * Test reading and writing bytes.
      */
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.retry;
+
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks scheduling and retrying failed tuples, with a fixed number of failed tuples tracked.
+ *
+ * Tracked tuples are due one millisecond apart, so the retry delay is as many milliseconds as there are tuples tracked.
+ * The clock only moves when a benchmark moves it, so results don't depend on how fast the benchmark runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class RetryManagerBenchmark {
+
+    /**
+     * Time the clock starts at.
+     */
+    private static final long START_TIME_MS = 1_000_000L;
+
+    /**
+     * Which retry manager implementation to benchmark.
+     */
+    @Param({"exponentialBackoff", "timingWheel"})
+    public String retryManager;
+
+    /**
+     * How many failed tuples are tracked at any one time.
+     */
+    @Param({"1000", "100000"})
+    public int tracked;
+
+    /**
+     * Seed for picking which tracked tuple fails again, fixed so every run fails tuples in the same order.
+     */
+    @Param({"1234"})
+    public long seed;
+
+    private RetryManager manager;
+    private ManualClock clock;
+    private MessageId[] messageIds;
+    private Random random;
+
+    /**
+     * Start with a fresh retry manager every iteration, tracking our failed tuples.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.RETRY_MANAGER_INITIAL_DELAY_MS, (long) tracked);
+        config.put(SpoutConfig.RETRY_MANAGER_DELAY_MULTIPLIER, 1.0);
+        config.put(SpoutConfig.RETRY_MANAGER_MAX_DELAY_MS, (long) tracked);
+
+        clock = new ManualClock(START_TIME_MS);
+        if ("timingWheel".equals(retryManager)) {
+            final TimingWheelRetryManager timingWheelRetryManager = new TimingWheelRetryManager();
+            timingWheelRetryManager.open(config);
+            timingWheelRetryManager.setClock(clock);
+            manager = timingWheelRetryManager;
+        } else {
+            final ExponentialBackoffRetryManager exponentialBackoffRetryManager = new ExponentialBackoffRetryManager();
+            exponentialBackoffRetryManager.open(config);
+            exponentialBackoffRetryManager.setClock(clock);
+            manager = exponentialBackoffRetryManager;
+        }
+
+        // Fail each tuple a millisecond after the last, so they come due a millisecond apart.
+        final DefaultVirtualSpoutIdentifier virtualSpoutId = new DefaultVirtualSpoutIdentifier("Benchmark");
+        messageIds = new MessageId[tracked];
+        for (int index = 0; index < tracked; index++) {
+            messageIds[index] = new MessageId("Benchmark", 0, index, virtualSpoutId);
+            manager.failed(messageIds[index]);
+            clock.advance();
+        }
+        random = new Random(seed);
+    }
+
+    /**
+     * A millisecond passes, the tuple now due is retried and fails yet again, as tuples do while a bolt is failing them.
+     * @return the tuple that was retried.
+     */
+    @Benchmark
+    public MessageId retryAndFailAgain() {
+        clock.advance();
+        final MessageId messageId = manager.nextFailedMessageToRetry();
+        if (messageId != null) {
+            manager.failed(messageId);
+        }
+        return messageId;
+    }
+
+    /**
+     * A tracked tuple fails again before it has been retried, rescheduling it.
+     * @return the tuple that failed again.
+     */
+    @Benchmark
+    public MessageId failAgainBeforeRetry() {
+        final MessageId messageId = messageIds[random.nextInt(tracked)];
+        manager.failed(messageId);
+        return messageId;
+    }
+
+    /**
+     * A clock that only moves when told to, a millisecond at a time.
+     */
+    private static final class ManualClock extends Clock {
+        private long millis;
+
+        private ManualClock(final long millis) {
+            this.millis = millis;
+        }
+
+        private void advance() {
+            millis++;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
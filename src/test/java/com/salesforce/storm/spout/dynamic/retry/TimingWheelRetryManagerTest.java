@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2017, 2018, Salesforce.com, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *   disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ *   derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.storm.spout.dynamic.retry;
+
+import com.salesforce.storm.spout.dynamic.DefaultVirtualSpoutIdentifier;
+import com.salesforce.storm.spout.dynamic.MessageId;
+import com.salesforce.storm.spout.dynamic.config.SpoutConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test that the {@link TimingWheelRetryManager} retries tuples.
+ */
+public class TimingWheelRetryManagerTest {
+
+    /**
+     * Used to mock the system clock.
+     */
+    private static final long FIXED_TIME = 100000L;
+
+    private static final DefaultVirtualSpoutIdentifier CONSUMER_ID = new DefaultVirtualSpoutIdentifier("MyConsumerId");
+
+    /**
+     * Tests that the open() set properties from the config.
+     */
+    @Test
+    public void testOpen() {
+        final TimingWheelRetryManager retryManager = new TimingWheelRetryManager();
+        retryManager.open(getDefaultConfig(44, 4455L, 4.56, 1000L));
+
+        assertEquals(44, retryManager.getRetryLimit(), "Wrong max retries");
+        assertEquals(4455L, retryManager.getInitialRetryDelayMs(), "Wrong retry time");
+        assertEquals(4.56, retryManager.getRetryDelayMultiplier(), 0.001, "Wrong retry delay multiplier");
+        assertEquals(1000L, retryManager.getRetryDelayMaxMs(), "Wrong max delay");
+    }
+
+    /**
+     * Tests that failed tuples are retried once their exponentially backed off delay passes.
+     */
+    @Test
+    public void testFailedAndRetry() {
+        final TimingWheelRetryManager retryManager = createRetryManager(-1, 1000L, 2.0, 3000L);
+        final MessageId messageId1 = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+        final MessageId messageId2 = new MessageId("MyTopic", 0, 102L, CONSUMER_ID);
+
+        retryManager.setClock(clockAt(FIXED_TIME));
+        retryManager.failed(messageId1);
+        retryManager.setClock(clockAt(FIXED_TIME + 10));
+        retryManager.failed(messageId2);
+        assertEquals(1, retryManager.getNumberOfTimesFailed(messageId1));
+        assertFalse(retryManager.isInFlight(messageId1), "Should be waiting to be retried");
+
+        // Nothing due yet
+        retryManager.setClock(clockAt(FIXED_TIME + 999));
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have nothing due");
+
+        // First is due
+        retryManager.setClock(clockAt(FIXED_TIME + 1000));
+        assertEquals(messageId1, retryManager.nextFailedMessageToRetry());
+        assertTrue(retryManager.isInFlight(messageId1), "Should be in flight");
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have nothing else due");
+
+        // Second is due
+        retryManager.setClock(clockAt(FIXED_TIME + 1010));
+        assertEquals(messageId2, retryManager.nextFailedMessageToRetry());
+
+        // Fail the first again, should back off for twice as long
+        retryManager.failed(messageId1);
+        assertEquals(2, retryManager.getNumberOfTimesFailed(messageId1));
+        retryManager.setClock(clockAt(FIXED_TIME + 3009));
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have nothing due");
+        retryManager.setClock(clockAt(FIXED_TIME + 3010));
+        assertEquals(messageId1, retryManager.nextFailedMessageToRetry());
+
+        // Fail the first again, should be capped at our max delay
+        retryManager.failed(messageId1);
+        retryManager.setClock(clockAt(FIXED_TIME + 6009));
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have nothing due");
+        retryManager.setClock(clockAt(FIXED_TIME + 6010));
+        assertEquals(messageId1, retryManager.nextFailedMessageToRetry());
+
+        // Ack both, should no longer be tracked
+        retryManager.acked(messageId1);
+        retryManager.acked(messageId2);
+        assertEquals(0, retryManager.getTrackedCount(), "Should not be tracking anything");
+    }
+
+    /**
+     * Tests that failing a tuple again before it was retried reschedules it, rather than retrying it twice.
+     */
+    @Test
+    public void testFailedAgainBeforeRetry() {
+        final TimingWheelRetryManager retryManager = createRetryManager(-1, 1000L, 2.0, 900000L);
+        final MessageId messageId = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+
+        retryManager.setClock(clockAt(FIXED_TIME));
+        retryManager.failed(messageId);
+        retryManager.failed(messageId);
+
+        retryManager.setClock(clockAt(FIXED_TIME + 1000));
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have been rescheduled");
+        retryManager.setClock(clockAt(FIXED_TIME + 2000));
+        assertEquals(messageId, retryManager.nextFailedMessageToRetry());
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should only be retried once");
+    }
+
+    /**
+     * Tests that acking a scheduled tuple cancels its retry.
+     */
+    @Test
+    public void testAckedCancelsRetry() {
+        final TimingWheelRetryManager retryManager = createRetryManager(-1, 1000L, 2.0, 900000L);
+        final MessageId messageId = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+
+        retryManager.setClock(clockAt(FIXED_TIME));
+        retryManager.failed(messageId);
+        retryManager.acked(messageId);
+
+        retryManager.setClock(clockAt(FIXED_TIME + 1000));
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have been cancelled");
+        assertEquals(0, retryManager.getNumberOfTimesFailed(messageId), "Should have forgotten fail count");
+    }
+
+    /**
+     * Tests that tuples due further out than a single turn of the wheel, or due while we weren't looking for a
+     * while, are retried at the right time.
+     */
+    @Test
+    public void testDelaysLongerThanWheel() {
+        final long delayMs = (TimingWheelRetryManager.WHEEL_SIZE * 3) + 7;
+        final TimingWheelRetryManager retryManager = createRetryManager(-1, delayMs, 1.0, 900000L);
+        final MessageId messageId1 = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+        final MessageId messageId2 = new MessageId("MyTopic", 0, 102L, CONSUMER_ID);
+
+        retryManager.setClock(clockAt(FIXED_TIME));
+        retryManager.failed(messageId1);
+
+        // Walk the clock forward a turn of the wheel at a time, should not come back early
+        for (long time = FIXED_TIME; time < FIXED_TIME + delayMs; time += TimingWheelRetryManager.WHEEL_SIZE / 2) {
+            retryManager.setClock(clockAt(time));
+            assertNull(retryManager.nextFailedMessageToRetry(), "Should not be due at " + time);
+        }
+        retryManager.setClock(clockAt(FIXED_TIME + delayMs));
+        assertEquals(messageId1, retryManager.nextFailedMessageToRetry());
+
+        // Jump the clock well past the next retry
+        retryManager.failed(messageId2);
+        retryManager.setClock(clockAt(FIXED_TIME + (delayMs * 10)));
+        assertEquals(messageId2, retryManager.nextFailedMessageToRetry());
+    }
+
+    /**
+     * Tests that tuples due further out than a full turn of the overflow wheel are retried at the right time, and that
+     * failing them again before then reschedules them.
+     */
+    @Test
+    public void testDelaysLongerThanOverflowWheel() {
+        final long overflowMs = (long) TimingWheelRetryManager.WHEEL_SIZE * TimingWheelRetryManager.OVERFLOW_SIZE;
+        final long delayMs = (overflowMs * 2) + 13;
+        final TimingWheelRetryManager retryManager = createRetryManager(-1, delayMs, 1.0, delayMs);
+        final MessageId messageId1 = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+        final MessageId messageId2 = new MessageId("MyTopic", 0, 102L, CONSUMER_ID);
+
+        retryManager.failed(messageId1);
+        retryManager.failed(messageId2);
+
+        // Fail the second one again a turn later, pushing it out by a turn
+        retryManager.setClock(clockAt(FIXED_TIME + TimingWheelRetryManager.WHEEL_SIZE));
+        assertNull(retryManager.nextFailedMessageToRetry());
+        retryManager.failed(messageId2);
+
+        // Walk the clock forward, should not come back early
+        for (long time = FIXED_TIME; time < FIXED_TIME + delayMs; time += TimingWheelRetryManager.WHEEL_SIZE / 3) {
+            retryManager.setClock(clockAt(time));
+            assertNull(retryManager.nextFailedMessageToRetry(), "Should not be due at " + time);
+        }
+        retryManager.setClock(clockAt(FIXED_TIME + delayMs));
+        assertEquals(messageId1, retryManager.nextFailedMessageToRetry());
+        assertNull(retryManager.nextFailedMessageToRetry(), "Should have been rescheduled");
+
+        // Jump straight to when the second one is due
+        retryManager.setClock(clockAt(FIXED_TIME + TimingWheelRetryManager.WHEEL_SIZE + delayMs));
+        assertEquals(messageId2, retryManager.nextFailedMessageToRetry());
+        assertEquals(2, retryManager.getNumberOfTimesFailed(messageId2));
+    }
+
+    /**
+     * Tests that we stop retrying once we've hit our retry limit.
+     */
+    @Test
+    public void testRetryFurther() {
+        final MessageId messageId = new MessageId("MyTopic", 0, 101L, CONSUMER_ID);
+
+        final TimingWheelRetryManager retryManager = createRetryManager(2, 1000L, 2.0, 900000L);
+        assertTrue(retryManager.retryFurther(messageId));
+        retryManager.failed(messageId);
+        assertTrue(retryManager.retryFurther(messageId));
+        retryManager.failed(messageId);
+        assertFalse(retryManager.retryFurther(messageId));
+
+        // Never retry
+        assertFalse(createRetryManager(0, 1000L, 2.0, 900000L).retryFurther(messageId));
+
+        // Retry forever
+        final TimingWheelRetryManager foreverRetryManager = createRetryManager(-1, 1000L, 2.0, 900000L);
+        for (int count = 0; count < 100; count++) {
+            foreverRetryManager.failed(messageId);
+        }
+        assertTrue(foreverRetryManager.retryFurther(messageId));
+    }
+
+    private TimingWheelRetryManager createRetryManager(
+        final int retryLimit,
+        final long initialRetryDelayMs,
+        final double retryDelayMultiplier,
+        final long retryDelayMaxMs
+    ) {
+        final TimingWheelRetryManager retryManager = new TimingWheelRetryManager();
+        retryManager.open(getDefaultConfig(retryLimit, initialRetryDelayMs, retryDelayMultiplier, retryDelayMaxMs));
+        retryManager.setClock(clockAt(FIXED_TIME));
+        return retryManager;
+    }
+
+    private Clock clockAt(final long time) {
+        return Clock.fixed(Instant.ofEpochMilli(time), ZoneId.of("UTC"));
+    }
+
+    private Map<String, Object> getDefaultConfig(
+        final int retryLimit,
+        final long initialRetryDelayMs,
+        final double retryDelayMultiplier,
+        final long retryDelayMaxMs
+    ) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(SpoutConfig.RETRY_MANAGER_RETRY_LIMIT, retryLimit);
+        config.put(SpoutConfig.RETRY_MANAGER_INITIAL_DELAY_MS, initialRetryDelayMs);
+        config.put(SpoutConfig.RETRY_MANAGER_DELAY_MULTIPLIER, retryDelayMultiplier);
+        config.put(SpoutConfig.RETRY_MANAGER_MAX_DELAY_MS, retryDelayMaxMs);
+        return config;
+    }
+}